@@ -7,25 +7,69 @@ import java.util.List;
 import java.util.Map;
 import org.apache.logging.log4j.util.Strings;
 import org.datacommons.proto.Debug;
+import org.datacommons.util.CsvReader;
+import org.datacommons.util.ExistenceChecker;
 import org.datacommons.util.FileGroup;
 import org.datacommons.util.JsonLdFileGroup;
 import org.datacommons.util.LogWrapper;
 import org.datacommons.util.McfFileGroup;
+import org.datacommons.util.McfWriter;
 
 // Class representing the command line arguments to dc-import tool. Largely used as a struct.
 class Args {
   public boolean doExistenceChecks = false;
+  // If set, existence check results are kept in this file across runs, and reused for the TTLs.
+  public Path existenceCache = null;
+  public int existenceCacheTtlHours = 168;
+  public int existenceCacheNegativeTtlHours = 24;
+  // Batches of existence checks sent to DC at a time.
+  public int existenceDcCalls = ExistenceChecker.DEFAULT_MAX_CONCURRENT_DC_CALLS;
+  // If set, KG lookups are served from a snapshot in these files rather than by DC calls.
+  public List<Path> kgSnapshot = null;
   public ResolutionMode resolutionMode = ResolutionMode.NONE;
   public boolean doCoordinatesResolution = false;
   public boolean doStatChecks = false;
   public List<String> samplePlaces = null;
+  // Values of StatVarObservations tracked by stat checks are kept off the Java heap.
+  public boolean statChecksOffHeap = false;
+  // If positive, the series of non-sample places are also checked, for up to this many series.
+  public int statChecksStreamingSeries = 0;
   public boolean verbose = false;
   public FileGroup fileGroup = null;
   public Map<OutputFileType, Path> outputFiles = null;
   public int numThreads = 1;
+  // Run CSV processing on virtual threads (if the runtime supports them).
+  public boolean virtualThreads = false;
+  // If positive, CSVs larger than this many MB are split into record-aligned chunks of about this
+  // size, which are processed concurrently.
+  public double csvChunkMb = 0;
+  // Parser for CSV files.
+  public CsvReader.Type csvReader = CsvReader.Type.COMMONS;
+  // If positive, rows of each CSV are checked and resolved by this many pipeline workers.
+  public int pipelineWorkers = 0;
+  // Compression of the output MCF files.
+  public McfWriter.Compression outputCompression = McfWriter.Compression.NONE;
+  // Instance MCF nodes loaded for checks and resolution are spilled to disk beyond this many MB.
+  public int instanceMcfMemoryMb = 1024;
+  // With FULL resolution, rows parsed for the external ID lookup are spooled and replayed, rather
+  // than parsed again.
+  public boolean singlePassResolution = false;
+  // If not negative, coordinates are rounded to this many decimal places before resolution.
+  public int coordinatesPrecision = -1;
+  // If set, coordinates resolution results are kept in this file across runs, and reused for the
+  // TTLs.
+  public Path coordinatesCache = null;
+  public int coordinatesCacheTtlHours = 720;
+  public int coordinatesCacheNegativeTtlHours = 24;
+  // If set, lint results of unchanged CSVs are reused from this directory.
+  public Path lintCacheDir = null;
   public Path outputDir = null;
   public boolean generateSummaryReport = true;
   public boolean generateOptimizedGraph = false;
+  public OptimizedGraphFormat optimizedGraphFormat = OptimizedGraphFormat.DELIMITED;
+  public int optimizedGraphShards = 1;
+  // Observations grouped for the optimized graph are spilled to disk beyond this many MB.
+  public int optimizedGraphMemoryMb = 1024;
   public boolean checkObservationAbout = true;
   public boolean allowNonNumericStatVarObservation = false;
   public boolean checkMeasurementResult = false;
@@ -39,13 +83,63 @@ class Args {
       argStr.append("lint with");
     }
     argStr.append(" existence-checks=" + doExistenceChecks);
+    if (existenceCache != null) {
+      argStr.append(", existence-cache=" + existenceCache);
+      argStr.append(", existence-cache-ttl-hours=" + existenceCacheTtlHours);
+      argStr.append(", existence-cache-negative-ttl-hours=" + existenceCacheNegativeTtlHours);
+    }
+    if (existenceDcCalls != ExistenceChecker.DEFAULT_MAX_CONCURRENT_DC_CALLS) {
+      argStr.append(", existence-dc-calls=" + existenceDcCalls);
+    }
+    if (kgSnapshot != null) {
+      argStr.append(", kg-snapshot=" + Strings.join(kgSnapshot, ','));
+    }
     argStr.append(", resolution=" + resolutionMode.name());
+    if (singlePassResolution) {
+      argStr.append(", single-pass-resolution=" + singlePassResolution);
+    }
     argStr.append(", coordinates-resolution=" + doCoordinatesResolution);
+    if (coordinatesPrecision >= 0) {
+      argStr.append(", coordinates-precision=" + coordinatesPrecision);
+    }
+    if (coordinatesCache != null) {
+      argStr.append(", coordinates-cache=" + coordinatesCache);
+      argStr.append(", coordinates-cache-ttl-hours=" + coordinatesCacheTtlHours);
+      argStr.append(", coordinates-cache-negative-ttl-hours=" + coordinatesCacheNegativeTtlHours);
+    }
     argStr.append(", num-threads=" + numThreads);
+    if (virtualThreads) {
+      argStr.append(", virtual-threads=" + virtualThreads);
+    }
+    if (csvChunkMb > 0) {
+      argStr.append(", csv-chunk-mb=" + csvChunkMb);
+    }
+    if (csvReader != CsvReader.Type.COMMONS) {
+      argStr.append(", csv-reader=" + csvReader.name());
+    }
+    if (pipelineWorkers > 0) {
+      argStr.append(", pipeline-workers=" + pipelineWorkers);
+    }
+    if (lintCacheDir != null) {
+      argStr.append(", lint-cache-dir=" + lintCacheDir);
+    }
+    if (outputCompression != McfWriter.Compression.NONE) {
+      argStr.append(", output-compression=" + outputCompression.name());
+    }
+    if (optimizedGraphFormat != OptimizedGraphFormat.DELIMITED) {
+      argStr.append(", optimized-graph-format=" + optimizedGraphFormat.name());
+      argStr.append(", optimized-graph-shards=" + optimizedGraphShards);
+    }
     argStr.append(", stat-checks=" + doStatChecks);
     if (samplePlaces != null) {
       argStr.append(", sample-places=" + Strings.join(samplePlaces, ':'));
     }
+    if (statChecksOffHeap) {
+      argStr.append(", stat-checks-off-heap=" + statChecksOffHeap);
+    }
+    if (statChecksStreamingSeries > 0) {
+      argStr.append(", stat-checks-streaming-series=" + statChecksStreamingSeries);
+    }
     argStr.append(", observation-about=" + checkObservationAbout);
     argStr.append(", allow-non-numeric-svobs=" + allowNonNumericStatVarObservation);
     argStr.append(", check-measurement-result=" + checkMeasurementResult);
@@ -57,7 +151,27 @@ class Args {
   public Debug.CommandArgs toProto() {
     Debug.CommandArgs.Builder argsBuilder = Debug.CommandArgs.newBuilder();
     argsBuilder.setExistenceChecks(doExistenceChecks);
+    if (existenceCache != null) argsBuilder.setExistenceCache(true);
+    if (existenceDcCalls != ExistenceChecker.DEFAULT_MAX_CONCURRENT_DC_CALLS) {
+      argsBuilder.setExistenceDcCalls(existenceDcCalls);
+    }
+    if (kgSnapshot != null) argsBuilder.setKgSnapshot(true);
     argsBuilder.setNumThreads(numThreads);
+    if (virtualThreads) argsBuilder.setVirtualThreads(virtualThreads);
+    if (csvChunkMb > 0) argsBuilder.setCsvChunkMb(csvChunkMb);
+    if (csvReader != CsvReader.Type.COMMONS) argsBuilder.setCsvReader(csvReader.name());
+    if (pipelineWorkers > 0) argsBuilder.setPipelineWorkers(pipelineWorkers);
+    if (lintCacheDir != null) argsBuilder.setLintCache(true);
+    if (singlePassResolution) argsBuilder.setSinglePassResolution(true);
+    if (coordinatesPrecision >= 0) argsBuilder.setCoordinatesPrecision(coordinatesPrecision);
+    if (coordinatesCache != null) argsBuilder.setCoordinatesCache(true);
+    if (outputCompression != McfWriter.Compression.NONE) {
+      argsBuilder.setOutputCompression(outputCompression.name());
+    }
+    if (optimizedGraphFormat != OptimizedGraphFormat.DELIMITED) {
+      argsBuilder.setOptimizedGraphFormat(optimizedGraphFormat.name());
+      argsBuilder.setOptimizedGraphShards(optimizedGraphShards);
+    }
     if (resolutionMode == ResolutionMode.NONE) {
       argsBuilder.setResolution(Debug.CommandArgs.ResolutionMode.RESOLUTION_MODE_NONE);
     } else if (resolutionMode == ResolutionMode.LOCAL) {
@@ -68,6 +182,10 @@ class Args {
     argsBuilder.setCoordinatesResolution(doCoordinatesResolution);
     argsBuilder.setStatChecks(doStatChecks);
     if (samplePlaces != null) argsBuilder.addAllSamplePlaces(samplePlaces);
+    if (statChecksOffHeap) argsBuilder.setStatChecksOffHeap(true);
+    if (statChecksStreamingSeries > 0) {
+      argsBuilder.setStatChecksStreamingSeries(statChecksStreamingSeries);
+    }
     argsBuilder.setObservationAbout(checkObservationAbout);
     argsBuilder.setAllowNanSvobs(allowNonNumericStatVarObservation);
     argsBuilder.setCheckMeasurementResult(checkMeasurementResult);
@@ -124,6 +242,13 @@ class Args {
     FAILED_TABLE_MCF_NODES,
   }
 
+  public enum OptimizedGraphFormat {
+    // Length-delimited McfOptimizedGraph protos in one file.
+    DELIMITED,
+    // Gzipped TFRecord shards, as read by the ingestion pipeline.
+    TFRECORD,
+  }
+
   public enum ResolutionMode {
     NONE,
     LOCAL,
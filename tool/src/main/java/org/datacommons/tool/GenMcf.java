@@ -20,6 +20,7 @@ import java.io.IOException;
 import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.datacommons.util.FileGroup;
@@ -57,11 +58,31 @@ class GenMcf implements Callable<Integer> {
     }
     Args args = new Args();
     args.doExistenceChecks = parent.doExistenceChecks;
+    if (parent.existenceCache != null) args.existenceCache = parent.existenceCache.toPath();
+    args.existenceCacheTtlHours = parent.existenceCacheTtlHours;
+    args.existenceCacheNegativeTtlHours = parent.existenceCacheNegativeTtlHours;
+    args.existenceDcCalls = parent.existenceDcCalls;
+    if (parent.kgSnapshot != null) {
+      args.kgSnapshot = parent.kgSnapshot.stream().map(File::toPath).collect(Collectors.toList());
+    }
     args.resolutionMode = parent.resolutionMode;
     args.doCoordinatesResolution = parent.doCoordinatesResolution;
     args.doStatChecks = parent.doStatChecks;
     args.samplePlaces = parent.samplePlaces;
+    args.statChecksOffHeap = parent.statChecksOffHeap;
+    args.statChecksStreamingSeries = parent.statChecksStreamingSeries;
     args.numThreads = parent.numThreads;
+    args.virtualThreads = parent.virtualThreads;
+    args.csvChunkMb = parent.csvChunkMb;
+    args.csvReader = parent.csvReader;
+    args.pipelineWorkers = parent.pipelineWorkers;
+    args.outputCompression = parent.outputCompression;
+    args.instanceMcfMemoryMb = parent.instanceMcfMemoryMb;
+    args.singlePassResolution = parent.singlePassResolution;
+    args.coordinatesPrecision = parent.coordinatesPrecision;
+    if (parent.coordinatesCache != null) args.coordinatesCache = parent.coordinatesCache.toPath();
+    args.coordinatesCacheTtlHours = parent.coordinatesCacheTtlHours;
+    args.coordinatesCacheNegativeTtlHours = parent.coordinatesCacheNegativeTtlHours;
     if (args.samplePlaces != null && !args.doStatChecks) {
       logger.warn(
           "Sample places entered without stat checks being enabled. Sample places will be unused.");
@@ -76,6 +97,9 @@ class GenMcf implements Callable<Integer> {
     }
     args.generateSummaryReport = parent.generateSummaryReport;
     args.generateOptimizedGraph = parent.generateOptimizedGraph;
+    args.optimizedGraphFormat = parent.optimizedGraphFormat;
+    args.optimizedGraphShards = parent.optimizedGraphShards;
+    args.optimizedGraphMemoryMb = parent.optimizedGraphMemoryMb;
     args.checkObservationAbout = parent.checkObservationAbout;
     args.allowNonNumericStatVarObservation = parent.allowNonNumericStatVarObservation;
     args.checkMeasurementResult = parent.checkMeasurementResult;
@@ -18,6 +18,7 @@ import freemarker.template.TemplateException;
 import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.Callable;
+import java.util.stream.Collectors;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.datacommons.util.FileGroup;
@@ -58,11 +59,31 @@ class Lint implements Callable<Integer> {
     }
     Args args = new Args();
     args.doExistenceChecks = parent.doExistenceChecks;
+    if (parent.existenceCache != null) args.existenceCache = parent.existenceCache.toPath();
+    args.existenceCacheTtlHours = parent.existenceCacheTtlHours;
+    args.existenceCacheNegativeTtlHours = parent.existenceCacheNegativeTtlHours;
+    args.existenceDcCalls = parent.existenceDcCalls;
+    if (parent.kgSnapshot != null) {
+      args.kgSnapshot = parent.kgSnapshot.stream().map(File::toPath).collect(Collectors.toList());
+    }
     args.resolutionMode = parent.resolutionMode;
     args.doCoordinatesResolution = parent.doCoordinatesResolution;
     args.doStatChecks = parent.doStatChecks;
     args.samplePlaces = parent.samplePlaces;
+    args.statChecksOffHeap = parent.statChecksOffHeap;
+    args.statChecksStreamingSeries = parent.statChecksStreamingSeries;
     args.numThreads = parent.numThreads;
+    args.virtualThreads = parent.virtualThreads;
+    args.csvChunkMb = parent.csvChunkMb;
+    args.csvReader = parent.csvReader;
+    args.pipelineWorkers = parent.pipelineWorkers;
+    args.instanceMcfMemoryMb = parent.instanceMcfMemoryMb;
+    args.singlePassResolution = parent.singlePassResolution;
+    args.coordinatesPrecision = parent.coordinatesPrecision;
+    if (parent.coordinatesCache != null) args.coordinatesCache = parent.coordinatesCache.toPath();
+    args.coordinatesCacheTtlHours = parent.coordinatesCacheTtlHours;
+    args.coordinatesCacheNegativeTtlHours = parent.coordinatesCacheNegativeTtlHours;
+    if (parent.lintCacheDir != null) args.lintCacheDir = parent.lintCacheDir.toPath();
     if (args.samplePlaces != null && !args.doStatChecks) {
       logger.warn(
           "Sample places entered without stat checks being enabled. Sample places will be unused.");
@@ -72,6 +93,9 @@ class Lint implements Callable<Integer> {
     args.outputDir = parent.outputDir.toPath();
     args.generateSummaryReport = parent.generateSummaryReport;
     args.generateOptimizedGraph = parent.generateOptimizedGraph;
+    args.optimizedGraphFormat = parent.optimizedGraphFormat;
+    args.optimizedGraphShards = parent.optimizedGraphShards;
+    args.optimizedGraphMemoryMb = parent.optimizedGraphMemoryMb;
     args.checkObservationAbout = parent.checkObservationAbout;
     args.allowNonNumericStatVarObservation = parent.allowNonNumericStatVarObservation;
     args.checkMeasurementResult = parent.checkMeasurementResult;
@@ -16,6 +16,8 @@ package org.datacommons.tool;
 
 import java.io.File;
 import java.util.List;
+import org.datacommons.util.CsvReader;
+import org.datacommons.util.McfWriter;
 import org.datacommons.util.RuntimeMetadataUtil;
 import picocli.CommandLine;
 
@@ -50,9 +52,60 @@ public class Main {
           "Checks DCID references to schema nodes against the KG and locally. "
               + "If this flag is set, then calls will be made to the configured Data Commons "
               + "API endpoint (autopush by default), "
-              + "and instance MCFs get fully loaded into memory. Defaults to true.")
+              + "and instance MCFs get fully loaded (see --instance-mcf-memory-mb). "
+              + "Defaults to true.")
   public boolean doExistenceChecks;
 
+  @CommandLine.Option(
+      names = {"--existence-cache"},
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "If set, results of existence checks against the KG are kept in this file across runs "
+              + "(e.g., ~/.cache/dc-import/existence.cache), so that repeated runs make few or no "
+              + "DC calls. Results are reused for --existence-cache-ttl-hours if the node or "
+              + "triple was found, and --existence-cache-negative-ttl-hours if not. "
+              + "Defaults to no cache.")
+  public File existenceCache;
+
+  @CommandLine.Option(
+      names = {"--existence-cache-ttl-hours"},
+      defaultValue = "168",
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "Hours for which a cached existence check that found the node or triple is reused. "
+              + "Defaults to 168 (a week).")
+  public int existenceCacheTtlHours;
+
+  @CommandLine.Option(
+      names = {"--existence-cache-negative-ttl-hours"},
+      defaultValue = "24",
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "Hours for which a cached existence check that did not find the node or triple is "
+              + "reused. Defaults to 24.")
+  public int existenceCacheNegativeTtlHours;
+
+  @CommandLine.Option(
+      names = {"--existence-dc-calls"},
+      defaultValue = "4",
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "Number of batches of existence checks sent to DC at a time. Each batch has up to 1000 "
+              + "DCIDs of a property, and up to 64KB of them. Defaults to 4.")
+  public int existenceDcCalls;
+
+  @CommandLine.Option(
+      names = {"--kg-snapshot"},
+      split = ",",
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "Comma-separated list of files with a local snapshot of the KG: instance MCF files, or "
+              + "TFRecord files (.tfrecord or .tfrecord.gz) of McfGraph protos. If set, existence "
+              + "checks, statType lookups, external ID resolution and sample place names are "
+              + "served from the snapshot, and no DC calls are made. Coordinates are not resolved "
+              + "against a snapshot. Defaults to none.")
+  public List<File> kgSnapshot;
+
   @CommandLine.Option(
       names = {"-r", "--resolution"},
       defaultValue = "LOCAL",
@@ -124,16 +177,173 @@ public class Main {
               + "places are picked for roughly each distinct place type.")
   public List<String> samplePlaces;
 
+  @CommandLine.Option(
+      names = {"--stat-checks-off-heap"},
+      defaultValue = "false",
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "With --stat-checks, the values of all StatVarObservations, which are kept to find "
+              + "observations with inconsistent values, are kept off the Java heap (about 12-24 "
+              + "bytes per observation). Direct memory may need to be raised with "
+              + "-XX:MaxDirectMemorySize for large imports. Defaults to false.")
+  public boolean statChecksOffHeap;
+
+  @CommandLine.Option(
+      names = {"--stat-checks-streaming-series"},
+      defaultValue = "0",
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "With --stat-checks, the series of places other than the sample places are also "
+              + "checked for 3-sigma outliers, fluctuations and dates, as their values are read, "
+              + "keeping a fixed amount of state for each of up to this many series. "
+              + "0 turns these checks off. Defaults to 0.")
+  public int statChecksStreamingSeries;
+
   @CommandLine.Option(
       names = {"-n", "--num-threads"},
       defaultValue = "1",
       scope = CommandLine.ScopeType.INHERIT,
       description =
           "Specifies the number of concurrent threads used for processing CSVs. "
-              + "You need multiple CSVs to take advantage of concurrent processing. "
+              + "You need multiple CSVs (or --csv-chunk-mb) to take advantage of concurrent "
+              + "processing. "
               + "Defaults to true.")
   public int numThreads;
 
+  @CommandLine.Option(
+      names = {"--virtual-threads"},
+      defaultValue = "false",
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "Runs CSV processing (and the --pipeline-workers) on virtual threads, one per task, "
+              + "instead of fixed pools of platform threads. Then --num-threads no longer limits "
+              + "how many CSVs (or CSV chunks) are processed at a time, which helps runs that "
+              + "mostly wait on DC API calls (e.g., with existence checks). Requires a Java 21+ "
+              + "runtime, otherwise platform threads are used. Defaults to false.")
+  public boolean virtualThreads;
+
+  @CommandLine.Option(
+      names = {"--csv-chunk-mb"},
+      defaultValue = "0",
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "If set to a positive value, CSV files larger than this many megabytes are split into "
+              + "record-aligned chunks of about this size, which are processed concurrently "
+              + "(up to --num-threads at a time). Use this to spread a single large CSV over "
+              + "multiple cores. The output MCF files are identical to processing the file as a "
+              + "whole, but the example messages and sample places in the report can differ. "
+              + "Fractional values are allowed. "
+              + "Defaults to 0 (disabled).")
+  public double csvChunkMb;
+
+  @CommandLine.Option(
+      names = {"--csv-reader"},
+      defaultValue = "COMMONS",
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "Specifies the CSV parser to use: ${COMPLETION-CANDIDATES}. "
+              + "COMMONS uses Apache Commons CSV. FAST uses a parser for the same format that "
+              + "reuses its buffers across rows and only creates values for the columns "
+              + "referred to in the TMCF, which is faster for wide CSVs. "
+              + "Defaults to COMMONS.")
+  public CsvReader.Type csvReader;
+
+  @CommandLine.Option(
+      names = {"--pipeline-workers"},
+      defaultValue = "0",
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "If set to a positive value, the rows of each CSV are processed in a pipeline: one "
+              + "thread parses rows, this many worker threads check and resolve them, and the "
+              + "processed rows are written in their original order. Queue depths and "
+              + "back-pressure of the pipeline are reported in report.json. "
+              + "Defaults to 0 (rows are processed one at a time).")
+  public int pipelineWorkers;
+
+  @CommandLine.Option(
+      names = {"--output-compression"},
+      defaultValue = "NONE",
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "Specifies the compression of the output MCF files written by genmcf: "
+              + "${COMPLETION-CANDIDATES}. With GZIP, the files are named *.mcf.gz. "
+              + "Defaults to NONE.")
+  public McfWriter.Compression outputCompression;
+
+  @CommandLine.Option(
+      names = {"--instance-mcf-memory-mb"},
+      defaultValue = "1024",
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "Instance MCF nodes that are loaded for existence checks, resolution and stat checks "
+              + "are kept in memory up to roughly this many megabytes (of serialized nodes). "
+              + "Beyond that, they are spilled to temporary files in the output directory and "
+              + "streamed from there. Defaults to 1024.")
+  public int instanceMcfMemoryMb;
+
+  @CommandLine.Option(
+      names = {"--single-pass-resolution"},
+      defaultValue = "false",
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "With --resolution=FULL, CSVs are parsed only once: the rows parsed while looking up "
+              + "external IDs are spooled to temporary files in the output directory, and checked, "
+              + "resolved and written from there, rather than parsed again. Needs disk space for "
+              + "the parsed rows of all the CSVs. CSVs are not split by --csv-chunk-mb in this "
+              + "mode. Defaults to false.")
+  public boolean singlePassResolution;
+
+  @CommandLine.Option(
+      names = {"--coordinates-precision"},
+      defaultValue = "-1",
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "With --coordinates-resolution, latitudes and longitudes are rounded to this many "
+              + "decimal places before they are resolved, so points in the same cell are resolved "
+              + "once (e.g., 4 for cells of about 10m). Defaults to -1 (no rounding).")
+  public int coordinatesPrecision;
+
+  @CommandLine.Option(
+      names = {"--coordinates-cache"},
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "If set, results of coordinates resolution are kept in this file across runs "
+              + "(e.g., ~/.cache/dc-import/coordinates.cache) and reused for "
+              + "--coordinates-cache-ttl-hours if they resolved, and "
+              + "--coordinates-cache-negative-ttl-hours if not. Results are not cached with "
+              + "--kg-snapshot, which does not resolve coordinates. Defaults to no cache.")
+  public File coordinatesCache;
+
+  @CommandLine.Option(
+      names = {"--coordinates-cache-ttl-hours"},
+      defaultValue = "720",
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "Hours for which a cached coordinates resolution is reused. "
+              + "Defaults to 720 (30 days).")
+  public int coordinatesCacheTtlHours;
+
+  @CommandLine.Option(
+      names = {"--coordinates-cache-negative-ttl-hours"},
+      defaultValue = "24",
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "Hours for which cached coordinates that did not resolve are reused. Defaults to 24.")
+  public int coordinatesCacheNegativeTtlHours;
+
+  @CommandLine.Option(
+      names = {"--lint-cache-dir"},
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "If set, lint caches the results of each CSV in this directory, keyed by the contents "
+              + "of the CSV, the TMCF and the instance MCFs, and the options that affect checks. "
+              + "On later runs, unchanged CSVs are not checked again: their cached counters, "
+              + "log entries and stats are added to the report instead. Existence checks are "
+              + "not redone for cached CSVs, so a change in the Data Commons KG is only noticed "
+              + "once a CSV changes. Not used with resolution=FULL or --optimized-graph. "
+              + "Defaults to no cache.")
+  public File lintCacheDir;
+
   @CommandLine.Option(
       names = {"-sr", "--summary-report"},
       defaultValue = "true",
@@ -148,6 +358,38 @@ public class Main {
       description = "Generates optimized graph by grouping observations. Defaults to false.")
   public boolean generateOptimizedGraph;
 
+  @CommandLine.Option(
+      names = {"--optimized-graph-format"},
+      defaultValue = "DELIMITED",
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "Specifies the format of the optimized graph: ${COMPLETION-CANDIDATES}. "
+              + "DELIMITED writes <csv>_optimized_graph.pb with length-delimited protos. "
+              + "TFRECORD writes gzipped TFRecord shards "
+              + "<csv>_optimized_graph-NNNNN-of-NNNNN.tfrecord.gz, which the ingestion pipeline "
+              + "reads directly. Defaults to DELIMITED.")
+  public Args.OptimizedGraphFormat optimizedGraphFormat;
+
+  @CommandLine.Option(
+      names = {"--optimized-graph-shards"},
+      defaultValue = "1",
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "Number of TFRecord shards per CSV with --optimized-graph-format=TFRECORD. "
+              + "Defaults to 1.")
+  public int optimizedGraphShards;
+
+  @CommandLine.Option(
+      names = {"--optimized-graph-memory-mb"},
+      defaultValue = "1024",
+      scope = CommandLine.ScopeType.INHERIT,
+      description =
+          "Observations grouped for the optimized graph are kept in memory up to roughly this "
+              + "many megabytes (of serialized series, split between --num-threads). Beyond "
+              + "that, they are sorted and spilled to temporary files in the output directory, "
+              + "which are merged when the optimized graph is written. Defaults to 1024.")
+  public int optimizedGraphMemoryMb;
+
   @CommandLine.Option(
       names = {"-ep", "--existence-checks-place"},
       defaultValue = "true",
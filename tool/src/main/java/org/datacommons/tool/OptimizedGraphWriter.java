@@ -0,0 +1,97 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.tool;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.datacommons.proto.Mcf.McfOptimizedGraph;
+import org.datacommons.util.McfWriter;
+import org.datacommons.util.TfRecordWriter;
+
+// Writes the optimized graph of a CSV in the format of --optimized-graph-format: either one file of
+// length-delimited McfOptimizedGraph protos, or gzipped TFRecord shards that the ingestion pipeline
+// reads directly (see PipelineUtils.readOptimizedMcfGraph). Graphs are spread over the shards
+// round-robin.
+class OptimizedGraphWriter implements Closeable {
+  private static final Logger logger = LogManager.getLogger(OptimizedGraphWriter.class);
+
+  private OutputStream delimitedOut = null;
+  private final List<TfRecordWriter> shards = new ArrayList<>();
+  private long numWritten = 0;
+
+  public OptimizedGraphWriter(Args args, File csvFile) throws IOException {
+    String prefix =
+        Path.of(
+                args.outputDir.toString(),
+                FilenameUtils.removeExtension(csvFile.getName()) + "_optimized_graph")
+            .toString();
+    if (args.optimizedGraphFormat == Args.OptimizedGraphFormat.DELIMITED) {
+      String filePath = prefix + ".pb";
+      logger.info("Writing optimized graph file to {}", filePath);
+      delimitedOut = new BufferedOutputStream(new FileOutputStream(filePath), 1 << 16);
+      return;
+    }
+    int numShards = Math.max(1, args.optimizedGraphShards);
+    logger.info(
+        "Writing optimized graph to {} TFRecord shards {}-*-of-{}.tfrecord.gz",
+        numShards,
+        prefix,
+        String.format("%05d", numShards));
+    try {
+      for (int i = 0; i < numShards; i++) {
+        String filePath = String.format("%s-%05d-of-%05d.tfrecord.gz", prefix, i, numShards);
+        shards.add(new TfRecordWriter(Path.of(filePath), McfWriter.Compression.GZIP));
+      }
+    } catch (IOException e) {
+      close();
+      throw e;
+    }
+  }
+
+  public void write(McfOptimizedGraph graph) throws IOException {
+    if (delimitedOut != null) {
+      graph.writeDelimitedTo(delimitedOut);
+    } else {
+      shards.get((int) (numWritten % shards.size())).write(graph);
+    }
+    numWritten++;
+  }
+
+  @Override
+  public void close() throws IOException {
+    IOException error = null;
+    if (delimitedOut != null) {
+      delimitedOut.close();
+    }
+    for (TfRecordWriter shard : shards) {
+      try {
+        shard.close();
+      } catch (IOException e) {
+        if (error == null) error = e;
+      }
+    }
+    if (error != null) throw error;
+  }
+}
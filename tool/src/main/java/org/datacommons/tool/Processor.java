@@ -15,23 +15,25 @@
 package org.datacommons.tool;
 
 import freemarker.template.TemplateException;
-import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
 import java.net.http.HttpClient;
-import java.nio.file.Paths;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import org.apache.commons.io.FilenameUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.datacommons.proto.Debug;
@@ -45,15 +47,34 @@ import org.datacommons.util.parser.jsonld.JsonLdParser;
 
 public class Processor {
   private static final Logger logger = LogManager.getLogger(Processor.class);
+  // Rows that may be in flight in the row pipeline of a CSV, per pipeline worker.
+  private static final int PIPELINE_ROWS_PER_WORKER = 64;
+  private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = findNewVirtualThreadExecutor();
   private final Args args;
   private ExistenceChecker existenceChecker;
   private ExternalIdResolver idResolver;
   private StatChecker statChecker;
   private StatVarState statVarState;
-  private final List<Mcf.McfGraph> nodesForVariousChecks = new ArrayList<>();
+  // Instance MCF nodes kept for checks, resolution and stats. Spills to disk beyond
+  // args.instanceMcfMemoryMb.
+  private final McfNodeStore nodesForVariousChecks;
   private final ExecutorService execService;
+  // Workers shared by the row pipelines of all CSVs, or null if --pipeline-workers is not set.
+  private final ExecutorService pipelineService;
   private final LogWrapper logCtx;
+  // Lint results of unchanged CSVs, or null if --lint-cache-dir is not set.
+  private final LintCache lintCache;
+  // Fingerprint of the inputs other than the CSV (and the options) that lint results depend on.
+  private String lintCacheContext;
+  // Results of the CSVs checked with the lint cache, to be committed to it once their existence
+  // checks are done.
+  private final Map<File, TableResult> uncommittedLintResults = new ConcurrentHashMap<>();
   private HttpClient httpClient;
+  // Local snapshot of the KG that replaces DC calls, or null.
+  private KgSnapshot kgSnapshot = null;
+  // With --single-pass-resolution, the mutated rows of each CSV read by lookupExternalIds(), which
+  // processTables() replays rather than parsing the CSVs again. Null otherwise.
+  private Map<File, McfNodeStore> rowSpools = null;
   private int numMcfNodeSuccesses = 0;
 
   public static Integer process(Args args) throws IOException, TemplateException {
@@ -78,7 +99,7 @@ public class Processor {
         processor.checkNodes();
       }
 
-      List<Mcf.McfGraph> nodesForStatProcessing = processor.nodesForVariousChecks;
+      Iterable<Mcf.McfGraph> nodesForStatProcessing = processor.nodesForVariousChecks;
       if (args.resolutionMode != Args.ResolutionMode.NONE) {
         if (args.resolutionMode == Args.ResolutionMode.FULL) {
           // Find external IDs from in-memory MCF nodes and CSVs, and map them to DCIDs.
@@ -98,7 +119,9 @@ public class Processor {
       if (!args.fileGroup.getCsvs().isEmpty()) {
         String threadStr = "(with numThreads=" + args.numThreads + ")";
         // Process all the tables.
-        if (args.resolutionMode == Args.ResolutionMode.FULL) {
+        if (processor.rowSpools != null) {
+          logger.info("Checking and Resolving spooled Table MCF rows " + threadStr);
+        } else if (args.resolutionMode == Args.ResolutionMode.FULL) {
           logger.info("Re-loading, Checking and Resolving Table MCF files " + threadStr);
         } else if (args.resolutionMode == Args.ResolutionMode.LOCAL) {
           logger.info("Loading, Checking and Resolving Table MCF files " + threadStr);
@@ -119,6 +142,9 @@ public class Processor {
       // Only for DCTooManyFailuresException, we will dump the logCtx and exit.
       logger.error("Aborting prematurely, see report.json.");
       retVal = -1;
+    } finally {
+      processor.nodesForVariousChecks.close();
+      processor.closeRowSpools();
     }
 
     // Create and set runtime metadata before persisting log
@@ -148,7 +174,7 @@ public class Processor {
     return retVal;
   }
 
-  private Processor(Args args) {
+  private Processor(Args args) throws IOException {
     logger.info("Command options: " + args.toString());
     logger.info("Tool Version: " + RuntimeMetadataUtil.getToolVersion(Processor.class));
     RuntimeMetadataUtil.getToolGitCommitHash()
@@ -159,29 +185,133 @@ public class Processor {
         .ifPresent(version -> logger.info("Java Version: " + version));
 
     this.args = args;
+    this.nodesForVariousChecks =
+        new McfNodeStore((long) args.instanceMcfMemoryMb << 20, args.outputDir);
     this.logCtx =
         new LogWrapper(Debug.Log.newBuilder().setCommandArgs(args.toProto()), args.outputDir);
 
     // we initialize an httpClient regardless of args.doExistenceChecks
     // because other features might still make API calls
     this.httpClient = HttpClient.newHttpClient();
+    if (args.kgSnapshot != null) {
+      kgSnapshot = KgSnapshot.load(args.kgSnapshot);
+      logger.info("Loaded KG snapshot with {} nodes", kgSnapshot.size());
+    }
     if (args.doExistenceChecks) {
-      existenceChecker = new ExistenceChecker(this.httpClient, args.verbose, logCtx);
+      ExistenceCache existenceCache = null;
+      if (args.existenceCache != null) {
+        logger.info("Reusing existence check results from {}", args.existenceCache);
+        Files.createDirectories(args.existenceCache.toAbsolutePath().getParent());
+        existenceCache =
+            new ExistenceCache(
+                args.existenceCache,
+                Duration.ofHours(args.existenceCacheTtlHours),
+                Duration.ofHours(args.existenceCacheNegativeTtlHours));
+      }
+      existenceChecker =
+          new ExistenceChecker(
+              this.httpClient,
+              args.verbose,
+              logCtx,
+              existenceCache,
+              args.existenceDcCalls,
+              kgSnapshot);
     }
     if (args.resolutionMode == Args.ResolutionMode.FULL) {
+      CoordinatesCache coordinatesCache = null;
+      if (args.doCoordinatesResolution && args.coordinatesCache != null) {
+        logger.info("Reusing coordinates resolution results from {}", args.coordinatesCache);
+        Files.createDirectories(args.coordinatesCache.toAbsolutePath().getParent());
+        coordinatesCache =
+            new CoordinatesCache(
+                args.coordinatesCache,
+                Duration.ofHours(args.coordinatesCacheTtlHours),
+                Duration.ofHours(args.coordinatesCacheNegativeTtlHours));
+      }
       idResolver =
           new ExternalIdResolver(
-              this.httpClient, args.doCoordinatesResolution, args.verbose, logCtx);
+              this.httpClient,
+              kgSnapshot,
+              args.doCoordinatesResolution,
+              args.coordinatesPrecision,
+              coordinatesCache,
+              args.verbose,
+              logCtx);
     }
-    statVarState = new StatVarState(this.httpClient, logCtx);
+    statVarState = new StatVarState(this.httpClient, kgSnapshot, logCtx);
     if (args.doStatChecks) {
       Set<String> samplePlaces =
           args.samplePlaces == null ? null : new HashSet<>(args.samplePlaces);
       statChecker =
           new StatChecker(
-              logCtx, samplePlaces, statVarState, existenceChecker, args.checkMeasurementResult);
+              logCtx,
+              samplePlaces,
+              statVarState,
+              existenceChecker,
+              args.checkMeasurementResult,
+              args.statChecksOffHeap,
+              args.statChecksStreamingSeries);
+    }
+    if (args.virtualThreads && NEW_VIRTUAL_THREAD_EXECUTOR == null) {
+      logger.warn("Virtual threads need a Java 21+ runtime, using platform threads instead");
+    }
+    execService = newExecutor(args.numThreads);
+    pipelineService = args.pipelineWorkers > 0 ? newExecutor(args.pipelineWorkers) : null;
+    lintCache = newLintCache();
+  }
+
+  private LintCache newLintCache() throws IOException {
+    if (args.lintCacheDir == null) return null;
+    if (args.generateOptimizedGraph || args.resolutionMode == Args.ResolutionMode.FULL) {
+      logger.warn("Not using --lint-cache-dir with --optimized-graph or resolution=FULL");
+      return null;
+    }
+    if (args.csvChunkMb > 0) {
+      logger.warn("CSVs are not split into chunks with --lint-cache-dir");
+    }
+    logger.info("Reusing lint results of unchanged CSVs from {}", args.lintCacheDir);
+    return new LintCache(args.lintCacheDir);
+  }
+
+  // The tool version and the options that the lint results of a CSV depend on. Options that only
+  // affect how rows are processed (threads, chunks, pipeline) are left out.
+  private String lintCacheArgs() {
+    return String.join(
+        ",",
+        RuntimeMetadataUtil.getToolVersion(Processor.class),
+        RuntimeMetadataUtil.getToolGitCommitHash().orElse(""),
+        "existence-checks=" + args.doExistenceChecks,
+        "resolution=" + args.resolutionMode.name(),
+        "stat-checks=" + args.doStatChecks,
+        "observation-about=" + args.checkObservationAbout,
+        "allow-non-numeric-svobs=" + args.allowNonNumericStatVarObservation,
+        "check-measurement-result=" + args.checkMeasurementResult,
+        "delimiter=" + args.fileGroup.delimiter(),
+        "csv-reader=" + args.csvReader.name(),
+        "kg-snapshot=" + (args.kgSnapshot != null));
+  }
+
+  // Returns a pool of |numThreads| platform threads or, with --virtual-threads, an executor that
+  // starts a virtual thread per task.
+  private ExecutorService newExecutor(int numThreads) {
+    if (args.virtualThreads && NEW_VIRTUAL_THREAD_EXECUTOR != null) {
+      try {
+        return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+      } catch (ReflectiveOperationException e) {
+        logger.warn("Unable to create virtual threads, using platform threads instead", e);
+      }
+    }
+    return Executors.newFixedThreadPool(numThreads);
+  }
+
+  // Executors.newVirtualThreadPerTaskExecutor(), or null if the runtime does not have virtual
+  // threads (the tool is built for Java 17).
+  private static Method findNewVirtualThreadExecutor() {
+    try {
+      return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException e) {
+      return null;
     }
-    execService = Executors.newFixedThreadPool(args.numThreads);
   }
 
   private void processNodes(Mcf.McfType type)
@@ -269,139 +399,459 @@ public class Processor {
       }
     }
 
+    if (lintCache != null) {
+      // Instance MCFs matter for existence checks and measurement results.
+      McfFileGroup mcfGroup = (McfFileGroup) args.fileGroup;
+      List<File> inputs = new ArrayList<>();
+      if (mcfGroup.getMcfs() != null) inputs.addAll(mcfGroup.getMcfs());
+      inputs.add(mcfGroup.getTmcf());
+      // The KG snapshot answers existence checks and stat var lookups in place of the DC API.
+      if (args.kgSnapshot != null) {
+        for (Path snapshotFile : args.kgSnapshot) inputs.add(snapshotFile.toFile());
+      }
+      lintCacheContext = LintCache.fingerprint(lintCacheArgs(), inputs);
+    }
+
     List<Callable<Void>> cbs = new ArrayList<Callable<Void>>(args.fileGroup.getCsvs().size());
+    List<SplitTable> splitTables = new ArrayList<>();
     for (File csvFile : args.fileGroup.getCsvs()) {
-      cbs.add(
-          new Callable<Void>() {
-            @Override
-            public Void call() throws Exception {
-              processTable(csvFile);
-              return null;
-            }
-          });
+      if (rowSpools != null) {
+        cbs.add(
+            new Callable<Void>() {
+              @Override
+              public Void call() throws Exception {
+                replayRowSpool(csvFile);
+                return null;
+              }
+            });
+        continue;
+      }
+      SplitTable splitTable = lintCache == null ? splitTable(csvFile) : null;
+      if (splitTable == null) {
+        cbs.add(
+            new Callable<Void>() {
+              @Override
+              public Void call() throws Exception {
+                processTable(csvFile);
+                return null;
+              }
+            });
+        continue;
+      }
+      splitTables.add(splitTable);
+      for (int i = 0; i < splitTable.ranges.size(); i++) {
+        int chunk = i;
+        cbs.add(
+            new Callable<Void>() {
+              @Override
+              public Void call() throws Exception {
+                processChunk(splitTable, chunk);
+                return null;
+              }
+            });
+      }
     }
 
-    var futures = execService.invokeAll(cbs);
-    for (var f : futures) {
-      try {
-        f.get();
-      } catch (ExecutionException ex) {
-        ex.getCause().printStackTrace();
-        throw new DCTooManyFailuresException("Fatal error processing CSVs!");
+    try {
+      var futures = execService.invokeAll(cbs);
+      for (var f : futures) {
+        try {
+          f.get();
+        } catch (ExecutionException ex) {
+          ex.getCause().printStackTrace();
+          discardSplitTables(splitTables);
+          throw new DCTooManyFailuresException("Fatal error processing CSVs!");
+        }
+      }
+
+      // Stitch the chunks of split CSVs back together in their original order.
+      for (SplitTable splitTable : splitTables) {
+        splitTable.writerPair.mergeParts(splitTable.writerParts);
+        TableResult result = new TableResult();
+        for (TableResult chunkResult : splitTable.results) {
+          result.merge(chunkResult);
+        }
+        finishTable(splitTable.csvFile, result);
+      }
+
+      if (existenceChecker != null) existenceChecker.drainRemoteCalls();
+      commitLintResults();
+    } finally {
+      // Discards the results that were not committed.
+      for (TableResult result : uncommittedLintResults.values()) {
+        result.cacheWriter.close();
       }
     }
+  }
 
-    if (existenceChecker != null) existenceChecker.drainRemoteCalls();
+  // Commits the lint results of the CSVs checked with the lint cache. Their existence check
+  // failures are logged to their results by now, since all the pending DC calls are done.
+  private void commitLintResults() throws IOException {
+    for (var fileAndResult : uncommittedLintResults.entrySet()) {
+      TableResult result = fileAndResult.getValue();
+      result.cacheWriter.commit(
+          Debug.LintCacheEntry.newBuilder()
+              .setFile(fileAndResult.getKey().getName())
+              .setLog(result.logCtx.getLog())
+              .build());
+    }
   }
 
-  // This is a thread-safe function invoked in parallel per CSV file.
-  private void processTable(File csvFile)
+  // Returns the chunks of |csvFile| to be processed concurrently, or null if the file should be
+  // processed as a whole.
+  private SplitTable splitTable(File csvFile)
       throws IOException, DCTooManyFailuresException, InterruptedException {
-    logger.info("Checking CSV " + csvFile.getPath());
-    interface GraphSupplier {
-      Mcf.McfGraph get() throws java.io.IOException, InterruptedException;
-    }
+    long chunkBytes = (long) (args.csvChunkMb * (1 << 20));
+    if (chunkBytes <= 0 || csvFile.length() <= chunkBytes) return null;
+    List<CsvSplitter.Range> ranges =
+        CsvSplitter.split(csvFile.toPath(), args.fileGroup.delimiter(), chunkBytes);
+    if (ranges.size() <= 1) return null;
 
-    GraphSupplier parser;
+    logger.info("Checking CSV " + csvFile.getPath() + " in " + ranges.size() + " chunks");
     McfFileGroup mcfGroup = (McfFileGroup) args.fileGroup;
     TmcfCsvParser tParser =
         TmcfCsvParser.init(
-            mcfGroup.getTmcf().getPath(), csvFile.getPath(), args.fileGroup.delimiter(), logCtx);
+            mcfGroup.getTmcf().getPath(),
+            csvFile.getPath(),
+            args.fileGroup.delimiter(),
+            logCtx,
+            args.csvReader);
     if (tParser == null) {
       throw new DCTooManyFailuresException("processTables encountered too many failures");
     }
-    parser = () -> tParser.parseNextRow();
+    // The parser only serves to build the parsers of the chunks, which open the file themselves.
+    tParser.close();
+    SplitTable splitTable = new SplitTable(csvFile, tParser, ranges);
+    splitTable.writerPair =
+        new WriterPair(
+            args,
+            Args.OutputFileType.TABLE_MCF_NODES,
+            Args.OutputFileType.FAILED_TABLE_MCF_NODES,
+            csvFile);
+    for (int i = 0; i < ranges.size(); i++) {
+      splitTable.writerParts.add(splitTable.writerPair.newPart(i));
+      splitTable.results.add(newTableResult());
+    }
+    return splitTable;
+  }
+
+  // Checks, resolves and writes the |chunk|-th chunk of a split CSV. The chunk's file handles are
+  // only opened while it is processed, so that a CSV can be split into any number of chunks.
+  private void processChunk(SplitTable splitTable, int chunk)
+      throws IOException, DCTooManyFailuresException, InterruptedException {
+    WriterPair writerPart = splitTable.writerParts.get(chunk);
+    TableResult result = splitTable.results.get(chunk);
+    try {
+      TmcfCsvParser parser = splitTable.parser.newRangeParser(splitTable.ranges.get(chunk));
+      try {
+        processRows(
+            splitTable.csvFile.getName() + "#" + chunk,
+            parser::parseNextRow,
+            false,
+            writerPart,
+            result);
+      } finally {
+        parser.close();
+      }
+      // The chunk's observations wait on disk for the other chunks, so that only the chunks being
+      // processed hold observations in memory.
+      for (ObsSeriesGrouper grouper : result.groupers) {
+        grouper.flush();
+      }
+    } finally {
+      writerPart.close();
+    }
+  }
+
+  // Deletes the part files and spilled observations of split CSVs that will not be merged (after a
+  // failure).
+  private void discardSplitTables(List<SplitTable> splitTables) {
+    for (SplitTable splitTable : splitTables) {
+      try {
+        splitTable.writerPair.deleteParts(splitTable.writerParts);
+      } catch (IOException e) {
+        logger.warn("Unable to delete the chunk outputs of " + splitTable.csvFile.getName(), e);
+      }
+      for (TableResult result : splitTable.results) {
+        closeGroupers(result);
+      }
+    }
+  }
+
+  // This is a thread-safe function invoked in parallel per CSV file.
+  private void processTable(File csvFile)
+      throws IOException, DCTooManyFailuresException, InterruptedException {
+    TableResult result = newTableResult();
+    if (lintCache != null) {
+      String cacheKey = LintCache.fingerprint(lintCacheContext, List.of(csvFile));
+      Debug.LintCacheEntry cached = lintCache.getEntry(cacheKey);
+      if (cached != null) {
+        replayTable(csvFile, cacheKey, cached, result);
+        return;
+      }
+      // Record what the CSV adds to the log, to be cached along with its rows.
+      result.logCtx = new LogWrapper(logCtx);
+      result.cacheWriter = lintCache.newWriter(cacheKey);
+    }
+    try {
+      logger.info("Checking CSV " + csvFile.getPath());
+      McfFileGroup mcfGroup = (McfFileGroup) args.fileGroup;
+      TmcfCsvParser tParser =
+          TmcfCsvParser.init(
+              mcfGroup.getTmcf().getPath(),
+              csvFile.getPath(),
+              args.fileGroup.delimiter(),
+              result.logCtx,
+              args.csvReader);
+      if (tParser == null) {
+        throw new DCTooManyFailuresException("processTables encountered too many failures");
+      }
 
+      WriterPair writerPair =
+          new WriterPair(
+              args,
+              Args.OutputFileType.TABLE_MCF_NODES,
+              Args.OutputFileType.FAILED_TABLE_MCF_NODES,
+              csvFile);
+
+      processRows(csvFile.getName(), tParser::parseNextRow, false, writerPair, result);
+      tParser.close();
+      if (result.cacheWriter != null) {
+        // Existence check failures of the rows are logged once the pending DC calls are done, so
+        // the results are committed by processTables() after that.
+        uncommittedLintResults.put(csvFile, result);
+      }
+      finishTable(csvFile, result);
+      writerPair.close();
+    } finally {
+      if (result.cacheWriter != null && !uncommittedLintResults.containsKey(csvFile)) {
+        result.cacheWriter.close();
+      }
+    }
+  }
+
+  // Adds the cached lint results of an unchanged CSV to the log and stat checks, as if its rows
+  // were checked again.
+  private void replayTable(
+      File csvFile, String cacheKey, Debug.LintCacheEntry cached, TableResult result)
+      throws IOException, DCTooManyFailuresException {
+    logger.info("Reusing cached lint results for CSV " + csvFile.getPath());
+    logCtx.addRecordedLog(cached.getLog());
+    try (LintCache.RowReader rows = lintCache.readRows(cacheKey)) {
+      Debug.LintCacheRow row;
+      while ((row = rows.nextRow()) != null) {
+        // Stats are checked again, since value inconsistencies can be across CSVs.
+        boolean success = row.getSuccess() & processStats(List.of(row.getStatNodes()));
+        result.addRow(success, row.getNumNodes(), row.getNumPvs());
+        if (!logCtx.trackStatus(1, "rows processed")) {
+          throw new DCTooManyFailuresException("encountered too many failures");
+        }
+      }
+    }
+    finishTable(csvFile, result);
+  }
+
+  // Checks, resolves and writes the rows spooled for |csvFile| by lookupExternalIds(). This is a
+  // thread-safe function invoked in parallel per CSV file.
+  private void replayRowSpool(File csvFile)
+      throws IOException, DCTooManyFailuresException, InterruptedException {
+    logger.info("Checking spooled rows of CSV " + csvFile.getPath());
+    TableResult result = newTableResult();
     WriterPair writerPair =
         new WriterPair(
             args,
             Args.OutputFileType.TABLE_MCF_NODES,
             Args.OutputFileType.FAILED_TABLE_MCF_NODES,
             csvFile);
+    try (McfNodeStore spool = rowSpools.get(csvFile)) {
+      Iterator<Mcf.McfGraph> rows = spool.iterator();
+      processRows(
+          csvFile.getName(), () -> rows.hasNext() ? rows.next() : null, true, writerPair, result);
+    }
+    finishTable(csvFile, result);
+    writerPair.close();
+  }
 
-    Mcf.McfGraph g;
-    int numNodeSuccesses = 0, numPVSuccesses = 0, numRowSuccesses = 0, numRowsProcessed = 0;
-    Map<Mcf.McfStatVarObsSeries.Key, Mcf.McfStatVarObsSeries.Builder> groupedObservations =
-        new HashMap<>();
-    while ((g = parser.get()) != null) {
-      g = McfMutator.mutate(g.toBuilder(), logCtx);
-
-      // This will set counters/messages in logCtx.
-      boolean success =
-          McfChecker.check(
-              g,
-              existenceChecker,
-              statVarState,
-              args.checkObservationAbout,
-              args.allowNonNumericStatVarObservation,
-              logCtx);
+  // Deletes the spooled rows that were not replayed (e.g., after a failure).
+  private void closeRowSpools() throws IOException {
+    if (rowSpools == null) return;
+    for (McfNodeStore spool : rowSpools.values()) {
+      spool.close();
+    }
+  }
 
-      if (args.resolutionMode != Args.ResolutionMode.NONE) {
-        g = resolveCommon(g, writerPair);
+  // Checks, resolves and writes every row from |rows|, accumulating into |result|. |name|
+  // identifies the CSV (or chunk) in the report, and |mutated| tells whether the rows were already
+  // mutated. This is a thread-safe function invoked in parallel per CSV file or CSV chunk.
+  private void processRows(
+      String name,
+      RowPipeline.Source<Mcf.McfGraph> rows,
+      boolean mutated,
+      WriterPair writerPair,
+      TableResult result)
+      throws IOException, DCTooManyFailuresException, InterruptedException {
+    if (pipelineService != null) {
+      var pipeline =
+          new RowPipeline<Mcf.McfGraph, RowResult>(
+              pipelineService,
+              args.pipelineWorkers,
+              args.pipelineWorkers * PIPELINE_ROWS_PER_WORKER);
+      Debug.PipelineStats stats =
+          pipeline.run(
+              name,
+              rows,
+              g -> checkRow(g, mutated, result.logCtx),
+              row -> finishRow(row, writerPair, result));
+      logCtx.addPipelineStats(stats);
+    } else {
+      Mcf.McfGraph g;
+      while ((g = rows.next()) != null) {
+        finishRow(checkRow(g, mutated, result.logCtx), writerPair, result);
+      }
+    }
+  }
+
+  // Mutates (unless |mutated|), checks and resolves a parsed row, logging to |logCtx|. This is
+  // thread-safe and, with --pipeline-workers, runs concurrently for consecutive rows of a CSV.
+  private RowResult checkRow(Mcf.McfGraph g, boolean mutated, LogWrapper logCtx)
+      throws IOException, InterruptedException {
+    RowResult row = new RowResult();
+    if (!mutated) g = McfMutator.mutate(g.toBuilder(), logCtx);
+
+    // This will set counters/messages in logCtx.
+    row.success =
+        McfChecker.check(
+            g,
+            existenceChecker,
+            statVarState,
+            args.checkObservationAbout,
+            args.allowNonNumericStatVarObservation,
+            logCtx);
+
+    if (args.resolutionMode != Args.ResolutionMode.NONE) {
+      McfResolver resolver = new McfResolver(g, args.verbose, idResolver, logCtx);
+      resolver.resolve();
+      g = resolver.resolvedGraph();
+      row.failed = resolver.failedGraph();
+    }
+    row.graph = g;
+    return row;
+  }
+
+  // Writes a checked row and adds it to |result|. Rows of a CSV (or CSV chunk) are finished one at
+  // a time, in their order in the CSV.
+  private void finishRow(RowResult row, WriterPair writerPair, TableResult result)
+      throws IOException, DCTooManyFailuresException {
+    Mcf.McfGraph g = row.graph;
+    if (args.outputFiles != null) {
+      if (row.failed == null) {
+        writerPair.writeSuccess(g);
       } else {
-        if (args.outputFiles != null) {
+        if (!g.getNodesMap().isEmpty()) {
           writerPair.writeSuccess(g);
         }
+        if (!row.failed.getNodesMap().isEmpty()) {
+          writerPair.writeFailure(row.failed);
+        }
       }
+    }
 
-      // Add relevant nodes from graph to statChecker and check for value inconsistencies.
-      success &= processStats(List.of(g));
-      if (success) {
-        numRowSuccesses++;
-        numNodeSuccesses += g.getNodesCount();
+    // Add relevant nodes from graph to statChecker and check for value inconsistencies.
+    boolean success = row.success & processStats(List.of(g));
+    int numPvs = 0;
+    for (var kv : g.getNodesMap().entrySet()) {
+      numPvs += kv.getValue().getPvsCount();
+    }
+    result.addRow(success, g.getNodesCount(), numPvs);
+
+    if (result.cacheWriter != null) {
+      Debug.LintCacheRow.Builder cacheRow =
+          Debug.LintCacheRow.newBuilder()
+              .setSuccess(row.success)
+              .setNumNodes(g.getNodesCount())
+              .setNumPvs(numPvs);
+      if (statChecker != null) {
+        Mcf.McfGraph.Builder statNodes = cacheRow.getStatNodesBuilder();
         for (var kv : g.getNodesMap().entrySet()) {
-          numPVSuccesses += kv.getValue().getPvsCount();
+          if (StatChecker.usesNode(kv.getValue())) statNodes.putNodes(kv.getKey(), kv.getValue());
         }
       }
-      numRowsProcessed++;
+      result.cacheWriter.addRow(cacheRow.build());
+    }
 
-      if (args.generateOptimizedGraph) {
-        // Extract observations immediately to free memory
-        List<McfStatVarObsSeries> extractedObservations = extractObservationsFromGraph(g);
-        // Group observations incrementally by key to reduce memory usage
-        for (McfStatVarObsSeries obs : extractedObservations) {
-          McfStatVarObsSeries.Key key = obs.getKey();
-          groupedObservations
-              .computeIfAbsent(key, k -> McfStatVarObsSeries.newBuilder().setKey(k))
-              .addAllSvObsList(obs.getSvObsListList());
-        }
-      }
-      if (!logCtx.trackStatus(1, "rows processed")) {
-        throw new DCTooManyFailuresException("encountered too many failures");
+    if (args.generateOptimizedGraph) {
+      // Extract observations immediately to free memory
+      List<McfStatVarObsSeries> extractedObservations = extractObservationsFromGraph(g);
+      // Group observations incrementally by key, spilling to disk beyond the memory budget
+      ObsSeriesGrouper grouper = result.groupers.get(0);
+      for (McfStatVarObsSeries obs : extractedObservations) {
+        grouper.add(obs);
       }
     }
+    if (!logCtx.trackStatus(1, "rows processed")) {
+      throw new DCTooManyFailuresException("encountered too many failures");
+    }
+  }
+
+  private TableResult newTableResult() {
+    TableResult result = new TableResult();
+    result.logCtx = logCtx;
+    if (args.generateOptimizedGraph) {
+      // Up to numThreads CSVs (or chunks) are grouped at a time.
+      long budgetBytes = ((long) args.optimizedGraphMemoryMb << 20) / Math.max(1, args.numThreads);
+      result.groupers.add(new ObsSeriesGrouper(budgetBytes, args.outputDir));
+    }
+    return result;
+  }
+
+  // Writes the optimized graph and updates the counters for a fully processed CSV.
+  private void finishTable(File csvFile, TableResult result) throws DCTooManyFailuresException {
     if (args.generateOptimizedGraph) {
-      String filePath =
-          Paths.get(
-                  args.outputDir.toString(),
-                  FilenameUtils.removeExtension(csvFile.getName()) + "_optimized_graph.pb")
-              .toString();
-      logger.info("Writing optimized graph file to {}", filePath);
-      // Build and write optimized graphs directly from grouped observations
-      try (FileOutputStream output = new FileOutputStream(filePath);
-          BufferedOutputStream outStream = new BufferedOutputStream(output)) {
-
-        for (Mcf.McfStatVarObsSeries.Builder builder : groupedObservations.values()) {
-          McfOptimizedGraph graph =
-              McfOptimizedGraph.newBuilder().setSvObsSeries(builder.build()).build();
-          graph.writeDelimitedTo(output);
+      // Build and write optimized graphs from the grouped observations, in key order.
+      try (OptimizedGraphWriter writer = new OptimizedGraphWriter(args, csvFile);
+          ObsSeriesGrouper.MergeIterator series = ObsSeriesGrouper.merge(result.groupers)) {
+        while (series.hasNext()) {
+          writer.write(McfOptimizedGraph.newBuilder().setSvObsSeries(series.next()).build());
         }
-      } catch (IOException e) {
-        e.printStackTrace();
+      } catch (IOException | UncheckedIOException e) {
+        // A partly written optimized graph must fail the run (e.g., when the disk is full).
+        logger.error("Unable to write the optimized graph of " + csvFile.getName(), e);
+        logCtx.addEntry(
+            Debug.Log.Level.LEVEL_FATAL,
+            "Output_OptimizedGraphWriteFailure",
+            "Unable to write the optimized graph :: file: '"
+                + csvFile.getName()
+                + "', error: "
+                + e.getMessage(),
+            csvFile.getName(),
+            0);
+        throw new DCTooManyFailuresException("Unable to write the optimized graph");
+      } finally {
+        closeGroupers(result);
       }
     }
-    logCtx.incrementInfoCounterBy("NumRowSuccesses", numRowSuccesses);
-    logCtx.incrementInfoCounterBy("NumNodeSuccesses", numNodeSuccesses);
-    logCtx.incrementInfoCounterBy("NumPVSuccesses", numPVSuccesses);
+    logCtx.incrementInfoCounterBy("NumRowSuccesses", result.numRowSuccesses);
+    logCtx.incrementInfoCounterBy("NumNodeSuccesses", result.numNodeSuccesses);
+    logCtx.incrementInfoCounterBy("NumPVSuccesses", result.numPVSuccesses);
     logger.info(
         "Checked "
             + (args.resolutionMode != Args.ResolutionMode.NONE ? "and Resolved " : "")
             + "CSV {} ({}"
             + " rows, {} nodes)",
         csvFile.getName(),
-        numRowsProcessed,
-        numNodeSuccesses);
-    writerPair.close();
+        result.numRowsProcessed,
+        result.numNodeSuccesses);
+  }
+
+  // Releases the memory and deletes the spill files of the groupers of |result|.
+  private void closeGroupers(TableResult result) {
+    for (ObsSeriesGrouper grouper : result.groupers) {
+      try {
+        grouper.close();
+      } catch (IOException e) {
+        e.printStackTrace();
+      }
+    }
   }
 
   // Called only when existenceChecker is enabled.
@@ -470,6 +920,9 @@ public class Processor {
         "Loading and Processing External IDs from Table MCF files (with numThreads="
             + args.numThreads
             + ")");
+    if (args.singlePassResolution) {
+      rowSpools = new ConcurrentHashMap<>();
+    }
 
     List<Callable<Void>> cbs = new ArrayList<Callable<Void>>(args.fileGroup.getCsvs().size());
     for (File csvFile : args.fileGroup.getCsvs()) {
@@ -500,29 +953,47 @@ public class Processor {
   private void lookupExternalIdsFromTable(File csvFile, LogWrapper dummyLog)
       throws DCTooManyFailuresException, IOException, InterruptedException {
     if (args.verbose) logger.info("Reading external IDs from CSV " + csvFile.getPath());
+    McfNodeStore spool = null;
+    LogWrapper parseLog = dummyLog;
+    if (rowSpools != null) {
+      // The CSV is not parsed again, so problems in parsing and mutating the rows are reported now.
+      spool = new McfNodeStore(0, args.outputDir);
+      rowSpools.put(csvFile, spool);
+      parseLog = logCtx;
+    }
     TmcfCsvParser parser =
         TmcfCsvParser.init(
             ((McfFileGroup) args.fileGroup).getTmcf().getPath(),
             csvFile.getPath(),
             args.fileGroup.delimiter(),
-            dummyLog);
-    if (parser == null) return;
+            parseLog,
+            args.csvReader);
+    if (parser == null) {
+      if (spool == null) return;
+      throw new DCTooManyFailuresException("lookupExternalIds encountered too many failures");
+    }
     Mcf.McfGraph g;
     while ((g = parser.parseNextRow()) != null) {
       for (var idAndNode : g.getNodesMap().entrySet()) {
         idResolver.submitNode(idAndNode.getValue());
       }
+      if (spool != null) {
+        spool.add(McfMutator.mutate(g.toBuilder(), logCtx));
+      }
+      // Rows are counted in the processor's log when they are checked (and replayed), so that
+      // progress is not counted twice. Too many problems in parsing are caught then too.
       if (!dummyLog.trackStatus(1, "rows processed")) {
         System.err.println("Too Many Errors ::\n" + dummyLog.dumpLog());
         throw new DCTooManyFailuresException("encountered too many failures");
       }
     }
+    parser.close();
   }
 
   // If statCheck is not null, Add stats from graphs and check for any value inconsistencies. Return
   // false if there are value inconsistencies found. All stats will still be added even if there are
   // value inconsistencies.
-  private boolean processStats(List<Mcf.McfGraph> graphs) {
+  private boolean processStats(Iterable<Mcf.McfGraph> graphs) {
     if (statChecker == null) return true;
     boolean errorFound = false;
     for (Mcf.McfGraph g : graphs) {
@@ -536,7 +1007,11 @@ public class Processor {
     if (statChecker == null) return;
     logger.info("Performing stats checks");
     statChecker.check();
-    statChecker.fetchSamplePlaceNames(httpClient);
+    if (kgSnapshot != null) {
+      statChecker.fetchSamplePlaceNames(kgSnapshot);
+    } else {
+      statChecker.fetchSamplePlaceNames(httpClient);
+    }
   }
 
   /**
@@ -567,6 +1042,66 @@ public class Processor {
     return observations;
   }
 
+  // A row after checkRow(): the mutated (and resolved) graph, and the nodes that failed resolution
+  // (null if resolution is disabled).
+  private static class RowResult {
+    Mcf.McfGraph graph;
+    Mcf.McfGraph failed;
+    boolean success;
+  }
+
+  // Counters and grouped observations accumulated while processing a CSV (or a chunk of one).
+  private static class TableResult {
+    int numNodeSuccesses = 0;
+    int numPVSuccesses = 0;
+    int numRowSuccesses = 0;
+    int numRowsProcessed = 0;
+    // Observations grouped for the optimized graph, one grouper per CSV chunk (in order), or none
+    // if the optimized graph is disabled.
+    List<ObsSeriesGrouper> groupers = new ArrayList<>();
+    // Where the rows are logged: the processor's log or, with the lint cache, a child of it that
+    // records the CSV's contributions.
+    LogWrapper logCtx;
+    // Writer of the checked rows to the lint cache, if enabled.
+    LintCache.Writer cacheWriter = null;
+
+    void addRow(boolean success, int numNodes, int numPvs) {
+      if (success) {
+        numRowSuccesses++;
+        numNodeSuccesses += numNodes;
+        numPVSuccesses += numPvs;
+      }
+      numRowsProcessed++;
+    }
+
+    // Merges a later chunk's result into this one.
+    void merge(TableResult other) {
+      numNodeSuccesses += other.numNodeSuccesses;
+      numPVSuccesses += other.numPVSuccesses;
+      numRowSuccesses += other.numRowSuccesses;
+      numRowsProcessed += other.numRowsProcessed;
+      groupers.addAll(other.groupers);
+      other.groupers = null;
+    }
+  }
+
+  // A CSV split into chunks, each with its own range of records, output part files and result.
+  private static class SplitTable {
+    final File csvFile;
+    // The (closed) parser of the whole CSV, from which the parser of each range is built.
+    final TmcfCsvParser parser;
+    final List<CsvSplitter.Range> ranges;
+    WriterPair writerPair;
+    final List<WriterPair> writerParts = new ArrayList<>();
+    final List<TableResult> results = new ArrayList<>();
+
+    SplitTable(File csvFile, TmcfCsvParser parser, List<CsvSplitter.Range> ranges) {
+      this.csvFile = csvFile;
+      this.parser = parser;
+      this.ranges = ranges;
+    }
+  }
+
   private static class DCTooManyFailuresException extends Exception {
     public DCTooManyFailuresException(String message) {
       super(message);
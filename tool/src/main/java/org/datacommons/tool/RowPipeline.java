@@ -0,0 +1,194 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.tool;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.datacommons.proto.Debug;
+
+// Runs the rows of a CSV through three stages: a reader thread that parses rows, a pool of workers
+// that process them concurrently, and the calling thread, which consumes the processed rows in
+// their original order (and so can own the output files).
+//
+// The reader hands each row to the workers and queues the pending result in a bounded queue. When
+// the workers or the consumer fall behind, the queue fills up and the reader blocks, which bounds
+// the number of rows in memory.
+class RowPipeline<I, O> {
+  // Produces the next input, or null at the end. Only ever called from the reader thread.
+  interface Source<I> {
+    I next() throws IOException, InterruptedException;
+  }
+
+  // Processes one input. Called concurrently from the worker threads.
+  interface Stage<I, O> {
+    O process(I input) throws IOException, InterruptedException;
+  }
+
+  // Consumes one processed input. Called from the calling thread, in input order.
+  interface Sink<O, E extends Exception> {
+    void accept(O output) throws IOException, E;
+  }
+
+  private final ExecutorService workers;
+  private final int numWorkers;
+  private final int capacity;
+
+  // Marks the end of the queue.
+  private final Future<O> end = CompletableFuture.completedFuture(null);
+  private final BlockingQueue<Future<O>> queue;
+  private volatile boolean cancelled = false;
+  private volatile Throwable readerError = null;
+
+  // Counters for the stats. |submitted| is only updated by the reader, and |written| only by the
+  // consumer.
+  private final AtomicLong submitted = new AtomicLong();
+  private final AtomicLong started = new AtomicLong();
+  private final AtomicLong completed = new AtomicLong();
+  private final AtomicLong written = new AtomicLong();
+  private long maxWorkDepth = 0;
+  private long sumWorkDepth = 0;
+  private long maxWriteDepth = 0;
+  private long sumWriteDepth = 0;
+  private long readerBlockedNanos = 0;
+  private long writerWaitingNanos = 0;
+
+  // |workers| may be shared with other pipelines. |capacity| is the maximum number of rows queued
+  // between the reader and the consumer, which bounds the rows read but not yet consumed to
+  // |capacity| + 2 (with the row being consumed and the row waiting to be queued).
+  RowPipeline(ExecutorService workers, int numWorkers, int capacity) {
+    this.workers = workers;
+    this.numWorkers = numWorkers;
+    this.capacity = capacity;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+  }
+
+  // Runs all the inputs from |source| through |stage| and into |sink|, and returns the stats of
+  // the run for |file|. On failure of any stage, the pipeline is stopped and the failure rethrown.
+  // A pipeline can only be run once.
+  <E extends Exception> Debug.PipelineStats run(
+      String file, Source<I> source, Stage<I, O> stage, Sink<O, E> sink)
+      throws IOException, InterruptedException, E {
+    Thread reader = new Thread(() -> read(source, stage), "csv-reader-" + file);
+    reader.setDaemon(true);
+    reader.start();
+
+    boolean done = false;
+    try {
+      while (true) {
+        long startNanos = System.nanoTime();
+        Future<O> result = queue.take();
+        if (result == end) break;
+        O output = await(result);
+        writerWaitingNanos += System.nanoTime() - startNanos;
+        sink.accept(output);
+        written.incrementAndGet();
+      }
+      done = true;
+    } finally {
+      if (!done) {
+        cancelled = true;
+        reader.interrupt();
+        cancelQueued();
+      }
+      reader.join();
+      if (!done) cancelQueued();
+    }
+    if (readerError != null) rethrow(readerError);
+
+    long rows = written.get();
+    return Debug.PipelineStats.newBuilder()
+        .setFile(file)
+        .setWorkers(numWorkers)
+        .setQueueCapacity(capacity)
+        .setNumRows(rows)
+        .setMaxWorkQueueDepth((int) maxWorkDepth)
+        .setMeanWorkQueueDepth(rows == 0 ? 0 : (double) sumWorkDepth / rows)
+        .setMaxWriteQueueDepth((int) maxWriteDepth)
+        .setMeanWriteQueueDepth(rows == 0 ? 0 : (double) sumWriteDepth / rows)
+        .setReaderBlockedMillis(TimeUnit.NANOSECONDS.toMillis(readerBlockedNanos))
+        .setWriterWaitingMillis(TimeUnit.NANOSECONDS.toMillis(writerWaitingNanos))
+        .build();
+  }
+
+  private void read(Source<I> source, Stage<I, O> stage) {
+    try {
+      I input;
+      while (!cancelled && (input = source.next()) != null) {
+        final I row = input;
+        submitted.incrementAndGet();
+        Future<O> result =
+            workers.submit(
+                () -> {
+                  started.incrementAndGet();
+                  O output = stage.process(row);
+                  completed.incrementAndGet();
+                  return output;
+                });
+        long startNanos = System.nanoTime();
+        queue.put(result);
+        readerBlockedNanos += System.nanoTime() - startNanos;
+
+        // Sample the depth of the queues each time a row is read.
+        long workDepth = submitted.get() - started.get();
+        long writeDepth = completed.get() - written.get();
+        maxWorkDepth = Math.max(maxWorkDepth, workDepth);
+        sumWorkDepth += workDepth;
+        maxWriteDepth = Math.max(maxWriteDepth, writeDepth);
+        sumWriteDepth += writeDepth;
+      }
+    } catch (Throwable t) {
+      if (!cancelled) readerError = t;
+    } finally {
+      if (!cancelled) {
+        try {
+          queue.put(end);
+        } catch (InterruptedException e) {
+          // Only the consumer interrupts the reader, after it has stopped taking from the queue.
+        }
+      }
+    }
+  }
+
+  private void cancelQueued() {
+    Future<O> result;
+    while ((result = queue.poll()) != null) {
+      result.cancel(false);
+    }
+  }
+
+  private static <O> O await(Future<O> result) throws IOException, InterruptedException {
+    try {
+      return result.get();
+    } catch (ExecutionException e) {
+      rethrow(e.getCause());
+      return null;
+    }
+  }
+
+  private static void rethrow(Throwable t) throws IOException, InterruptedException {
+    if (t instanceof IOException) throw (IOException) t;
+    if (t instanceof InterruptedException) throw (InterruptedException) t;
+    if (t instanceof RuntimeException) throw (RuntimeException) t;
+    if (t instanceof Error) throw (Error) t;
+    throw new IllegalStateException(t);
+  }
+}
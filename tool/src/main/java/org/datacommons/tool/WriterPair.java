@@ -1,12 +1,16 @@
 package org.datacommons.tool;
 
-import java.io.BufferedWriter;
+import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
 import org.apache.commons.io.FilenameUtils;
 import org.datacommons.proto.Mcf;
-import org.datacommons.util.McfUtil;
+import org.datacommons.util.McfWriter;
 
 // Encloses a pair of writers for success and corresponding failure types, and creates the file
 // on-demand when a write comes in.
@@ -15,30 +19,48 @@ class WriterPair {
   private final Args.OutputFileType successType;
   private final Args.OutputFileType failureType;
   private final File csvFile;
-  private BufferedWriter successWriter = null;
-  private BufferedWriter failureWriter = null;
+  // When non-negative, this writes one part of a CSV split into chunks (see mergeParts()).
+  private final int partIndex;
+  private McfWriter successWriter = null;
+  private McfWriter failureWriter = null;
 
   public WriterPair(
       Args args, Args.OutputFileType successType, Args.OutputFileType failureType, File csvFile)
       throws IOException {
+    this(args, successType, failureType, csvFile, -1);
+  }
+
+  private WriterPair(
+      Args args,
+      Args.OutputFileType successType,
+      Args.OutputFileType failureType,
+      File csvFile,
+      int partIndex) {
     this.args = args;
     this.successType = successType;
     this.failureType = failureType;
     this.csvFile = csvFile;
+    this.partIndex = partIndex;
+  }
+
+  // Returns a writer pair for the |partIndex|-th chunk of the same CSV, writing to temporary part
+  // files next to this pair's outputs.
+  public WriterPair newPart(int partIndex) {
+    return new WriterPair(args, successType, failureType, csvFile, partIndex);
   }
 
   public void writeSuccess(Mcf.McfGraph g) throws IOException {
     if (successWriter == null) {
       successWriter = newWriter(successType);
     }
-    successWriter.write(McfUtil.serializeMcfGraph(g, false));
+    successWriter.write(g);
   }
 
   public void writeFailure(Mcf.McfGraph g) throws IOException {
     if (failureWriter == null) {
       failureWriter = newWriter(failureType);
     }
-    failureWriter.write(McfUtil.serializeMcfGraph(g, false));
+    failureWriter.write(g);
   }
 
   public void close() throws IOException {
@@ -46,12 +68,56 @@ class WriterPair {
     if (successWriter != null) successWriter.close();
   }
 
-  private BufferedWriter newWriter(Args.OutputFileType type) throws IOException {
+  // Concatenates the (closed) |parts| in order into this pair's output files, and deletes them.
+  // As with direct writes, an output file is only created if some part wrote to it. Concatenated
+  // gzip parts form a valid (multi-member) gzip file.
+  public void mergeParts(List<WriterPair> parts) throws IOException {
+    mergeParts(parts, successType, true);
+    mergeParts(parts, failureType, false);
+  }
+
+  // Deletes the (closed) |parts| that will not be merged, e.g., after a failure.
+  public void deleteParts(List<WriterPair> parts) throws IOException {
+    for (WriterPair part : parts) {
+      if (part.successWriter != null) Files.deleteIfExists(Path.of(part.getFilePath(successType)));
+      if (part.failureWriter != null) Files.deleteIfExists(Path.of(part.getFilePath(failureType)));
+    }
+  }
+
+  private void mergeParts(List<WriterPair> parts, Args.OutputFileType type, boolean success)
+      throws IOException {
+    OutputStream out = null;
+    try {
+      for (WriterPair part : parts) {
+        if ((success ? part.successWriter : part.failureWriter) == null) continue;
+        if (out == null) {
+          out = new BufferedOutputStream(new FileOutputStream(getFilePath(type)));
+        }
+        Path partPath = Path.of(part.getFilePath(type));
+        Files.copy(partPath, out);
+        Files.delete(partPath);
+      }
+    } finally {
+      if (out != null) out.close();
+    }
+  }
+
+  private McfWriter newWriter(Args.OutputFileType type) throws IOException {
+    return new McfWriter(Path.of(getFilePath(type)), args.outputCompression);
+  }
+
+  private String getFilePath(Args.OutputFileType type) {
     String filePath = args.outputFiles.get(type).toString();
     if (csvFile != null) {
       String fileSuffix = FilenameUtils.removeExtension(csvFile.getName()) + ".mcf";
       filePath = FilenameUtils.removeExtension(filePath) + "_" + fileSuffix;
     }
-    return new BufferedWriter(new FileWriter(filePath));
+    if (args.outputCompression == McfWriter.Compression.GZIP) {
+      filePath = filePath + ".gz";
+    }
+    if (partIndex >= 0) {
+      filePath = filePath + ".part" + partIndex;
+    }
+    return filePath;
   }
 }
@@ -53,23 +53,18 @@ public class GenMcfTest {
   // To ensure we test the right number of files for every test, when you add a file, add the
   // count here.
   private static Map<String, Integer> EXPECTED_FILES_TO_CHECK =
-      Map.of(
-          "fataltmcf",
-          2,
-          "resolution",
-          5,
-          "latlngresolution",
-          3,
-          "statchecks",
-          3,
-          "successtmcf",
-          3,
-          "measurementresult",
-          4,
-          "localidresolution",
-          5,
-          "manyinconsistent",
-          4);
+      Map.ofEntries(
+          Map.entry("fataltmcf", 2),
+          Map.entry("resolution", 5),
+          Map.entry("latlngresolution", 3),
+          Map.entry("statchecks", 3),
+          Map.entry("successtmcf", 3),
+          Map.entry("measurementresult", 4),
+          Map.entry("localidresolution", 5),
+          Map.entry("manyinconsistent", 4),
+          Map.entry("chunkedstatchecks", 3),
+          Map.entry("pipelinedmeasurementresult", 4),
+          Map.entry("singlepassresolution", 5));
 
   // Skip testing the following files. If this List is non-empty, the flaky files should be fixed
   // and removed from this list.
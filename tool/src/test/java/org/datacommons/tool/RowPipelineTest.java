@@ -0,0 +1,238 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.tool;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.datacommons.proto.Debug;
+import org.junit.After;
+import org.junit.Test;
+
+public class RowPipelineTest {
+  private static final int NUM_WORKERS = 4;
+  private static final int CAPACITY = 8;
+
+  private final ExecutorService workers = Executors.newFixedThreadPool(NUM_WORKERS);
+
+  @After
+  public void tearDown() {
+    workers.shutdownNow();
+  }
+
+  @Test
+  public void keepsOrderWithSlowStage() throws Exception {
+    List<Integer> output = new ArrayList<>();
+    Debug.PipelineStats stats =
+        newPipeline()
+            .run(
+                "test.csv",
+                countTo(50, new AtomicInteger()),
+                row -> {
+                  // Earlier rows take longer, so they finish after later ones.
+                  Thread.sleep(row % NUM_WORKERS == 0 ? 20 : 1);
+                  return row * 10;
+                },
+                output::add);
+    List<Integer> expected = new ArrayList<>();
+    for (int i = 0; i < 50; i++) expected.add(i * 10);
+    assertThat(output).isEqualTo(expected);
+    assertThat(stats.getFile()).isEqualTo("test.csv");
+    assertThat(stats.getNumRows()).isEqualTo(50);
+    assertThat(stats.getQueueCapacity()).isEqualTo(CAPACITY);
+  }
+
+  @Test
+  public void boundsRowsInFlight() throws Exception {
+    AtomicInteger numRead = new AtomicInteger();
+    CountDownLatch release = new CountDownLatch(1);
+    List<Integer> output = new ArrayList<>();
+    Thread consumer =
+        startRun(
+            countTo(1000, numRead),
+            row -> {
+              release.await();
+              output.add(row);
+            },
+            new AtomicReference<>());
+    // The row held by the sink, the rows in the queue and the row the reader is waiting to queue.
+    waitFor(() -> numRead.get() >= CAPACITY + 2);
+    Thread.sleep(200);
+    assertThat(numRead.get()).isEqualTo(CAPACITY + 2);
+
+    release.countDown();
+    consumer.join();
+    assertThat(output).hasSize(1000);
+  }
+
+  @Test
+  public void rethrowsSourceError() {
+    AtomicInteger numRead = new AtomicInteger();
+    List<Integer> output = new ArrayList<>();
+    RowPipeline.Source<Integer> source =
+        () -> {
+          int row = numRead.getAndIncrement();
+          if (row == 5) throw new IOException("bad row 5");
+          return row;
+        };
+    IOException e =
+        expectFailure(
+            IOException.class,
+            () -> newPipeline().run("test.csv", source, row -> row, output::add));
+    assertThat(e).hasMessageThat().isEqualTo("bad row 5");
+    assertThat(output).containsExactly(0, 1, 2, 3, 4).inOrder();
+  }
+
+  @Test
+  public void rethrowsStageError() {
+    AtomicInteger numRead = new AtomicInteger();
+    IllegalArgumentException e =
+        expectFailure(
+            IllegalArgumentException.class,
+            () ->
+                newPipeline()
+                    .run(
+                        "test.csv",
+                        countTo(Integer.MAX_VALUE, numRead),
+                        row -> {
+                          if (row == 3) throw new IllegalArgumentException("bad row 3");
+                          return row;
+                        },
+                        row -> {}));
+    assertThat(e).hasMessageThat().isEqualTo("bad row 3");
+    assertReaderStopped(numRead);
+  }
+
+  @Test
+  public void rethrowsSinkError() {
+    AtomicInteger numRead = new AtomicInteger();
+    IOException e =
+        expectFailure(
+            IOException.class,
+            () ->
+                newPipeline()
+                    .run(
+                        "test.csv",
+                        countTo(Integer.MAX_VALUE, numRead),
+                        row -> row,
+                        row -> {
+                          if (row == 3) throw new IOException("disk full");
+                        }));
+    assertThat(e).hasMessageThat().isEqualTo("disk full");
+    assertReaderStopped(numRead);
+  }
+
+  @Test
+  public void stopsWhenInterrupted() throws Exception {
+    AtomicInteger numRead = new AtomicInteger();
+    AtomicReference<Throwable> error = new AtomicReference<>();
+    Thread consumer =
+        startRun(
+            countTo(Integer.MAX_VALUE, numRead),
+            row -> {
+              // Blocks until interrupted.
+              new CountDownLatch(1).await();
+            },
+            error);
+    waitFor(() -> numRead.get() >= CAPACITY + 2);
+    consumer.interrupt();
+    consumer.join(TimeUnit.SECONDS.toMillis(10));
+    assertThat(consumer.isAlive()).isFalse();
+    assertThat(error.get()).isInstanceOf(InterruptedException.class);
+    assertReaderStopped(numRead);
+  }
+
+  private RowPipeline<Integer, Integer> newPipeline() {
+    return new RowPipeline<>(workers, NUM_WORKERS, CAPACITY);
+  }
+
+  // Runs a pipeline that passes rows through unchanged on a new thread, keeping its failure in
+  // |error|.
+  private Thread startRun(
+      RowPipeline.Source<Integer> source,
+      RowPipeline.Sink<Integer, InterruptedException> sink,
+      AtomicReference<Throwable> error) {
+    Thread thread =
+        new Thread(
+            () -> {
+              try {
+                newPipeline().run("test.csv", source, row -> row, sink);
+              } catch (Throwable t) {
+                error.set(t);
+              }
+            });
+    thread.start();
+    return thread;
+  }
+
+  // Returns a source of the rows 0 to |numRows| - 1, counting them in |numRead|.
+  private static RowPipeline.Source<Integer> countTo(int numRows, AtomicInteger numRead) {
+    return () -> {
+      int row = numRead.get();
+      if (row >= numRows) return null;
+      numRead.incrementAndGet();
+      return row;
+    };
+  }
+
+  // Checks that no more rows are read once the pipeline failed.
+  private static void assertReaderStopped(AtomicInteger numRead) {
+    int numReadAtFailure = numRead.get();
+    assertThat(numReadAtFailure).isAtMost(CAPACITY + NUM_WORKERS + 2);
+    try {
+      Thread.sleep(100);
+    } catch (InterruptedException e) {
+      throw new AssertionError(e);
+    }
+    assertThat(numRead.get()).isEqualTo(numReadAtFailure);
+  }
+
+  private interface Run {
+    void run() throws Exception;
+  }
+
+  // Returns the failure of |run|, which must be of |type|.
+  private static <T extends Throwable> T expectFailure(Class<T> type, Run run) {
+    try {
+      run.run();
+    } catch (Throwable t) {
+      assertThat(t).isInstanceOf(type);
+      return type.cast(t);
+    }
+    fail("Expected " + type.getSimpleName());
+    return null;
+  }
+
+  private interface Condition {
+    boolean holds();
+  }
+
+  private static void waitFor(Condition condition) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (!condition.holds()) {
+      if (System.nanoTime() > deadline) throw new AssertionError("Timed out");
+      Thread.sleep(10);
+    }
+  }
+}
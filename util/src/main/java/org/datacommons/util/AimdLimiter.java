@@ -0,0 +1,130 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// Limits the number of concurrent async calls, adapting the limit to how the server copes
+// (additive-increase / multiplicative-decrease, as in TCP congestion control). Each call that
+// completes normally raises the limit by 1/limit, i.e., by about one per round of calls, and a
+// call that fails or is reported as overloaded (e.g., HTTP 429) halves it. Calls over the limit
+// wait in a FIFO queue.
+//
+// Only one decrease is applied per round: calls that were started before the last decrease do not
+// decrease the limit again, so a burst of failures from a single round halves it just once.
+//
+// Thread-safe.
+final class AimdLimiter {
+  private static final double DECREASE_FACTOR = 0.5;
+
+  private final int minLimit;
+  private final int maxLimit;
+
+  private double limit;
+  private int inFlight = 0;
+  private int maxInFlight = 0;
+  // Number of decreases so far. Calls remember the value when they start.
+  private long numDecreases = 0;
+  private final Deque<Runnable> waiting = new ArrayDeque<>();
+
+  AimdLimiter(int initialLimit, int minLimit, int maxLimit) {
+    this.minLimit = Math.max(1, minLimit);
+    this.maxLimit = Math.max(this.minLimit, maxLimit);
+    this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+  }
+
+  // Starts |call| once there is room under the limit. |isOverloaded| tells whether a result means
+  // the server is overloaded. The returned future completes like the call's future.
+  <T> CompletableFuture<T> submit(Supplier<CompletableFuture<T>> call, Predicate<T> isOverloaded) {
+    CompletableFuture<T> result = new CompletableFuture<>();
+    Runnable start =
+        () -> {
+          long decreasesAtStart = startedCall();
+          CompletableFuture<T> future;
+          try {
+            future = call.get();
+          } catch (RuntimeException e) {
+            future = CompletableFuture.failedFuture(e);
+          }
+          future.whenComplete(
+              (value, error) -> {
+                boolean overloaded;
+                try {
+                  overloaded = error != null || isOverloaded.test(value);
+                } catch (RuntimeException e) {
+                  overloaded = true;
+                }
+                finishedCall(decreasesAtStart, overloaded);
+                if (error != null) {
+                  result.completeExceptionally(error);
+                } else {
+                  result.complete(value);
+                }
+              });
+        };
+    boolean startNow;
+    synchronized (this) {
+      startNow = inFlight < (int) limit;
+      if (startNow) {
+        inFlight++;
+      } else {
+        waiting.add(start);
+      }
+    }
+    if (startNow) start.run();
+    return result;
+  }
+
+  synchronized int getLimit() {
+    return (int) limit;
+  }
+
+  // The most calls that were in flight at once.
+  synchronized int getMaxInFlight() {
+    return maxInFlight;
+  }
+
+  private synchronized long startedCall() {
+    maxInFlight = Math.max(maxInFlight, inFlight);
+    return numDecreases;
+  }
+
+  private void finishedCall(long decreasesAtStart, boolean overloaded) {
+    List<Runnable> toStart = new ArrayList<>();
+    synchronized (this) {
+      inFlight--;
+      if (!overloaded) {
+        limit = Math.min(maxLimit, limit + 1 / limit);
+      } else if (decreasesAtStart == numDecreases) {
+        limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+        numDecreases++;
+      }
+      while (inFlight < (int) limit && !waiting.isEmpty()) {
+        inFlight++;
+        toStart.add(waiting.poll());
+      }
+    }
+    // Started outside the lock, since a call may complete right away and come back here.
+    for (Runnable start : toStart) {
+      start.run();
+    }
+  }
+}
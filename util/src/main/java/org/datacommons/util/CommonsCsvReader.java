@@ -0,0 +1,84 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.Map;
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+// CsvReader backed by commons-csv.
+class CommonsCsvReader implements CsvReader {
+  private final CSVParser csvParser;
+  private final Iterator<CSVRecord> records;
+  private CSVRecord record;
+
+  CommonsCsvReader(Reader reader, char delimiter) throws IOException {
+    csvParser =
+        CSVParser.parse(
+            reader,
+            CSVFormat.DEFAULT
+                .withDelimiter(delimiter)
+                .withEscape('\\')
+                .withHeader()
+                .withAllowMissingColumnNames()
+                .withSkipHeaderRecord()
+                .withIgnoreEmptyLines()
+                .withIgnoreSurroundingSpaces());
+    records = csvParser.iterator();
+  }
+
+  @Override
+  public Map<String, Integer> getHeaderMap() {
+    return csvParser.getHeaderMap();
+  }
+
+  @Override
+  public boolean next() {
+    if (!records.hasNext()) {
+      return false;
+    }
+    record = records.next();
+    return true;
+  }
+
+  @Override
+  public int size() {
+    return record.size();
+  }
+
+  @Override
+  public String get(int index) {
+    return record.get(index);
+  }
+
+  @Override
+  public boolean isConsistent() {
+    return record.isConsistent();
+  }
+
+  @Override
+  public String recordToString() {
+    return record.toString();
+  }
+
+  @Override
+  public void close() throws IOException {
+    csvParser.close();
+  }
+}
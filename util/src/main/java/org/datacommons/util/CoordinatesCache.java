@@ -0,0 +1,94 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// A file of coordinate resolution results (see CoordinatesResolver) that is kept across runs, so
+// that repeated runs over the same points need not resolve the same coordinates again.
+//
+// The records of the TtlRecordFile hold the candidate DCIDs of the coordinates (count, then each
+// length-prefixed). An empty list of candidates records that the coordinates did not resolve,
+// which is kept for a shorter TTL than the results that did resolve.
+//
+// Only one process should use a file at a time. Not thread-safe.
+public class CoordinatesCache {
+  private static final TtlRecordFile.Codec<List<String>> CODEC =
+      new TtlRecordFile.Codec<>() {
+        @Override
+        public void write(DataOutputStream out, List<String> dcids) throws IOException {
+          out.writeInt(dcids.size());
+          for (String dcid : dcids) {
+            TtlRecordFile.writeString(out, dcid);
+          }
+        }
+
+        @Override
+        public List<String> read(ByteBuffer buf) {
+          int numDcids = buf.getInt();
+          if (numDcids < 0 || numDcids > buf.remaining()) return null;
+          List<String> dcids = new ArrayList<>(numDcids);
+          for (int i = 0; i < numDcids; i++) {
+            String dcid = TtlRecordFile.getString(buf);
+            if (dcid == null) return null;
+            dcids.add(dcid);
+          }
+          return dcids;
+        }
+      };
+
+  private final TtlRecordFile<List<String>> file;
+
+  // Coordinates that resolved are used for |positiveTtl|, and those that did not for
+  // |negativeTtl|.
+  public CoordinatesCache(Path path, Duration positiveTtl, Duration negativeTtl) {
+    this(path, positiveTtl, negativeTtl, Clock.systemUTC());
+  }
+
+  CoordinatesCache(Path path, Duration positiveTtl, Duration negativeTtl, Clock clock) {
+    long positiveTtlMillis = positiveTtl.toMillis();
+    long negativeTtlMillis = negativeTtl.toMillis();
+    file =
+        new TtlRecordFile<>(
+            path,
+            "DCCOORD1",
+            "coordinates cache",
+            CODEC,
+            dcids -> dcids.isEmpty() ? negativeTtlMillis : positiveTtlMillis,
+            clock);
+  }
+
+  // Returns the candidate DCIDs of |key| (empty if it did not resolve), or null if there is no
+  // result for it within its TTL.
+  public List<String> get(String key) {
+    return file.get(key);
+  }
+
+  public void put(String key, List<String> dcids) {
+    file.put(key, List.copyOf(dcids));
+  }
+
+  // Appends the results put since the last flush to the file.
+  public void flush() throws IOException {
+    file.flush();
+  }
+}
@@ -2,10 +2,16 @@ package org.datacommons.util;
 
 import static java.util.stream.Collectors.toList;
 
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.datacommons.proto.Mcf.McfGraph.PropertyValues;
 import org.datacommons.proto.Mcf.McfGraph.Values;
 import org.datacommons.proto.Mcf.ValueType;
@@ -13,12 +19,26 @@ import org.datacommons.proto.Resolve.ResolveRequest;
 import org.datacommons.proto.Resolve.ResolveResponse;
 import org.datacommons.proto.Resolve.ResolveResponse.Entity.Candidate;
 
-/** Resolves nodes with lat-lngs by calling the DC coordinates resolution API. */
+/**
+ * Resolves nodes with lat-lngs by calling the DC coordinates resolution API.
+ *
+ * <p>Like {@link PropertyResolver}, coordinates are sent as soon as there is a full chunk of them.
+ *
+ * <p>Coordinates may be rounded to a number of decimal places, so that nearby points (e.g., the
+ * same site reported with different precision) fall in one cell and are resolved once. Results can
+ * also be kept across runs in a {@link CoordinatesCache}, which is consulted before sending.
+ */
 // TODO: Add counters for errors.
 final class CoordinatesResolver {
+  private static final Logger logger = LogManager.getLogger(CoordinatesResolver.class);
+
+  // Passed as the precision to not round coordinates.
+  static final int NO_ROUNDING = -1;
+
   // Coordinates to be resolved.
   // The coordinates are maintained as strings in the following format: "<lat>#<lng>".
   // This format is used since it is the format used by the V2 resolve API as well.
+  // If coordinates are rounded, these are the rounded coordinates, one per cell.
   private final Set<String> resolveCoordinates = ConcurrentHashMap.newKeySet();
 
   // Coordinates that were resolved to DCIDs.
@@ -26,30 +46,105 @@ final class CoordinatesResolver {
   private final ConcurrentHashMap<String, Set<String>> resolvedCoordinates =
       new ConcurrentHashMap<>();
 
+  // Submitted coordinates that have not been sent yet, and the calls sent so far. Guarded by
+  // "this".
+  private List<String> pendingCoordinates = new ArrayList<>();
+  private final List<CompletableFuture<Void>> sentCalls = new ArrayList<>();
+
   private final ReconClient client;
+  // Number of decimal places coordinates are rounded to, or NO_ROUNDING.
+  private final int precision;
+  // May be null. Guarded by "this".
+  private final CoordinatesCache cache;
+  private int numCacheHits = 0;
 
   CoordinatesResolver(ReconClient client) {
+    this(client, NO_ROUNDING, null);
+  }
+
+  CoordinatesResolver(ReconClient client, int precision, CoordinatesCache cache) {
     this.client = client;
+    this.precision = precision;
+    this.cache = cache;
   }
 
-  boolean submit(PropertyValues node) {
+  synchronized boolean submit(PropertyValues node) {
     Optional<String> optionalCoordinate = getCoordinate(node);
     if (optionalCoordinate.isPresent()) {
-      resolveCoordinates.add(optionalCoordinate.get());
+      String coordinate = optionalCoordinate.get();
+      if (resolveCoordinates.add(coordinate)) {
+        List<String> cached = cache != null ? cache.get(coordinate) : null;
+        if (cached != null) {
+          numCacheHits++;
+          if (!cached.isEmpty()) {
+            resolvedCoordinates.put(coordinate, new LinkedHashSet<>(cached));
+          }
+        } else {
+          pendingCoordinates.add(coordinate);
+          if (pendingCoordinates.size() >= client.getChunkSize()) {
+            send();
+          }
+        }
+      }
       return true;
     }
     return false;
   }
 
+  // Sends the coordinates not sent yet, and waits for all the calls.
   void drain() {
-    if (!resolveCoordinates.isEmpty()) {
-      ResolveRequest request =
-          ResolveRequest.newBuilder()
-              .addAllNodes(resolveCoordinates)
-              .setProperty("<-geoCoordinate->dcid")
-              .build();
-      ResolveResponse response = client.resolve(request);
-      populateResolvedCandidates(response);
+    List<CompletableFuture<Void>> futures;
+    synchronized (this) {
+      if (!pendingCoordinates.isEmpty()) {
+        send();
+      }
+      futures = new ArrayList<>(sentCalls);
+      sentCalls.clear();
+    }
+    CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+    if (cache != null) {
+      synchronized (this) {
+        if (!resolveCoordinates.isEmpty()) {
+          logger.info(
+              "Resolved {} of {} coordinates from the cache",
+              numCacheHits,
+              resolveCoordinates.size());
+        }
+        try {
+          cache.flush();
+        } catch (IOException e) {
+          logger.warn("Unable to save coordinates cache: {}", e.getMessage());
+        }
+      }
+    }
+  }
+
+  // Must be called with the lock held.
+  private void send() {
+    List<String> coordinates = pendingCoordinates;
+    ResolveRequest request =
+        ResolveRequest.newBuilder()
+            .addAllNodes(coordinates)
+            .setProperty("<-geoCoordinate->dcid")
+            .build();
+    pendingCoordinates = new ArrayList<>();
+    sentCalls.add(
+        client
+            .resolveAsync(request)
+            .thenAccept(
+                response -> {
+                  populateResolvedCandidates(response);
+                  // A KG snapshot does not resolve coordinates, which is not a result to keep for
+                  // runs that call DC.
+                  if (cache != null && !client.usesSnapshot()) cacheResults(coordinates);
+                }));
+  }
+
+  // Records the results of |coordinates|, including those that did not resolve.
+  private synchronized void cacheResults(List<String> coordinates) {
+    for (String coordinate : coordinates) {
+      Set<String> dcids = resolvedCoordinates.get(coordinate);
+      cache.put(coordinate, dcids != null ? new ArrayList<>(dcids) : List.of());
     }
   }
 
@@ -75,7 +170,7 @@ final class CoordinatesResolver {
             });
   }
 
-  private static Optional<String> getCoordinate(PropertyValues node) {
+  private Optional<String> getCoordinate(PropertyValues node) {
     if (node.containsPvs(Vocabulary.LATITUDE) && node.containsPvs(Vocabulary.LONGITUDE)) {
 
       Optional<Double> optLat = getDoubleValue(node.getPvsMap().get(Vocabulary.LATITUDE));
@@ -86,6 +181,10 @@ final class CoordinatesResolver {
         double lng = optLng.get();
 
         if (!Double.isNaN(lat) && !Double.isNaN(lng)) {
+          if (precision != NO_ROUNDING) {
+            lat = round(lat);
+            lng = round(lng);
+          }
           return Optional.of(String.format("%s#%s", lat, lng));
         }
       }
@@ -94,6 +193,13 @@ final class CoordinatesResolver {
     return Optional.empty();
   }
 
+  private double round(double value) {
+    double scale = Math.pow(10, precision);
+    double rounded = Math.round(value * scale) / scale;
+    // Avoid "-0.0", which would be a different cell than "0.0".
+    return rounded == 0 ? 0 : rounded;
+  }
+
   // TODO: Add support for other formats of values (e.g. 12.34N, 45.56W, etc.)
   private static Optional<Double> getDoubleValue(Values prop) {
     return prop.getTypedValuesList().stream()
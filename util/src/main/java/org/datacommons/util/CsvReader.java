@@ -0,0 +1,58 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Map;
+
+// Reads the records of a CSV file with a header row, in the format accepted by TmcfCsvParser:
+// '"' quotes, '\' escapes, empty lines ignored and spaces around values trimmed.
+//
+// Values of the current record are only valid until the next call to next().
+public interface CsvReader extends Closeable {
+  enum Type {
+    // commons-csv CSVParser.
+    COMMONS,
+    // FastCsvReader, which parses the same format into a reused row buffer.
+    FAST,
+  }
+
+  static CsvReader open(Reader reader, char delimiter, Type type) throws IOException {
+    if (type == Type.FAST) {
+      return new FastCsvReader(reader, delimiter);
+    }
+    return new CommonsCsvReader(reader, delimiter);
+  }
+
+  // Column name to index, from the header row.
+  Map<String, Integer> getHeaderMap();
+
+  // Moves to the next record. Returns false at the end of the file.
+  boolean next() throws IOException;
+
+  // Number of values in the current record.
+  int size();
+
+  // Value at |index| in the current record.
+  String get(int index);
+
+  // Returns true if the current record has as many values as there are columns in the header.
+  boolean isConsistent();
+
+  // Describes the current record (as CSVRecord.toString() does), for error messages.
+  String recordToString();
+}
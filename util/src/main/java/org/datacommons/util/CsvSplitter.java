@@ -0,0 +1,177 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Splits a CSV file into record-aligned byte ranges that can be parsed independently (see
+// TmcfCsvParser.newRangeParser()).
+//
+// The scan is a single sequential pass over the bytes that tracks just enough of the CSV grammar
+// (quoted fields, the '\' escape, surrounding spaces) to tell a record-ending newline apart from
+// one embedded in a quoted value. It mirrors the CSVFormat used by TmcfCsvParser. Along the way it
+// counts non-empty records so that every range knows the CSV line number of its first row, which
+// keeps log locations and TEST_mode node IDs identical to a sequential parse.
+public class CsvSplitter {
+  private static final int READ_BUFFER_SIZE = 1 << 20;
+  private static final char QUOTE = '"';
+  private static final char ESCAPE = '\\';
+
+  // A range of data records in a CSV file.
+  public static final class Range {
+    // Byte offset just past the header record.
+    public final long headerEnd;
+    // [start, end) byte offsets of the data records in this range.
+    public final long start;
+    public final long end;
+    // Number of (non-empty) data records in the file before this range.
+    public final long recordsBefore;
+
+    Range(long headerEnd, long start, long end, long recordsBefore) {
+      this.headerEnd = headerEnd;
+      this.start = start;
+      this.end = end;
+      this.recordsBefore = recordsBefore;
+    }
+
+    @Override
+    public String toString() {
+      return "[" + start + ", " + end + ") after " + recordsBefore + " records";
+    }
+  }
+
+  // Splits |csvFile| into ranges of roughly |targetBytes| each. Returns a single range covering
+  // all data records if the file is not worth splitting or cannot be split safely (e.g., a
+  // non-ASCII delimiter or a file without '\n' line breaks).
+  public static List<Range> split(Path csvFile, char delimiter, long targetBytes)
+      throws IOException {
+    long fileSize = Files.size(csvFile);
+    List<Range> ranges = new ArrayList<>();
+    if (delimiter > 0x7F || targetBytes <= 0) {
+      ranges.add(new Range(0, 0, fileSize, 0));
+      return ranges;
+    }
+
+    try (InputStream in = Files.newInputStream(csvFile)) {
+      Scanner scanner = new Scanner(delimiter);
+      byte[] buffer = new byte[READ_BUFFER_SIZE];
+      long offset = 0;
+      long headerEnd = -1;
+      long rangeStart = -1;
+      long rangeRecordsBefore = 0;
+      int n;
+      while ((n = in.read(buffer)) != -1) {
+        for (int i = 0; i < n; i++) {
+          int c = buffer[i] & 0xFF;
+          offset++;
+          if (!scanner.next(c) || c != '\n') continue;
+
+          // |offset| is now just past a record-ending '\n'.
+          if (headerEnd < 0) {
+            if (scanner.numRecords == 1) {
+              headerEnd = offset;
+              rangeStart = offset;
+            }
+            continue;
+          }
+          long dataRecords = scanner.numRecords - 1;
+          if (offset - rangeStart >= targetBytes
+              && dataRecords > rangeRecordsBefore
+              && offset < fileSize) {
+            ranges.add(new Range(headerEnd, rangeStart, offset, rangeRecordsBefore));
+            rangeStart = offset;
+            rangeRecordsBefore = dataRecords;
+          }
+        }
+      }
+      if (headerEnd < 0) {
+        ranges.add(new Range(0, 0, fileSize, 0));
+      } else {
+        ranges.add(new Range(headerEnd, rangeStart, fileSize, rangeRecordsBefore));
+      }
+    }
+    return ranges;
+  }
+
+  // Byte-level state machine over the CSV grammar.
+  private static final class Scanner {
+    private final int delimiter;
+    private boolean atFieldStart = true;
+    private boolean inQuotes = false;
+    private boolean pendingQuote = false;
+    private boolean pendingEscape = false;
+    private long recordLength = 0;
+    long numRecords = 0;
+
+    Scanner(char delimiter) {
+      this.delimiter = delimiter;
+    }
+
+    // Consumes one byte and returns true if it is a line break outside of a quoted value.
+    boolean next(int c) {
+      if (pendingEscape) {
+        pendingEscape = false;
+        atFieldStart = false;
+        recordLength++;
+        return false;
+      }
+      if (inQuotes) {
+        recordLength++;
+        if (pendingQuote) {
+          pendingQuote = false;
+          if (c == QUOTE) {
+            // A doubled quote inside a quoted value.
+            return false;
+          }
+          // The previous quote closed the value; handle this byte as unquoted.
+          inQuotes = false;
+          recordLength--;
+        } else {
+          if (c == QUOTE) {
+            pendingQuote = true;
+          } else if (c == ESCAPE) {
+            pendingEscape = true;
+          }
+          return false;
+        }
+      }
+
+      if (c == '\n' || c == '\r') {
+        // Empty lines are skipped by the parser, so they do not count as records.
+        if (recordLength > 0) numRecords++;
+        recordLength = 0;
+        atFieldStart = true;
+        return true;
+      }
+      recordLength++;
+      if (c == delimiter) {
+        atFieldStart = true;
+      } else if (c == ESCAPE) {
+        pendingEscape = true;
+      } else if (atFieldStart && c == QUOTE) {
+        inQuotes = true;
+        atFieldStart = false;
+      } else if (!(atFieldStart && (c == ' ' || c == '\t'))) {
+        atFieldStart = false;
+      }
+      return false;
+    }
+  }
+}
@@ -0,0 +1,79 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+
+// A file of DC existence check results (see ExistenceChecker) that is kept across runs, so that
+// repeated runs over the same import need not ask DC about the same nodes and triples again.
+//
+// The records of the TtlRecordFile hold whether the key exists.
+//
+// Only one process should use a file at a time. Not thread-safe (ExistenceChecker calls it with
+// its lock held).
+public class ExistenceCache {
+  private static final TtlRecordFile.Codec<Boolean> CODEC =
+      new TtlRecordFile.Codec<>() {
+        @Override
+        public void write(DataOutputStream out, Boolean exists) throws IOException {
+          out.writeBoolean(exists);
+        }
+
+        @Override
+        public Boolean read(ByteBuffer buf) {
+          return buf.get() != 0;
+        }
+      };
+
+  private final TtlRecordFile<Boolean> file;
+
+  // Results of checks that found a node or triple are used for |positiveTtl|, and those that did
+  // not for |negativeTtl|.
+  public ExistenceCache(Path path, Duration positiveTtl, Duration negativeTtl) {
+    this(path, positiveTtl, negativeTtl, Clock.systemUTC());
+  }
+
+  ExistenceCache(Path path, Duration positiveTtl, Duration negativeTtl, Clock clock) {
+    long positiveTtlMillis = positiveTtl.toMillis();
+    long negativeTtlMillis = negativeTtl.toMillis();
+    file =
+        new TtlRecordFile<>(
+            path,
+            "DCEXIST1",
+            "existence cache",
+            CODEC,
+            exists -> exists ? positiveTtlMillis : negativeTtlMillis,
+            clock);
+  }
+
+  // Returns whether |key| exists, or null if there is no result for it within its TTL.
+  public Boolean get(String key) {
+    return file.get(key);
+  }
+
+  public void put(String key, boolean exists) {
+    file.put(key, exists);
+  }
+
+  // Appends the results put since the last flush to the file.
+  public void flush() throws IOException {
+    file.flush();
+  }
+}
@@ -4,6 +4,10 @@ import com.google.gson.JsonObject;
 import java.io.IOException;
 import java.net.http.HttpClient;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.util.Strings;
@@ -13,10 +17,17 @@ import org.datacommons.proto.Mcf;
 // triples in the KG or local graph.
 //
 // Users of this class submit checks for node (submitNodeCheck) or triple (submitTripleCheck)
-// along with a logging callback (LogCb).  The implementation batches calls to DC, and on
-// completion invokes the callback to notify on existence failures.  At the very end, users
-// need to issue a final drain call (drainRemoteCalls).
-// This class is thread-safe.
+// along with a logging callback (LogCb).  The implementation batches calls to DC per predicate,
+// and sends full batches from background threads, so submitters do not wait on DC.  On completion
+// of a call it invokes the callbacks to notify on existence failures.  At the very end, users
+// need to issue a final drain call (drainRemoteCalls), which sends the partial batches and waits
+// for all the calls.
+// This class is thread-safe. The lock only guards in-memory state and is never held across DC
+// calls. It is a ReentrantLock rather than synchronized methods, because submitters may wait on
+// it (for a free DC call slot, or in a drain), and a virtual thread blocking in a synchronized
+// method would pin its carrier thread.
+// If given a KgSnapshot, checks that are not answered locally are answered from the snapshot
+// right away, and nothing is sent to DC.
 public class ExistenceChecker {
   private static final Logger logger = LogManager.getLogger(ExistenceChecker.class);
 
@@ -27,6 +38,20 @@ public class ExistenceChecker {
   // Batching thresholds.  Allow tests to set this.
   public static int DC_CALL_BATCH_LIMIT = 1000;
   public static int MAX_PENDING_CALLS = 100000;
+  // A batch is also sent once its request payload is about this big, so that batches of long
+  // DCIDs stay well within request size limits.
+  public static int MAX_BATCH_PAYLOAD_BYTES = 64 * 1024;
+  // Default number of batches sent to DC at a time, per checker.
+  public static final int DEFAULT_MAX_CONCURRENT_DC_CALLS = 4;
+
+  // Threads that send batches to DC.
+  private static final ExecutorService dcCallService =
+      Executors.newCachedThreadPool(
+          r -> {
+            Thread t = new Thread(r, "existence-dc-call");
+            t.setDaemon(true);
+            return t;
+          });
 
   // Useful for mocking.
   private final HttpClient httpClient;
@@ -37,158 +62,322 @@ public class ExistenceChecker {
 
   // This is a combination of local KG data and prior cached checks.
   // Node is just the DCID. Triple is "s,p,o" and the property just includes SCHEMA_PROPERTIES.
-  private final Set<String> existingNodesOrTriples; // Existence cache
-  private final Set<String> missingNodesOrTriples; // Absence cache
+  // These hold fingerprints rather than the keys, since there may be millions of them.
+  private final FingerprintSet existingNodesOrTriples; // Existence cache
+  private final FingerprintSet missingNodesOrTriples; // Absence cache
+  // Results of DC calls from earlier runs, or null. Consulted after the caches above, and
+  // written back after each drain.
+  private final ExistenceCache persistentCache;
+  // Batches sent to DC at a time.
+  private final int maxConcurrentDcCalls;
+  // If not null, answers the checks in place of DC.
+  private final KgSnapshot snapshot;
 
   // To amortize DC call latency we batch calls up to DC_CALL_BATCH_LIMIT. The batching happens
-  // per (triple) predicate.
+  // per (triple) predicate, and a batch is sent once it has DC_CALL_BATCH_LIMIT subjects.
   //
-  // Batch map:  predicate -> subject -> object -> list of pending call-contexts
+  // Open batches:  predicate -> batch not yet sent
+  // Batch index:   predicate -> subject -> the (open or in-flight) batch asking DC about it
   //
-  // We batch based on the number of subjects in a predicate. To avoid worst case memory
-  // usage, if all checks are for the same node, we have a global limit of max pending calls.
-  private final Map<String, Map<String, Map<String, List<LogCb>>>> remoteBatchMap;
+  // A check whose subject is in some batch is added to that batch, so a subject is asked of DC
+  // once however many threads check it. To avoid worst case memory usage, if all checks are for
+  // the same node, we have a global limit of max pending calls (counting those in batches sent to
+  // DC but not yet completed).
+  private final Map<String, Batch> openBatches = new HashMap<>();
+  private final Map<String, Map<String, SubjectRef>> batchesBySubject = new HashMap<>();
   private int totalPendingCallCount = 0;
 
+  // Batches sent to DC (or waiting for a free call slot) and not yet completed.
+  private int numInFlightBatches = 0;
+  // Batches running on dcCallService, at most maxConcurrentDcCalls.
+  private int numRunningBatches = 0;
+  // First failure of a batch, thrown by the next drainRemoteCalls().
+  private IOException batchError = null;
+
+  // Guards all the state above.
+  private final ReentrantLock lock = new ReentrantLock();
+  // Signalled when a batch completes.
+  private final Condition batchDone = lock.newCondition();
+
   public ExistenceChecker(HttpClient httpClient, boolean verbose, LogWrapper logCtx) {
+    this(httpClient, verbose, logCtx, null);
+  }
+
+  public ExistenceChecker(
+      HttpClient httpClient, boolean verbose, LogWrapper logCtx, ExistenceCache persistentCache) {
+    this(httpClient, verbose, logCtx, persistentCache, DEFAULT_MAX_CONCURRENT_DC_CALLS);
+  }
+
+  public ExistenceChecker(
+      HttpClient httpClient,
+      boolean verbose,
+      LogWrapper logCtx,
+      ExistenceCache persistentCache,
+      int maxConcurrentDcCalls) {
+    this(httpClient, verbose, logCtx, persistentCache, maxConcurrentDcCalls, null);
+  }
+
+  public ExistenceChecker(
+      HttpClient httpClient,
+      boolean verbose,
+      LogWrapper logCtx,
+      ExistenceCache persistentCache,
+      int maxConcurrentDcCalls,
+      KgSnapshot snapshot) {
     this.httpClient = httpClient;
     this.logCtx = logCtx;
     this.verbose = verbose;
-    existingNodesOrTriples = new HashSet<>();
-    missingNodesOrTriples = new HashSet<>();
-    remoteBatchMap = new HashMap<>();
+    this.persistentCache = persistentCache;
+    this.maxConcurrentDcCalls = Math.max(1, maxConcurrentDcCalls);
+    this.snapshot = snapshot;
+    existingNodesOrTriples = new FingerprintSet();
+    missingNodesOrTriples = new FingerprintSet();
   }
 
-  public synchronized void submitNodeCheck(String node, LogCb logCb)
-      throws IOException, InterruptedException {
-    logCtx.incrementInfoCounterBy("Existence_NumChecks", 1);
-    if (checkLocal(node, Vocabulary.TYPE_OF, "", logCb)) {
-      return;
+  public void submitNodeCheck(String node, LogCb logCb) throws IOException, InterruptedException {
+    lock.lock();
+    try {
+      logCtx.incrementInfoCounterBy("Existence_NumChecks", 1);
+      if (checkLocal(node, Vocabulary.TYPE_OF, "", logCb)) {
+        return;
+      }
+      assert !node.isEmpty();
+      if (snapshot != null) {
+        checkSnapshot(node, Vocabulary.TYPE_OF, "", logCb);
+        return;
+      }
+      batchRemoteCall(node, Vocabulary.TYPE_OF, "", logCb);
+    } finally {
+      lock.unlock();
     }
-    assert !node.isEmpty();
-    batchRemoteCall(node, Vocabulary.TYPE_OF, "", logCb);
   }
 
-  public synchronized void submitTripleCheck(String sub, String pred, String obj, LogCb logCb)
+  public void submitTripleCheck(String sub, String pred, String obj, LogCb logCb)
       throws IOException, InterruptedException {
-    if (pred.equals(Vocabulary.DOMAIN_INCLUDES) && (sub.contains("/") || sub.equals("count"))) {
-      // Don't bother with domain checks for schema-less properties.
-      // Measured property 'count' is an aggregate that is not a property of an instance, but
-      // of a set.
-      return;
-    }
-    logCtx.incrementInfoCounterBy("Existence_NumChecks", 1);
-    if (checkLocal(sub, pred, obj, logCb)) {
-      return;
+    lock.lock();
+    try {
+      if (pred.equals(Vocabulary.DOMAIN_INCLUDES) && (sub.contains("/") || sub.equals("count"))) {
+        // Don't bother with domain checks for schema-less properties.
+        // Measured property 'count' is an aggregate that is not a property of an instance, but
+        // of a set.
+        return;
+      }
+      logCtx.incrementInfoCounterBy("Existence_NumChecks", 1);
+      if (checkLocal(sub, pred, obj, logCb)) {
+        return;
+      }
+      assert !sub.isEmpty();
+      if (snapshot != null) {
+        checkSnapshot(sub, pred, obj, logCb);
+        return;
+      }
+      batchRemoteCall(sub, pred, obj, logCb);
+    } finally {
+      lock.unlock();
     }
-    assert !sub.isEmpty();
-    batchRemoteCall(sub, pred, obj, logCb);
   }
 
-  public synchronized void addLocalGraph(Mcf.McfGraph graph) {
-    for (Map.Entry<String, Mcf.McfGraph.PropertyValues> node : graph.getNodesMap().entrySet()) {
-      // Skip doing anything with StatVarObs.
-      String typeOf = McfUtil.getPropVal(node.getValue(), Vocabulary.TYPE_OF);
-      if (typeOf.equals(Vocabulary.STAT_VAR_OBSERVATION_TYPE)
-          || typeOf.equals(Vocabulary.LEGACY_OBSERVATION_TYPE_SUFFIX)) {
-        continue;
-      }
+  public void addLocalGraph(Mcf.McfGraph graph) {
+    lock.lock();
+    try {
+      for (Map.Entry<String, Mcf.McfGraph.PropertyValues> node : graph.getNodesMap().entrySet()) {
+        // Skip doing anything with StatVarObs.
+        String typeOf = McfUtil.getPropVal(node.getValue(), Vocabulary.TYPE_OF);
+        if (typeOf.equals(Vocabulary.STAT_VAR_OBSERVATION_TYPE)
+            || typeOf.equals(Vocabulary.LEGACY_OBSERVATION_TYPE_SUFFIX)) {
+          continue;
+        }
 
-      String dcid = McfUtil.getPropVal(node.getValue(), Vocabulary.DCID);
-      if (dcid.isEmpty()) {
-        continue;
-      }
+        String dcid = McfUtil.getPropVal(node.getValue(), Vocabulary.DCID);
+        if (dcid.isEmpty()) {
+          continue;
+        }
 
-      existingNodesOrTriples.add(dcid);
-      if (missingNodesOrTriples.contains(dcid)) {
-        missingNodesOrTriples.remove(dcid);
-      }
+        existingNodesOrTriples.add(dcid);
+        if (missingNodesOrTriples.contains(dcid)) {
+          missingNodesOrTriples.remove(dcid);
+        }
 
-      if (!typeOf.equals(Vocabulary.CLASS_TYPE) && !typeOf.equals(Vocabulary.PROPERTY_TYPE)) {
-        continue;
-      }
-      for (Map.Entry<String, Mcf.McfGraph.Values> pv : node.getValue().getPvsMap().entrySet()) {
-        if (SCHEMA_PROPERTIES.contains(pv.getKey())) {
-          for (Mcf.McfGraph.TypedValue tv : pv.getValue().getTypedValuesList()) {
-            var key = makeKey(dcid, pv.getKey(), tv.getValue());
-            existingNodesOrTriples.add(key);
-            if (missingNodesOrTriples.contains(key)) {
-              missingNodesOrTriples.remove(key);
+        if (!typeOf.equals(Vocabulary.CLASS_TYPE) && !typeOf.equals(Vocabulary.PROPERTY_TYPE)) {
+          continue;
+        }
+        for (Map.Entry<String, Mcf.McfGraph.Values> pv : node.getValue().getPvsMap().entrySet()) {
+          if (SCHEMA_PROPERTIES.contains(pv.getKey())) {
+            for (Mcf.McfGraph.TypedValue tv : pv.getValue().getTypedValuesList()) {
+              var key = makeKey(dcid, pv.getKey(), tv.getValue());
+              existingNodesOrTriples.add(key);
+              if (missingNodesOrTriples.contains(key)) {
+                missingNodesOrTriples.remove(key);
+              }
             }
           }
         }
       }
+    } finally {
+      lock.unlock();
     }
   }
 
-  public synchronized void drainRemoteCalls() throws IOException, InterruptedException {
-    // To avoid mutating map while iterating, get the keys first.
-    List<String> preds = new ArrayList<>(remoteBatchMap.keySet());
-    for (var pred : preds) {
-      if (verbose) {
-        logger.info("Draining " + remoteBatchMap.get(pred).size() + " dcids for predicate " + pred);
+  public void drainRemoteCalls() throws IOException, InterruptedException {
+    lock.lock();
+    try {
+      // To avoid mutating map while iterating, get the batches first.
+      List<Batch> batches = new ArrayList<>(openBatches.values());
+      openBatches.clear();
+      for (var batch : batches) {
+        if (verbose) {
+          logger.info("Draining " + batch.subs.size() + " dcids for predicate " + batch.pred);
+        }
+        sendBatch(batch);
+      }
+      while (numInFlightBatches > 0) {
+        batchDone.await();
+      }
+      if (persistentCache != null) persistentCache.flush();
+      if (batchError != null) {
+        IOException e = batchError;
+        batchError = null;
+        throw e;
       }
-      drainRemoteCallsForPredicate(pred, remoteBatchMap.get(pred));
-      remoteBatchMap.remove(pred);
+    } finally {
+      lock.unlock();
     }
   }
 
   private void batchRemoteCall(String sub, String pred, String obj, LogCb logCb)
       throws IOException, InterruptedException {
-    Map<String, Map<String, List<LogCb>>> subMap = null;
-    if (remoteBatchMap.containsKey(pred)) {
-      subMap = remoteBatchMap.get(pred);
-    } else {
-      subMap = new HashMap<>();
-    }
-
-    Map<String, List<LogCb>> objMap = null;
-    if (subMap.containsKey(sub)) {
-      objMap = subMap.get(sub);
-    } else {
-      objMap = new HashMap<>();
+    var subBatches = batchesBySubject.computeIfAbsent(pred, k -> new HashMap<>());
+    var ref = subBatches.get(sub);
+    if (ref == null) {
+      var open = openBatches.computeIfAbsent(pred, Batch::new);
+      ref = new SubjectRef(open, open.subs.size());
+      open.addSubject(sub);
+      subBatches.put(sub, ref);
     }
-
-    List<LogCb> calls = null;
-    if (objMap.containsKey(obj)) {
-      calls = objMap.get(obj);
-    } else {
-      calls = new ArrayList<>();
-    }
-
-    // Add pending call.
-    calls.add(logCb);
-    objMap.put(obj, calls);
-    subMap.put(sub, objMap);
+    // A batch already sent to DC answers for all objects of its subjects, so the check just
+    // waits on it.
+    var batch = ref.batch;
+    batch.addCheck(ref.index, obj, logCb);
     totalPendingCallCount++;
-    remoteBatchMap.put(pred, subMap);
 
     // Maybe drain the batch.
     if (totalPendingCallCount >= MAX_PENDING_CALLS) {
       if (verbose) logger.info("Draining remote calls due to MAX_PENDING_CALLS");
       drainRemoteCalls();
-    } else if (subMap.size() >= DC_CALL_BATCH_LIMIT) {
+    } else if (!batch.sent
+        && (batch.subs.size() >= DC_CALL_BATCH_LIMIT
+            || batch.payloadBytes >= MAX_BATCH_PAYLOAD_BYTES)) {
       if (verbose) {
         logger.info(
             "Draining due to batching limit with "
-                + subMap.size()
-                + " dcids for "
+                + batch.subs.size()
+                + " dcids ("
+                + batch.payloadBytes
+                + " bytes) for "
                 + "predicate "
                 + pred);
       }
-      drainRemoteCallsForPredicate(pred, subMap);
-      remoteBatchMap.remove(pred);
+      openBatches.remove(pred);
+      sendBatch(batch);
     }
   }
 
-  private void drainRemoteCallsForPredicate(
-      String pred, Map<String, Map<String, List<LogCb>>> subMap)
-      throws IOException, InterruptedException {
-    performDcCall(pred, new ArrayList<>(subMap.keySet()), subMap);
+  // Sends a batch (already removed from openBatches) to DC in the background, once a call slot is
+  // free. Called with the lock held.
+  private void sendBatch(Batch batch) throws InterruptedException {
+    batch.sent = true;
+    numInFlightBatches++;
+    // Waiting releases the lock. Checks of the batch's subjects keep being added to it meanwhile.
+    while (numRunningBatches >= maxConcurrentDcCalls) {
+      batchDone.await();
+    }
+    numRunningBatches++;
+    dcCallService.execute(() -> runBatch(batch));
+  }
+
+  // Runs on dcCallService.
+  private void runBatch(Batch batch) {
+    // Subject -> DC result, or null if the call for it failed.
+    Map<String, JsonObject> results = new HashMap<>();
+    IOException error = null;
+    try {
+      performDcCall(batch.pred, batch.subs, results);
+    } catch (IOException e) {
+      error = e;
+    } catch (InterruptedException e) {
+      error = new IOException("Interrupted during DC existence call", e);
+    } catch (RuntimeException e) {
+      error = new IOException("Failed DC existence call", e);
+    }
+
+    // Checks whose node or triple is missing, or whose call failed, to log outside the lock.
+    List<Integer> missing = new ArrayList<>();
+    List<Integer> failed = new ArrayList<>();
+    lock.lock();
+    try {
+      var subBatches = batchesBySubject.get(batch.pred);
+      for (var sub : batch.subs) {
+        subBatches.remove(sub);
+      }
+      if (subBatches.isEmpty()) batchesBySubject.remove(batch.pred);
+      totalPendingCallCount -= batch.numChecks;
+      if (error != null) {
+        // Drop the checks, so later checks of their keys are retried.
+        if (batchError == null) batchError = error;
+      } else {
+        for (int i = 0; i < batch.numChecks; i++) {
+          var sub = batch.subs.get(batch.checkSubs[i]);
+          var obj = batch.checkObjs[i];
+          var nodeJson = results.get(sub);
+          if (nodeJson == null) {
+            failed.add(i);
+            continue;
+          }
+          var key = makeKey(sub, batch.pred, obj);
+          if (checkOneResult(obj, nodeJson)) {
+            if (existingNodesOrTriples.add(key) && persistentCache != null) {
+              persistentCache.put(key, true);
+            }
+          } else {
+            if (missingNodesOrTriples.add(key)) {
+              if (persistentCache != null) persistentCache.put(key, false);
+              if (verbose) {
+                logger.info("Missing " + (obj.isEmpty() ? "node" : "triple") + " in DC " + key);
+              }
+            }
+            missing.add(i);
+          }
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+
+    try {
+      // No checks are added to the batch once its subjects are unmapped above.
+      for (int i : failed) {
+        batch.checkCbs[i].logError("Existence_FailedDcCall", "Failed DC Call");
+      }
+      for (int i : missing) {
+        // Log the missing details.
+        logEntry(batch.checkCbs[i], batch.checkObjs[i]);
+      }
+    } finally {
+      // Only now, so that drains see the logged failures.
+      lock.lock();
+      try {
+        numRunningBatches--;
+        numInFlightBatches--;
+        batchDone.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
   }
 
-  private void performDcCall(
-      String pred, List<String> subs, Map<String, Map<String, List<LogCb>>> subMap)
+  // Adds the DC result of each of |subs| to |results| (null for those whose call failed). Called
+  // without the lock held.
+  private void performDcCall(String pred, List<String> subs, Map<String, JsonObject> results)
       throws IOException, InterruptedException {
     logCtx.incrementInfoCounterBy("Existence_NumDcCalls", 1);
 
@@ -200,25 +389,17 @@ public class ExistenceChecker {
       }
       // If this was an independent RPC call, don't want to re-issue the call.
       if (subs.size() == 1) {
-        var sub = subs.get(0);
-        assert subMap.containsKey(sub);
-        var objMap = subMap.get(sub);
-        for (var cbs : objMap.values()) {
-          for (var cb : cbs) {
-            cb.logError("Existence_FailedDcCall", "Failed DC Call");
-          }
-          totalPendingCallCount -= cbs.size();
-        }
-        subMap.remove(subs.get(0));
+        results.put(subs.get(0), null);
         return;
       }
-      // Important: If the dcid is malformed, Mixer can return failure. Also, if the URI is too
-      // long, then too this happens. So issue independent RPCs now. If this happens often enough,
-      // we can revisit.
-      logger.warn("DC Call failed (bad DCID or URI length). Issuing individual calls now.");
-      for (String sub : subs) {
-        performDcCall(pred, List.of(sub), subMap);
-      }
+      // Important: If the dcid is malformed, Mixer can return failure. Also, if the request is too
+      // big, then too this happens. So split the batch in halves and retry each, which finds a
+      // single bad dcid in O(log n) calls rather than n.
+      logger.warn(
+          "DC Call failed (bad DCID or request size) for " + subs.size() + " dcids. Bisecting.");
+      int mid = subs.size() / 2;
+      performDcCall(pred, subs.subList(0, mid), results);
+      performDcCall(pred, subs.subList(mid, subs.size()), results);
       return;
     }
 
@@ -235,28 +416,27 @@ public class ExistenceChecker {
     }
 
     for (var entry : dataJson.entrySet()) {
-      var sub = entry.getKey();
-      var nodeJson = entry.getValue().getAsJsonObject();
-      var objMap = subMap.get(sub);
-      for (var kv : objMap.entrySet()) {
-        var obj = kv.getKey();
-        var cbs = kv.getValue();
-        var key = makeKey(sub, pred, obj);
-        if (checkOneResult(obj, nodeJson)) {
-          existingNodesOrTriples.add(key);
-        } else {
-          if (verbose) {
-            logger.info("Missing " + (obj.isEmpty() ? "node" : "triple") + " in DC " + key);
-          }
-          missingNodesOrTriples.add(key);
-          // Log the missing details.
-          for (var cb : cbs) {
-            logEntry(cb, obj);
-          }
-        }
-        totalPendingCallCount -= cbs.size();
+      results.put(entry.getKey(), entry.getValue().getAsJsonObject());
+    }
+  }
+
+  // Must be called with the lock held.
+  private void checkSnapshot(String sub, String pred, String obj, LogCb logCb) {
+    logCtx.incrementInfoCounterBy("Existence_NumSnapshotChecks", 1);
+    JsonObject nodeJson = snapshot.getPropertyValues(List.of(sub), pred).getAsJsonObject(sub);
+    if (!checkOneResult(obj, nodeJson)) {
+      if (verbose) {
+        logger.info(
+            "Missing "
+                + (obj.isEmpty() ? "node" : "triple")
+                + " in KG snapshot "
+                + sub
+                + ","
+                + pred
+                + ","
+                + obj);
       }
-      subMap.remove(sub);
+      logEntry(logCb, obj);
     }
   }
 
@@ -289,7 +469,18 @@ public class ExistenceChecker {
       logEntry(logCb, obj);
       return true;
     }
-    return false;
+    Boolean exists = persistentCache == null ? null : persistentCache.get(key);
+    if (exists == null) {
+      return false;
+    }
+    logCtx.incrementInfoCounterBy("Existence_NumPersistentCacheHits", 1);
+    if (exists) {
+      existingNodesOrTriples.add(key);
+    } else {
+      missingNodesOrTriples.add(key);
+      logEntry(logCb, obj);
+    }
+    return true;
   }
 
   private static void logEntry(LogCb logCb, String obj) {
@@ -310,4 +501,53 @@ public class ExistenceChecker {
     }
     return s + "," + p + "," + o;
   }
+
+  // Checks of one predicate, asked of DC in one call. Each check is an entry in the flat arrays:
+  // the index of its subject in |subs|, its object ("" for a node check) and its call-context.
+  private static final class Batch {
+    final String pred;
+    // Not added to once sent.
+    final List<String> subs = new ArrayList<>();
+    // Approximate size of the subjects in the request payload.
+    int payloadBytes = 0;
+    int numChecks = 0;
+    int[] checkSubs = new int[16];
+    String[] checkObjs = new String[16];
+    LogCb[] checkCbs = new LogCb[16];
+    boolean sent = false;
+
+    Batch(String pred) {
+      this.pred = pred;
+    }
+
+    void addSubject(String sub) {
+      subs.add(sub);
+      // Quoted, and separated by a comma.
+      payloadBytes += sub.length() + 3;
+    }
+
+    void addCheck(int sub, String obj, LogCb logCb) {
+      if (numChecks == checkSubs.length) {
+        int capacity = numChecks * 2;
+        checkSubs = Arrays.copyOf(checkSubs, capacity);
+        checkObjs = Arrays.copyOf(checkObjs, capacity);
+        checkCbs = Arrays.copyOf(checkCbs, capacity);
+      }
+      checkSubs[numChecks] = sub;
+      checkObjs[numChecks] = obj;
+      checkCbs[numChecks] = logCb;
+      numChecks++;
+    }
+  }
+
+  private static final class SubjectRef {
+    final Batch batch;
+    // Index of the subject in batch.subs.
+    final int index;
+
+    SubjectRef(Batch batch, int index) {
+      this.batch = batch;
+      this.index = index;
+    }
+  }
 }
@@ -15,8 +15,8 @@ import org.datacommons.proto.Mcf;
 // Resolves nodes with external IDs by calling DC Resolution API.
 //
 // This class is used as follows:
-// 1. Do N submitNode calls (which may batch up RPCs)
-// 2. Call drainRemoteCalls() (to drain all RPCs)
+// 1. Do N submitNode calls (which send RPCs in the background as batches fill up)
+// 2. Call drainRemoteCalls() (to send the partial batches and wait for all RPCs)
 // 3. Do M resolveNode calls (to resolve a dcid)
 //
 // If this order is not followed, errors will be thrown.
@@ -42,13 +42,48 @@ public class ExternalIdResolver {
 
   public ExternalIdResolver(
       HttpClient httpClient, boolean doCoordinatesResolution, boolean verbose, LogWrapper logCtx) {
+    this(httpClient, null, doCoordinatesResolution, verbose, logCtx);
+  }
+
+  // If |snapshot| is not null, IDs are resolved from it rather than by calling DC.
+  public ExternalIdResolver(
+      HttpClient httpClient,
+      KgSnapshot snapshot,
+      boolean doCoordinatesResolution,
+      boolean verbose,
+      LogWrapper logCtx) {
+    this(
+        httpClient,
+        snapshot,
+        doCoordinatesResolution,
+        CoordinatesResolver.NO_ROUNDING,
+        null,
+        verbose,
+        logCtx);
+  }
+
+  // Coordinates are rounded to |coordinatesPrecision| decimal places (if not negative) before
+  // resolution, and if |coordinatesCache| is not null, their results are kept in it.
+  public ExternalIdResolver(
+      HttpClient httpClient,
+      KgSnapshot snapshot,
+      boolean doCoordinatesResolution,
+      int coordinatesPrecision,
+      CoordinatesCache coordinatesCache,
+      boolean verbose,
+      LogWrapper logCtx) {
     this.httpClient = httpClient;
     this.verbose = verbose;
     this.logCtx = logCtx;
-    ReconClient reconClient = new ReconClient(httpClient, logCtx, MAX_RESOLUTION_BATCH_IDS);
+    ReconClient reconClient =
+        new ReconClient(httpClient, snapshot, logCtx, MAX_RESOLUTION_BATCH_IDS);
     this.propertyResolver = new PropertyResolver(reconClient, logCtx);
     if (doCoordinatesResolution) {
-      this.coordinatesResolver = new CoordinatesResolver(reconClient);
+      this.coordinatesResolver =
+          new CoordinatesResolver(
+              reconClient,
+              coordinatesPrecision < 0 ? CoordinatesResolver.NO_ROUNDING : coordinatesPrecision,
+              coordinatesCache);
     } else {
       this.coordinatesResolver = null;
     }
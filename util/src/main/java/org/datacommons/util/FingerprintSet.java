@@ -0,0 +1,170 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Function;
+
+// A set of strings that keeps a 128-bit fingerprint of each instead of the string, for sets of
+// millions of keys (e.g., the DCIDs and triples in ExistenceChecker).
+//
+// The first 64 bits of the fingerprint are the key of an open-addressing (linear probing) table
+// of primitive longs, and the other 64 bits are kept alongside to tell apart keys whose first 64
+// bits collide. Such keys are kept as strings in a separate, exact set. This takes ~16 bytes per
+// slot (at most 60% full), compared to a few hundred bytes per key in a HashSet<String>.
+//
+// Not thread-safe.
+public class FingerprintSet {
+  private static final int MIN_CAPACITY = 16;
+  private static final double MAX_LOAD = 0.6;
+
+  private final Function<String, HashCode> hasher;
+
+  // First 64 bits of the fingerprints, with 0 for an empty slot.
+  private long[] fingerprints;
+  // The other 64 bits, in the same slots.
+  private long[] tags;
+  private int tableSize = 0;
+  // Keys whose first 64 bits match a different key in the table.
+  private final Set<String> collided = new HashSet<>();
+
+  public FingerprintSet() {
+    this(key -> Hashing.murmur3_128().hashString(key, StandardCharsets.UTF_8));
+  }
+
+  // |hasher| must return 128-bit hashes. Allows tests to force collisions.
+  FingerprintSet(Function<String, HashCode> hasher) {
+    this.hasher = hasher;
+    fingerprints = new long[MIN_CAPACITY];
+    tags = new long[MIN_CAPACITY];
+  }
+
+  // Returns true if |key| was not in the set.
+  public boolean add(String key) {
+    byte[] hash = hasher.apply(key).asBytes();
+    long fp = fingerprint(hash);
+    long tag = tag(hash);
+    int i = find(fp);
+    if (fingerprints[i] == fp) {
+      return tags[i] != tag && collided.add(key);
+    }
+    if (!collided.isEmpty() && collided.contains(key)) {
+      // The key it collided with has since been removed.
+      return false;
+    }
+    fingerprints[i] = fp;
+    tags[i] = tag;
+    tableSize++;
+    if (tableSize > fingerprints.length * MAX_LOAD) {
+      resize(fingerprints.length * 2);
+    }
+    return true;
+  }
+
+  public boolean contains(String key) {
+    byte[] hash = hasher.apply(key).asBytes();
+    long fp = fingerprint(hash);
+    int i = find(fp);
+    if (fingerprints[i] == fp && tags[i] == tag(hash)) {
+      return true;
+    }
+    return !collided.isEmpty() && collided.contains(key);
+  }
+
+  // Returns true if |key| was in the set.
+  public boolean remove(String key) {
+    byte[] hash = hasher.apply(key).asBytes();
+    long fp = fingerprint(hash);
+    int i = find(fp);
+    if (fingerprints[i] == fp && tags[i] == tag(hash)) {
+      deleteSlot(i);
+      tableSize--;
+      return true;
+    }
+    return !collided.isEmpty() && collided.remove(key);
+  }
+
+  public int size() {
+    return tableSize + collided.size();
+  }
+
+  // Returns the slot holding |fp|, or the empty slot where it would go.
+  private int find(long fp) {
+    int mask = fingerprints.length - 1;
+    int i = home(fp, mask);
+    while (fingerprints[i] != 0 && fingerprints[i] != fp) {
+      i = (i + 1) & mask;
+    }
+    return i;
+  }
+
+  // Empties slot |i|, moving later entries of the probe sequence back so lookups need no
+  // tombstones.
+  private void deleteSlot(int i) {
+    int mask = fingerprints.length - 1;
+    int j = i;
+    while (true) {
+      j = (j + 1) & mask;
+      if (fingerprints[j] == 0) break;
+      // The entry at j can fill i only if i is not before its home slot.
+      if (((j - home(fingerprints[j], mask)) & mask) >= ((j - i) & mask)) {
+        fingerprints[i] = fingerprints[j];
+        tags[i] = tags[j];
+        i = j;
+      }
+    }
+    fingerprints[i] = 0;
+    tags[i] = 0;
+  }
+
+  private void resize(int capacity) {
+    long[] oldFingerprints = fingerprints;
+    long[] oldTags = tags;
+    fingerprints = new long[capacity];
+    tags = new long[capacity];
+    for (int k = 0; k < oldFingerprints.length; k++) {
+      if (oldFingerprints[k] == 0) continue;
+      int i = find(oldFingerprints[k]);
+      fingerprints[i] = oldFingerprints[k];
+      tags[i] = oldTags[k];
+    }
+  }
+
+  private static int home(long fp, int mask) {
+    return (int) (fp ^ (fp >>> 32)) & mask;
+  }
+
+  private static long fingerprint(byte[] hash) {
+    long fp = toLong(hash, 0);
+    // 0 marks an empty slot. A key whose fingerprint is 1 is told apart by its tag.
+    return fp == 0 ? 1 : fp;
+  }
+
+  private static long tag(byte[] hash) {
+    return toLong(hash, 8);
+  }
+
+  private static long toLong(byte[] bytes, int offset) {
+    long value = 0;
+    for (int k = offset + 7; k >= offset; k--) {
+      value = (value << 8) | (bytes[k] & 0xff);
+    }
+    return value;
+  }
+}
@@ -0,0 +1,157 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.datacommons.proto.Debug;
+import org.datacommons.proto.Mcf;
+import org.datacommons.proto.Mcf.McfGraph;
+import org.datacommons.proto.Resolve.ResolveRequest;
+import org.datacommons.proto.Resolve.ResolveResponse;
+
+// A local snapshot of (a part of) the KG, e.g., its schema, StatVars, and places with their
+// external IDs. It answers the lookups that otherwise go to the DC API -- property values of
+// nodes (for existence checks, statType and place names) and resolution of external IDs -- from
+// memory, so runs with a snapshot make no DC calls.
+//
+// A snapshot is loaded from instance MCF files and TFRecord files of McfGraph protos (e.g., a KG
+// export of the ingestion pipeline). Nodes are keyed by their dcid, and nodes with the same dcid
+// are merged.
+//
+// Thread-safe once loaded.
+public class KgSnapshot {
+  private static final Logger logger = LogManager.getLogger(KgSnapshot.class);
+  private static final String RESOLVE_EXPRESSION_PREFIX = "<-";
+  private static final String RESOLVE_EXPRESSION_SUFFIX = "->" + Vocabulary.DCID;
+
+  // dcid -> property -> values
+  private final Map<String, Map<String, List<McfGraph.TypedValue>>> nodes = new HashMap<>();
+  // External ID property -> ID -> dcids, for PLACE_RESOLVABLE_AND_ASSIGNABLE_IDS.
+  private final Map<String, Map<String, List<String>>> externalIds = new HashMap<>();
+
+  // Loads |files|: those ending in .tfrecord or .tfrecord.gz as TFRecords of McfGraph, and the
+  // rest as instance MCF.
+  public static KgSnapshot load(List<Path> files) throws IOException {
+    KgSnapshot snapshot = new KgSnapshot();
+    for (Path file : files) {
+      String name = file.getFileName().toString();
+      if (name.endsWith(".tfrecord") || name.endsWith(".tfrecord.gz")) {
+        try (TfRecordReader reader = new TfRecordReader(file)) {
+          byte[] record;
+          while ((record = reader.next()) != null) {
+            snapshot.addGraph(McfGraph.parseFrom(record));
+          }
+        }
+      } else {
+        // Problems in the snapshot are not problems of the import, so they are not reported.
+        LogWrapper logCtx = new LogWrapper(Debug.Log.newBuilder());
+        McfParser parser = McfParser.init(Mcf.McfType.INSTANCE_MCF, file.toString(), false, logCtx);
+        McfGraph g;
+        while ((g = parser.parseNextNode()) != null) {
+          snapshot.addGraph(g);
+        }
+      }
+      logger.info("Loaded KG snapshot {} ({} nodes so far)", file, snapshot.size());
+    }
+    return snapshot;
+  }
+
+  public void addGraph(McfGraph graph) {
+    for (McfGraph.PropertyValues node : graph.getNodesMap().values()) {
+      String dcid = McfUtil.getPropVal(node, Vocabulary.DCID);
+      if (dcid.isEmpty()) continue;
+      var pvs = nodes.computeIfAbsent(dcid, k -> new HashMap<>());
+      for (var pv : node.getPvsMap().entrySet()) {
+        if (pv.getKey().equals(Vocabulary.DCID)) continue;
+        var values = pvs.computeIfAbsent(pv.getKey(), k -> new ArrayList<>(1));
+        for (var tv : pv.getValue().getTypedValuesList()) {
+          if (!values.contains(tv)) values.add(tv);
+        }
+      }
+      for (var ids : McfUtil.getExternalIds(node).entrySet()) {
+        var idToDcids = externalIds.computeIfAbsent(ids.getKey(), k -> new HashMap<>());
+        for (String id : ids.getValue()) {
+          var dcids = idToDcids.computeIfAbsent(id, k -> new ArrayList<>(1));
+          if (!dcids.contains(dcid)) dcids.add(dcid);
+        }
+      }
+    }
+  }
+
+  public int size() {
+    return nodes.size();
+  }
+
+  // Returns the values of |property| of |dcids| in the format of ApiHelper.fetchPropertyValues():
+  // {dcid: {"out": [{"dcid": ...} or {"value": ...}, ...]}}, with an entry for every dcid.
+  public JsonObject getPropertyValues(List<String> dcids, String property) {
+    JsonObject result = new JsonObject();
+    for (String dcid : dcids) {
+      JsonArray outArray = new JsonArray();
+      var pvs = nodes.get(dcid);
+      var values = pvs == null ? null : pvs.get(property);
+      if (values != null) {
+        for (var tv : values) {
+          JsonObject outObj = new JsonObject();
+          if (tv.getType() == Mcf.ValueType.RESOLVED_REF) {
+            outObj.addProperty("dcid", tv.getValue());
+          } else {
+            outObj.addProperty("value", tv.getValue());
+          }
+          outArray.add(outObj);
+        }
+      }
+      JsonObject outWrapper = new JsonObject();
+      outWrapper.add("out", outArray);
+      result.add(dcid, outWrapper);
+    }
+    return result;
+  }
+
+  // Resolves the nodes of |request| like the DC resolve API. Only property expressions of the form
+  // "<-prop->dcid" with prop an external ID property are supported; nodes of others (e.g.,
+  // coordinates) get no candidates.
+  public ResolveResponse resolve(ResolveRequest request) {
+    String expression = request.getProperty();
+    Map<String, List<String>> idToDcids = null;
+    if (expression.startsWith(RESOLVE_EXPRESSION_PREFIX)
+        && expression.endsWith(RESOLVE_EXPRESSION_SUFFIX)) {
+      String prop =
+          expression.substring(
+              RESOLVE_EXPRESSION_PREFIX.length(),
+              expression.length() - RESOLVE_EXPRESSION_SUFFIX.length());
+      idToDcids = externalIds.get(prop);
+    }
+    ResolveResponse.Builder response = ResolveResponse.newBuilder();
+    for (String node : request.getNodesList()) {
+      var entity = response.addEntitiesBuilder().setNode(node);
+      List<String> dcids = idToDcids == null ? null : idToDcids.get(node);
+      if (dcids == null) continue;
+      for (String dcid : dcids) {
+        entity.addCandidatesBuilder().setDcid(dcid);
+      }
+    }
+    return response.build();
+  }
+}
@@ -0,0 +1,161 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.datacommons.proto.Debug;
+
+// A directory of lint results keyed by a fingerprint of the inputs that produced them (see
+// fingerprint()), so that unchanged files need not be checked again.
+//
+// Each key has a gzipped file of length-delimited LintCacheRow protos and a LintCacheEntry file.
+// The entry is written last, and both files are moved into place atomically, so a key with an
+// entry always has all its rows.
+//
+// Keys can be read and written concurrently, but each key must be written by one writer at a time.
+public class LintCache {
+  private static final Logger logger = LogManager.getLogger(LintCache.class);
+
+  private final Path dir;
+
+  public LintCache(Path dir) throws IOException {
+    this.dir = dir;
+    Files.createDirectories(dir);
+  }
+
+  // Returns a hex SHA-256 digest of |context| and the names and contents of |files|.
+  public static String fingerprint(String context, List<File> files) throws IOException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(context, StandardCharsets.UTF_8);
+    for (File file : files) {
+      hasher.putString(file.getName(), StandardCharsets.UTF_8);
+      hasher.putLong(file.length());
+      hasher.putBytes(
+          com.google.common.io.Files.asByteSource(file).hash(Hashing.sha256()).asBytes());
+    }
+    return hasher.hash().toString();
+  }
+
+  // Returns the entry cached for |key|, or null if there is none (or it is unreadable).
+  public Debug.LintCacheEntry getEntry(String key) {
+    try (InputStream in = new BufferedInputStream(Files.newInputStream(entryPath(key)))) {
+      return Debug.LintCacheEntry.parseFrom(in);
+    } catch (NoSuchFileException e) {
+      return null;
+    } catch (IOException e) {
+      logger.warn("Ignoring unreadable lint cache entry {}: {}", entryPath(key), e.getMessage());
+      return null;
+    }
+  }
+
+  // Returns a reader of the rows cached for |key|. Call only if getEntry(key) is not null.
+  public RowReader readRows(String key) throws IOException {
+    return new RowReader(rowsPath(key));
+  }
+
+  // Returns a writer of the rows and entry for |key|, which replace any cached for it on commit().
+  public Writer newWriter(String key) throws IOException {
+    return new Writer(key);
+  }
+
+  private Path entryPath(String key) {
+    return dir.resolve(key + ".entry.pb");
+  }
+
+  private Path rowsPath(String key) {
+    return dir.resolve(key + ".rows.pb.gz");
+  }
+
+  private static void move(Path from, Path to) throws IOException {
+    Files.move(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  // Not thread-safe.
+  public static class RowReader implements Closeable {
+    private final InputStream in;
+
+    private RowReader(Path path) throws IOException {
+      in = new GZIPInputStream(Files.newInputStream(path), 1 << 16);
+    }
+
+    // Returns the next row, or null at the end.
+    public Debug.LintCacheRow nextRow() throws IOException {
+      return Debug.LintCacheRow.parseDelimitedFrom(in);
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+
+  // Not thread-safe.
+  public class Writer implements Closeable {
+    private final String key;
+    private final Path rowsTemp;
+    private OutputStream rowsOut;
+    private boolean committed = false;
+
+    private Writer(String key) throws IOException {
+      this.key = key;
+      rowsTemp = Files.createTempFile(dir, key, ".rows.tmp");
+      rowsOut = new GZIPOutputStream(Files.newOutputStream(rowsTemp), 1 << 16);
+    }
+
+    public void addRow(Debug.LintCacheRow row) throws IOException {
+      row.writeDelimitedTo(rowsOut);
+    }
+
+    // Moves the rows and then |entry| into place.
+    public void commit(Debug.LintCacheEntry entry) throws IOException {
+      rowsOut.close();
+      rowsOut = null;
+      Files.deleteIfExists(entryPath(key));
+      move(rowsTemp, rowsPath(key));
+      Path entryTemp = Files.createTempFile(dir, key, ".entry.tmp");
+      try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(entryTemp))) {
+        entry.writeTo(out);
+      }
+      move(entryTemp, entryPath(key));
+      committed = true;
+    }
+
+    // Discards the rows if not committed.
+    @Override
+    public void close() throws IOException {
+      if (committed) return;
+      if (rowsOut != null) rowsOut.close();
+      Files.deleteIfExists(rowsTemp);
+    }
+  }
+}
@@ -27,7 +27,9 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
@@ -54,6 +56,8 @@ public class LogWrapper {
 
   private final Path logPath;
   public final boolean persistLog;
+  // If set, counters and entries are also added to the parent, which tracks status.
+  private final LogWrapper parent;
   private Debug.Log.Builder log;
 
   // Update with lock, but read without object lock.
@@ -69,6 +73,7 @@ public class LogWrapper {
     this.log = log;
     this.persistLog = true;
     this.logPath = Paths.get(outputDir.toString(), REPORT_JSON);
+    this.parent = null;
     logger.info(
         "Report written periodically to {}", logPath.toAbsolutePath().normalize().toString());
     lastStatusAt = Instant.now();
@@ -79,6 +84,18 @@ public class LogWrapper {
     this.log = log;
     this.persistLog = false;
     this.logPath = null;
+    this.parent = null;
+    lastStatusAt = Instant.now();
+    initCounterMap();
+  }
+
+  // Creates a log that records the counters and entries added to it (e.g., for one input file),
+  // and adds them to |parent| as well. Status is tracked by the parent.
+  public LogWrapper(LogWrapper parent) {
+    this.log = Debug.Log.newBuilder();
+    this.persistLog = false;
+    this.logPath = null;
+    this.parent = parent;
     lastStatusAt = Instant.now();
     initCounterMap();
   }
@@ -107,17 +124,53 @@ public class LogWrapper {
     log.addStatsCheckSummary(statValidationResult);
   }
 
+  // Lock Note: This happens once per CSV.
+  public synchronized void addPipelineStats(Debug.PipelineStats pipelineStats) {
+    if (parent != null) {
+      parent.addPipelineStats(pipelineStats);
+      return;
+    }
+    if (log == null) return;
+    log.addPipelineStats(pipelineStats);
+  }
+
   public void incrementInfoCounterBy(String counter, int incr) {
+    if (parent != null) parent.incrementInfoCounterBy(counter, incr);
     incrementCounterBy(LEVEL_INFO, counter, incr);
   }
 
   public void incrementWarningCounterBy(String counter, int incr) {
+    if (parent != null) parent.incrementWarningCounterBy(counter, incr);
     incrementCounterBy(LEVEL_WARNING, counter, incr);
   }
 
+  // Adds the counters and entries of |recorded|, a log recorded by LogWrapper(parent) (e.g., in an
+  // earlier run), as if they were added here in the same order.
+  public void addRecordedLog(Debug.Log recorded) {
+    // Entries also count towards their counter.
+    Map<String, Long> numEntries = new HashMap<>();
+    for (Debug.Log.Entry e : recorded.getEntriesList()) {
+      addEntry(
+          e.getLevel(),
+          e.getCounterKey(),
+          e.getUserMessage(),
+          e.getLocation().getFile(),
+          e.getLocation().getLineNumber());
+      numEntries.merge(e.getLevel().name() + "/" + e.getCounterKey(), 1L, Long::sum);
+    }
+    for (var levelAndCounters : recorded.getLevelSummaryMap().entrySet()) {
+      Debug.Log.Level level = Debug.Log.Level.valueOf(levelAndCounters.getKey());
+      for (var kv : levelAndCounters.getValue().getCountersMap().entrySet()) {
+        long incr = kv.getValue() - numEntries.getOrDefault(level.name() + "/" + kv.getKey(), 0L);
+        if (incr > 0) incrementCounterBy(level, kv.getKey(), incr);
+      }
+    }
+  }
+
   // Updates status, provides message and return a boolean indicating if everything was successful.
   // If this returns false, we should bail.
   public boolean trackStatus(long incCount, String thing) throws IOException {
+    if (parent != null) return parent.trackStatus(incCount, thing);
     Instant now = Instant.now();
     currentCount.addAndGet(incCount);
     if (Duration.between(lastStatusAt, now).getSeconds() >= SECONDS_BETWEEN_STATUS) {
@@ -222,7 +275,7 @@ public class LogWrapper {
         + " warning(s)";
   }
 
-  private void incrementCounterBy(Debug.Log.Level level, String counter, int incr) {
+  private void incrementCounterBy(Debug.Log.Level level, String counter, long incr) {
     if (log == null) return;
     counterMaps
         .get(level.getNumber())
@@ -251,6 +304,7 @@ public class LogWrapper {
 
   public void addEntry(
       Debug.Log.Level level, String counter, String message, String file, long lno) {
+    if (parent != null) parent.addEntry(level, counter, message, file, lno);
     if (log == null) return;
     String counterName = counter == null || counter.isEmpty() ? "MissingCounterName" : counter;
     incrementCounterBy(level, counterName, 1);
@@ -0,0 +1,164 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import java.nio.ByteBuffer;
+
+// A hash map from long keys to float values, for very many entries, such as the fingerprints of
+// StatVarObservations in StatChecker. An entry takes a 12-byte slot in an open-addressing table
+// (at most 70% full), rather than the ~80 bytes of boxed keys, values and nodes of a
+// ConcurrentHashMap<Long, Float>, and the tables can be kept off the Java heap. Entries can only be
+// added, not changed or removed.
+//
+// Keys are expected to be well mixed (e.g., fingerprints): their high bits pick one of the
+// segments, and their low bits the slot in it.
+//
+// Thread-safe: each segment is guarded by its own lock.
+final class LongFloatMap {
+  private static final int SEGMENT_BITS = 6;
+  private static final int INITIAL_SEGMENT_SLOTS = 1024;
+  // A table has fewer than 2^31 bytes.
+  private static final int MAX_SEGMENT_SLOTS = 1 << 27;
+  private static final double MAX_LOAD = 0.7;
+  private static final int SLOT_BYTES = Long.BYTES + Integer.BYTES;
+  // Marks empty slots. The entry of this key, if any, is kept outside the table.
+  private static final long EMPTY_KEY = 0;
+
+  private final boolean offHeap;
+  private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+  // If |offHeap|, the tables are allocated as direct buffers.
+  LongFloatMap(boolean offHeap) {
+    this.offHeap = offHeap;
+    for (int i = 0; i < segments.length; i++) {
+      segments[i] = new Segment();
+    }
+  }
+
+  // Adds |value| for |key| if there is no value for it. Returns false if there already is a
+  // different value (compared like Float.equals(), so NaN equals NaN, but 0.0 does not equal -0.0),
+  // true otherwise.
+  boolean putIfAbsentOrEquals(long key, float value) {
+    int bits = Float.floatToIntBits(value);
+    Segment segment = segmentOf(key);
+    synchronized (segment) {
+      return segment.putIfAbsent(key, bits) == bits;
+    }
+  }
+
+  // Returns the value of |key|, or null if there is none.
+  Float get(long key) {
+    Segment segment = segmentOf(key);
+    synchronized (segment) {
+      return segment.get(key);
+    }
+  }
+
+  long size() {
+    long size = 0;
+    for (Segment segment : segments) {
+      synchronized (segment) {
+        size += segment.size;
+      }
+    }
+    return size;
+  }
+
+  private Segment segmentOf(long key) {
+    return segments[(int) (key >>> (Long.SIZE - SEGMENT_BITS))];
+  }
+
+  private final class Segment {
+    private ByteBuffer table;
+    // Number of slots - 1.
+    private int mask;
+    private int size = 0;
+    private boolean hasEmptyKey = false;
+    private int emptyKeyValue;
+
+    Segment() {
+      allocate(INITIAL_SEGMENT_SLOTS);
+    }
+
+    // Returns the value bits of |key|, after adding |bits| for it if it had no value.
+    int putIfAbsent(long key, int bits) {
+      if (key == EMPTY_KEY) {
+        if (!hasEmptyKey) {
+          hasEmptyKey = true;
+          emptyKeyValue = bits;
+          size++;
+        }
+        return emptyKeyValue;
+      }
+      int offset = find(key);
+      if (table.getLong(offset) == key) {
+        return table.getInt(offset + Long.BYTES);
+      }
+      if (size + 1 > MAX_LOAD * (mask + 1)) {
+        grow();
+        offset = find(key);
+      }
+      table.putLong(offset, key);
+      table.putInt(offset + Long.BYTES, bits);
+      size++;
+      return bits;
+    }
+
+    Float get(long key) {
+      if (key == EMPTY_KEY) {
+        return hasEmptyKey ? Float.intBitsToFloat(emptyKeyValue) : null;
+      }
+      int offset = find(key);
+      if (table.getLong(offset) != key) return null;
+      return Float.intBitsToFloat(table.getInt(offset + Long.BYTES));
+    }
+
+    // Returns the offset of the slot of |key|, or of the empty slot it would be added at.
+    private int find(long key) {
+      int slot = (int) key & mask;
+      while (true) {
+        int offset = slot * SLOT_BYTES;
+        long slotKey = table.getLong(offset);
+        if (slotKey == key || slotKey == EMPTY_KEY) return offset;
+        slot = (slot + 1) & mask;
+      }
+    }
+
+    private void grow() {
+      int numSlots = mask + 1;
+      if (numSlots >= MAX_SEGMENT_SLOTS) {
+        throw new IllegalStateException("LongFloatMap segment is full with " + size + " entries");
+      }
+      ByteBuffer oldTable = table;
+      allocate(numSlots * 2);
+      for (int offset = 0; offset < numSlots * SLOT_BYTES; offset += SLOT_BYTES) {
+        long key = oldTable.getLong(offset);
+        if (key != EMPTY_KEY) {
+          int newOffset = find(key);
+          table.putLong(newOffset, key);
+          table.putInt(newOffset + Long.BYTES, oldTable.getInt(offset + Long.BYTES));
+        }
+      }
+    }
+
+    private void allocate(int numSlots) {
+      table =
+          offHeap
+              ? ByteBuffer.allocateDirect(numSlots * SLOT_BYTES)
+              : ByteBuffer.allocate(numSlots * SLOT_BYTES);
+      mask = numSlots - 1;
+    }
+  }
+}
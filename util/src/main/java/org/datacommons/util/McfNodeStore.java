@@ -0,0 +1,200 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.datacommons.proto.Mcf;
+
+// An append-only store of MCF graphs that need to be visited more than once (e.g., instance MCF
+// nodes that are checked, resolved and added to stat checks after all files are loaded).
+//
+// Graphs are kept on the heap until their serialized size adds up to the memory budget. Beyond
+// that, all graphs are spilled to segment files of length-delimited McfGraph protos, which are
+// memory-mapped and decoded one graph at a time on every pass. So a pass over a spilled store
+// holds only the current graph on the heap.
+//
+// Iteration returns graphs in insertion order. Appends are not thread-safe.
+public class McfNodeStore implements Iterable<Mcf.McfGraph>, Closeable {
+  private static final Logger logger = LogManager.getLogger(McfNodeStore.class);
+
+  // Segments are mapped whole, so they must stay well under the 2GB MappedByteBuffer limit.
+  // Allow tests to set this.
+  static long SEGMENT_SIZE_LIMIT = 1L << 30;
+
+  private final long memoryBudgetBytes;
+  private final Path spillDir;
+
+  private final List<Mcf.McfGraph> inMemory = new ArrayList<>();
+  private long inMemoryBytes = 0;
+
+  private final List<Path> segments = new ArrayList<>();
+  private OutputStream segmentOut = null;
+  private long segmentBytes = 0;
+
+  private long size = 0;
+
+  // Spill files are created under |spillDir| (or the system temp dir, if null) once more than
+  // |memoryBudgetBytes| of serialized graphs have been added.
+  public McfNodeStore(long memoryBudgetBytes, Path spillDir) {
+    this.memoryBudgetBytes = memoryBudgetBytes;
+    this.spillDir = spillDir;
+  }
+
+  public void add(Mcf.McfGraph graph) throws IOException {
+    size++;
+    if (!isSpilled()) {
+      inMemory.add(graph);
+      inMemoryBytes += graph.getSerializedSize();
+      if (inMemoryBytes > memoryBudgetBytes) {
+        spill();
+      }
+      return;
+    }
+    append(graph);
+  }
+
+  // Number of graphs added.
+  public long size() {
+    return size;
+  }
+
+  public boolean isSpilled() {
+    return !segments.isEmpty();
+  }
+
+  // Iterates over the graphs in insertion order. Graphs must not be added while an iterator is in
+  // use.
+  @Override
+  public Iterator<Mcf.McfGraph> iterator() {
+    if (!isSpilled()) {
+      return inMemory.iterator();
+    }
+    try {
+      if (segmentOut != null) segmentOut.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    return new SegmentIterator(new ArrayList<>(segments));
+  }
+
+  // Deletes the spill files.
+  @Override
+  public void close() throws IOException {
+    if (segmentOut != null) {
+      segmentOut.close();
+      segmentOut = null;
+    }
+    for (Path segment : segments) {
+      Files.deleteIfExists(segment);
+    }
+    segments.clear();
+    inMemory.clear();
+  }
+
+  private void spill() throws IOException {
+    logger.info(
+        "Spilling {} graphs ({} bytes) to disk, exceeded in-memory budget of {} bytes",
+        inMemory.size(),
+        inMemoryBytes,
+        memoryBudgetBytes);
+    newSegment();
+    for (Mcf.McfGraph graph : inMemory) {
+      append(graph);
+    }
+    inMemory.clear();
+    inMemoryBytes = 0;
+  }
+
+  private void append(Mcf.McfGraph graph) throws IOException {
+    int graphSize = graph.getSerializedSize();
+    long recordSize = graphSize + CodedOutputStream.computeUInt32SizeNoTag(graphSize);
+    if (segmentBytes > 0 && segmentBytes + recordSize > SEGMENT_SIZE_LIMIT) {
+      newSegment();
+    }
+    graph.writeDelimitedTo(segmentOut);
+    segmentBytes += recordSize;
+  }
+
+  private void newSegment() throws IOException {
+    if (segmentOut != null) segmentOut.close();
+    Path segment =
+        spillDir == null
+            ? Files.createTempFile("mcf_node_store", ".pb")
+            : Files.createTempFile(spillDir, "mcf_node_store", ".pb");
+    segment.toFile().deleteOnExit();
+    segments.add(segment);
+    segmentOut = new BufferedOutputStream(Files.newOutputStream(segment), 1 << 16);
+    segmentBytes = 0;
+  }
+
+  private static final class SegmentIterator implements Iterator<Mcf.McfGraph> {
+    private final Iterator<Path> segments;
+    private CodedInputStream current = null;
+
+    SegmentIterator(List<Path> segments) {
+      this.segments = segments.iterator();
+    }
+
+    @Override
+    public boolean hasNext() {
+      try {
+        while (current == null || current.isAtEnd()) {
+          if (!segments.hasNext()) return false;
+          current = CodedInputStream.newInstance(map(segments.next()));
+        }
+        return true;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    @Override
+    public Mcf.McfGraph next() {
+      if (!hasNext()) throw new NoSuchElementException();
+      try {
+        int length = current.readRawVarint32();
+        int oldLimit = current.pushLimit(length);
+        Mcf.McfGraph graph = Mcf.McfGraph.parser().parseFrom(current);
+        current.popLimit(oldLimit);
+        return graph;
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private static MappedByteBuffer map(Path segment) throws IOException {
+      try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+        return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }
+    }
+  }
+}
@@ -104,11 +104,10 @@ public class McfUtil {
     return vals.build();
   }
 
-  // Given a list of MCF graphs, merges common nodes and de-duplicates PVs.
-  public static Mcf.McfGraph mergeGraphs(List<Mcf.McfGraph> graphs) throws AssertionError {
-    if (graphs.isEmpty()) {
-      return Mcf.McfGraph.newBuilder().build();
-    }
+  // Given a list of MCF graphs, merges common nodes and de-duplicates PVs. The graphs are visited
+  // exactly once, in order, so they may be streamed (e.g., from an McfNodeStore).
+  public static Mcf.McfGraph mergeGraphs(Iterable<Mcf.McfGraph> graphs) throws AssertionError {
+    Mcf.McfType type = null;
 
     // node-id -> {prop -> vals}
     HashMap<String, HashMap<String, HashSet<Mcf.McfGraph.TypedValue>>> dedupMap = new HashMap<>();
@@ -116,6 +115,7 @@ public class McfUtil {
     HashMap<String, List<LogLocation.Location>> locationMap = new HashMap<>();
 
     for (Mcf.McfGraph graph : graphs) {
+      if (type == null) type = graph.getType();
       for (Map.Entry<String, Mcf.McfGraph.PropertyValues> node : graph.getNodesMap().entrySet()) {
         for (Map.Entry<String, Mcf.McfGraph.Values> pv : node.getValue().getPvsMap().entrySet()) {
           if (!dedupMap.containsKey(node.getKey())) {
@@ -137,8 +137,11 @@ public class McfUtil {
       }
     }
 
+    if (type == null) {
+      return Mcf.McfGraph.newBuilder().build();
+    }
     Mcf.McfGraph.Builder result = Mcf.McfGraph.newBuilder();
-    result.setType(graphs.get(0).getType());
+    result.setType(type);
     for (Map.Entry<String, HashMap<String, HashSet<Mcf.McfGraph.TypedValue>>> node :
         dedupMap.entrySet()) {
       Mcf.McfGraph.PropertyValues.Builder pvs =
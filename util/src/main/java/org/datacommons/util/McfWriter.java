@@ -0,0 +1,229 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+import org.datacommons.proto.Mcf;
+
+// Writes MCF graphs to a file in UTF-8, in the same format as McfUtil.serializeMcfGraph(g, false),
+// but without building intermediate strings. Serialized bytes go into a reusable buffer. A full
+// buffer is written out (and compressed, if requested) by a background thread while the next one
+// fills up.
+//
+// Not thread-safe.
+public class McfWriter implements Closeable {
+  public enum Compression {
+    NONE,
+    GZIP
+  }
+
+  private static final int BUFFER_SIZE = 1 << 20;
+  private static final int GZIP_BUFFER_SIZE = 1 << 16;
+  // Longest UTF-8 encoding of a single char (or surrogate pair).
+  private static final int MAX_CHAR_BYTES = 4;
+
+  // Threads that write out full buffers. Each writer has at most one pending flush.
+  private static final ExecutorService flushService =
+      Executors.newCachedThreadPool(
+          r -> {
+            Thread t = new Thread(r, "mcf-writer-flush");
+            t.setDaemon(true);
+            return t;
+          });
+
+  private final FileChannel channel;
+  // Compressing stream over |channel|, or null if the output is not compressed.
+  private final OutputStream gzipOut;
+  private byte[] buffer;
+  private byte[] spare;
+  private int length = 0;
+  private Future<?> pendingFlush = null;
+
+  public McfWriter(Path path, Compression compression) throws IOException {
+    this(path, compression, BUFFER_SIZE);
+  }
+
+  McfWriter(Path path, Compression compression, int bufferSize) throws IOException {
+    channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE,
+            StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING);
+    gzipOut =
+        compression == Compression.GZIP
+            ? new GZIPOutputStream(Channels.newOutputStream(channel), GZIP_BUFFER_SIZE)
+            : null;
+    buffer = new byte[Math.max(bufferSize, MAX_CHAR_BYTES)];
+    spare = new byte[buffer.length];
+  }
+
+  // Appends |graph| to the file.
+  public void write(Mcf.McfGraph graph) throws IOException {
+    String sentinel = graph.getType() == Mcf.McfType.TEMPLATE_MCF ? "Template: " : "Node: ";
+    for (Map.Entry<String, Mcf.McfGraph.PropertyValues> kv : graph.getNodesMap().entrySet()) {
+      Mcf.McfGraph.PropertyValues node = kv.getValue();
+      if (node.hasErrorMessage()) {
+        // Print location and user-message.
+        for (var loc : node.getLocationsList()) {
+          append("# From ");
+          append(loc.getFile());
+          append(":");
+          append(Long.toString(loc.getLineNumber()));
+          append("\n");
+        }
+        append("# Error: ");
+        append(node.getErrorMessage());
+        append("\n");
+      }
+      append(sentinel);
+      append(kv.getKey());
+      append("\n");
+      for (Map.Entry<String, Mcf.McfGraph.Values> pv : node.getPvsMap().entrySet()) {
+        boolean first = true;
+        for (Mcf.McfGraph.TypedValue tv : pv.getValue().getTypedValuesList()) {
+          // Only untyped values can serialize to an empty string, which is skipped.
+          if (tv.getValue().isEmpty()
+              && tv.getType() != Mcf.ValueType.TEXT
+              && tv.getType() != Mcf.ValueType.RESOLVED_REF) {
+            continue;
+          }
+          if (first) {
+            append(pv.getKey());
+            append(": ");
+            first = false;
+          } else {
+            append(", ");
+          }
+          appendValue(tv);
+        }
+        if (!first) append("\n");
+      }
+      append("\n");
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      flush();
+      awaitFlush();
+      if (gzipOut != null) gzipOut.close();
+    } finally {
+      channel.close();
+    }
+  }
+
+  private void appendValue(Mcf.McfGraph.TypedValue tv) throws IOException {
+    if (tv.getType() == Mcf.ValueType.TEXT) {
+      append("\"");
+      append(tv.getValue());
+      append("\"");
+    } else if (tv.getType() == Mcf.ValueType.RESOLVED_REF) {
+      append(Vocabulary.DCID_PREFIX);
+      append(tv.getValue());
+    } else {
+      append(tv.getValue());
+    }
+  }
+
+  // Appends |s| encoded in UTF-8. As with String.getBytes(), unpaired surrogates become '?'.
+  private void append(String s) throws IOException {
+    int n = s.length();
+    for (int i = 0; i < n; i++) {
+      if (length + MAX_CHAR_BYTES > buffer.length) flush();
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        buffer[length++] = (byte) c;
+      } else if (c < 0x800) {
+        buffer[length++] = (byte) (0xc0 | (c >> 6));
+        buffer[length++] = (byte) (0x80 | (c & 0x3f));
+      } else if (Character.isSurrogate(c)) {
+        if (Character.isHighSurrogate(c)
+            && i + 1 < n
+            && Character.isLowSurrogate(s.charAt(i + 1))) {
+          int cp = Character.toCodePoint(c, s.charAt(++i));
+          buffer[length++] = (byte) (0xf0 | (cp >> 18));
+          buffer[length++] = (byte) (0x80 | ((cp >> 12) & 0x3f));
+          buffer[length++] = (byte) (0x80 | ((cp >> 6) & 0x3f));
+          buffer[length++] = (byte) (0x80 | (cp & 0x3f));
+        } else {
+          buffer[length++] = (byte) '?';
+        }
+      } else {
+        buffer[length++] = (byte) (0xe0 | (c >> 12));
+        buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+        buffer[length++] = (byte) (0x80 | (c & 0x3f));
+      }
+    }
+  }
+
+  // Hands the current buffer to a flush thread, and continues with the spare one once the previous
+  // flush (if any) is done with it.
+  private void flush() throws IOException {
+    if (length == 0) return;
+    awaitFlush();
+    byte[] full = buffer;
+    int fullLength = length;
+    pendingFlush =
+        flushService.submit(
+            () -> {
+              writeOut(full, fullLength);
+              return null;
+            });
+    buffer = spare;
+    spare = full;
+    length = 0;
+  }
+
+  private void writeOut(byte[] bytes, int len) throws IOException {
+    if (gzipOut != null) {
+      gzipOut.write(bytes, 0, len);
+      return;
+    }
+    ByteBuffer bb = ByteBuffer.wrap(bytes, 0, len);
+    while (bb.hasRemaining()) {
+      channel.write(bb);
+    }
+  }
+
+  private void awaitFlush() throws IOException {
+    if (pendingFlush == null) return;
+    try {
+      pendingFlush.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while writing MCF", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+      throw new IOException("Failed to write MCF", e.getCause());
+    } finally {
+      pendingFlush = null;
+    }
+  }
+}
@@ -0,0 +1,385 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.datacommons.proto.Mcf.McfStatVarObsSeries;
+
+// Groups StatVarObservation series by key with bounded memory (e.g., for the optimized graph of a
+// CSV with tens of millions of series).
+//
+// Series are grouped in a map on the heap until their serialized size adds up to the memory
+// budget. The map is then sorted by key and written to a run file of length-delimited series, and
+// grouping continues with an empty map. merge() does a k-way merge of the runs (and the series
+// left in memory), so it holds only one series per run on the heap. Groupers that are merged
+// together (e.g., for the chunks of a split CSV) should be flush()ed once they are done, so that
+// only the groupers still being added to hold series in memory.
+//
+// Adds are not thread-safe.
+public class ObsSeriesGrouper implements Closeable {
+  private static final Logger logger = LogManager.getLogger(ObsSeriesGrouper.class);
+
+  // Keys are ordered by their serialized bytes, which is stable across runs (unlike the hash
+  // order of the protos).
+  private static final Comparator<ByteString> KEY_ORDER =
+      ByteString.unsignedLexicographicalComparator();
+
+  // Once there are this many runs, they are merged into one, which bounds the number of files open
+  // at a time when merging. Allow tests to set this.
+  static int MAX_RUNS = 64;
+
+  private final long memoryBudgetBytes;
+  private final Path spillDir;
+
+  private Map<ByteString, McfStatVarObsSeries.Builder> inMemory = new HashMap<>();
+  private long inMemoryBytes = 0;
+  private List<Path> runs = new ArrayList<>();
+
+  // Run files are created under |spillDir| (or the system temp dir, if null) whenever more than
+  // |memoryBudgetBytes| of serialized series have been added since the last run.
+  public ObsSeriesGrouper(long memoryBudgetBytes, Path spillDir) {
+    this.memoryBudgetBytes = memoryBudgetBytes;
+    this.spillDir = spillDir;
+  }
+
+  // Adds the observations of |series| to the group of its key.
+  public void add(McfStatVarObsSeries series) throws IOException {
+    ByteString key = series.getKey().toByteString();
+    McfStatVarObsSeries.Builder group = inMemory.get(key);
+    if (group == null) {
+      inMemory.put(key, series.toBuilder());
+    } else {
+      group.addAllSvObsList(series.getSvObsListList());
+    }
+    inMemoryBytes += series.getSerializedSize();
+    if (inMemoryBytes > memoryBudgetBytes) {
+      logger.info(
+          "Spilling {} observation series ({} bytes) to disk, exceeded in-memory budget of {} bytes",
+          inMemory.size(),
+          inMemoryBytes,
+          memoryBudgetBytes);
+      spill();
+    }
+  }
+
+  // Writes the series grouped in memory to a run, once no more series will be added.
+  public void flush() throws IOException {
+    if (!inMemory.isEmpty()) spill();
+  }
+
+  public boolean isSpilled() {
+    return !runs.isEmpty();
+  }
+
+  // Returns the grouped series of all |groupers| in key order. A key added to several groupers (or
+  // spilled to several runs) comes out once, with its observations in the order of |groupers| and
+  // then of addition. The groupers must not be added to while the iterator is in use, and the
+  // iterator must be closed before the groupers are.
+  public static MergeIterator merge(List<ObsSeriesGrouper> groupers) {
+    List<Run> sources = new ArrayList<>();
+    try {
+      compactRuns(groupers);
+      for (ObsSeriesGrouper grouper : groupers) {
+        for (Path run : grouper.runs) {
+          sources.add(new FileRun(sources.size(), run));
+        }
+        sources.add(new MemoryRun(sources.size(), grouper.sortedInMemory()));
+      }
+      return new MergeIterator(sources);
+    } catch (IOException e) {
+      closeAll(sources, e);
+      throw new UncheckedIOException(e);
+    } catch (UncheckedIOException e) {
+      closeAll(sources, e);
+      throw e;
+    }
+  }
+
+  // Deletes the run files.
+  @Override
+  public void close() throws IOException {
+    for (Path run : runs) {
+      Files.deleteIfExists(run);
+    }
+    runs.clear();
+    inMemory.clear();
+    inMemoryBytes = 0;
+  }
+
+  private void spill() throws IOException {
+    runs.add(writeRun(sortedInMemory().iterator()));
+    inMemory = new HashMap<>();
+    inMemoryBytes = 0;
+    if (runs.size() >= MAX_RUNS) {
+      compactRuns();
+    }
+  }
+
+  // Merges all the runs into one.
+  private void compactRuns() throws IOException {
+    logger.info("Merging {} spilled runs of observation series", runs.size());
+    runs = new ArrayList<>(List.of(mergeRuns(runs)));
+  }
+
+  // Merges |runs| (in order) into a new run file, and deletes them.
+  private Path mergeRuns(List<Path> runs) throws IOException {
+    List<Run> sources = new ArrayList<>();
+    Path merged;
+    try {
+      for (Path run : runs) {
+        sources.add(new FileRun(sources.size(), run));
+      }
+      merged = writeRun(new MergeIterator(sources));
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      closeAll(sources, null);
+    }
+    for (Path run : runs) {
+      Files.deleteIfExists(run);
+    }
+    return merged;
+  }
+
+  // Merges consecutive runs of |groupers| until there are at most MAX_RUNS of them altogether,
+  // which bounds the number of files open at a time when merging the groupers. A merged run takes
+  // the place of its runs in the first of their groupers, which keeps the order of observations.
+  private static void compactRuns(List<ObsSeriesGrouper> groupers) throws IOException {
+    int numRuns = 0;
+    for (ObsSeriesGrouper grouper : groupers) numRuns += grouper.runs.size();
+    if (numRuns <= MAX_RUNS) return;
+    // The series left in memory come after the runs of their grouper, so they are spilled to be
+    // merged along with the runs of later groupers.
+    for (ObsSeriesGrouper grouper : groupers) grouper.flush();
+    while (true) {
+      // The grouper of every run, in merge order.
+      List<ObsSeriesGrouper> owners = new ArrayList<>();
+      List<Path> runs = new ArrayList<>();
+      for (ObsSeriesGrouper grouper : groupers) {
+        for (Path run : grouper.runs) {
+          owners.add(grouper);
+          runs.add(run);
+        }
+      }
+      if (runs.size() <= MAX_RUNS) return;
+      logger.info("Merging {} spilled runs of observation series", runs.size());
+      for (int start = 0; start < runs.size(); start += MAX_RUNS) {
+        List<Path> batch = runs.subList(start, Math.min(start + MAX_RUNS, runs.size()));
+        if (batch.size() == 1) continue;
+        ObsSeriesGrouper first = owners.get(start);
+        int position = first.runs.indexOf(batch.get(0));
+        Path merged = first.mergeRuns(batch);
+        for (int i = start; i < start + batch.size(); i++) {
+          owners.get(i).runs.remove(runs.get(i));
+        }
+        first.runs.add(position, merged);
+      }
+    }
+  }
+
+  // Closes |runs|, adding any failure to |error| as suppressed (or logging it, if |error| is null).
+  private static void closeAll(List<Run> runs, Exception error) {
+    for (Run run : runs) {
+      try {
+        run.close();
+      } catch (UncheckedIOException e) {
+        if (error != null) {
+          error.addSuppressed(e);
+        } else {
+          logger.warn("Unable to close a run of observation series", e);
+        }
+      }
+    }
+  }
+
+  // Writes |series| (in key order) to a new run file.
+  private Path writeRun(Iterator<McfStatVarObsSeries> series) throws IOException {
+    Path run =
+        spillDir == null
+            ? Files.createTempFile("obs_series_run", ".pb")
+            : Files.createTempFile(spillDir, "obs_series_run", ".pb");
+    run.toFile().deleteOnExit();
+    try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(run), 1 << 16)) {
+      while (series.hasNext()) {
+        series.next().writeDelimitedTo(out);
+      }
+    }
+    return run;
+  }
+
+  private List<McfStatVarObsSeries> sortedInMemory() {
+    List<ByteString> keys = new ArrayList<>(inMemory.keySet());
+    keys.sort(KEY_ORDER);
+    List<McfStatVarObsSeries> result = new ArrayList<>(keys.size());
+    for (ByteString key : keys) {
+      result.add(inMemory.get(key).build());
+    }
+    return result;
+  }
+
+  // A sorted sequence of series, with the current one (and its key) at the head.
+  private abstract static class Run implements Closeable {
+    final int index;
+    McfStatVarObsSeries head;
+    ByteString headKey;
+
+    Run(int index) {
+      this.index = index;
+    }
+
+    // Moves to the next series and returns true, or returns false at the end.
+    boolean advance() throws IOException {
+      head = read();
+      headKey = head == null ? null : head.getKey().toByteString();
+      return head != null;
+    }
+
+    abstract McfStatVarObsSeries read() throws IOException;
+
+    @Override
+    public void close() {}
+  }
+
+  private static final class MemoryRun extends Run {
+    private final Iterator<McfStatVarObsSeries> series;
+
+    MemoryRun(int index, List<McfStatVarObsSeries> series) {
+      super(index);
+      this.series = series.iterator();
+    }
+
+    @Override
+    McfStatVarObsSeries read() {
+      return series.hasNext() ? series.next() : null;
+    }
+  }
+
+  private static final class FileRun extends Run {
+    private final InputStream in;
+    private final CodedInputStream coded;
+
+    FileRun(int index, Path run) throws IOException {
+      super(index);
+      in = new BufferedInputStream(Files.newInputStream(run), 1 << 16);
+      coded = CodedInputStream.newInstance(in);
+      // Series can be larger than the default limit of 64MB.
+      coded.setSizeLimit(Integer.MAX_VALUE);
+    }
+
+    @Override
+    McfStatVarObsSeries read() throws IOException {
+      if (coded.isAtEnd()) return null;
+      int length = coded.readRawVarint32();
+      int oldLimit = coded.pushLimit(length);
+      McfStatVarObsSeries series = McfStatVarObsSeries.parser().parseFrom(coded);
+      coded.popLimit(oldLimit);
+      coded.resetSizeCounter();
+      return series;
+    }
+
+    @Override
+    public void close() {
+      try {
+        in.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  // Merges runs in key order. Closing it closes the runs it has not read to the end (e.g., when
+  // the caller stops early because of a failure).
+  public static final class MergeIterator implements Iterator<McfStatVarObsSeries>, Closeable {
+    // Runs ordered by their head key, then by their position, so equal keys merge in order.
+    private final PriorityQueue<Run> queue =
+        new PriorityQueue<>(
+            Comparator.<Run, ByteString>comparing(r -> r.headKey, KEY_ORDER)
+                .thenComparingInt(r -> r.index));
+    // The runs not yet read to the end.
+    private final List<Run> open;
+
+    // The caller closes |runs| if this throws.
+    private MergeIterator(List<Run> runs) {
+      open = new ArrayList<>(runs);
+      for (Run run : runs) {
+        push(run);
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return !queue.isEmpty();
+    }
+
+    @Override
+    public McfStatVarObsSeries next() {
+      if (queue.isEmpty()) throw new NoSuchElementException();
+      Run first = queue.poll();
+      ByteString key = first.headKey;
+      McfStatVarObsSeries series = first.head;
+      McfStatVarObsSeries.Builder merged = null;
+      push(first);
+      while (!queue.isEmpty() && queue.peek().headKey.equals(key)) {
+        Run run = queue.poll();
+        if (merged == null) merged = series.toBuilder();
+        merged.addAllSvObsList(run.head.getSvObsListList());
+        push(run);
+      }
+      return merged == null ? series : merged.build();
+    }
+
+    @Override
+    public void close() {
+      queue.clear();
+      List<Run> runs = new ArrayList<>(open);
+      open.clear();
+      closeAll(runs, null);
+    }
+
+    // Advances |run| and re-queues it, or closes it at the end.
+    private void push(Run run) {
+      try {
+        if (run.advance()) {
+          queue.add(run);
+        } else {
+          open.remove(run);
+          run.close();
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+}
@@ -5,7 +5,7 @@ import com.google.common.hash.Hashing;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -13,6 +13,7 @@ import java.util.TreeMap;
 import org.datacommons.proto.Debug.DataPoint;
 import org.datacommons.proto.Debug.DataPoint.DataValue;
 import org.datacommons.proto.Debug.StatValidationResult;
+import org.datacommons.proto.LogLocation.Location;
 import org.datacommons.proto.Mcf.McfGraph;
 import org.datacommons.proto.Mcf.McfGraph.TypedValue;
 import org.datacommons.proto.Mcf.ValueType;
@@ -24,32 +25,93 @@ import org.jfree.data.time.TimeSeries;
 public class PlaceSeriesSummary {
 
   public static class SeriesSummary {
+    private static final int INITIAL_CAPACITY = 4;
+    // A value's entry in |types| is its ValueType number, plus this flag for a NUMBER whose text is
+    // written like Double.toString() (e.g., "24.0") rather than like Long.toString() (e.g., "24").
+    private static final int WRITTEN_AS_DOUBLE = 0x40;
+
     StatValidationResult.Builder validationResult;
-    // Key is date of each datapoint. Use treemap here to keep the dates sorted.
-    TreeMap<String, DataPoint> timeSeries;
+
+    // The values of the series, one per StatVarObservation, kept in columns rather than as
+    // DataPoint protos, which take several times the memory. Values are appended as they are
+    // extracted, and sorted by date (keeping the order of the values of a date) before they are
+    // read. DataPoints are only built for the series and points that are reported.
+    private int numValues = 0;
+    private String[] dates = new String[INITIAL_CAPACITY];
+    private byte[] types = new byte[INITIAL_CAPACITY];
+    // Only set for NUMBER values.
+    private double[] numbers = new double[INITIAL_CAPACITY];
+    private String[] files = new String[INITIAL_CAPACITY];
+    private long[] lineNumbers = new long[INITIAL_CAPACITY];
+    // Allocated on first use: the text of the values that is not rebuilt from |numbers| (e.g.,
+    // references, or "1e3"), and the CSV columns of the values.
+    private String[] texts = null;
+    private String[] columns = null;
+    // Values that do not have exactly one file location, or lack a type or text, kept as is.
+    private Map<Integer, DataValue> otherValues = null;
+
+    // Set when sorted: the distinct dates, and the index of the first value of each of them, with
+    // dateStarts[numDates] == numValues.
+    private int numDates = 0;
+    private String[] sortedDates = null;
+    private int[] dateStarts = null;
+
+    // Returns a series with the values of |timeSeries|, keeping its order and DataPoints.
+    static SeriesSummary fromDataPoints(List<DataPoint> timeSeries) {
+      SeriesSummary series = new SeriesSummary();
+      String[] sortedDates = new String[timeSeries.size()];
+      int[] dateStarts = new int[timeSeries.size() + 1];
+      for (int i = 0; i < timeSeries.size(); i++) {
+        DataPoint dp = timeSeries.get(i);
+        sortedDates[i] = dp.getDate();
+        dateStarts[i] = series.numValues;
+        for (DataValue dataValue : dp.getValuesList()) {
+          series.add(dp.getDate(), dataValue.getValue(), dataValue.getLocationsList());
+        }
+      }
+      dateStarts[timeSeries.size()] = series.numValues;
+      series.numDates = timeSeries.size();
+      series.sortedDates = sortedDates;
+      series.dateStarts = dateStarts;
+      return series;
+    }
 
     public StatValidationResult.Builder getValidationResult() {
       return this.validationResult;
     }
 
     public TreeMap<String, DataPoint> getTimeSeries() {
-      return this.timeSeries;
+      TreeMap<String, DataPoint> timeSeries = new TreeMap<>();
+      for (DataPoint dp : getTimeSeriesAsList()) {
+        timeSeries.put(dp.getDate(), dp);
+      }
+      return timeSeries;
     }
 
     public List<DataPoint> getTimeSeriesAsList() {
-      return new ArrayList<>(this.getTimeSeries().values());
+      sortByDate();
+      List<DataPoint> timeSeries = new ArrayList<>(numDates);
+      for (int i = 0; i < numDates; i++) {
+        timeSeries.add(toDataPoint(i));
+      }
+      return timeSeries;
+    }
+
+    public int getNumDates() {
+      sortByDate();
+      return numDates;
     }
 
     public String getDatesString() {
-      return String.join(" | ", this.timeSeries.keySet());
+      sortByDate();
+      return String.join(" | ", Arrays.asList(sortedDates).subList(0, numDates));
     }
 
     public String getValueString() {
+      sortByDate();
       List<String> valueStrings = new ArrayList<String>();
-
-      for (DataPoint dv : this.timeSeries.values()) {
-        TypedValue tv = dv.getValues(0).getValue();
-        valueStrings.add(tv.getValue());
+      for (int i = 0; i < numDates; i++) {
+        valueStrings.add(getValue(dateStarts[i]));
       }
       return String.join(" | ", valueStrings);
     }
@@ -58,9 +120,9 @@ public class PlaceSeriesSummary {
       // We can return the type of the first DataPoint as the type of the series.
       // Whether the types in this series is consistent is checked by
       // StatChecker.checkSeriesTypeInconsistencies
-      if (this.getTimeSeries().size() > 0) {
-        return SeriesSummary.getTypeOfDataPoint(
-            new ArrayList<>(this.getTimeSeries().values()).get(0));
+      sortByDate();
+      if (numValues > 0) {
+        return getType(dateStarts[0]);
       } else {
         // This should not really happen since SeriesSummary is only created
         // with a node to add and that node is added right after in extractSeriesFromNode
@@ -69,14 +131,13 @@ public class PlaceSeriesSummary {
     }
 
     public String getTimeSeriesSVGChart() {
+      sortByDate();
       TimeSeries timeSeries = new TimeSeries("ts");
 
-      // this.timeSeries is kept sorted with a TreeMap, so we simply add the
-      // datapoints in the order they are retrieved from .entrySet() and they
-      // are in the correct sorted order
-      for (Map.Entry<String, DataPoint> timeSeriesDataPoint : this.timeSeries.entrySet()) {
+      // The dates are sorted, so we simply add the datapoints in order.
+      for (int i = 0; i < numDates; i++) {
 
-        LocalDateTime localDateTime = StringUtil.getValidISO8601Date(timeSeriesDataPoint.getKey());
+        LocalDateTime localDateTime = StringUtil.getValidISO8601Date(sortedDates[i]);
         if (localDateTime == null) continue;
 
         // The JFreeChart library we are using does not support years before 1900.
@@ -84,15 +145,15 @@ public class PlaceSeriesSummary {
           return "<b>Charts for years before 1900 are not supported yet</b>";
         }
 
-        DataPoint dp = timeSeriesDataPoint.getValue();
-        if (SeriesSummary.getTypeOfDataPoint(dp) != ValueType.NUMBER) continue;
+        int value = dateStarts[i];
+        if (getType(value) != ValueType.NUMBER) continue;
 
         timeSeries.addOrUpdate(
             new Day(
                 localDateTime.getDayOfMonth(),
                 localDateTime.getMonthValue(),
                 localDateTime.getYear()),
-            getValueOfDataPointAsNumber(dp));
+            getNumber(value));
       }
 
       if (timeSeries.getItemCount() == 0) {
@@ -101,6 +162,181 @@ public class PlaceSeriesSummary {
       return StatVarSummary.constructSVGChartFromTimeSeries(timeSeries);
     }
 
+    // Appends a value of the series. The strings should be shared between series where possible.
+    synchronized void add(String date, TypedValue value, List<Location> locations) {
+      if (numValues == types.length) {
+        grow(numValues * 2);
+      }
+      int i = numValues++;
+      dates[i] = date;
+      ValueType type = value.getType();
+      int typeBits = type.getNumber();
+      String text = value.getValue();
+      boolean hasText = false;
+      if (type == ValueType.NUMBER) {
+        try {
+          double number = Double.parseDouble(text);
+          numbers[i] = number;
+          if (!Long.toString((long) number).equals(text)) {
+            if (Double.toString(number).equals(text)) {
+              typeBits |= WRITTEN_AS_DOUBLE;
+            } else {
+              hasText = true;
+            }
+          }
+        } catch (NumberFormatException e) {
+          numbers[i] = Double.NaN;
+          hasText = true;
+        }
+      } else {
+        hasText = true;
+      }
+      types[i] = (byte) typeBits;
+      if (hasText) {
+        if (texts == null) texts = new String[types.length];
+        texts[i] = text;
+      }
+      if (value.hasColumn()) {
+        if (columns == null) columns = new String[types.length];
+        columns[i] = value.getColumn();
+      }
+      if (locations.size() == 1 && locations.get(0).hasFile() && locations.get(0).hasLineNumber()) {
+        files[i] = locations.get(0).getFile();
+        lineNumbers[i] = locations.get(0).getLineNumber();
+      }
+      if (files[i] == null || !value.hasType() || !value.hasValue()) {
+        if (otherValues == null) otherValues = new HashMap<>();
+        otherValues.put(
+            i, DataValue.newBuilder().setValue(value).addAllLocations(locations).build());
+      }
+      sortedDates = null;
+      dateStarts = null;
+    }
+
+    // Sorts the values by date, if they are not yet. Must be called before the package-private
+    // getters below, which take the index of a date or of a value in the sorted series.
+    synchronized void sortByDate() {
+      if (dateStarts != null) return;
+      Integer[] order = new Integer[numValues];
+      boolean sorted = true;
+      for (int i = 0; i < numValues; i++) {
+        order[i] = i;
+        sorted &= i == 0 || dates[i - 1].compareTo(dates[i]) <= 0;
+      }
+      if (!sorted) {
+        // A stable sort, so the values of a date stay in the order they were added.
+        Arrays.sort(order, (a, b) -> dates[a].compareTo(dates[b]));
+      }
+      reorder(order);
+      numDates = 0;
+      sortedDates = new String[numValues];
+      dateStarts = new int[numValues + 1];
+      for (int i = 0; i < numValues; i++) {
+        if (i == 0 || !dates[i].equals(dates[i - 1])) {
+          sortedDates[numDates] = dates[i];
+          dateStarts[numDates++] = i;
+        }
+      }
+      dateStarts[numDates] = numValues;
+    }
+
+    int numDates() {
+      return numDates;
+    }
+
+    String getDate(int date) {
+      return sortedDates[date];
+    }
+
+    // The values of a date are those in [getValuesStart(date), getValuesEnd(date)).
+    int getValuesStart(int date) {
+      return dateStarts[date];
+    }
+
+    int getValuesEnd(int date) {
+      return dateStarts[date + 1];
+    }
+
+    ValueType getType(int value) {
+      return ValueType.forNumber(types[value] & ~WRITTEN_AS_DOUBLE);
+    }
+
+    // Only for NUMBER values.
+    double getNumber(int value) {
+      return numbers[value];
+    }
+
+    // The text of the value, as it was in the TypedValue.
+    String getValue(int value) {
+      if (texts != null && texts[value] != null) return texts[value];
+      return (types[value] & WRITTEN_AS_DOUBLE) != 0
+          ? Double.toString(numbers[value])
+          : Long.toString((long) numbers[value]);
+    }
+
+    DataPoint toDataPoint(int date) {
+      DataPoint.Builder dp = DataPoint.newBuilder().setDate(sortedDates[date]);
+      for (int i = dateStarts[date]; i < dateStarts[date + 1]; i++) {
+        dp.addValues(toDataValue(i));
+      }
+      return dp.build();
+    }
+
+    private DataValue toDataValue(int value) {
+      if (otherValues != null && otherValues.containsKey(value)) return otherValues.get(value);
+      TypedValue.Builder typedValue =
+          TypedValue.newBuilder().setType(getType(value)).setValue(getValue(value));
+      if (columns != null && columns[value] != null) typedValue.setColumn(columns[value]);
+      return DataValue.newBuilder()
+          .setValue(typedValue)
+          .addLocations(
+              Location.newBuilder().setFile(files[value]).setLineNumber(lineNumbers[value]))
+          .build();
+    }
+
+    private void grow(int capacity) {
+      dates = Arrays.copyOf(dates, capacity);
+      types = Arrays.copyOf(types, capacity);
+      numbers = Arrays.copyOf(numbers, capacity);
+      files = Arrays.copyOf(files, capacity);
+      lineNumbers = Arrays.copyOf(lineNumbers, capacity);
+      if (texts != null) texts = Arrays.copyOf(texts, capacity);
+      if (columns != null) columns = Arrays.copyOf(columns, capacity);
+    }
+
+    // Puts the value at order[i] at index i, trimming the columns to the number of values.
+    private void reorder(Integer[] order) {
+      String[] oldDates = dates;
+      byte[] oldTypes = types;
+      double[] oldNumbers = numbers;
+      String[] oldFiles = files;
+      long[] oldLineNumbers = lineNumbers;
+      String[] oldTexts = texts;
+      String[] oldColumns = columns;
+      Map<Integer, DataValue> oldOtherValues = otherValues;
+      dates = new String[numValues];
+      types = new byte[numValues];
+      numbers = new double[numValues];
+      files = new String[numValues];
+      lineNumbers = new long[numValues];
+      texts = oldTexts != null ? new String[numValues] : null;
+      columns = oldColumns != null ? new String[numValues] : null;
+      otherValues = oldOtherValues != null ? new HashMap<>() : null;
+      for (int i = 0; i < numValues; i++) {
+        int from = order[i];
+        dates[i] = oldDates[from];
+        types[i] = oldTypes[from];
+        numbers[i] = oldNumbers[from];
+        files[i] = oldFiles[from];
+        lineNumbers[i] = oldLineNumbers[from];
+        if (texts != null) texts[i] = oldTexts[from];
+        if (columns != null) columns[i] = oldColumns[from];
+        if (otherValues != null && oldOtherValues.containsKey(from)) {
+          otherValues.put(i, oldOtherValues.get(from));
+        }
+      }
+    }
+
     // Helper functions to extract fields of interest from a DataPoint object.
     public static ValueType getTypeOfDataPoint(DataPoint dp) {
       return dp.getValues(0).getValue().getType();
@@ -121,34 +357,26 @@ public class PlaceSeriesSummary {
   // scaling factor, and unit of the stat var observations of the series summary
   private final Map<String, Map<Long, SeriesSummary>> svSeriesSummaryMap = new HashMap<>();
 
+  // Dates, file names and CSV columns of the values of the series.
+  private final Map<String, String> internedStrings = new HashMap<>();
+
   // name of the place in English
   private String placeName;
 
   // Given a statVarObservation node, extract time series info and save it into svSeriesSummaryMap.
   public synchronized void extractSeriesFromNode(McfGraph.PropertyValues node) {
-    StatValidationResult.Builder vres = StatValidationResult.newBuilder();
-    // Add information about the node to StatValidationResult
-    vres.setPlaceDcid(McfUtil.getPropVal(node, Vocabulary.OBSERVATION_ABOUT));
-    vres.setStatVarDcid(McfUtil.getPropVal(node, Vocabulary.VARIABLE_MEASURED));
-    vres.setMeasurementMethod(McfUtil.getPropVal(node, Vocabulary.MEASUREMENT_METHOD));
-    vres.setObservationPeriod(McfUtil.getPropVal(node, Vocabulary.OBSERVATION_PERIOD));
-    vres.setScalingFactor(McfUtil.getPropVal(node, Vocabulary.SCALING_FACTOR));
-    vres.setUnit(McfUtil.getPropVal(node, Vocabulary.UNIT));
+    StatValidationResult.Builder vres = newValidationResult(node);
 
     // Get the series summary for this node. If the series summary for this node is not already
     // in the seriesSummaryMap, add it to the seriesSummaryMap.
-    Hasher hasher = Hashing.farmHashFingerprint64().newHasher();
-    hasher.putString(vres.toString(), StandardCharsets.UTF_8);
-    Long hash = hasher.hash().asLong();
+    long hash = getSeriesHash(vres);
     Map<Long, SeriesSummary> seriesSummaryMap =
         svSeriesSummaryMap.computeIfAbsent(vres.getStatVarDcid(), k -> new HashMap<>());
-    SeriesSummary summary;
-    if (seriesSummaryMap.containsKey(hash)) {
-      summary = seriesSummaryMap.get(hash);
-    } else {
+    SeriesSummary summary = seriesSummaryMap.get(hash);
+    if (summary == null) {
       summary = new SeriesSummary();
       summary.validationResult = vres;
-      summary.timeSeries = new TreeMap<>();
+      seriesSummaryMap.put(hash, summary);
     }
 
     // Add the value of this StatVarObservation node to the timeseries of this node's SeriesSummary.
@@ -158,19 +386,41 @@ public class PlaceSeriesSummary {
     // The value will already have been parsed into a TypedValue, so we can depend on the fact that
     // typedValue.getType() is not the default enum value (UNKNOWN_VALUE_TYPE).
     TypedValue typedValue = McfUtil.getPropTvs(node, Vocabulary.VALUE).get(0);
-    DataValue dataVal =
-        DataValue.newBuilder()
-            .setValue(typedValue)
-            .addAllLocations(node.getLocationsList())
-            .build();
-    DataPoint.Builder dataPoint = DataPoint.newBuilder().setDate(obsDate);
-    if (summary.timeSeries.containsKey(obsDate)) {
-      dataPoint = summary.timeSeries.get(obsDate).toBuilder();
-    }
-    dataPoint.addValues(dataVal);
-    summary.timeSeries.put(obsDate, dataPoint.build());
-    seriesSummaryMap.put(hash, summary);
-    svSeriesSummaryMap.put(vres.getStatVarDcid(), seriesSummaryMap);
+    if (typedValue.hasColumn()) {
+      typedValue = typedValue.toBuilder().setColumn(intern(typedValue.getColumn())).build();
+    }
+    List<Location> locations = node.getLocationsList();
+    if (locations.size() == 1) {
+      Location location = locations.get(0);
+      locations = List.of(location.toBuilder().setFile(intern(location.getFile())).build());
+    }
+    summary.add(intern(obsDate), typedValue, locations);
+  }
+
+  // Returns a StatValidationResult with information about the series of a StatVarObservation node.
+  static StatValidationResult.Builder newValidationResult(McfGraph.PropertyValues node) {
+    StatValidationResult.Builder vres = StatValidationResult.newBuilder();
+    vres.setPlaceDcid(McfUtil.getPropVal(node, Vocabulary.OBSERVATION_ABOUT));
+    vres.setStatVarDcid(McfUtil.getPropVal(node, Vocabulary.VARIABLE_MEASURED));
+    vres.setMeasurementMethod(McfUtil.getPropVal(node, Vocabulary.MEASUREMENT_METHOD));
+    vres.setObservationPeriod(McfUtil.getPropVal(node, Vocabulary.OBSERVATION_PERIOD));
+    vres.setScalingFactor(McfUtil.getPropVal(node, Vocabulary.SCALING_FACTOR));
+    vres.setUnit(McfUtil.getPropVal(node, Vocabulary.UNIT));
+    return vres;
+  }
+
+  // Returns a hash of the place dcid, stat var dcid, measurement method, observation period,
+  // scaling factor, and unit of a series.
+  static long getSeriesHash(StatValidationResult.Builder vres) {
+    Hasher hasher = Hashing.farmHashFingerprint64().newHasher();
+    hasher.putString(vres.toString(), StandardCharsets.UTF_8);
+    return hasher.hash().asLong();
+  }
+
+  // Returns the copy of |s| shared by the series of this place. Must be called with the lock held.
+  private String intern(String s) {
+    String shared = internedStrings.putIfAbsent(s, s);
+    return shared != null ? shared : s;
   }
 
   public Map<String, Map<Long, SeriesSummary>> getSvSeriesSummaryMap() {
@@ -185,9 +435,10 @@ public class PlaceSeriesSummary {
     for (Map.Entry<String, Map<Long, SeriesSummary>> svSeriesSummary :
         svSeriesSummaryMap.entrySet()) {
       StatVarSummary summary = new StatVarSummary();
-      List<DataPoint> seriesDataPoints = new ArrayList<>();
+      // The date and first value of each date of the series.
+      List<Map.Entry<String, String>> seriesDataPoints = new ArrayList<>();
       for (SeriesSummary seriesSummary : svSeriesSummary.getValue().values()) {
-        summary.numObservations += seriesSummary.timeSeries.size();
+        summary.numObservations += seriesSummary.getNumDates();
         if (!seriesSummary.validationResult.getMeasurementMethod().isEmpty()) {
           summary.mMethods.add(seriesSummary.validationResult.getMeasurementMethod());
         }
@@ -200,15 +451,18 @@ public class PlaceSeriesSummary {
         if (!seriesSummary.validationResult.getObservationPeriod().isEmpty()) {
           summary.observationPeriods.add(seriesSummary.validationResult.getObservationPeriod());
         }
-        seriesDataPoints.addAll(seriesSummary.timeSeries.values());
+        for (int i = 0; i < seriesSummary.numDates(); i++) {
+          seriesDataPoints.add(
+              Map.entry(
+                  seriesSummary.getDate(i),
+                  seriesSummary.getValue(seriesSummary.getValuesStart(i))));
+        }
       }
-      seriesDataPoints.sort(Comparator.comparing(DataPoint::getDate));
+      seriesDataPoints.sort(Map.Entry.comparingByKey());
       seriesDataPoints.forEach(
           dp -> {
-            if (!dp.getValuesList().isEmpty()) {
-              summary.seriesDates.add(dp.getDate());
-              summary.seriesValues.add(dp.getValues(0).getValue().getValue());
-            }
+            summary.seriesDates.add(dp.getKey());
+            summary.seriesValues.add(dp.getValue());
           });
       statVarSummaryMap.put(svSeriesSummary.getKey(), summary);
     }
@@ -3,6 +3,7 @@ package org.datacommons.util;
 import static java.util.stream.Collectors.toList;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
@@ -16,7 +17,12 @@ import org.datacommons.proto.Resolve.ResolveRequest;
 import org.datacommons.proto.Resolve.ResolveResponse;
 import org.datacommons.proto.Resolve.ResolveResponse.Entity.Candidate;
 
-/** Resolves nodes with properties by calling the DC resolution API. */
+/**
+ * Resolves nodes with properties by calling the DC resolution API.
+ *
+ * <p>Values are sent as soon as a property has a full chunk of them, so the API calls overlap with
+ * reading the rest of the input, and {@link #drain} only sends and waits for the tail.
+ */
 final class PropertyResolver {
   private static final String DCID_PROPERTY = "dcid";
 
@@ -34,6 +40,11 @@ final class PropertyResolver {
   private final Map<String, Map<String, Set<String>>> resolvedProperties =
       new ConcurrentHashMap<>();
 
+  // Submitted values that have not been sent yet, per property. Guarded by "this".
+  private final Map<String, List<String>> pendingProperties = new HashMap<>();
+  // Calls sent so far. Guarded by "this".
+  private final List<CompletableFuture<Void>> sentCalls = new ArrayList<>();
+
   private final ReconClient client;
   private final LogWrapper logCtx;
 
@@ -42,7 +53,7 @@ final class PropertyResolver {
     this.logCtx = logCtx;
   }
 
-  boolean submit(PropertyValues node) {
+  synchronized boolean submit(PropertyValues node) {
     if (!McfUtil.isResolvableType(node)) return false;
     boolean submitted = false;
     for (Map.Entry<String, Set<String>> propVals : McfUtil.getExternalIds(node).entrySet()) {
@@ -51,7 +62,16 @@ final class PropertyResolver {
       Map<String, Set<String>> resolvedProp = resolvedProperties.get(prop);
       for (String val : vals) {
         if (resolvedProp == null || !resolvedProp.containsKey(val)) {
-          unresolvedProperties.computeIfAbsent(prop, k -> ConcurrentHashMap.newKeySet()).add(val);
+          if (unresolvedProperties
+              .computeIfAbsent(prop, k -> ConcurrentHashMap.newKeySet())
+              .add(val)) {
+            List<String> pending = pendingProperties.computeIfAbsent(prop, k -> new ArrayList<>());
+            pending.add(val);
+            if (pending.size() >= client.getChunkSize()) {
+              send(prop, pending);
+              pendingProperties.remove(prop);
+            }
+          }
           submitted = true;
         }
       }
@@ -59,26 +79,33 @@ final class PropertyResolver {
     return submitted;
   }
 
+  // Sends the values not sent yet, and waits for all the calls.
   void drain() {
-    List<CompletableFuture<Void>> futures = new ArrayList<>();
-    for (Map.Entry<String, Set<String>> entry : unresolvedProperties.entrySet()) {
-      String prop = entry.getKey();
-      Set<String> values = entry.getValue();
-      if (!values.isEmpty()) {
-        ResolveRequest request =
-            ResolveRequest.newBuilder()
-                .addAllNodes(values)
-                .setProperty(getPropertyExpression(prop))
-                .build();
-        futures.add(
-            client
-                .resolveAsync(request)
-                .thenAccept(response -> populateResolvedCandidates(prop, response)));
+    List<CompletableFuture<Void>> futures;
+    synchronized (this) {
+      for (Map.Entry<String, List<String>> entry : pendingProperties.entrySet()) {
+        send(entry.getKey(), entry.getValue());
       }
+      pendingProperties.clear();
+      futures = new ArrayList<>(sentCalls);
+      sentCalls.clear();
     }
     CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
   }
 
+  // Must be called with the lock held.
+  private void send(String prop, List<String> values) {
+    ResolveRequest request =
+        ResolveRequest.newBuilder()
+            .addAllNodes(values)
+            .setProperty(getPropertyExpression(prop))
+            .build();
+    sentCalls.add(
+        client
+            .resolveAsync(request)
+            .thenAccept(response -> populateResolvedCandidates(prop, response)));
+  }
+
   private void populateResolvedCandidates(String prop, ResolveResponse response) {
     Map<String, Set<String>> propResolved =
         resolvedProperties.computeIfAbsent(prop, k -> new ConcurrentHashMap<>());
@@ -8,14 +8,22 @@ import static org.datacommons.util.StringUtil.msgToJson;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.Message;
 import com.google.protobuf.util.JsonFormat;
+import dev.failsafe.Failsafe;
+import dev.failsafe.RetryPolicy;
+import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.datacommons.proto.Resolve.ResolveRequest;
 import org.datacommons.proto.Resolve.ResolveResponse;
 
@@ -24,27 +32,88 @@ import org.datacommons.proto.Resolve.ResolveResponse;
  *
  * <p>Currently it only resolves coordinates. If the number of coordinates to resolve are greater
  * than {@code chunkSize}, the API calls will be partitioned into max {@code chunkSize}d batches.
+ *
+ * <p>The chunks are sent through an {@link AimdLimiter}, so only as many are in flight as the API
+ * keeps up with, and chunks that fail or are throttled (HTTP 429 or 5xx) are retried with jittered
+ * exponential backoff. The latency of each chunk, retries included, is counted in the log.
+ *
+ * <p>If created with a {@link KgSnapshot}, requests are resolved from the snapshot instead, with no
+ * API calls.
  */
 public class ReconClient {
   static final String NUM_API_CALLS_COUNTER = "ReconClient_NumApiCalls";
+  static final String NUM_RETRIES_COUNTER = "ReconClient_NumRetries";
+
+  private static final Logger logger = LogManager.getLogger(ReconClient.class);
 
   private static final int DEFAULT_CHUNK_SIZE = 500;
   private static final String RESOLVE_API_PATH = "/v2/resolve";
 
+  // Concurrency limits of the chunks in flight.
+  static final int INITIAL_CONCURRENT_CALLS = 4;
+  static final int MAX_CONCURRENT_CALLS = 32;
+
+  // Retry configuration. Allow tests to set these.
+  static int MAX_RETRIES = 5;
+  static long INITIAL_RETRY_DELAY_MILLIS = 500;
+  static long MAX_RETRY_DELAY_MILLIS = 16000;
+  private static final double RETRY_JITTER_FACTOR = 0.5;
+
   private final int chunkSize;
 
   private final HttpClient httpClient;
 
   private final LogWrapper logWrapper;
 
+  private final KgSnapshot snapshot;
+
+  private final DcApiConfig apiConfig;
+
+  private final AimdLimiter limiter;
+
   public ReconClient(HttpClient httpClient, LogWrapper logWrapper) {
     this(httpClient, logWrapper, DEFAULT_CHUNK_SIZE);
   }
 
   public ReconClient(HttpClient httpClient, LogWrapper logWrapper, int chunkSize) {
+    this(httpClient, null, logWrapper, chunkSize);
+  }
+
+  public ReconClient(
+      HttpClient httpClient, KgSnapshot snapshot, LogWrapper logWrapper, int chunkSize) {
+    this(
+        httpClient,
+        snapshot,
+        logWrapper,
+        chunkSize,
+        DcApiConfigs.getConfig(),
+        new AimdLimiter(INITIAL_CONCURRENT_CALLS, 1, MAX_CONCURRENT_CALLS));
+  }
+
+  // Allows tests to point the client at a stub server, and to inspect the limiter.
+  ReconClient(
+      HttpClient httpClient,
+      KgSnapshot snapshot,
+      LogWrapper logWrapper,
+      int chunkSize,
+      DcApiConfig apiConfig,
+      AimdLimiter limiter) {
     this.httpClient = httpClient;
+    this.snapshot = snapshot;
     this.logWrapper = logWrapper;
     this.chunkSize = chunkSize;
+    this.apiConfig = apiConfig;
+    this.limiter = limiter;
+  }
+
+  // Number of nodes sent per API call.
+  int getChunkSize() {
+    return chunkSize;
+  }
+
+  // Whether requests are resolved from a KG snapshot rather than by calling DC.
+  boolean usesSnapshot() {
+    return snapshot != null;
   }
 
   public ResolveResponse resolve(ResolveRequest request) {
@@ -60,6 +129,9 @@ public class ReconClient {
     if (request.getNodesCount() < 1) {
       return CompletableFuture.completedFuture(defaultResponse);
     }
+    if (snapshot != null) {
+      return CompletableFuture.completedFuture(snapshot.resolve(request));
+    }
 
     // Partition request into chunkSize batches.
     // e.g. if chunkSize = 2 then:
@@ -69,7 +141,7 @@ public class ReconClient {
             .map(chunk -> request.toBuilder().clearNodes().addAllNodes(chunk).build())
             .collect(toList());
 
-    // Call API for each chunked request in parallel.
+    // Call API for each chunked request in parallel, as far as the limiter allows.
     List<CompletableFuture<ResolveResponse>> chunkedResponseFutures =
         chunkedRequests.stream()
             .map(chunkedRequest -> callApi(chunkedRequest, defaultResponse))
@@ -93,18 +165,83 @@ public class ReconClient {
 
   private <T extends Message> CompletableFuture<T> callApi(
       Message requestMessage, T responseDefaultInstance) {
-    logWrapper.incrementInfoCounterBy(NUM_API_CALLS_COUNTER, 1);
-    HttpRequest request = buildRequest(requestMessage, DcApiConfigs.getConfig());
-    return httpClient
-        .sendAsync(request, BodyHandlers.ofString())
-        .thenApply(
-            response -> {
+    HttpRequest request = buildRequest(requestMessage, apiConfig);
+    RetryPolicy<HttpResponse<String>> retryPolicy =
+        RetryPolicy.<HttpResponse<String>>builder()
+            .handle(IOException.class)
+            .handleResultIf(response -> isRetryable(response.statusCode()))
+            .withMaxRetries(MAX_RETRIES)
+            .withBackoff(
+                Duration.ofMillis(INITIAL_RETRY_DELAY_MILLIS),
+                Duration.ofMillis(MAX_RETRY_DELAY_MILLIS))
+            .withJitter(RETRY_JITTER_FACTOR)
+            .onRetry(
+                event -> {
+                  logWrapper.incrementInfoCounterBy(NUM_RETRIES_COUNTER, 1);
+                  logger.warn(
+                      "Resolve API call failed (attempt "
+                          + (event.getAttemptCount() + 1)
+                          + "/"
+                          + (MAX_RETRIES + 1)
+                          + "), retrying: "
+                          + (event.getLastException() != null
+                              ? event.getLastException().getMessage()
+                              : "HTTP " + event.getLastResult().statusCode()));
+                })
+            .build();
+    long startNanos = System.nanoTime();
+    return Failsafe.with(retryPolicy)
+        .getStageAsync(
+            () ->
+                limiter.submit(
+                    () -> {
+                      logWrapper.incrementInfoCounterBy(NUM_API_CALLS_COUNTER, 1);
+                      return httpClient.sendAsync(request, BodyHandlers.ofString());
+                    },
+                    response -> isOverloaded(response.statusCode())))
+        .handle(
+            (response, error) -> {
+              countLatency(Duration.ofNanos(System.nanoTime() - startNanos));
+              if (error == null && response.statusCode() != 200) {
+                error =
+                    new IOException("Resolve API call failed with HTTP " + response.statusCode());
+              }
+              if (error != null) {
+                logWrapper.incrementWarningCounterBy("ReconClient_FailedApiCalls", 1);
+                throw error instanceof CompletionException
+                    ? (CompletionException) error
+                    : new CompletionException(error);
+              }
               Message.Builder responseMessageBuilder = responseDefaultInstance.newBuilderForType();
               fromJson(response.body().trim(), responseMessageBuilder);
               return (T) responseMessageBuilder.build();
             });
   }
 
+  // Counts the latency of a chunk, retries included, in coarse buckets.
+  private void countLatency(Duration latency) {
+    long millis = latency.toMillis();
+    logWrapper.incrementInfoCounterBy("ReconClient_ApiMillis", (int) Math.min(millis, 1 << 30));
+    String bucket;
+    if (millis < 1000) {
+      bucket = "ReconClient_ApiLatency_Under1s";
+    } else if (millis < 10000) {
+      bucket = "ReconClient_ApiLatency_1To10s";
+    } else {
+      bucket = "ReconClient_ApiLatency_Over10s";
+    }
+    logWrapper.incrementInfoCounterBy(bucket, 1);
+  }
+
+  private static boolean isRetryable(int statusCode) {
+    return statusCode == 429 || statusCode >= 500;
+  }
+
+  // Whether the server asks us to slow down, rather than fails the request.
+  private static boolean isOverloaded(int statusCode) {
+    return statusCode == 429 || statusCode == 503;
+  }
+
   static HttpRequest buildRequest(Message requestMessage, DcApiConfig config) {
     HttpRequest.Builder requestBuilder =
         HttpRequest.newBuilder(URI.create(config.apiRoot() + RESOLVE_API_PATH))
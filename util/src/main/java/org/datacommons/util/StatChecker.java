@@ -24,11 +24,14 @@ import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import org.datacommons.proto.Debug;
 import org.datacommons.proto.Debug.DataPoint;
-import org.datacommons.proto.Debug.DataPoint.DataValue;
 import org.datacommons.proto.Debug.Log.Level;
 import org.datacommons.proto.Debug.StatValidationResult;
 import org.datacommons.proto.Debug.StatValidationResult.StatValidationEntry;
@@ -44,8 +47,9 @@ import org.datacommons.util.SummaryReportGenerator.StatVarSummary;
 // Concurrency of map objects are handled by:
 // a. using a ConcurrentMap when methods that use the map are on a hot path and it is ok for access
 //    to the map to be race-y (samplePlaces and svObsValues).
-// b. making methods that access the map synchronized because when methods are not on a hot path and
-//    it is not ok for access to the map to be race-y (seriesSummaryMap).
+// b. striping the series and StatVar summaries, which are added to on the hot path, by place and
+//    StatVar DCID, so threads adding different places and StatVars rarely wait on each other. The
+//    stripes are merged, in DCID order, by the methods that read the summaries.
 public class StatChecker {
   private static final int MAX_PLACES_FOR_TYPE_INFERRED_NS = 5;
   private static final int MAX_PLACES_FOR_TYPELESS_NS = 25;
@@ -73,18 +77,19 @@ public class StatChecker {
           "StatsCheck_Data_Holes");
   private static final Set<String> TYPE_INFERRED_PLACE_NAMESPACES = Set.of("geoId", "nuts");
   private static final int NUM_SUMMARY_ENTRIES_PER_COUNTER = 10;
+  private static final int NUM_STRIPES = 32;
   private final LogWrapper logCtx;
-  // key is place dcid
-  private final Map<String, PlaceSeriesSummary> placeSeriesSummaryMap;
-  private final Map<String, StatVarSummary> svSummaryMap;
+  private final Stripe[] stripes;
   // key is generated by getSamplePlacesKey, value is set of place dcids
   private final ConcurrentMap<String, Set<String>> samplePlaces;
   private final boolean shouldGenerateSamplePlaces;
   // Tracks global state on StatVarObservations to detect whether there are multiple of the
   // same StatVarObservation with inconsistent values. The key is a hash made up of a set of
   // properties that distinguish a StatVarObservation and the value is the first value seen of that
-  // StatVarObservation.
-  private final ConcurrentMap<Long, Float> svObValues;
+  // StatVarObservation. There is an entry per observation, so this is a primitive map.
+  private final LongFloatMap svObValues;
+  // Checks the series of the places that are not sample places, if set.
+  private final StreamingSeriesChecker streamingChecker;
   private final String EMPTY_PROP_STRING = "EMPTY_PROP";
   private StatVarState statVarState;
   private ExistenceChecker existenceChecker;
@@ -99,11 +104,48 @@ public class StatChecker {
       StatVarState statVarState,
       ExistenceChecker existenceChecker,
       boolean checkMeasurementResult) {
+    this(logCtx, samplePlaces, statVarState, existenceChecker, checkMeasurementResult, false);
+  }
+
+  // If |offHeapSvObValues|, the values of StatVarObservations (tracked for value inconsistencies)
+  // are kept off the Java heap.
+  public StatChecker(
+      LogWrapper logCtx,
+      Set<String> samplePlaces,
+      StatVarState statVarState,
+      ExistenceChecker existenceChecker,
+      boolean checkMeasurementResult,
+      boolean offHeapSvObValues) {
+    this(
+        logCtx,
+        samplePlaces,
+        statVarState,
+        existenceChecker,
+        checkMeasurementResult,
+        offHeapSvObValues,
+        0);
+  }
+
+  // If |maxStreamingSeries| is positive, the series of places other than the sample places are
+  // also checked (for 3-sigma, fluctuations and dates), keeping a fixed amount of state for each
+  // of up to that many series.
+  public StatChecker(
+      LogWrapper logCtx,
+      Set<String> samplePlaces,
+      StatVarState statVarState,
+      ExistenceChecker existenceChecker,
+      boolean checkMeasurementResult,
+      boolean offHeapSvObValues,
+      int maxStreamingSeries) {
     this.logCtx = logCtx;
-    this.placeSeriesSummaryMap = new HashMap<>();
+    this.stripes = new Stripe[NUM_STRIPES];
+    for (int i = 0; i < NUM_STRIPES; i++) {
+      this.stripes[i] = new Stripe();
+    }
     this.samplePlaces = new ConcurrentHashMap<>();
-    this.svObValues = new ConcurrentHashMap<>();
-    this.svSummaryMap = new HashMap<>();
+    this.svObValues = new LongFloatMap(offHeapSvObValues);
+    this.streamingChecker =
+        maxStreamingSeries > 0 ? new StreamingSeriesChecker(maxStreamingSeries) : null;
     if (samplePlaces == null) {
       this.shouldGenerateSamplePlaces = true;
     } else {
@@ -127,9 +169,7 @@ public class StatChecker {
 
   // Given a graph, extract stat var info and time series info (about the chosen sample places) from
   // the statVarObservation nodes.
-  //
-  // TODO (chejennifer): Look into optimizing this so that there can be less contention
-  public synchronized void extractStatsFromGraph(McfGraph graph) {
+  public void extractStatsFromGraph(McfGraph graph) {
     for (Map.Entry<String, McfGraph.PropertyValues> nodeEntry : graph.getNodesMap().entrySet()) {
       McfGraph.PropertyValues node = nodeEntry.getValue();
       // We will extract basic stat var information from every StatVarObservation nodes
@@ -137,13 +177,28 @@ public class StatChecker {
       // We will only extract series information from StatVarObservation nodes about sample places
       String placeDcid = McfUtil.getPropVal(node, Vocabulary.OBSERVATION_ABOUT);
       if (shouldExtractSeriesInfo(placeDcid)) {
-        placeSeriesSummaryMap
-            .computeIfAbsent(placeDcid, k -> new PlaceSeriesSummary())
-            .extractSeriesFromNode(node);
+        Stripe stripe = stripeOf(placeDcid);
+        PlaceSeriesSummary placeSeriesSummary;
+        synchronized (stripe) {
+          placeSeriesSummary =
+              stripe.placeSeriesSummaries.computeIfAbsent(placeDcid, k -> new PlaceSeriesSummary());
+        }
+        // PlaceSeriesSummary is synchronized by itself.
+        placeSeriesSummary.extractSeriesFromNode(node);
+      } else if (streamingChecker != null && !placeDcid.isEmpty()) {
+        streamingChecker.add(node);
       }
     }
   }
 
+  // Returns whether extractStatsFromGraph() or checkSvObsInGraph() use |node|, so that other nodes
+  // can be left out of graphs passed to them.
+  public static boolean usesNode(McfGraph.PropertyValues node) {
+    return !McfUtil.getPropVal(node, Vocabulary.VARIABLE_MEASURED).isEmpty()
+        || !McfUtil.getPropVal(node, Vocabulary.OBSERVATION_ABOUT).isEmpty()
+        || McfUtil.isSvObWithNumberValue(node);
+  }
+
   // Given a graph, for each node that is a statVarObservation node with a number value, check for
   // any value inconsistencies. Return false if there are any svObsValueInconsistencies found.
   public boolean checkSvObsInGraph(McfGraph graph) {
@@ -159,65 +214,125 @@ public class StatChecker {
   // Iterate through seriesSummaries, perform a list of checks (value inconsistencies, sigma
   // variance, percent fluctuations, holes in dates, invalid dates, etc) and add these results to
   // the logCtx.
+  //
+  // The checks of each series only touch its own result builder (and counters), so they run in
+  // parallel on the common fork-join pool. The results are then added in the order of the series
+  // (by place dcid), so the entries kept under NUM_SUMMARY_ENTRIES_PER_COUNTER do not depend on
+  // the scheduling.
   public synchronized void check() throws IOException, InterruptedException {
     Map<String, Integer> countersRemaining = new HashMap<>();
     for (String counterKey : COUNTER_KEYS) {
       countersRemaining.put(counterKey, NUM_SUMMARY_ENTRIES_PER_COUNTER);
     }
-    for (PlaceSeriesSummary placeSeriesSummary : placeSeriesSummaryMap.values()) {
+    if (checkMeasurementResult) {
+      prefetchMeasurementResultStatTypes();
+    }
+    List<SeriesSummary> seriesSummaries = new ArrayList<>();
+    for (PlaceSeriesSummary placeSeriesSummary : getPlaceSeriesSummaryMap().values()) {
       for (Map<Long, SeriesSummary> seriesSummaryMap :
           placeSeriesSummary.getSvSeriesSummaryMap().values()) {
-        for (SeriesSummary seriesSummary : seriesSummaryMap.values()) {
-          String svDcid = seriesSummary.getValidationResult().getStatVarDcid();
-          List<DataPoint> timeSeries = seriesSummary.getTimeSeriesAsList();
+        seriesSummaries.addAll(seriesSummaryMap.values());
+      }
+    }
+    List<Callable<Void>> tasks = new ArrayList<>(seriesSummaries.size());
+    for (SeriesSummary seriesSummary : seriesSummaries) {
+      tasks.add(
+          () -> {
+            checkSeries(seriesSummary);
+            return null;
+          });
+    }
+    for (Future<Void> future : ForkJoinPool.commonPool().invokeAll(tasks)) {
+      try {
+        future.get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+        throw new IOException("Failed to check series", e.getCause());
+      }
+    }
 
-          StatValidationResult.Builder resBuilder = seriesSummary.validationResult;
+    for (SeriesSummary seriesSummary : seriesSummaries) {
+      String svDcid = seriesSummary.getValidationResult().getStatVarDcid();
+      StatValidationResult.Builder resBuilder = seriesSummary.validationResult;
 
-          // General checks; these don't depend on the type of the values.
+      if (seriesSummary.getValueType() == ValueType.RESOLVED_REF && checkMeasurementResult) {
+        checkMeasurementResult(svDcid, seriesSummary.getTimeSeriesAsList());
+      }
 
-          // Check that the ValueType of all values are the same
-          checkSeriesTypeInconsistencies(timeSeries, resBuilder, logCtx);
-          // Check inconsistent values (sawtooth).
-          checkSeriesValueInconsistencies(timeSeries, resBuilder, logCtx);
-          // Check for holes in dates, invalid dates, etc.
-          checkDates(timeSeries, resBuilder, logCtx);
+      // add result to log.
+      addSummaryEntry(resBuilder, countersRemaining);
+    }
+    // The series of the other places fill up the entries left.
+    if (streamingChecker != null) {
+      for (StatValidationResult result :
+          streamingChecker.check(logCtx, NUM_SUMMARY_ENTRIES_PER_COUNTER)) {
+        addSummaryEntry(result.toBuilder(), countersRemaining);
+      }
+    }
+    // Drain the existence check calls that potentially have been submitted by
+    // calls to checkMeasurementResult.
+    if (existenceChecker != null && checkMeasurementResult) {
+      existenceChecker.drainRemoteCalls();
+    }
+  }
 
-          ValueType type = seriesSummary.getValueType();
+  // Adds |result| to the log, if it has a counter that there are entries remaining for.
+  private void addSummaryEntry(
+      StatValidationResult.Builder result, Map<String, Integer> countersRemaining) {
+    if (!result.getValidationCountersList().isEmpty() && !countersRemaining.isEmpty()) {
+      // only add entry if result contains a validation counter that we still want to add
+      // entries for.
+      boolean shouldAddEntry = false;
+      for (StatValidationEntry entry : result.getValidationCountersList()) {
+        String counterKey = entry.getCounterKey();
+        if (countersRemaining.containsKey(counterKey)) {
+          shouldAddEntry = true;
+          countersRemaining.compute(counterKey, (k, v) -> v != null ? v - 1 : 0);
+          if (countersRemaining.get(counterKey) < 1) countersRemaining.remove(counterKey);
+        }
+      }
+      if (shouldAddEntry) logCtx.addStatsCheckSummaryEntry(result.build());
+    }
+  }
 
-          if (type == ValueType.NUMBER) {
-            // Check N-Sigma variance.
-            checkSigmaDivergence(timeSeries, resBuilder, logCtx);
-            // Check N-Percent fluctuations.
-            checkPercentFluctuations(timeSeries, resBuilder, logCtx);
-          }
+  // Runs the checks that only depend on the series itself, adding their results to its
+  // validationResult.
+  private void checkSeries(SeriesSummary seriesSummary) {
+    seriesSummary.sortByDate();
+    StatValidationResult.Builder resBuilder = seriesSummary.validationResult;
 
-          if (type == ValueType.RESOLVED_REF && checkMeasurementResult) {
-            checkMeasurementResult(svDcid, timeSeries);
-          }
+    // General checks; these don't depend on the type of the values.
+
+    // Check that the ValueType of all values are the same
+    checkSeriesTypeInconsistencies(seriesSummary, resBuilder, logCtx);
+    // Check inconsistent values (sawtooth).
+    checkSeriesValueInconsistencies(seriesSummary, resBuilder, logCtx);
+    // Check for holes in dates, invalid dates, etc.
+    checkDates(seriesSummary, resBuilder, logCtx);
+
+    if (seriesSummary.getValueType() == ValueType.NUMBER) {
+      // Check N-Sigma variance.
+      checkSigmaDivergence(seriesSummary, resBuilder, logCtx);
+      // Check N-Percent fluctuations.
+      checkPercentFluctuations(seriesSummary, resBuilder, logCtx);
+    }
+  }
 
-          // add result to log.
-          if (!resBuilder.getValidationCountersList().isEmpty() && !countersRemaining.isEmpty()) {
-            // only add entry if resBuilder contains a validation counter that we still want to add
-            // entries for.
-            boolean shouldAddEntry = false;
-            for (StatValidationEntry entry : resBuilder.getValidationCountersList()) {
-              String counterKey = entry.getCounterKey();
-              if (countersRemaining.containsKey(counterKey)) {
-                shouldAddEntry = true;
-                countersRemaining.compute(counterKey, (k, v) -> v != null ? v - 1 : 0);
-                if (countersRemaining.get(counterKey) < 1) countersRemaining.remove(counterKey);
-              }
-            }
-            if (shouldAddEntry) logCtx.addStatsCheckSummaryEntry(resBuilder.build());
+  // Fetches the statTypes of the SVs of the series that checkMeasurementResult() will be called
+  // for, in batches, rather than one SV at a time.
+  private void prefetchMeasurementResultStatTypes() {
+    Set<String> svDcids = new HashSet<>();
+    for (PlaceSeriesSummary placeSeriesSummary : getPlaceSeriesSummaryMap().values()) {
+      for (Map<Long, SeriesSummary> seriesSummaryMap :
+          placeSeriesSummary.getSvSeriesSummaryMap().values()) {
+        for (SeriesSummary seriesSummary : seriesSummaryMap.values()) {
+          if (seriesSummary.getValueType() == ValueType.RESOLVED_REF) {
+            svDcids.add(seriesSummary.getValidationResult().getStatVarDcid());
           }
         }
       }
     }
-    // Drain the existence check calls that potentially have been submitted by
-    // calls to checkMeasurementResult.
-    if (existenceChecker != null && checkMeasurementResult) {
-      existenceChecker.drainRemoteCalls();
-    }
+    statVarState.prefetchStatTypes(svDcids);
   }
 
   // This feature is not within check() because it uses ExistenceChecker instead
@@ -225,9 +340,8 @@ public class StatChecker {
   //
   // It still lives in this file, at least temporarily, because we are performing
   // measurementResult checks on only sample places right now. That is because
-  // the current implementation synchronously fetches the statTypes of unknown
-  // StatVars from the API, and we don't want to pay that performance cost for
-  // all nodes.
+  // the statTypes of unknown StatVars are fetched from the API (in batches, by
+  // check()), and we don't want to pay that performance cost for all nodes.
   public synchronized void checkMeasurementResult(String svDcid, List<DataPoint> timeSeries)
       throws IOException, InterruptedException {
 
@@ -272,12 +386,26 @@ public class StatChecker {
     }
   }
 
+  // Returns the series summaries of the sample places, keyed and sorted by place dcid.
   public Map<String, PlaceSeriesSummary> getPlaceSeriesSummaryMap() {
-    return this.placeSeriesSummaryMap;
+    Map<String, PlaceSeriesSummary> placeSeriesSummaryMap = new TreeMap<>();
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        placeSeriesSummaryMap.putAll(stripe.placeSeriesSummaries);
+      }
+    }
+    return placeSeriesSummaryMap;
   }
 
+  // Returns the StatVar summaries, keyed and sorted by StatVar dcid.
   public Map<String, StatVarSummary> getSVSummaryMap() {
-    return this.svSummaryMap;
+    Map<String, StatVarSummary> svSummaryMap = new TreeMap<>();
+    for (Stripe stripe : stripes) {
+      synchronized (stripe) {
+        svSummaryMap.putAll(stripe.svSummaries);
+      }
+    }
+    return svSummaryMap;
   }
 
   // Only extract series information for a statVarObservation node that is about a sample place.
@@ -290,11 +418,16 @@ public class StatChecker {
     // belongs has empty space, the sample place will be added to the
     // samplePlaces map
     if (shouldGenerateSamplePlaces) {
-      samplePlaces.computeIfAbsent(placekey, k -> new HashSet<>());
-
-      // If the the bucket has space, add the sample place
-      if (samplePlacesBucketHasSpace(placeDcid, placekey)) {
-        samplePlaces.get(placekey).add(placeDcid);
+      Set<String> bucket =
+          samplePlaces.computeIfAbsent(placekey, k -> ConcurrentHashMap.newKeySet());
+      if (bucket.contains(placeDcid)) return true;
+
+      // If the the bucket has space, add the sample place. Buckets fill up early, so this is
+      // rarely contended.
+      synchronized (bucket) {
+        if (samplePlacesBucketHasSpace(placeDcid, placekey)) {
+          bucket.add(placeDcid);
+        }
       }
     }
 
@@ -356,6 +489,12 @@ public class StatChecker {
 
   protected static void checkSeriesTypeInconsistencies(
       List<DataPoint> timeSeries, StatValidationResult.Builder resBuilder, LogWrapper logCtx) {
+    checkSeriesTypeInconsistencies(SeriesSummary.fromDataPoints(timeSeries), resBuilder, logCtx);
+  }
+
+  // |series| must be sorted by date.
+  private static void checkSeriesTypeInconsistencies(
+      SeriesSummary series, StatValidationResult.Builder resBuilder, LogWrapper logCtx) {
     StatValidationEntry.Builder inconsistentTypeCounter = StatValidationEntry.newBuilder();
     String counterKey = "StatsCheck_MultipleValueTypesInASeries";
     inconsistentTypeCounter.setCounterKey(counterKey);
@@ -363,18 +502,18 @@ public class StatChecker {
     ValueType firstType = null;
     boolean foundInconsistencies = false;
 
-    for (DataPoint dp : timeSeries) {
-      for (DataValue val : dp.getValuesList()) {
-        ValueType type = val.getValue().getType();
+    for (int date = 0; date < series.numDates(); date++) {
+      for (int i = series.getValuesStart(date); i < series.getValuesEnd(date); i++) {
+        ValueType type = series.getType(i);
         if (firstType == null) {
           firstType = type;
           // we want a pair of points in the logged counter, so we always add
           // the first dp as a "problem point". however, this will only get logged
           // if foundInconsistencies is set to True
-          inconsistentTypeCounter.addProblemPoints(dp);
+          inconsistentTypeCounter.addProblemPoints(series.toDataPoint(date));
         }
         if (!firstType.equals(type)) {
-          inconsistentTypeCounter.addProblemPoints(dp);
+          inconsistentTypeCounter.addProblemPoints(series.toDataPoint(date));
           foundInconsistencies = true;
           logCtx.incrementWarningCounterBy(counterKey, 1);
         }
@@ -387,15 +526,21 @@ public class StatChecker {
 
   protected static void checkSeriesValueInconsistencies(
       List<DataPoint> timeSeries, StatValidationResult.Builder resBuilder, LogWrapper logCtx) {
+    checkSeriesValueInconsistencies(SeriesSummary.fromDataPoints(timeSeries), resBuilder, logCtx);
+  }
+
+  // |series| must be sorted by date.
+  private static void checkSeriesValueInconsistencies(
+      SeriesSummary series, StatValidationResult.Builder resBuilder, LogWrapper logCtx) {
     StatValidationEntry.Builder inconsistentValueCounter = StatValidationEntry.newBuilder();
     String counterKey = "StatsCheck_Inconsistent_Values";
     inconsistentValueCounter.setCounterKey(counterKey);
-    for (DataPoint dp : timeSeries) {
+    for (int date = 0; date < series.numDates(); date++) {
       String v = null;
       boolean vInitialized = false;
-      for (DataValue val : dp.getValuesList()) {
-        if (vInitialized && !val.getValue().getValue().equals(v)) {
-          inconsistentValueCounter.addProblemPoints(dp);
+      for (int i = series.getValuesStart(date); i < series.getValuesEnd(date); i++) {
+        if (vInitialized && !series.getValue(i).equals(v)) {
+          inconsistentValueCounter.addProblemPoints(series.toDataPoint(date));
           logCtx.incrementWarningCounterBy(counterKey, 1);
           // Once we log this DataPoint, iterating on any further values would
           // duplicate the log incorrectly, so we break out of the loop and
@@ -403,7 +548,7 @@ public class StatChecker {
           break;
         }
         vInitialized = true;
-        v = val.getValue().getValue();
+        v = series.getValue(i);
       }
     }
     if (!inconsistentValueCounter.getProblemPointsList().isEmpty()) {
@@ -413,7 +558,13 @@ public class StatChecker {
 
   protected static void checkSigmaDivergence(
       List<DataPoint> timeSeries, StatValidationResult.Builder resBuilder, LogWrapper logCtx) {
-    MeanAndStdDev meanAndStdDev = getStats(timeSeries);
+    checkSigmaDivergence(SeriesSummary.fromDataPoints(timeSeries), resBuilder, logCtx);
+  }
+
+  // |series| must be sorted by date.
+  private static void checkSigmaDivergence(
+      SeriesSummary series, StatValidationResult.Builder resBuilder, LogWrapper logCtx) {
+    MeanAndStdDev meanAndStdDev = getStats(series);
     if (meanAndStdDev.stdDev == 0) {
       return;
     }
@@ -422,11 +573,12 @@ public class StatChecker {
     sigma3Counter.setCounterKey(sigma3CounterKey);
     // Only add data points to the counter of the greatest standard deviation that it belongs to.
     // ie. if the data point is beyond 3 std deviation, only add it to that counter.
-    for (DataPoint dp : timeSeries) {
-      if (SeriesSummary.getTypeOfDataPoint(dp) != ValueType.NUMBER) continue;
-      double val = SeriesSummary.getValueOfDataPointAsNumber(dp);
+    for (int date = 0; date < series.numDates(); date++) {
+      int first = series.getValuesStart(date);
+      if (first == series.getValuesEnd(date) || series.getType(first) != ValueType.NUMBER) continue;
+      double val = series.getNumber(first);
       if (Math.abs(val - meanAndStdDev.mean) > 3 * meanAndStdDev.stdDev) {
-        sigma3Counter.addProblemPoints(dp);
+        sigma3Counter.addProblemPoints(series.toDataPoint(date));
         logCtx.incrementWarningCounterBy(sigma3CounterKey, 1);
       }
     }
@@ -440,15 +592,16 @@ public class StatChecker {
     double stdDev = 0;
   }
 
-  private static MeanAndStdDev getStats(List<DataPoint> timeSeries) {
+  private static MeanAndStdDev getStats(SeriesSummary series) {
     MeanAndStdDev result = new MeanAndStdDev();
-    if (timeSeries.size() < 2) return result;
+    if (series.numDates() < 2) return result;
     double weights = 0;
     double sum = 0;
     double sumSqDev = 0;
-    for (DataPoint dp : timeSeries) {
-      if (SeriesSummary.getTypeOfDataPoint(dp) != ValueType.NUMBER) continue;
-      double val = SeriesSummary.getValueOfDataPointAsNumber(dp);
+    for (int date = 0; date < series.numDates(); date++) {
+      int first = series.getValuesStart(date);
+      if (first == series.getValuesEnd(date) || series.getType(first) != ValueType.NUMBER) continue;
+      double val = series.getNumber(first);
       if (weights > 0) {
         sumSqDev += 1 * weights / 1 / (weights + 1) * Math.pow((1 / weights * sum - val), 2);
       }
@@ -466,20 +619,27 @@ public class StatChecker {
   // for each bucket of fluctuations >100, and >500.
   protected static void checkPercentFluctuations(
       List<DataPoint> timeSeries, StatValidationResult.Builder resBuilder, LogWrapper logCtx) {
+    checkPercentFluctuations(SeriesSummary.fromDataPoints(timeSeries), resBuilder, logCtx);
+  }
+
+  // |series| must be sorted by date.
+  private static void checkPercentFluctuations(
+      SeriesSummary series, StatValidationResult.Builder resBuilder, LogWrapper logCtx) {
     double maxDelta = 0;
-    DataPoint maxDeltaDP = null;
-    DataPoint maxDeltaBaseDP = null;
-    DataPoint baseDataPoint = null;
-    for (DataPoint dp : timeSeries) {
+    int maxDeltaDate = -1;
+    int maxDeltaBaseDate = -1;
+    int baseDate = -1;
+    for (int date = 0; date < series.numDates(); date++) {
+      int first = series.getValuesStart(date);
+      int numValues = series.getValuesEnd(date) - first;
       // Don't try to compare between times because this is a Sawtooth
-      if (dp.getValuesCount() > 1) return;
-      if (dp.getValuesCount() == 0) continue;
-      if (SeriesSummary.getTypeOfDataPoint(dp) != ValueType.NUMBER) continue;
-      double currVal = SeriesSummary.getValueOfDataPointAsNumber(dp);
-      if (baseDataPoint != null
-          && SeriesSummary.getTypeOfDataPoint(baseDataPoint) == ValueType.NUMBER) {
+      if (numValues > 1) return;
+      if (numValues == 0) continue;
+      if (series.getType(first) != ValueType.NUMBER) continue;
+      double currVal = series.getNumber(first);
+      if (baseDate >= 0) {
         double currDelta;
-        double baseVal = SeriesSummary.getValueOfDataPointAsNumber(baseDataPoint);
+        double baseVal = series.getNumber(series.getValuesStart(baseDate));
         if (baseVal == 0) {
           currDelta = (currVal) / SMALL_NUMBER;
         } else {
@@ -487,11 +647,11 @@ public class StatChecker {
         }
         if (Math.abs(maxDelta) < Math.abs(currDelta)) {
           maxDelta = currDelta;
-          maxDeltaDP = dp;
-          maxDeltaBaseDP = baseDataPoint;
+          maxDeltaDate = date;
+          maxDeltaBaseDate = baseDate;
         }
       }
-      baseDataPoint = dp;
+      baseDate = date;
     }
     String counterKey = "";
     if (Math.abs(maxDelta) > 5) {
@@ -502,8 +662,8 @@ public class StatChecker {
     if (counterKey.isEmpty()) return;
     StatValidationEntry.Builder maxPercentFluctuationCounter = StatValidationEntry.newBuilder();
     maxPercentFluctuationCounter.setCounterKey(counterKey);
-    maxPercentFluctuationCounter.addProblemPoints(maxDeltaBaseDP);
-    maxPercentFluctuationCounter.addProblemPoints(maxDeltaDP);
+    maxPercentFluctuationCounter.addProblemPoints(series.toDataPoint(maxDeltaBaseDate));
+    maxPercentFluctuationCounter.addProblemPoints(series.toDataPoint(maxDeltaDate));
     // We want to format the percentDifference as the maxDelta multiplied by 100 to get the percent
     // and truncated to 2 decimal points.
     maxPercentFluctuationCounter.setPercentDifference(Math.round(maxDelta * 10000) / 100.0);
@@ -517,27 +677,33 @@ public class StatChecker {
   // "series_invalid_date".
   protected static void checkDates(
       List<DataPoint> timeSeries, StatValidationResult.Builder resBuilder, LogWrapper logCtx) {
+    checkDates(SeriesSummary.fromDataPoints(timeSeries), resBuilder, logCtx);
+  }
+
+  // |series| must be sorted by date.
+  private static void checkDates(
+      SeriesSummary series, StatValidationResult.Builder resBuilder, LogWrapper logCtx) {
     Set<LocalDateTime> dateTimes = new TreeSet<>();
     StatValidationEntry.Builder invalidDateCounter = StatValidationEntry.newBuilder();
     String invalidDateCounterKey = "StatsCheck_Invalid_Date";
     invalidDateCounter.setCounterKey(invalidDateCounterKey);
     // To keep track of the different lengths of the date strings.
-    Map<Integer, List<DataPoint>> dateLen = new HashMap<>();
+    Map<Integer, List<Integer>> dateLen = new HashMap<>();
 
     // In the first pass, get sorted dates in LocalDateTime form and check for invalid dates and
     // inconsistent date granularities.
-    for (DataPoint dp : timeSeries) {
-      String date = dp.getDate();
+    for (int i = 0; i < series.numDates(); i++) {
+      String date = series.getDate(i);
       LocalDateTime dateTime = StringUtil.getValidISO8601Date(date);
       if (dateTime == null) {
-        invalidDateCounter.addProblemPoints(dp);
+        invalidDateCounter.addProblemPoints(series.toDataPoint(i));
         logCtx.incrementWarningCounterBy(invalidDateCounterKey, 1);
         continue;
       }
       if (!dateLen.containsKey(date.length())) {
         dateLen.put(date.length(), new ArrayList<>());
       }
-      dateLen.get(date.length()).add(dp);
+      dateLen.get(date.length()).add(i);
       dateTimes.add(dateTime);
     }
     List<Integer> dateLenList = new ArrayList<>(dateLen.keySet());
@@ -549,7 +715,9 @@ public class StatChecker {
       // different date granularity than the most common one.
       dateLenList.sort((d1, d2) -> dateLen.get(d2).size() - dateLen.get(d1).size());
       for (int i = 1; i < dateLenList.size(); i++) {
-        dateLen.get(dateLenList.get(i)).forEach(inconsistentDateCounter::addProblemPoints);
+        for (int date : dateLen.get(dateLenList.get(i))) {
+          inconsistentDateCounter.addProblemPoints(series.toDataPoint(date));
+        }
       }
       // Increment counter for each series where there is an inconsistent date problem.
       logCtx.incrementWarningCounterBy(inconsistentDateCounterKey, 1);
@@ -576,8 +744,8 @@ public class StatChecker {
           String dataHoleCounterKey = "StatsCheck_Data_Holes";
           dataHoleCounter.setCounterKey(dataHoleCounterKey);
           List<String> dateList = new ArrayList<>();
-          for (DataPoint dp : timeSeries) {
-            dateList.add(dp.getDate());
+          for (int i = 0; i < series.numDates(); i++) {
+            dateList.add(series.getDate(i));
           }
           dataHoleCounter.setAdditionalDetails(
               "Possible data hole found. Dates in this series: " + String.join(", ", dateList));
@@ -603,14 +771,15 @@ public class StatChecker {
         hasher.putString(val, StandardCharsets.UTF_8).putInt(val.length());
       }
     }
-    Long fp = hasher.hash().asLong();
-    Float val = null;
+    long fp = hasher.hash().asLong();
+    float val;
     try {
       val = Float.parseFloat(McfUtil.getPropVal(node, Vocabulary.VALUE));
     } catch (NumberFormatException e) {
-      // If value is not a float, val will stay as null and this will be handled later.
+      // If value is not a float, there is nothing to compare; this is handled by other checks.
+      return true;
     }
-    if (this.svObValues.containsKey(fp) && !this.svObValues.get(fp).equals(val)) {
+    if (!this.svObValues.putIfAbsentOrEquals(fp, val)) {
       logCtx.addEntry(
           Level.LEVEL_ERROR,
           "Sanity_InconsistentSvObsValues",
@@ -626,10 +795,8 @@ public class StatChecker {
               + val,
           node.getLocationsList());
       return false;
-    } else {
-      this.svObValues.put(fp, val);
-      return true;
     }
+    return true;
   }
 
   public List<String> getSamplePlaces() {
@@ -643,61 +810,90 @@ public class StatChecker {
   }
 
   public void setNameForSamplePlace(String place_dcid, String name) {
-    if (placeSeriesSummaryMap.containsKey(place_dcid)) {
-      placeSeriesSummaryMap.get(place_dcid).setPlaceName(name);
+    Stripe stripe = stripeOf(place_dcid);
+    synchronized (stripe) {
+      if (stripe.placeSeriesSummaries.containsKey(place_dcid)) {
+        stripe.placeSeriesSummaries.get(place_dcid).setPlaceName(name);
+      }
     }
   }
 
-  private synchronized void extractStatVarInfoFromNode(McfGraph.PropertyValues node) {
+  private void extractStatVarInfoFromNode(McfGraph.PropertyValues node) {
     // TODO (chejennifer): extract prop value into a struct and pass around instead of looking it up
     // in multiple places
     String svDcid = McfUtil.getPropVal(node, Vocabulary.VARIABLE_MEASURED);
     if (svDcid.isEmpty()) return;
-    StatVarSummary svMap = svSummaryMap.computeIfAbsent(svDcid, k -> new StatVarSummary());
-    svMap.numObservations++;
+    Double value = null;
     try {
-      double value = Double.parseDouble(McfUtil.getPropVal(node, Vocabulary.VALUE));
-      svMap.minValue = Math.min(svMap.minValue, value);
-      svMap.maxValue = Math.max(svMap.maxValue, value);
+      value = Double.parseDouble(McfUtil.getPropVal(node, Vocabulary.VALUE));
     } catch (NumberFormatException e) {
       // Ignore if the value is not a number.
     }
-    svMap.dates.add(McfUtil.getPropVal(node, Vocabulary.OBSERVATION_DATE));
-    svMap.places.add(McfUtil.getPropVal(node, Vocabulary.OBSERVATION_ABOUT));
-    svMap.mMethods.add(McfUtil.getPropVal(node, Vocabulary.MEASUREMENT_METHOD));
-    svMap.units.add(McfUtil.getPropVal(node, Vocabulary.UNIT));
-    svMap.scalingFactors.add(McfUtil.getPropVal(node, Vocabulary.SCALING_FACTOR));
-    svMap.observationPeriods.add(McfUtil.getPropVal(node, Vocabulary.OBSERVATION_PERIOD));
+    Stripe stripe = stripeOf(svDcid);
+    synchronized (stripe) {
+      StatVarSummary svMap = stripe.svSummaries.computeIfAbsent(svDcid, k -> new StatVarSummary());
+      svMap.numObservations++;
+      if (value != null) {
+        svMap.minValue = Math.min(svMap.minValue, value);
+        svMap.maxValue = Math.max(svMap.maxValue, value);
+      }
+      svMap.dates.add(McfUtil.getPropVal(node, Vocabulary.OBSERVATION_DATE));
+      svMap.places.add(McfUtil.getPropVal(node, Vocabulary.OBSERVATION_ABOUT));
+      svMap.mMethods.add(McfUtil.getPropVal(node, Vocabulary.MEASUREMENT_METHOD));
+      svMap.units.add(McfUtil.getPropVal(node, Vocabulary.UNIT));
+      svMap.scalingFactors.add(McfUtil.getPropVal(node, Vocabulary.SCALING_FACTOR));
+      svMap.observationPeriods.add(McfUtil.getPropVal(node, Vocabulary.OBSERVATION_PERIOD));
+    }
+  }
+
+  private Stripe stripeOf(String dcid) {
+    return stripes[Math.floorMod(dcid.hashCode(), NUM_STRIPES)];
+  }
+
+  // A stripe of the summaries, guarded by itself.
+  private static final class Stripe {
+    // key is place dcid
+    final Map<String, PlaceSeriesSummary> placeSeriesSummaries = new HashMap<>();
+    // key is StatVar dcid
+    final Map<String, StatVarSummary> svSummaries = new HashMap<>();
   }
 
   // Makes API requests to get the names of the sample places from the DC
   // API, and puts that information to StatChecker.
   public void fetchSamplePlaceNames(HttpClient httpClient) {
     try {
-      JsonObject apiResponse = ApiHelper.fetchPropertyValues(httpClient, getSamplePlaces(), "name");
-      if (apiResponse != null) {
-        for (var entry : apiResponse.entrySet()) {
-          String placeDcid = entry.getKey();
-          JsonObject nodeJson = entry.getValue().getAsJsonObject();
-
-          if (nodeJson.has("out")) {
-            JsonArray receivedNamesForPlace = nodeJson.getAsJsonArray("out");
-            if (receivedNamesForPlace.size() == 0) {
-              continue;
-            }
-            // in case there are multiple names, simply use the first.
-            // for example, Ivory Coast has multiple names:
-            // https://datacommons.org/browser/country/CIV
-            String placeName =
-                receivedNamesForPlace.get(0).getAsJsonObject().get("value").getAsString();
-            this.setNameForSamplePlace(placeDcid, placeName);
+      setSamplePlaceNames(ApiHelper.fetchPropertyValues(httpClient, getSamplePlaces(), "name"));
+    } catch (IOException | InterruptedException e) {
+      logCtx.incrementWarningCounterBy("API_FailedDcCall", 1);
+    }
+  }
+
+  // Gets the names of the sample places from a KG snapshot instead.
+  public void fetchSamplePlaceNames(KgSnapshot snapshot) {
+    setSamplePlaceNames(snapshot.getPropertyValues(getSamplePlaces(), "name"));
+  }
+
+  private void setSamplePlaceNames(JsonObject apiResponse) {
+    if (apiResponse != null) {
+      for (var entry : apiResponse.entrySet()) {
+        String placeDcid = entry.getKey();
+        JsonObject nodeJson = entry.getValue().getAsJsonObject();
+
+        if (nodeJson.has("out")) {
+          JsonArray receivedNamesForPlace = nodeJson.getAsJsonArray("out");
+          if (receivedNamesForPlace.size() == 0) {
+            continue;
           }
+          // in case there are multiple names, simply use the first.
+          // for example, Ivory Coast has multiple names:
+          // https://datacommons.org/browser/country/CIV
+          String placeName =
+              receivedNamesForPlace.get(0).getAsJsonObject().get("value").getAsString();
+          this.setNameForSamplePlace(placeDcid, placeName);
         }
-      } else {
-        logCtx.incrementWarningCounterBy("API_EmptyDcCallResponse", 1);
       }
-    } catch (IOException | InterruptedException e) {
-      logCtx.incrementWarningCounterBy("API_FailedDcCall", 1);
+    } else {
+      logCtx.incrementWarningCounterBy("API_EmptyDcCallResponse", 1);
     }
   }
 }
@@ -4,8 +4,12 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import java.io.IOException;
 import java.net.http.HttpClient;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import org.datacommons.proto.Debug;
 import org.datacommons.proto.Mcf;
@@ -17,60 +21,116 @@ import org.datacommons.proto.Mcf;
 // Tracks statType of the StatVars that we know of. Used for measurementResult
 // checks. MeasurementResult checks is when we check the existence of SVO value
 // references for SVOs that are measuring SVs with statType == MEASUREMENT_RESULT.
+// The statTypes of the SVs to be checked can be fetched in batches up front with
+// prefetchStatTypes(). A failed batch call is split in halves and retried, and SVs
+// whose statType could not be fetched on their own (unknown SV, failed call for
+// just that SV, etc.) are remembered, so they are not fetched again.
 //
 // This class is thread-safe.
 //
 // TODO: Consider expanding this to query DC by generated DCID to find curated DCID in KG.
 public class StatVarState {
+  // Max SVs per statType call to DC.
+  static int STAT_TYPE_BATCH_LIMIT = 500;
+
   private HttpClient httpClient;
+  // If not null, statTypes are looked up here rather than by calling DC.
+  private final KgSnapshot snapshot;
   private final LogWrapper logCtx;
   private final Map<String, String> generatedToCurated = new ConcurrentHashMap<>();
   private final Map<String, String> curatedToGenerated = new ConcurrentHashMap<>();
   // Key: StatVar DCID, Value: statType value of the StatVar
   private final Map<String, String> statVarStatType = new ConcurrentHashMap<>();
+  // StatVar DCIDs whose statType could not be fetched.
+  private final Set<String> unknownStatType = ConcurrentHashMap.newKeySet();
 
   public StatVarState(LogWrapper logCtx) {
-    this.httpClient = null;
-    this.logCtx = logCtx;
+    this(null, null, logCtx);
   }
 
   public StatVarState(HttpClient httpClient, LogWrapper logCtx) {
+    this(httpClient, null, logCtx);
+  }
+
+  public StatVarState(HttpClient httpClient, KgSnapshot snapshot, LogWrapper logCtx) {
     this.httpClient = httpClient;
+    this.snapshot = snapshot;
     this.logCtx = logCtx;
   }
 
   // Returns the statType of the given DCID. Makes a API call if the SV does not
-  // exist in the local cache. Returns null if the API request fails (SV does not
-  // exist, etc.)
+  // exist in the local cache and was not fetched before. Returns null if the API
+  // request fails (SV does not exist, etc.)
   public String getStatType(String svDcid) {
     if (!statVarStatType.containsKey(svDcid)) {
       // We do not have the statType in memory, so  we will need to fetch it synchronously
-      try {
-        fetchStatTypeFromApi(svDcid);
-      } catch (IOException | InterruptedException e) {
-        logCtx.incrementWarningCounterBy("API_FailedDcCall", 1);
-      }
+      prefetchStatTypes(List.of(svDcid));
     }
     return statVarStatType.get(svDcid);
   }
 
+  // Fetches the statTypes of the given SVs that are neither in the local cache
+  // nor known to be missing, STAT_TYPE_BATCH_LIMIT SVs per API call.
+  public void prefetchStatTypes(Collection<String> svDcids) {
+    List<String> toFetch = new ArrayList<>();
+    for (String svDcid : new LinkedHashSet<>(svDcids)) {
+      if (!statVarStatType.containsKey(svDcid) && !unknownStatType.contains(svDcid)) {
+        toFetch.add(svDcid);
+      }
+    }
+    for (int i = 0; i < toFetch.size(); i += STAT_TYPE_BATCH_LIMIT) {
+      fetchStatTypesFromApi(
+          toFetch.subList(i, Math.min(toFetch.size(), i + STAT_TYPE_BATCH_LIMIT)));
+    }
+  }
+
   private void addStatType(String svDcid, String statType) {
     statVarStatType.put(svDcid, statType);
   }
 
-  // Uses the API to get the statType of the given SV. Sets the statType in
-  // this.statVarStatType map if API successfully returns the statType, does not
-  // modify state otherwise.
-  private void fetchStatTypeFromApi(String svDcid) throws IOException, InterruptedException {
-    if (this.httpClient == null) {
-      return; // do nothing; we don't have an HTTPClient to make requests with
-    }
-    logCtx.incrementInfoCounterBy("StatVarState_NumDcCalls", 1);
-    JsonObject dataJson =
-        ApiHelper.fetchPropertyValues(this.httpClient, List.of(svDcid), Vocabulary.STAT_TYPE);
-    String statType = parseApiStatTypeResponse(dataJson, svDcid);
-    if (statType != null) { // statType == null when the response data was off
-      addStatType(svDcid, statType);
+  // Uses the API to get the statType of the given SVs. Sets the statType in
+  // this.statVarStatType map for the SVs the API successfully returns the statType
+  // of, and adds the others to this.unknownStatType.
+  //
+  // If the call fails or returns no payload (e.g., because of a transient error or a
+  // malformed DCID), the batch is split in halves and each is retried, so one bad SV
+  // is found in O(log n) calls and does not fail the rest of its batch.
+  private void fetchStatTypesFromApi(List<String> svDcids) {
+    JsonObject dataJson;
+    try {
+      if (this.snapshot != null) {
+        dataJson = snapshot.getPropertyValues(svDcids, Vocabulary.STAT_TYPE);
+      } else if (this.httpClient == null) {
+        return; // do nothing; we don't have an HTTPClient to make requests with
+      } else {
+        logCtx.incrementInfoCounterBy("StatVarState_NumDcCalls", 1);
+        dataJson = ApiHelper.fetchPropertyValues(this.httpClient, svDcids, Vocabulary.STAT_TYPE);
+      }
+    } catch (InterruptedException e) {
+      // Leave the SVs unfetched, so later lookups retry them.
+      Thread.currentThread().interrupt();
+      return;
+    } catch (IOException | RuntimeException e) {
+      dataJson = null;
+    }
+    if (dataJson == null) {
+      logCtx.incrementWarningCounterBy("API_FailedDcCall", 1);
+      if (svDcids.size() == 1) {
+        unknownStatType.add(svDcids.get(0));
+        return;
+      }
+      int mid = svDcids.size() / 2;
+      fetchStatTypesFromApi(svDcids.subList(0, mid));
+      fetchStatTypesFromApi(svDcids.subList(mid, svDcids.size()));
+      return;
+    }
+    for (String svDcid : svDcids) {
+      String statType = parseApiStatTypeResponse(dataJson, svDcid);
+      if (statType != null) { // statType == null when the response data was off
+        addStatType(svDcid, statType);
+      } else {
+        unknownStatType.add(svDcid);
+      }
     }
   }
 
@@ -0,0 +1,377 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.datacommons.proto.Debug.DataPoint;
+import org.datacommons.proto.Debug.DataPoint.DataValue;
+import org.datacommons.proto.Debug.StatValidationResult;
+import org.datacommons.proto.Debug.StatValidationResult.StatValidationEntry;
+import org.datacommons.proto.LogLocation.Location;
+import org.datacommons.proto.Mcf.McfGraph;
+import org.datacommons.proto.Mcf.McfGraph.TypedValue;
+import org.datacommons.proto.Mcf.ValueType;
+
+// Runs the 3-sigma, fluctuation and date checks of StatChecker on series as their values stream
+// in, keeping a fixed amount of state per series rather than the series itself, so that they can
+// be run for all places rather than just the sample places (whose series PlaceSeriesSummary keeps
+// in full). For each series, it keeps:
+// - the count, mean and variance of the numbers (Welford's algorithm), and the smallest and largest
+//   number. Some number is beyond 3 sigma of the mean iff one of these is.
+// - the previous number and the largest fluctuation from it, as long as the values come in date
+//   order, as they usually do. Series that do not are not checked for fluctuations.
+// - the date granularity and, for yearly and monthly dates, the range and the GCD of the offsets
+//   in months between the dates. A series has no data holes iff it has a date at every GCD months
+//   of the range, which is what StatChecker.checkDates() finds from its sorted dates.
+// - a few of the points, as the problem points of the results.
+//
+// Values with the same date are not told apart (StatChecker checks all StatVarObservations for
+// inconsistent values), so a repeated date can hide a data hole.
+//
+// Series past the first |maxSeries| are not checked.
+//
+// Thread-safe.
+final class StreamingSeriesChecker {
+  private static final Logger logger = LogManager.getLogger(StreamingSeriesChecker.class);
+  private static final double SMALL_NUMBER = 0.000001;
+  // Dates up to this long (years and months) are checked for data holes.
+  private static final int MAX_MONTHLY_DATE_LENGTH = "yyyy-MM".length();
+  private static final long RANDOM_SEED = 0;
+
+  private final int maxSeries;
+  // Keyed by PlaceSeriesSummary.getSeriesHash().
+  private final ConcurrentHashMap<Long, Series> seriesMap = new ConcurrentHashMap<>();
+  private final AtomicInteger numSeries = new AtomicInteger();
+  private final AtomicLong numDroppedValues = new AtomicLong();
+
+  StreamingSeriesChecker(int maxSeries) {
+    this.maxSeries = maxSeries;
+  }
+
+  // Adds the value of a StatVarObservation node to its series.
+  void add(McfGraph.PropertyValues node) {
+    List<TypedValue> values = McfUtil.getPropTvs(node, Vocabulary.VALUE);
+    if (values == null || values.isEmpty()) return;
+    StatValidationResult.Builder vres = PlaceSeriesSummary.newValidationResult(node);
+    Series series =
+        seriesMap.computeIfAbsent(
+            PlaceSeriesSummary.getSeriesHash(vres),
+            k ->
+                numSeries.getAndUpdate(n -> n < maxSeries ? n + 1 : n) < maxSeries
+                    ? new Series(vres.build())
+                    : null);
+    if (series == null) {
+      numDroppedValues.incrementAndGet();
+      return;
+    }
+    series.add(
+        McfUtil.getPropVal(node, Vocabulary.OBSERVATION_DATE),
+        values.get(0),
+        node.getLocationsList());
+  }
+
+  // Checks all the series, adding to the counters of |logCtx|. Returns the results of the series
+  // with problems, with up to |numExamples| series picked at random (by reservoir sampling) for
+  // each counter.
+  List<StatValidationResult> check(LogWrapper logCtx, int numExamples) {
+    if (numDroppedValues.get() > 0) {
+      logger.warn(
+          "Stat checks were streamed for {} series, {} values of other series were not checked",
+          maxSeries,
+          numDroppedValues.get());
+    }
+    Random random = new Random(RANDOM_SEED);
+    Map<String, List<StatValidationResult>> examples = new LinkedHashMap<>();
+    Map<String, Long> numResults = new TreeMap<>();
+    // In key order, so the examples do not depend on the order the series were added in.
+    for (Series series : new TreeMap<>(seriesMap).values()) {
+      StatValidationResult result = series.check(logCtx);
+      for (StatValidationEntry entry : result.getValidationCountersList()) {
+        String counterKey = entry.getCounterKey();
+        List<StatValidationResult> counterExamples =
+            examples.computeIfAbsent(counterKey, k -> new ArrayList<>());
+        long n = numResults.merge(counterKey, 1L, Long::sum);
+        if (counterExamples.size() < numExamples) {
+          counterExamples.add(result);
+        } else {
+          long i = random.nextLong(n);
+          if (i < numExamples) counterExamples.set((int) i, result);
+        }
+      }
+    }
+    List<StatValidationResult> results = new ArrayList<>();
+    for (List<StatValidationResult> counterExamples : examples.values()) {
+      for (StatValidationResult result : counterExamples) {
+        // A series with several problems may be an example for several counters.
+        if (!results.contains(result)) results.add(result);
+      }
+    }
+    return results;
+  }
+
+  // A value of a series, kept as an example.
+  private static final class Point {
+    final String date;
+    final TypedValue value;
+    final List<Location> locations;
+    // Only set for NUMBER values.
+    final double number;
+
+    Point(String date, TypedValue value, List<Location> locations, double number) {
+      this.date = date;
+      this.value = value;
+      this.locations = locations;
+      this.number = number;
+    }
+
+    DataPoint toDataPoint() {
+      return DataPoint.newBuilder()
+          .setDate(date)
+          .addValues(DataValue.newBuilder().setValue(value).addAllLocations(locations))
+          .build();
+    }
+  }
+
+  private static final class Series {
+    private final StatValidationResult validationResult;
+
+    // Of the numbers.
+    private long count = 0;
+    private double mean = 0;
+    // Sum of squares of differences from the mean.
+    private double m2 = 0;
+    private Point min = null;
+    private Point max = null;
+
+    // Of the fluctuations between successive numbers, while the dates come in order.
+    private String lastDate = null;
+    private boolean inDateOrder = true;
+    private Point base = null;
+    private double maxDelta = 0;
+    private Point maxDeltaBase = null;
+    private Point maxDeltaPoint = null;
+
+    // Of the dates.
+    private int dateLength = -1;
+    private Point otherGranularityDate = null;
+    private int numInvalidDates = 0;
+    private Point invalidDate = null;
+    private boolean monthly = true;
+    private int numMonthlyDates = 0;
+    private int firstMonth = 0;
+    // Offsets in months from the first date.
+    private int minOffset = 0;
+    private int maxOffset = 0;
+    private int offsetGcd = 0;
+    private String minDate = null;
+    private String maxDate = null;
+
+    Series(StatValidationResult validationResult) {
+      this.validationResult = validationResult;
+    }
+
+    synchronized void add(String date, TypedValue value, List<Location> locations) {
+      double number = Double.NaN;
+      if (value.getType() == ValueType.NUMBER) {
+        try {
+          number = Double.parseDouble(value.getValue());
+        } catch (NumberFormatException e) {
+          // Not checked as a number.
+        }
+      }
+      Point point = new Point(date, value, locations, number);
+      addDate(point);
+      if (!Double.isNaN(number)) addNumber(point);
+    }
+
+    private void addDate(Point point) {
+      String date = point.date;
+      if (lastDate != null && date.compareTo(lastDate) <= 0) {
+        inDateOrder = false;
+        base = null;
+        maxDeltaBase = null;
+        maxDeltaPoint = null;
+      }
+      lastDate = date;
+
+      LocalDateTime dateTime = StringUtil.getValidISO8601Date(date);
+      if (dateTime == null) {
+        numInvalidDates++;
+        if (invalidDate == null) invalidDate = point;
+        return;
+      }
+      if (dateLength < 0) {
+        dateLength = date.length();
+      } else if (date.length() != dateLength && otherGranularityDate == null) {
+        otherGranularityDate = point;
+      }
+      if (date.length() > MAX_MONTHLY_DATE_LENGTH) {
+        monthly = false;
+      }
+      if (!monthly) return;
+      int month = dateTime.getYear() * 12 + dateTime.getMonthValue() - 1;
+      if (numMonthlyDates++ == 0) {
+        firstMonth = month;
+        minDate = date;
+        maxDate = date;
+      }
+      int offset = month - firstMonth;
+      if (offset < minOffset) {
+        minOffset = offset;
+        minDate = date;
+      } else if (offset > maxOffset) {
+        maxOffset = offset;
+        maxDate = date;
+      }
+      offsetGcd = gcd(offsetGcd, Math.abs(offset));
+    }
+
+    private void addNumber(Point point) {
+      double val = point.number;
+      count++;
+      double delta = val - mean;
+      mean += delta / count;
+      m2 += delta * (val - mean);
+      if (min == null || val < min.number) min = point;
+      if (max == null || val > max.number) max = point;
+
+      if (!inDateOrder) return;
+      if (base != null) {
+        double currDelta;
+        if (base.number == 0) {
+          currDelta = val / SMALL_NUMBER;
+        } else {
+          currDelta = (val - base.number) / Math.abs(base.number);
+        }
+        if (Math.abs(maxDelta) < Math.abs(currDelta)) {
+          maxDelta = currDelta;
+          maxDeltaBase = base;
+          maxDeltaPoint = point;
+        }
+      }
+      base = point;
+    }
+
+    synchronized StatValidationResult check(LogWrapper logCtx) {
+      StatValidationResult.Builder resBuilder = validationResult.toBuilder();
+      checkDates(resBuilder, logCtx);
+      checkSigmaDivergence(resBuilder, logCtx);
+      checkPercentFluctuations(resBuilder, logCtx);
+      return resBuilder.build();
+    }
+
+    // Like StatChecker.checkDates(), but with one example of the invalid dates or of the dates
+    // of another granularity.
+    private void checkDates(StatValidationResult.Builder resBuilder, LogWrapper logCtx) {
+      if (otherGranularityDate != null) {
+        String counterKey = "StatsCheck_Inconsistent_Date_Granularity";
+        resBuilder.addValidationCounters(
+            StatValidationEntry.newBuilder()
+                .setCounterKey(counterKey)
+                .addProblemPoints(otherGranularityDate.toDataPoint()));
+        logCtx.incrementWarningCounterBy(counterKey, 1);
+        return;
+      }
+      if (invalidDate != null) {
+        String counterKey = "StatsCheck_Invalid_Date";
+        resBuilder.addValidationCounters(
+            StatValidationEntry.newBuilder()
+                .setCounterKey(counterKey)
+                .addProblemPoints(invalidDate.toDataPoint()));
+        logCtx.incrementWarningCounterBy(counterKey, numInvalidDates);
+        return;
+      }
+      if (!monthly || offsetGcd == 0) return;
+      int numExpectedDates = (maxOffset - minOffset) / offsetGcd + 1;
+      if (numMonthlyDates < numExpectedDates) {
+        String counterKey = "StatsCheck_Data_Holes";
+        resBuilder.addValidationCounters(
+            StatValidationEntry.newBuilder()
+                .setCounterKey(counterKey)
+                .setAdditionalDetails(
+                    "Possible data hole found. This series has "
+                        + numMonthlyDates
+                        + " dates from "
+                        + minDate
+                        + " to "
+                        + maxDate
+                        + ", where there would be "
+                        + numExpectedDates
+                        + " dates every "
+                        + offsetGcd
+                        + " months."));
+        logCtx.incrementWarningCounterBy(counterKey, 1);
+      }
+    }
+
+    private void checkSigmaDivergence(StatValidationResult.Builder resBuilder, LogWrapper logCtx) {
+      if (count < 2) return;
+      double stdDev = Math.sqrt(m2 / count);
+      if (stdDev == 0) return;
+      String counterKey = "StatsCheck_3_Sigma";
+      StatValidationEntry.Builder sigma3Counter =
+          StatValidationEntry.newBuilder().setCounterKey(counterKey);
+      for (Point point : List.of(min, max)) {
+        if (Math.abs(point.number - mean) > 3 * stdDev) {
+          sigma3Counter.addProblemPoints(point.toDataPoint());
+          logCtx.incrementWarningCounterBy(counterKey, 1);
+        }
+      }
+      if (!sigma3Counter.getProblemPointsList().isEmpty()) {
+        resBuilder.addValidationCounters(sigma3Counter);
+      }
+    }
+
+    private void checkPercentFluctuations(
+        StatValidationResult.Builder resBuilder, LogWrapper logCtx) {
+      if (!inDateOrder || maxDeltaPoint == null) return;
+      String counterKey;
+      if (Math.abs(maxDelta) > 5) {
+        counterKey = "StatsCheck_MaxPercentFluctuationGreaterThan500";
+      } else if (Math.abs(maxDelta) > 1) {
+        counterKey = "StatsCheck_MaxPercentFluctuationGreaterThan100";
+      } else {
+        return;
+      }
+      resBuilder.addValidationCounters(
+          StatValidationEntry.newBuilder()
+              .setCounterKey(counterKey)
+              .addProblemPoints(maxDeltaBase.toDataPoint())
+              .addProblemPoints(maxDeltaPoint.toDataPoint())
+              .setPercentDifference(Math.round(maxDelta * 10000) / 100.0));
+      logCtx.incrementWarningCounterBy(counterKey, 1);
+    }
+
+    private static int gcd(int a, int b) {
+      while (b != 0) {
+        int t = a % b;
+        a = b;
+        b = t;
+      }
+      return a;
+    }
+  }
+}
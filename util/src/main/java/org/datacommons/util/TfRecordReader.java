@@ -0,0 +1,101 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+import java.util.zip.GZIPInputStream;
+
+// Reads the records of a TFRecord file, as written by TfRecordWriter (or Beam's TFRecordIO). A
+// gzip-compressed file is detected by its magic bytes.
+//
+// Not thread-safe.
+public class TfRecordReader implements Closeable {
+  private static final int MASK_DELTA = 0xa282ead8;
+
+  private final DataInputStream in;
+  private final CRC32C crc = new CRC32C();
+  private final byte[] header = new byte[12];
+  private final byte[] footer = new byte[4];
+
+  public TfRecordReader(Path path) throws IOException {
+    InputStream raw = new BufferedInputStream(Files.newInputStream(path), 1 << 16);
+    raw.mark(2);
+    boolean gzip = raw.read() == 0x1f && raw.read() == 0x8b;
+    raw.reset();
+    in = new DataInputStream(gzip ? new GZIPInputStream(raw, 1 << 16) : raw);
+  }
+
+  // Returns the next record, or null at the end.
+  public byte[] next() throws IOException {
+    int first = in.read();
+    if (first < 0) return null;
+    header[0] = (byte) first;
+    try {
+      in.readFully(header, 1, header.length - 1);
+      long length = getLongLE(header, 0);
+      if (getIntLE(header, 8) != maskedCrc(header, 0, 8)) {
+        throw new IOException("Corrupt TFRecord length");
+      }
+      if (length < 0 || length > Integer.MAX_VALUE - 8) {
+        throw new IOException("Invalid TFRecord length " + length);
+      }
+      byte[] data = new byte[(int) length];
+      in.readFully(data);
+      in.readFully(footer);
+      if (getIntLE(footer, 0) != maskedCrc(data, 0, data.length)) {
+        throw new IOException("Corrupt TFRecord data");
+      }
+      return data;
+    } catch (EOFException e) {
+      throw new IOException("Truncated TFRecord", e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    in.close();
+  }
+
+  private int maskedCrc(byte[] bytes, int offset, int length) {
+    crc.reset();
+    crc.update(bytes, offset, length);
+    int value = (int) crc.getValue();
+    return ((value >>> 15) | (value << 17)) + MASK_DELTA;
+  }
+
+  private static long getLongLE(byte[] bytes, int offset) {
+    long value = 0;
+    for (int i = 7; i >= 0; i--) {
+      value = (value << 8) | (bytes[offset + i] & 0xff);
+    }
+    return value;
+  }
+
+  private static int getIntLE(byte[] bytes, int offset) {
+    int value = 0;
+    for (int i = 3; i >= 0; i--) {
+      value = (value << 8) | (bytes[offset + i] & 0xff);
+    }
+    return value;
+  }
+}
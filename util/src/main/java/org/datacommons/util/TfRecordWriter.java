@@ -0,0 +1,99 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.MessageLite;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.CRC32C;
+import java.util.zip.GZIPOutputStream;
+
+// Writes protos as records of a TFRecord file, optionally gzip-compressed (as read by Beam's
+// TFRecordIO, e.g. in the ingestion pipeline).
+//
+// Each record is framed as: the data length (uint64), the masked CRC32C of the length, the data,
+// and the masked CRC32C of the data, with all integers in little-endian.
+//
+// Not thread-safe.
+public class TfRecordWriter implements Closeable {
+  private static final int MASK_DELTA = 0xa282ead8;
+
+  private final OutputStream out;
+  private final CRC32C crc = new CRC32C();
+  private final byte[] header = new byte[12];
+  private final byte[] footer = new byte[4];
+  // Serialized record, reused across records.
+  private byte[] data = new byte[1 << 12];
+
+  public TfRecordWriter(Path path, McfWriter.Compression compression) throws IOException {
+    this(
+        compression == McfWriter.Compression.GZIP
+            ? new GZIPOutputStream(Files.newOutputStream(path), 1 << 16)
+            : new BufferedOutputStream(Files.newOutputStream(path), 1 << 16));
+  }
+
+  TfRecordWriter(OutputStream out) {
+    this.out = out;
+  }
+
+  public void write(MessageLite message) throws IOException {
+    int length = message.getSerializedSize();
+    if (data.length < length) {
+      data = new byte[Math.max(length, data.length * 2)];
+    }
+    CodedOutputStream coded = CodedOutputStream.newInstance(data, 0, length);
+    message.writeTo(coded);
+    coded.checkNoSpaceLeft();
+    write(data, length);
+  }
+
+  void write(byte[] bytes, int length) throws IOException {
+    putLongLE(header, 0, length);
+    putIntLE(header, 8, maskedCrc(header, 0, 8));
+    putIntLE(footer, 0, maskedCrc(bytes, 0, length));
+    out.write(header);
+    out.write(bytes, 0, length);
+    out.write(footer);
+  }
+
+  @Override
+  public void close() throws IOException {
+    out.close();
+  }
+
+  private int maskedCrc(byte[] bytes, int offset, int length) {
+    crc.reset();
+    crc.update(bytes, offset, length);
+    int value = (int) crc.getValue();
+    return ((value >>> 15) | (value << 17)) + MASK_DELTA;
+  }
+
+  private static void putLongLE(byte[] bytes, int offset, long value) {
+    for (int i = 0; i < 8; i++) {
+      bytes[offset + i] = (byte) (value >>> (8 * i));
+    }
+  }
+
+  private static void putIntLE(byte[] bytes, int offset, int value) {
+    for (int i = 0; i < 4; i++) {
+      bytes[offset + i] = (byte) (value >>> (8 * i));
+    }
+  }
+}
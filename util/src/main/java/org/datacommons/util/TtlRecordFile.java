@@ -0,0 +1,233 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.ToLongFunction;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+// A file of results keyed by string that is kept across runs, with a TTL per result (see
+// ExistenceCache and CoordinatesCache).
+//
+// The file has a magic header followed by records of: the key (length-prefixed UTF-8), the value
+// (as written by the Codec), and when it was fetched (epoch millis). flush() appends the results
+// put since the last flush. The file is memory-mapped and read on first use, keeping the latest
+// record per key that is within its TTL; it is rewritten with just those if most of its records
+// are stale (or if it is malformed, e.g., by an interrupted append).
+//
+// Only one process should use a file at a time. Not thread-safe.
+final class TtlRecordFile<V> {
+  private static final Logger logger = LogManager.getLogger(TtlRecordFile.class);
+  // The file is compacted on load if it has more than this many stale records and they are the
+  // majority.
+  static final int MIN_STALE_RECORDS_TO_COMPACT = 1000;
+
+  // Writes and reads the values of records.
+  interface Codec<V> {
+    void write(DataOutputStream out, V value) throws IOException;
+
+    // Returns null if the value is malformed. May throw BufferUnderflowException if it is
+    // truncated.
+    V read(ByteBuffer buf);
+  }
+
+  private final Path path;
+  private final byte[] magic;
+  // What the file holds, for logs (e.g., "existence cache").
+  private final String name;
+  private final Codec<V> codec;
+  private final ToLongFunction<V> ttlMillis;
+  private final Clock clock;
+
+  // Loaded on first use.
+  private Map<String, Entry<V>> entries = null;
+  // Results put since the last flush.
+  private final List<Map.Entry<String, Entry<V>>> pending = new ArrayList<>();
+  // Set if the file has another header, so it must not be written.
+  private boolean notACache = false;
+
+  // A result is used for |ttlMillis| of its value.
+  TtlRecordFile(
+      Path path,
+      String magic,
+      String name,
+      Codec<V> codec,
+      ToLongFunction<V> ttlMillis,
+      Clock clock) {
+    this.path = path;
+    this.magic = magic.getBytes(StandardCharsets.US_ASCII);
+    this.name = name;
+    this.codec = codec;
+    this.ttlMillis = ttlMillis;
+    this.clock = clock;
+  }
+
+  // Returns the value of |key|, or null if there is no result for it within its TTL.
+  V get(String key) {
+    load();
+    Entry<V> entry = entries.get(key);
+    if (entry == null) return null;
+    if (!isFresh(entry, clock.millis())) {
+      entries.remove(key);
+      return null;
+    }
+    return entry.value;
+  }
+
+  void put(String key, V value) {
+    load();
+    Entry<V> entry = new Entry<>(value, clock.millis());
+    entries.put(key, entry);
+    pending.add(Map.entry(key, entry));
+  }
+
+  // Appends the results put since the last flush to the file.
+  void flush() throws IOException {
+    if (pending.isEmpty() || notACache) return;
+    boolean isNew = !Files.exists(path);
+    try (DataOutputStream out =
+        new DataOutputStream(
+            new BufferedOutputStream(
+                Files.newOutputStream(
+                    path, StandardOpenOption.CREATE, StandardOpenOption.APPEND)))) {
+      if (isNew) out.write(magic);
+      for (var kv : pending) {
+        writeRecord(out, kv.getKey(), kv.getValue());
+      }
+    }
+    pending.clear();
+  }
+
+  // Returns null if the length is invalid.
+  static String getString(ByteBuffer buf) {
+    int length = buf.getInt();
+    if (length < 0 || length > buf.remaining()) return null;
+    return new String(getBytes(buf, new byte[length]), StandardCharsets.UTF_8);
+  }
+
+  static void writeString(DataOutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private boolean isFresh(Entry<V> entry, long nowMillis) {
+    return nowMillis - entry.fetchedAtMillis < ttlMillis.applyAsLong(entry.value);
+  }
+
+  private void load() {
+    if (entries != null) return;
+    entries = new HashMap<>();
+    if (!Files.exists(path)) return;
+    long numRecords = 0;
+    boolean malformed = false;
+    long now = clock.millis();
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buf.remaining() < magic.length) {
+        malformed = true;
+      } else if (!Arrays.equals(getBytes(buf, new byte[magic.length]), magic)) {
+        logger.warn("Not using {} which is not a {}", path, name);
+        notACache = true;
+        return;
+      }
+      while (!malformed && buf.hasRemaining()) {
+        try {
+          String key = getString(buf);
+          V value = key == null ? null : codec.read(buf);
+          if (value == null) {
+            malformed = true;
+            break;
+          }
+          Entry<V> entry = new Entry<>(value, buf.getLong());
+          numRecords++;
+          if (isFresh(entry, now)) {
+            entries.put(key, entry);
+          }
+        } catch (BufferUnderflowException e) {
+          malformed = true;
+        }
+      }
+    } catch (IOException e) {
+      logger.warn("Unable to read {} {}: {}", name, path, e.getMessage());
+      malformed = true;
+    }
+    long numStale = numRecords - entries.size();
+    if (malformed) {
+      logger.warn("The {} {} is malformed, keeping {} results", name, path, entries.size());
+    }
+    if (malformed || (numStale > MIN_STALE_RECORDS_TO_COMPACT && numStale > entries.size())) {
+      try {
+        rewrite();
+      } catch (IOException e) {
+        logger.warn("Unable to rewrite {} {}: {}", name, path, e.getMessage());
+      }
+    }
+    logger.info("Loaded {} results from the {} {}", entries.size(), name, path);
+  }
+
+  // Replaces the file with the entries in memory.
+  private void rewrite() throws IOException {
+    Path temp =
+        Files.createTempFile(path.toAbsolutePath().getParent(), name.replace(' ', '_'), ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+      out.write(magic);
+      for (var kv : entries.entrySet()) {
+        writeRecord(out, kv.getKey(), kv.getValue());
+      }
+    }
+    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private void writeRecord(DataOutputStream out, String key, Entry<V> entry) throws IOException {
+    writeString(out, key);
+    codec.write(out, entry.value);
+    out.writeLong(entry.fetchedAtMillis);
+  }
+
+  private static byte[] getBytes(ByteBuffer buf, byte[] bytes) {
+    buf.get(bytes);
+    return bytes;
+  }
+
+  private static final class Entry<V> {
+    final V value;
+    final long fetchedAtMillis;
+
+    Entry(V value, long fetchedAtMillis) {
+      this.value = value;
+      this.fetchedAtMillis = fetchedAtMillis;
+    }
+  }
+}
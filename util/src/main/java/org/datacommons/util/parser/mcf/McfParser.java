@@ -17,10 +17,17 @@ package org.datacommons.util;
 import static org.datacommons.proto.Mcf.ValueType.RESOLVED_REF;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CharsetDecoder;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -37,16 +44,21 @@ public class McfParser {
 
   static String IN_MEMORY_FILE_NAME = "InMemory";
 
-  private McfGraph.Builder graph;
+  private Mcf.McfType type;
   private LogWrapper logCtx;
   private boolean isResolved;
   private String curEntity;
+  // The node being parsed (curEntity), built up one property line at a time. Values of a property
+  // are de-duplicated in the order they were seen.
+  private NodeBuilder curNode;
+  // A node that was completed by the last line, to be returned by parseNextNode().
+  private NodeBuilder doneNode;
   private long lineNum = 0;
   private int curEntityLineIdx = 0;
-  private String prevEntity;
   private boolean finished = false;
   private String fileName;
   private Iterator<String> lines;
+  private final StringUtil.SplitAndStripArg ssArg = newSplitAndStripArg();
 
   // Create an McfParser instance based on type and a bool indicating whether the MCF is resolved
   // (DCIDs assigned).
@@ -54,8 +66,7 @@ public class McfParser {
       Mcf.McfType type, String fileName, boolean isResolved, LogWrapper logCtx) throws IOException {
     McfParser parser = init(type, isResolved);
     parser.logCtx = logCtx;
-    parser.lines =
-        Files.lines(FileSystems.getDefault().getPath(fileName), StandardCharsets.UTF_8).iterator();
+    parser.lines = new MappedLines(FileSystems.getDefault().getPath(fileName));
     parser.fileName = Path.of(fileName).getFileName().toString();
     return parser;
   }
@@ -89,15 +100,14 @@ public class McfParser {
       String line = lines.next();
       lineNum++;
       parseLine(line);
-      McfGraph g = extractNode();
-      if (g != null) {
-        return McfUtil.mergeGraphs(Collections.singletonList(g));
+      if (doneNode != null) {
+        McfGraph g = doneNode.toGraph(type);
+        doneNode = null;
+        return g;
       }
     }
     // End of file.
-    McfGraph g = finish();
-    if (g == null) return null;
-    return McfUtil.mergeGraphs(Collections.singletonList(g));
+    return finish();
   }
 
   // Parse a line of MCF file.
@@ -146,7 +156,7 @@ public class McfParser {
                 + "'");
         return;
       }
-      if (graph.getType() == Mcf.McfType.TEMPLATE_MCF) {
+      if (type == Mcf.McfType.TEMPLATE_MCF) {
         LogCb logCb = getLogCb().setDetail(LogCb.VALUE_KEY, rhs);
         SchemaTerm term = parseSchemaTerm(rhs, logCb);
         if (term.type != SchemaTerm.Type.ENTITY) {
@@ -157,14 +167,8 @@ public class McfParser {
                   + "'");
           return;
         }
-      } else {
-        // New entity scope begins.
-        parseNodeName(rhs);
       }
-      prevEntity = curEntity;
-      curEntity = rhs;
-      curEntityLineIdx = 0;
-      addNodeLocation();
+      startNode(rhs);
     } else {
       if (curEntity.isEmpty()) {
         logError(
@@ -178,45 +182,32 @@ public class McfParser {
     }
   }
 
-  private void addNodeLocation() {
-    assert !curEntity.isEmpty();
-    assert curEntityLineIdx == 0;
-
-    McfGraph.PropertyValues.Builder pvs =
-        graph
-            .getNodesOrDefault(curEntity, McfGraph.PropertyValues.getDefaultInstance())
-            .toBuilder();
-    LogLocation.Location.Builder location = pvs.addLocationsBuilder();
-    location.setFile(fileName);
-    location.setLineNumber(lineNum);
-    graph.putNodes(curEntity, pvs.build());
+  // Begins a new entity scope for |entity|, completing the current node.
+  private void startNode(String entity) {
+    // The 'Node' line (its DCID and location) belongs to the node with that name that is being
+    // built, if any, else to a new node. Either way, the current node is complete after this line.
+    NodeBuilder node = entity.equals(curEntity) ? curNode : new NodeBuilder(entity);
+    if (type != Mcf.McfType.TEMPLATE_MCF) {
+      parseNodeName(node, entity);
+    }
+    node.locations.add(
+        LogLocation.Location.newBuilder().setFile(fileName).setLineNumber(lineNum).build());
+    if (curNode != null) {
+      doneNode = curNode;
+    }
+    curNode = node == curNode ? new NodeBuilder(entity) : node;
+    curEntity = entity;
+    curEntityLineIdx = 0;
   }
 
   private static McfParser init(Mcf.McfType type, boolean isResolved) {
     McfParser parser = new McfParser();
-    parser.graph = McfGraph.newBuilder();
-    parser.graph.setType(type);
+    parser.type = type;
     parser.isResolved = isResolved;
     parser.curEntity = "";
-    parser.prevEntity = "";
     return parser;
   }
 
-  // Extracts and returns the previous full node, if any, as a single-node McfGraph proto. This is
-  // typically used to extract single-node graphs.
-  private McfGraph extractNode() throws IllegalArgumentException {
-    // If we are at the beginning or not at node boundary, nothing to extract.
-    if (prevEntity.length() == 0 || curEntityLineIdx != 0) {
-      return null;
-    }
-    McfGraph.Builder node = McfGraph.newBuilder();
-    node.setType(graph.getType());
-    node.putNodes(prevEntity, graph.getNodesOrThrow(prevEntity));
-    graph.removeNodes(prevEntity);
-    prevEntity = "";
-    return node.build();
-  }
-
   // To be called after processing all lines of an MCF file (by calling parseLine()).
   private McfGraph finish() throws AssertionError {
     if (finished) {
@@ -231,7 +222,7 @@ public class McfParser {
       logError(
           "MCF_MalformedNode", "Found a 'Node' without properties :: node: '" + curEntity + "'");
     }
-    return graph.build();
+    return curNode.toGraph(type);
   }
 
   private static McfGraph parseMcfString(
@@ -258,39 +249,18 @@ public class McfParser {
     return McfUtil.mergeGraphs(graphs);
   }
 
-  private void parseNodeName(String node) {
+  private void parseNodeName(NodeBuilder pvs, String node) {
     if (Vocabulary.isGlobalReference(node)) {
-      String prop = Vocabulary.DCID;
-      McfGraph.PropertyValues.Builder pvs =
-          graph.getNodesOrDefault(node, McfGraph.PropertyValues.getDefaultInstance()).toBuilder();
-      McfGraph.Values.Builder vals =
-          pvs.getPvsOrDefault(prop, McfGraph.Values.getDefaultInstance()).toBuilder();
-      McfGraph.TypedValue.Builder tval = vals.addTypedValuesBuilder();
+      McfGraph.TypedValue.Builder tval = McfGraph.TypedValue.newBuilder();
       tval.setValue(node.substring(node.indexOf(Vocabulary.REFERENCE_DELIMITER) + 1));
       tval.setType(Mcf.ValueType.TEXT);
-      pvs.putPvs(prop, vals.build());
-      graph.putNodes(node, pvs.build());
+      pvs.values(Vocabulary.DCID).add(tval.build());
     }
   }
 
   private void parseValues(String prop, String values) {
     if (prop.isEmpty() || values.isEmpty()) return;
 
-    McfGraph.PropertyValues.Builder pvs =
-        graph
-            .getNodesOrDefault(curEntity, McfGraph.PropertyValues.getDefaultInstance())
-            .toBuilder();
-    McfGraph.Values.Builder vals =
-        pvs.getPvsOrDefault(prop, McfGraph.Values.getDefaultInstance()).toBuilder();
-    if (prop.equals(Vocabulary.DCID) && Vocabulary.isGlobalReference(curEntity)) {
-      vals.clearTypedValues();
-    }
-
-    StringUtil.SplitAndStripArg ssArg = new StringUtil.SplitAndStripArg();
-    ssArg.delimiter = Vocabulary.VALUE_SEPARATOR;
-    ssArg.includeEmpty = false;
-    ssArg.stripEnclosingQuotes = false;
-    ssArg.stripEscapesBeforeQuotes = true;
     LogCb logCb =
         getLogCb()
             .setDetail(LogCb.PROP_KEY, prop)
@@ -299,18 +269,30 @@ public class McfParser {
             .setCounterSuffix(prop);
     List<String> fields = StringUtil.splitAndStripWithQuoteEscape(values, ssArg, logCb);
     logCb.setCounterSuffix("");
+    // A 'dcid' property overrides the DCID from a 'Node: dcid:...' line, provided it has a valid
+    // value.
+    boolean replace = prop.equals(Vocabulary.DCID) && Vocabulary.isGlobalReference(curEntity);
+    Set<McfGraph.TypedValue> vals = replace ? new LinkedHashSet<>() : curNode.values(prop);
     for (String field : fields) {
       logCb.setDetail(LogCb.VALUE_KEY, field);
       McfGraph.TypedValue.Builder newTypedValue =
-          parseTypedValue(graph.getType(), isResolved, prop, field, logCb);
+          parseTypedValue(type, isResolved, prop, field, logCb);
       if (newTypedValue != null) {
-        vals.addTypedValues(newTypedValue.build());
+        vals.add(newTypedValue.build());
       }
     }
-    if (vals.getTypedValuesCount() > 0) {
-      pvs.putPvs(prop, vals.build());
+    if (replace && !vals.isEmpty()) {
+      curNode.pvs.put(prop, vals);
     }
-    graph.putNodes(curEntity, pvs.build());
+  }
+
+  private static StringUtil.SplitAndStripArg newSplitAndStripArg() {
+    StringUtil.SplitAndStripArg ssArg = new StringUtil.SplitAndStripArg();
+    ssArg.delimiter = Vocabulary.VALUE_SEPARATOR;
+    ssArg.includeEmpty = false;
+    ssArg.stripEnclosingQuotes = false;
+    ssArg.stripEscapesBeforeQuotes = true;
+    return ssArg;
   }
 
   private void logError(String counter, String message) {
@@ -476,4 +458,121 @@ public class McfParser {
     }
     return term;
   }
+
+  // A node under construction, with de-duplicated values per property.
+  private static final class NodeBuilder {
+    final String id;
+    final Map<String, Set<McfGraph.TypedValue>> pvs = new LinkedHashMap<>();
+    final List<LogLocation.Location> locations = new ArrayList<>();
+
+    NodeBuilder(String id) {
+      this.id = id;
+    }
+
+    Set<McfGraph.TypedValue> values(String prop) {
+      return pvs.computeIfAbsent(prop, k -> new LinkedHashSet<>());
+    }
+
+    // Returns a graph with just this node. Like McfUtil.mergeGraphs(), a node with no values is
+    // left out (the graph is empty).
+    McfGraph toGraph(Mcf.McfType type) {
+      McfGraph.Builder graph = McfGraph.newBuilder().setType(type);
+      McfGraph.PropertyValues.Builder node = McfGraph.PropertyValues.newBuilder();
+      for (Map.Entry<String, Set<McfGraph.TypedValue>> pv : pvs.entrySet()) {
+        if (pv.getValue().isEmpty()) continue;
+        node.putPvs(
+            pv.getKey(), McfGraph.Values.newBuilder().addAllTypedValues(pv.getValue()).build());
+      }
+      if (node.getPvsCount() > 0) {
+        node.addAllLocations(locations);
+        graph.putNodes(id, node.build());
+      }
+      return graph.build();
+    }
+  }
+
+  // Iterates over the lines of a file by scanning memory-mapped windows of it for line breaks.
+  // Like Files.lines(), lines end at '\n', '\r' or "\r\n", and are decoded as strict UTF-8.
+  private static final class MappedLines implements Iterator<String> {
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private final Path path;
+    private final long fileSize;
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder();
+    private MappedByteBuffer window;
+    private long windowStart = 0;
+    private long pos = 0;
+    private byte[] lineBytes = new byte[1024];
+
+    MappedLines(Path path) throws IOException {
+      this.path = path;
+      this.fileSize = Files.size(path);
+      map(0);
+    }
+
+    @Override
+    public boolean hasNext() {
+      return pos < fileSize;
+    }
+
+    @Override
+    public String next() {
+      if (!hasNext()) throw new NoSuchElementException();
+      try {
+        while (true) {
+          int start = (int) (pos - windowStart);
+          int limit = window.limit();
+          boolean windowAtEof = windowStart + limit == fileSize;
+          boolean ascii = true;
+          for (int i = start; i < limit; i++) {
+            byte b = window.get(i);
+            if (b == '\n' || b == '\r') {
+              if (b == '\r' && i + 1 == limit && !windowAtEof) {
+                // Can't tell whether this is a "\r\n" yet.
+                break;
+              }
+              String line = decode(start, i - start, ascii);
+              int terminatorLength =
+                  b == '\r' && i + 1 < limit && window.get(i + 1) == '\n' ? 2 : 1;
+              pos = windowStart + i + terminatorLength;
+              return line;
+            }
+            if (b < 0) ascii = false;
+          }
+          if (windowAtEof) {
+            // Last line, without a line break.
+            String line = decode(start, limit - start, ascii);
+            pos = fileSize;
+            return line;
+          }
+          if (start == 0) {
+            throw new IOException("Line longer than " + WINDOW_SIZE + " bytes in " + path);
+          }
+          map(pos);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+
+    private String decode(int offset, int length, boolean ascii) throws CharacterCodingException {
+      if (lineBytes.length < length) {
+        lineBytes = new byte[Math.max(length, 2 * lineBytes.length)];
+      }
+      window.get(offset, lineBytes, 0, length);
+      if (ascii) {
+        return new String(lineBytes, 0, length, StandardCharsets.ISO_8859_1);
+      }
+      return decoder.decode(ByteBuffer.wrap(lineBytes, 0, length)).toString();
+    }
+
+    private void map(long start) throws IOException {
+      try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+        windowStart = start;
+        window =
+            channel.map(
+                FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, fileSize - start));
+      }
+    }
+  }
 }
@@ -15,20 +15,21 @@
 package org.datacommons.util;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.SequenceInputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ThreadLocalRandom;
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.io.input.BOMInputStream;
+import org.apache.commons.io.input.BoundedInputStream;
 import org.datacommons.proto.Debug;
 import org.datacommons.proto.LogLocation;
 import org.datacommons.proto.Mcf;
@@ -46,15 +47,30 @@ public class TmcfCsvParser {
   // csvparser.getCurrentLineNumber() because that function does not increment
   // the line number for the last line that does not end in a newline.
   private long currentLineNumber;
+  private Path csvFilePath;
   private String csvFileName;
-  private CSVParser csvParser;
+  private CsvReader.Type csvReaderType;
+  private CsvReader csvReader;
   private LogWrapper logCtx;
   private HashMap<String, Integer> cleanedColumnMap;
+  private CompiledTemplate template;
+  private final StringUtil.SplitAndStripArg ssArg = new StringUtil.SplitAndStripArg();
 
   // Build a parser given a TMCF file, CSV file, CSV delimiter and a log context.
   public static TmcfCsvParser init(
       String tmcfFile, String csvFile, char delimiter, LogWrapper logCtx)
       throws IOException, InterruptedException {
+    return init(tmcfFile, csvFile, delimiter, logCtx, CsvReader.Type.COMMONS);
+  }
+
+  // Like above, with the CSV read by the given type of CsvReader.
+  public static TmcfCsvParser init(
+      String tmcfFile,
+      String csvFile,
+      char delimiter,
+      LogWrapper logCtx,
+      CsvReader.Type csvReaderType)
+      throws IOException, InterruptedException {
     // Strip out any BOM characters (from old Excel CSVs)
     Reader reader =
         new InputStreamReader(new BOMInputStream(Files.newInputStream(Paths.get(csvFile))));
@@ -63,22 +79,14 @@ public class TmcfCsvParser {
     tmcfCsvParser.tmcf = McfParser.parseTemplateMcfFile(tmcfFile, logCtx);
     tmcfCsvParser.logCtx = logCtx;
     tmcfCsvParser.currentLineNumber = 1;
-    tmcfCsvParser.csvParser =
-        CSVParser.parse(
-            reader,
-            CSVFormat.DEFAULT
-                .withDelimiter(delimiter)
-                .withEscape('\\')
-                .withHeader()
-                .withAllowMissingColumnNames()
-                .withSkipHeaderRecord()
-                .withIgnoreEmptyLines()
-                .withIgnoreSurroundingSpaces());
+    tmcfCsvParser.csvReaderType = csvReaderType;
+    tmcfCsvParser.csvReader = CsvReader.open(reader, delimiter, csvReaderType);
     tmcfCsvParser.delimiter = delimiter;
 
-    tmcfCsvParser.csvFileName = Path.of(csvFile).getFileName().toString();
+    tmcfCsvParser.csvFilePath = Path.of(csvFile);
+    tmcfCsvParser.csvFileName = tmcfCsvParser.csvFilePath.getFileName().toString();
     // Clean and keep a copy of the header map.
-    if (tmcfCsvParser.csvParser.getHeaderMap() == null) {
+    if (tmcfCsvParser.csvReader.getHeaderMap() == null) {
       tmcfCsvParser.logCtx.addEntry(
           Debug.Log.Level.LEVEL_FATAL,
           "CSV_HeaderFailure",
@@ -91,7 +99,7 @@ public class TmcfCsvParser {
     // Check TMCF.
     boolean success =
         McfChecker.checkTemplate(
-            tmcfCsvParser.tmcf, tmcfCsvParser.csvParser.getHeaderMap().keySet(), null, logCtx);
+            tmcfCsvParser.tmcf, tmcfCsvParser.csvReader.getHeaderMap().keySet(), null, logCtx);
     if (!success) {
       var fileName = Path.of(tmcfFile).getFileName().toString();
       tmcfCsvParser.logCtx.addEntry(
@@ -105,35 +113,221 @@ public class TmcfCsvParser {
     }
 
     tmcfCsvParser.cleanedColumnMap = new HashMap<>();
-    for (Map.Entry<String, Integer> e : tmcfCsvParser.csvParser.getHeaderMap().entrySet()) {
+    for (Map.Entry<String, Integer> e : tmcfCsvParser.csvReader.getHeaderMap().entrySet()) {
       tmcfCsvParser.cleanedColumnMap.put(e.getKey().strip(), e.getValue());
     }
+    tmcfCsvParser.template =
+        new CompiledTemplate(tmcfCsvParser.tmcf, tmcfCsvParser.cleanedColumnMap);
+    tmcfCsvParser.initSplitAndStripArg();
     return tmcfCsvParser;
   }
 
+  // Build a parser over a range of records of the same CSV file (see CsvSplitter). The TMCF and
+  // header were already parsed and checked by this parser, so nothing is re-logged. Row numbers
+  // continue from the records preceding the range. Every range parser is independent and may be
+  // used from its own thread.
+  public TmcfCsvParser newRangeParser(CsvSplitter.Range range) throws IOException {
+    InputStream header = openSlice(csvFilePath, 0, range.headerEnd);
+    InputStream rows = openSlice(csvFilePath, range.start, range.end);
+    Reader reader =
+        new InputStreamReader(new BOMInputStream(new SequenceInputStream(header, rows)));
+
+    TmcfCsvParser rangeParser = new TmcfCsvParser();
+    rangeParser.tmcf = tmcf;
+    rangeParser.logCtx = logCtx;
+    rangeParser.currentLineNumber = 1 + range.recordsBefore;
+    rangeParser.csvReaderType = csvReaderType;
+    rangeParser.csvReader = CsvReader.open(reader, delimiter, csvReaderType);
+    rangeParser.delimiter = delimiter;
+    rangeParser.csvFilePath = csvFilePath;
+    rangeParser.csvFileName = csvFileName;
+    rangeParser.cleanedColumnMap = cleanedColumnMap;
+    rangeParser.template = template;
+    rangeParser.initSplitAndStripArg();
+    return rangeParser;
+  }
+
+  public void close() throws IOException {
+    csvReader.close();
+  }
+
+  private void initSplitAndStripArg() {
+    ssArg.delimiter = delimiter;
+    ssArg.includeEmpty = false;
+    ssArg.stripEnclosingQuotes = false;
+    ssArg.stripEscapesBeforeQuotes = true;
+  }
+
+  private static InputStream openSlice(Path file, long start, long end) throws IOException {
+    InputStream in = Files.newInputStream(file);
+    in.skipNBytes(start);
+    return new BoundedInputStream(in, end - start);
+  }
+
   // Parse the next row from the CSV. Returns null on EOF.
   public Mcf.McfGraph parseNextRow() throws IOException, InterruptedException {
-    if (!csvParser.iterator().hasNext()) {
+    if (!csvReader.next()) {
       return null;
     }
     RowProcessor processor = new RowProcessor();
     currentLineNumber++;
-    processor.process(csvParser.iterator().next());
+    processor.process(csvReader);
     return processor.instanceMcf();
   }
 
+  // The TMCF compiled against the CSV header, once per file. Schema terms are parsed and column
+  // names looked up upfront, so processing a row only substitutes the row's cells. Values whose
+  // terms are malformed are left to RowProcessor.interpretValue(), which logs the error for every
+  // row as before.
+  private static final class CompiledTemplate {
+    // In TMCF order.
+    final List<CompiledEntity> entities = new ArrayList<>();
+    // The entities with a 'dcid' property, whose DCIDs are assigned before any node is built.
+    final List<CompiledEntity> dcidEntities = new ArrayList<>();
+
+    CompiledTemplate(Mcf.McfGraph tmcf, Map<String, Integer> columnMap) {
+      Map<String, Integer> dcidSlots = new HashMap<>();
+      for (Map.Entry<String, Mcf.McfGraph.PropertyValues> node : tmcf.getNodesMap().entrySet()) {
+        if (node.getValue().getPvsMap().containsKey(Vocabulary.DCID)) {
+          dcidSlots.put(node.getKey(), dcidSlots.size());
+        }
+      }
+      for (Map.Entry<String, Mcf.McfGraph.PropertyValues> node : tmcf.getNodesMap().entrySet()) {
+        CompiledEntity entity = new CompiledEntity(node.getKey(), node.getValue(), dcidSlots);
+        for (Map.Entry<String, Mcf.McfGraph.Values> pv : node.getValue().getPvsMap().entrySet()) {
+          // Don't process functionalDeps
+          if (pv.getKey().equals(Vocabulary.FUNCTIONAL_DEPS)) continue;
+          CompiledProperty property =
+              new CompiledProperty(pv.getKey(), pv.getValue(), columnMap, dcidSlots);
+          entity.properties.add(property);
+          if (pv.getKey().equals(Vocabulary.DCID)) entity.dcid = property;
+        }
+        entities.add(entity);
+        if (entity.dcidSlot >= 0) dcidEntities.add(entity);
+      }
+    }
+  }
+
+  private static final class CompiledEntity {
+    // TMCF entity name (E:Table->E1).
+    final String name;
+    // Prefix of the node ID, to which the row ID is appended; null if the name is malformed.
+    final String nodeIdPrefix;
+    // Index in the row's DCIDs if the entity has a 'dcid' property, else -1.
+    final int dcidSlot;
+    final int numPvs;
+    final List<CompiledProperty> properties = new ArrayList<>();
+    CompiledProperty dcid;
+
+    CompiledEntity(String name, Mcf.McfGraph.PropertyValues pvs, Map<String, Integer> dcidSlots) {
+      this.name = name;
+      this.nodeIdPrefix = nodeIdPrefix(name);
+      this.dcidSlot = dcidSlots.getOrDefault(name, -1);
+      this.numPvs = pvs.getPvsCount();
+    }
+  }
+
+  private static final class CompiledProperty {
+    final String name;
+    final List<CompiledValue> values = new ArrayList<>();
+
+    CompiledProperty(
+        String name,
+        Mcf.McfGraph.Values templateValues,
+        Map<String, Integer> columnMap,
+        Map<String, Integer> dcidSlots) {
+      this.name = name;
+      for (Mcf.McfGraph.TypedValue typedValue : templateValues.getTypedValuesList()) {
+        values.add(new CompiledValue(name, typedValue, columnMap, dcidSlots));
+      }
+    }
+  }
+
+  private static final class CompiledValue {
+    enum Kind {
+      // Pass through the template value.
+      CONSTANT,
+      // Reference to another entity of the row.
+      ENTITY_REF,
+      // Cell value of a column.
+      COLUMN,
+      // Malformed, interpreted (and logged) on every row.
+      INTERPRETED
+    }
+
+    final Kind kind;
+    final Mcf.McfGraph.TypedValue templateValue;
+    // For ENTITY_REF: the referenced entity's node ID prefix and DCID slot (see CompiledEntity).
+    String refNodeIdPrefix;
+    int refDcidSlot = -1;
+    // For COLUMN.
+    String column;
+    int columnIndex;
+
+    CompiledValue(
+        String prop,
+        Mcf.McfGraph.TypedValue typedValue,
+        Map<String, Integer> columnMap,
+        Map<String, Integer> dcidSlots) {
+      templateValue = typedValue;
+      if (typedValue.getType() == Mcf.ValueType.TABLE_ENTITY) {
+        refDcidSlot = dcidSlots.getOrDefault(typedValue.getValue(), -1);
+        refNodeIdPrefix = nodeIdPrefix(typedValue.getValue());
+        kind =
+            prop.equals(Vocabulary.DCID) || (refDcidSlot < 0 && refNodeIdPrefix == null)
+                ? Kind.INTERPRETED
+                : Kind.ENTITY_REF;
+      } else if (typedValue.getType() == Mcf.ValueType.TABLE_COLUMN) {
+        McfParser.SchemaTerm term = parseTermQuietly(typedValue.getValue());
+        if (term != null
+            && term.type == McfParser.SchemaTerm.Type.COLUMN
+            && columnMap.containsKey(term.value)) {
+          kind = Kind.COLUMN;
+          column = term.value;
+          columnIndex = columnMap.get(column);
+        } else {
+          kind = Kind.INTERPRETED;
+        }
+      } else {
+        kind = Kind.CONSTANT;
+      }
+    }
+  }
+
+  // Returns the node ID prefix ("Table/E1/") for a TMCF entity name, or null if it is malformed.
+  private static String nodeIdPrefix(String entityId) {
+    McfParser.SchemaTerm term = parseTermQuietly(entityId);
+    if (term == null || term.type != McfParser.SchemaTerm.Type.ENTITY) return null;
+    return term.table + "/" + term.value + "/";
+  }
+
+  // Like McfParser.parseSchemaTerm(), but returns null instead of logging a malformed term.
+  private static McfParser.SchemaTerm parseTermQuietly(String value) {
+    int start = 0;
+    if (value.startsWith(Vocabulary.ENTITY_PREFIX)) {
+      start = Vocabulary.ENTITY_PREFIX.length();
+    } else if (value.startsWith(Vocabulary.COLUMN_PREFIX)) {
+      start = Vocabulary.COLUMN_PREFIX.length();
+    }
+    if (start > 0 && value.indexOf(Vocabulary.TABLE_DELIMITER, start) == -1) return null;
+    return McfParser.parseSchemaTerm(value, null);
+  }
+
   class RowProcessor {
     private Mcf.McfGraph.Builder instanceMcf;
-    // If there is a dcid prop, then this is a map from the entity name (Table->E1) to the dcid.
-    private HashMap<String, Mcf.McfGraph.TypedValue> entityToDcid;
-    private String currentNodeId;
-    private String currentProp;
+    // If there is a dcid prop, then this is the dcid of the entity (Table->E1), indexed by
+    // CompiledEntity.dcidSlot.
+    private Mcf.McfGraph.TypedValue[] entityDcids;
     private String rowId;
+    // Used for parseSchemaTerm(), parseTypedValue() and splitAndStripWithQuoteEscape(). All the
+    // details are set before every use.
+    private LogCb errCb;
+    private LogCb warnCb;
 
     public RowProcessor() {
       instanceMcf = Mcf.McfGraph.newBuilder();
       instanceMcf.setType(Mcf.McfType.INSTANCE_MCF);
-      entityToDcid = new HashMap<>();
+      entityDcids = new Mcf.McfGraph.TypedValue[template.dcidEntities.size()];
       rowId = TEST_mode ? String.valueOf(getCurrentLineNumber()) : newUUID();
     }
 
@@ -141,7 +335,7 @@ public class TmcfCsvParser {
       return instanceMcf.build();
     }
 
-    public void process(CSVRecord dataRow) throws IOException, InterruptedException {
+    public void process(CsvReader dataRow) throws IOException, InterruptedException {
       if (!dataRow.isConsistent()) {
         addLog(
             Debug.Log.Level.LEVEL_ERROR,
@@ -150,33 +344,24 @@ public class TmcfCsvParser {
         return;
       }
 
-      LogCb logCb =
-          new LogCb(logCtx, Debug.Log.Level.LEVEL_ERROR, csvFileName, getCurrentLineNumber());
-
-      // Process DCIDs from all the nodes first and add to entityToDcid map, which will be consulted
-      // to resolve entity references in processValues() function.
-      for (Map.Entry<String, Mcf.McfGraph.PropertyValues> tableEntity :
-          tmcf.getNodesMap().entrySet()) {
-        Map<String, Mcf.McfGraph.Values> pvs = tableEntity.getValue().getPvsMap();
-        if (!pvs.containsKey(Vocabulary.DCID)) continue;
+      errCb = new LogCb(logCtx, Debug.Log.Level.LEVEL_ERROR, csvFileName, getCurrentLineNumber());
+      warnCb =
+          new LogCb(logCtx, Debug.Log.Level.LEVEL_WARNING, csvFileName, getCurrentLineNumber());
 
+      // Process DCIDs from all the nodes first and add to entityDcids, which will be consulted
+      // to resolve entity references in parseValues() function.
+      for (CompiledEntity entity : template.dcidEntities) {
         // Register the fact that the user has mapped dcid, in case we continue below.
-        // TODO: Maybe this should move to after currentNodeId setting below.
-        entityToDcid.put(tableEntity.getKey(), Mcf.McfGraph.TypedValue.newBuilder().build());
-        logCb.setDetail(LogCb.VALUE_KEY, tableEntity.getKey());
-        currentNodeId = toNodeName(tableEntity.getKey(), logCb);
-        if (currentNodeId == null) continue;
+        entityDcids[entity.dcidSlot] = Mcf.McfGraph.TypedValue.getDefaultInstance();
 
-        currentProp = Vocabulary.DCID;
-        Mcf.McfGraph.Values dcidValues =
-            parseValues(tableEntity.getKey(), currentProp, pvs.get(currentProp), dataRow);
+        Mcf.McfGraph.Values dcidValues = parseValues(entity.name, entity.dcid, dataRow);
         if (dcidValues.getTypedValuesList().size() == 0) {
           // In this case parseValues must have logged accurate msg.
           continue;
         }
         Mcf.McfGraph.TypedValue tv = dcidValues.getTypedValues(0);
         if (tv.getType() == Mcf.ValueType.TEXT || tv.getType() == Mcf.ValueType.RESOLVED_REF) {
-          entityToDcid.put(tableEntity.getKey(), tv);
+          entityDcids[entity.dcidSlot] = tv;
         } else {
           addLog(
               Debug.Log.Level.LEVEL_WARNING,
@@ -184,39 +369,40 @@ public class TmcfCsvParser {
               "Malformed CSV value for dcid property; must be a text or reference :: value: '"
                   + tv.getValue()
                   + "', node: '"
-                  + tableEntity.getKey()
+                  + entity.name
                   + "'");
-          logCtx.incrementInfoCounterBy("CSV_MalformedDCIDPVFailures", pvs.size());
+          logCtx.incrementInfoCounterBy("CSV_MalformedDCIDPVFailures", entity.numPvs);
         }
       }
 
-      for (Map.Entry<String, Mcf.McfGraph.PropertyValues> tableEntity :
-          tmcf.getNodesMap().entrySet()) {
-        logCb.setDetail(LogCb.VALUE_KEY, tableEntity.getKey());
-        currentNodeId = toNodeName(tableEntity.getKey(), logCb);
+      for (CompiledEntity entity : template.entities) {
+        String currentNodeId;
+        if (entity.dcidSlot >= 0) {
+          currentNodeId = Vocabulary.DCID_PREFIX + entityDcids[entity.dcidSlot].getValue();
+        } else if (entity.nodeIdPrefix != null) {
+          currentNodeId = entity.nodeIdPrefix + rowId;
+        } else {
+          LogCb logCb =
+              new LogCb(logCtx, Debug.Log.Level.LEVEL_ERROR, csvFileName, getCurrentLineNumber())
+                  .setDetail(LogCb.VALUE_KEY, entity.name);
+          currentNodeId = toNodeName(entity.name, logCb);
+        }
         if (currentNodeId == null) continue;
         // Case of malformed/empty DCID. SKip this node (counters were updated above).
         if (currentNodeId.equals(Vocabulary.DCID_PREFIX)) continue;
 
         // Go over each property within the template.
         Mcf.McfGraph.PropertyValues.Builder nodeBuilder = Mcf.McfGraph.PropertyValues.newBuilder();
-        for (Map.Entry<String, Mcf.McfGraph.Values> pv :
-            tableEntity.getValue().getPvsMap().entrySet()) {
-          currentProp = pv.getKey();
-
-          // Don't process functionalDeps
-          if (currentProp.equals(Vocabulary.FUNCTIONAL_DEPS)) continue;
-
+        for (CompiledProperty property : entity.properties) {
           // Replace column names with values
-          Mcf.McfGraph.Values values =
-              parseValues(tableEntity.getKey(), currentProp, pv.getValue(), dataRow);
+          Mcf.McfGraph.Values values = parseValues(entity.name, property, dataRow);
           if (values.getTypedValuesCount() == 0) {
             // In this case parseValues must have logged accurate msg.
             continue;
           }
-          nodeBuilder.putPvs(currentProp, values);
+          nodeBuilder.putPvs(property.name, values);
         }
-        nodeBuilder.setTemplateNode(tableEntity.getKey());
+        nodeBuilder.setTemplateNode(entity.name);
         LogLocation.Location.Builder loc = nodeBuilder.addLocationsBuilder();
         loc.setFile(csvFileName);
         loc.setLineNumber(getCurrentLineNumber());
@@ -231,136 +417,172 @@ public class TmcfCsvParser {
     }
 
     private Mcf.McfGraph.Values parseValues(
+        String templateEntity, CompiledProperty property, CsvReader dataRow) {
+      Mcf.McfGraph.Values.Builder instanceValues = Mcf.McfGraph.Values.newBuilder();
+      errCb.setDetail(LogCb.PROP_KEY, property.name).setDetail(LogCb.NODE_KEY, templateEntity);
+      warnCb.setDetail(LogCb.PROP_KEY, property.name).setDetail(LogCb.NODE_KEY, templateEntity);
+
+      for (CompiledValue value : property.values) {
+        switch (value.kind) {
+          case CONSTANT:
+            // Pass through constant value.
+            instanceValues.addTypedValues(value.templateValue);
+            break;
+          case ENTITY_REF:
+            addEntityRef(templateEntity, property.name, value, instanceValues);
+            break;
+          case COLUMN:
+            addColumnValues(
+                property.name, value.column, value.columnIndex, dataRow, instanceValues);
+            break;
+          default:
+            interpretValue(
+                templateEntity, property.name, value.templateValue, dataRow, instanceValues);
+        }
+      }
+      return instanceValues.build();
+    }
+
+    private void addEntityRef(
         String templateEntity,
         String currentProp,
-        Mcf.McfGraph.Values templateValues,
-        CSVRecord dataRow) {
-      Mcf.McfGraph.Values.Builder instanceValues = Mcf.McfGraph.Values.newBuilder();
+        CompiledValue value,
+        Mcf.McfGraph.Values.Builder instanceValues) {
+      if (value.refDcidSlot >= 0 || value.refNodeIdPrefix.startsWith(Vocabulary.DCID_PREFIX)) {
+        Mcf.McfGraph.TypedValue dcidTypedVal =
+            value.refDcidSlot >= 0
+                ? entityDcids[value.refDcidSlot]
+                : Mcf.McfGraph.TypedValue.getDefaultInstance();
+        addDcidRef(templateEntity, currentProp, dcidTypedVal, instanceValues);
+      } else {
+        // This is an internal reference, so prefix "l:"
+        instanceValues.addTypedValues(
+            Mcf.McfGraph.TypedValue.newBuilder()
+                .setType(Mcf.ValueType.UNRESOLVED_REF)
+                .setValue(Vocabulary.INTERNAL_REF_PREFIX + value.refNodeIdPrefix + rowId));
+      }
+    }
 
-      // Used for parseSchemaTerm() and splitAndStripWithQuoteEscape()
-      LogCb errCb =
-          new LogCb(logCtx, Debug.Log.Level.LEVEL_ERROR, csvFileName, getCurrentLineNumber())
-              .setDetail(LogCb.PROP_KEY, currentProp)
-              .setDetail(LogCb.NODE_KEY, templateEntity);
-      LogCb warnCb =
-          new LogCb(logCtx, Debug.Log.Level.LEVEL_WARNING, csvFileName, getCurrentLineNumber())
-              .setDetail(LogCb.PROP_KEY, currentProp)
-              .setDetail(LogCb.NODE_KEY, templateEntity);
+    private void addDcidRef(
+        String templateEntity,
+        String currentProp,
+        Mcf.McfGraph.TypedValue dcidTypedVal,
+        Mcf.McfGraph.Values.Builder instanceValues) {
+      if (dcidTypedVal.getValue().isEmpty()) {
+        addLog(
+            Debug.Log.Level.LEVEL_WARNING,
+            "CSV_EmptyDcidReferences",
+            "In dcid:{entity} reference, found {entity} to be empty :: property: '"
+                + currentProp
+                + "', node: '"
+                + templateEntity
+                + "'");
+        return;
+      }
+      Mcf.McfGraph.TypedValue.Builder newTypedValue = Mcf.McfGraph.TypedValue.newBuilder();
+      newTypedValue.setType(Mcf.ValueType.RESOLVED_REF);
+      newTypedValue.setValue(dcidTypedVal.getValue());
+      if (dcidTypedVal.hasColumn()) {
+        newTypedValue.setColumn(dcidTypedVal.getColumn());
+      }
+      instanceValues.addTypedValues(newTypedValue.build());
+    }
 
-      for (Mcf.McfGraph.TypedValue typedValue : templateValues.getTypedValuesList()) {
-        if (typedValue.getType() == Mcf.ValueType.TABLE_ENTITY) {
-          if (currentProp.equals(Vocabulary.DCID)) {
-            // TODO: Add this check to checkTemplateNode(), and assert here
-            addLog(
-                Debug.Log.Level.LEVEL_ERROR,
-                "TMCF_TmcfEntityAsDcid",
-                "Value of dcid property is an 'E:' entity; must be a 'C:' column or "
-                    + "a constant :: value: '"
-                    + templateEntity
-                    + "'");
-            continue;
-          }
-          errCb.setDetail(LogCb.VALUE_KEY, typedValue.getValue());
-          String referenceNode = toNodeName(typedValue.getValue(), errCb);
-          Mcf.McfGraph.TypedValue.Builder newTypedValue = Mcf.McfGraph.TypedValue.newBuilder();
-          if (referenceNode.startsWith(Vocabulary.DCID_PREFIX)) {
-            Mcf.McfGraph.TypedValue dcidTypedVal =
-                entityToDcid.getOrDefault(
-                    typedValue.getValue(), Mcf.McfGraph.TypedValue.getDefaultInstance());
-            if (dcidTypedVal.getValue().isEmpty()) {
-              addLog(
-                  Debug.Log.Level.LEVEL_WARNING,
-                  "CSV_EmptyDcidReferences",
-                  "In dcid:{entity} reference, found {entity} to be empty :: property: '"
-                      + currentProp
-                      + "', node: '"
-                      + templateEntity
-                      + "'");
-              continue;
-            }
-            newTypedValue.setType(Mcf.ValueType.RESOLVED_REF);
-            newTypedValue.setValue(dcidTypedVal.getValue());
-            if (dcidTypedVal.hasColumn()) {
-              newTypedValue.setColumn(dcidTypedVal.getColumn());
-            }
-          } else {
-            // This is an internal reference, so prefix "l:"
-            newTypedValue.setType(Mcf.ValueType.UNRESOLVED_REF);
-            newTypedValue.setValue(Vocabulary.INTERNAL_REF_PREFIX + referenceNode);
-          }
-          instanceValues.addTypedValues(newTypedValue.build());
-        } else if (typedValue.getType() == Mcf.ValueType.TABLE_COLUMN) {
-          // Replace column-name with cell-value
-          errCb.setDetail(LogCb.VALUE_KEY, typedValue.getValue());
-          McfParser.SchemaTerm term = McfParser.parseSchemaTerm(typedValue.getValue(), errCb);
-          if (term == null) {
-            continue;
-          }
-          if (term.type != McfParser.SchemaTerm.Type.COLUMN) {
-            addLog(
-                Debug.Log.Level.LEVEL_ERROR,
-                "TMCF_UnexpectedNonColumn",
-                "Expected value to be a TMCF column that starts with 'C:' :: value: '"
-                    + typedValue.getValue()
-                    + "', property: '"
-                    + currentProp
-                    + "', node: '"
-                    + templateEntity
-                    + "'");
-            continue;
-          }
-          String column = term.value;
-          if (!cleanedColumnMap.containsKey(column)) {
-            addLog(
-                Debug.Log.Level.LEVEL_ERROR,
-                "CSV_TmcfMissingColumn",
-                "Column referred to in TMCF is missing from CSV header :: column: '"
-                    + column
-                    + "'");
-            continue;
-          }
-          int columnIndex = cleanedColumnMap.get(column);
-          if (columnIndex >= dataRow.size()) {
-            addLog(
-                Debug.Log.Level.LEVEL_WARNING,
-                "CSV_UnexpectedRow",
-                "Found row with fewer columns than expected :: row: '" + dataRow.toString() + "'");
-            continue;
-          }
+    private void addColumnValues(
+        String currentProp,
+        String column,
+        int columnIndex,
+        CsvReader dataRow,
+        Mcf.McfGraph.Values.Builder instanceValues) {
+      if (columnIndex >= dataRow.size()) {
+        addLog(
+            Debug.Log.Level.LEVEL_WARNING,
+            "CSV_UnexpectedRow",
+            "Found row with fewer columns than expected :: row: '"
+                + dataRow.recordToString()
+                + "'");
+        return;
+      }
 
-          StringUtil.SplitAndStripArg ssArg = new StringUtil.SplitAndStripArg();
-          ssArg.delimiter = delimiter;
-          ssArg.includeEmpty = false;
-          ssArg.stripEnclosingQuotes = false;
-          ssArg.stripEscapesBeforeQuotes = true;
-          String origValue = dataRow.get(columnIndex);
-          warnCb.setDetail(LogCb.VALUE_KEY, origValue);
-          warnCb.setDetail(LogCb.COLUMN_KEY, column);
-          warnCb.setCounterSuffix(currentProp);
-          List<String> values = StringUtil.splitAndStripWithQuoteEscape(origValue, ssArg, warnCb);
-          for (String value : values) {
-            errCb.setDetail(LogCb.VALUE_KEY, value);
-            Mcf.McfGraph.TypedValue.Builder newTypedValue =
-                McfParser.parseTypedValue(
-                    Mcf.McfType.INSTANCE_MCF, false, currentProp, value, errCb);
-            if (newTypedValue != null) {
-              newTypedValue.setColumn(column);
-              instanceValues.addTypedValues(newTypedValue.build());
-            }
-          }
-        } else {
-          // Pass through constant value.
-          instanceValues.addTypedValues(typedValue);
+      String origValue = dataRow.get(columnIndex);
+      warnCb.setDetail(LogCb.VALUE_KEY, origValue);
+      warnCb.setDetail(LogCb.COLUMN_KEY, column);
+      warnCb.setCounterSuffix(currentProp);
+      List<String> values = StringUtil.splitAndStripWithQuoteEscape(origValue, ssArg, warnCb);
+      for (String value : values) {
+        errCb.setDetail(LogCb.VALUE_KEY, value);
+        Mcf.McfGraph.TypedValue.Builder newTypedValue =
+            McfParser.parseTypedValue(Mcf.McfType.INSTANCE_MCF, false, currentProp, value, errCb);
+        if (newTypedValue != null) {
+          newTypedValue.setColumn(column);
+          instanceValues.addTypedValues(newTypedValue.build());
         }
       }
-      return instanceValues.build();
     }
 
-    private String toNodeName(String entityId, LogCb logCb) {
-      if (entityToDcid.containsKey(entityId)) {
-        return Vocabulary.DCID_PREFIX + entityToDcid.get(entityId).getValue();
+    // Substitutes a template value that did not compile, logging why.
+    private void interpretValue(
+        String templateEntity,
+        String currentProp,
+        Mcf.McfGraph.TypedValue typedValue,
+        CsvReader dataRow,
+        Mcf.McfGraph.Values.Builder instanceValues) {
+      if (typedValue.getType() == Mcf.ValueType.TABLE_ENTITY) {
+        if (currentProp.equals(Vocabulary.DCID)) {
+          // TODO: Add this check to checkTemplateNode(), and assert here
+          addLog(
+              Debug.Log.Level.LEVEL_ERROR,
+              "TMCF_TmcfEntityAsDcid",
+              "Value of dcid property is an 'E:' entity; must be a 'C:' column or "
+                  + "a constant :: value: '"
+                  + templateEntity
+                  + "'");
+          return;
+        }
+        errCb.setDetail(LogCb.VALUE_KEY, typedValue.getValue());
+        // Malformed entity name, logged by toNodeName().
+        String referenceNode = toNodeName(typedValue.getValue(), errCb);
+        if (referenceNode == null) return;
+        // This is an internal reference, so prefix "l:"
+        instanceValues.addTypedValues(
+            Mcf.McfGraph.TypedValue.newBuilder()
+                .setType(Mcf.ValueType.UNRESOLVED_REF)
+                .setValue(Vocabulary.INTERNAL_REF_PREFIX + referenceNode));
+      } else if (typedValue.getType() == Mcf.ValueType.TABLE_COLUMN) {
+        // Replace column-name with cell-value
+        errCb.setDetail(LogCb.VALUE_KEY, typedValue.getValue());
+        McfParser.SchemaTerm term = McfParser.parseSchemaTerm(typedValue.getValue(), errCb);
+        if (term == null) {
+          return;
+        }
+        if (term.type != McfParser.SchemaTerm.Type.COLUMN) {
+          addLog(
+              Debug.Log.Level.LEVEL_ERROR,
+              "TMCF_UnexpectedNonColumn",
+              "Expected value to be a TMCF column that starts with 'C:' :: value: '"
+                  + typedValue.getValue()
+                  + "', property: '"
+                  + currentProp
+                  + "', node: '"
+                  + templateEntity
+                  + "'");
+          return;
+        }
+        String column = term.value;
+        if (!cleanedColumnMap.containsKey(column)) {
+          addLog(
+              Debug.Log.Level.LEVEL_ERROR,
+              "CSV_TmcfMissingColumn",
+              "Column referred to in TMCF is missing from CSV header :: column: '" + column + "'");
+          return;
+        }
+        addColumnValues(currentProp, column, cleanedColumnMap.get(column), dataRow, instanceValues);
       }
+    }
 
+    // Only used for malformed entity names (which have no DCID); other node IDs are built from
+    // the compiled CompiledEntity.nodeIdPrefix.
+    private String toNodeName(String entityId, LogCb logCb) {
       McfParser.SchemaTerm term = McfParser.parseSchemaTerm(entityId, logCb);
       if (term == null) return null;
       if (term.type != McfParser.SchemaTerm.Type.ENTITY) {
@@ -344,7 +344,7 @@
                   <#list timeSeries as hash, seriesSummary>
                     <tr>
                       <td><a href="#places--${place}--${sv}" name="places--${place}--${sv}">${sv}</a></td>
-                      <td>${seriesSummary.getTimeSeries()?size}</td>
+                      <td>${seriesSummary.getNumDates()}</td>
                       <td>${seriesSummary.getDatesString()}</td>
                       <td>${seriesSummary.getValueString()}</td>
                       <td>
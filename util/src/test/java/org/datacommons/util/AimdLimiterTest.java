@@ -0,0 +1,97 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.junit.Test;
+
+public class AimdLimiterTest {
+  private static final String OK = "ok";
+  private static final String THROTTLED = "throttled";
+
+  @Test
+  public void queuesCallsOverTheLimit() {
+    AimdLimiter limiter = new AimdLimiter(2, 1, 10);
+    List<CompletableFuture<String>> calls = new ArrayList<>();
+    List<CompletableFuture<String>> results = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      results.add(limiter.submit(() -> newCall(calls), THROTTLED::equals));
+    }
+    // Only 2 calls are started.
+    assertEquals(2, calls.size());
+
+    calls.get(0).complete(OK);
+    assertTrue(results.get(0).isDone());
+    assertEquals(3, calls.size());
+    assertFalse(results.get(2).isDone());
+
+    calls.get(1).complete(OK);
+    calls.get(2).complete(OK);
+    calls.get(3).complete(OK);
+    for (var result : results) {
+      assertEquals(OK, result.join());
+    }
+    assertEquals(2, limiter.getMaxInFlight());
+  }
+
+  @Test
+  public void increasesAdditivelyAndDecreasesOncePerRound() {
+    AimdLimiter limiter = new AimdLimiter(4, 1, 100);
+    List<CompletableFuture<String>> calls = new ArrayList<>();
+    // Each round of successful calls raises the limit by about one.
+    int numRounds = 0;
+    while (limiter.getLimit() < 8) {
+      int limit = limiter.getLimit();
+      for (int i = 0; i < limit; i++) {
+        limiter.submit(() -> newCall(calls), THROTTLED::equals);
+      }
+      for (var call : calls) {
+        call.complete(OK);
+      }
+      calls.clear();
+      numRounds++;
+    }
+    assertTrue(numRounds >= 4 && numRounds <= 5);
+    assertEquals(8, limiter.getLimit());
+
+    // A round of throttled calls halves the limit just once.
+    for (int i = 0; i < 8; i++) {
+      limiter.submit(() -> newCall(calls), THROTTLED::equals);
+    }
+    for (var call : calls) {
+      call.complete(THROTTLED);
+    }
+    assertEquals(4, limiter.getLimit());
+
+    // Failed calls also count as throttled.
+    calls.clear();
+    var result = limiter.submit(() -> newCall(calls), THROTTLED::equals);
+    calls.get(0).completeExceptionally(new RuntimeException("connection reset"));
+    assertTrue(result.isCompletedExceptionally());
+    assertEquals(2, limiter.getLimit());
+  }
+
+  private static CompletableFuture<String> newCall(List<CompletableFuture<String>> calls) {
+    CompletableFuture<String> call = new CompletableFuture<>();
+    calls.add(call);
+    return call;
+  }
+}
@@ -0,0 +1,89 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CoordinatesCacheTest {
+  private static final Duration TTL = Duration.ofHours(10);
+  private static final Duration NEGATIVE_TTL = Duration.ofHours(2);
+  private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+  @Rule public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Test
+  public void persistsAcrossInstances() throws IOException {
+    Path path = testFolder.getRoot().toPath().resolve("coordinates.cache");
+    CoordinatesCache cache = newCache(path, START);
+    assertNull(cache.get("37.775#-122.419"));
+    cache.put("37.775#-122.419", List.of("geoId/0667000", "geoId/06075"));
+    cache.put("0.0#0.0", List.of());
+    cache.flush();
+    // Not flushed.
+    cache.put("51.51#-0.117", List.of("nuts/UKI32"));
+
+    CoordinatesCache reloaded = newCache(path, START.plus(Duration.ofHours(1)));
+    assertEquals(List.of("geoId/0667000", "geoId/06075"), reloaded.get("37.775#-122.419"));
+    assertEquals(List.of(), reloaded.get("0.0#0.0"));
+    assertNull(reloaded.get("51.51#-0.117"));
+
+    // Coordinates that did not resolve expire sooner.
+    CoordinatesCache later = newCache(path, START.plus(Duration.ofHours(3)));
+    assertEquals(List.of("geoId/0667000", "geoId/06075"), later.get("37.775#-122.419"));
+    assertNull(later.get("0.0#0.0"));
+
+    assertNull(newCache(path, START.plus(Duration.ofHours(11))).get("37.775#-122.419"));
+  }
+
+  @Test
+  public void recoversFromTruncatedFile() throws IOException {
+    Path path = testFolder.getRoot().toPath().resolve("coordinates.cache");
+    CoordinatesCache cache = newCache(path, START);
+    cache.put("37.775#-122.419", List.of("geoId/0667000"));
+    cache.put("51.51#-0.117", List.of("nuts/UKI32"));
+    cache.flush();
+    // As if the last append was interrupted.
+    byte[] bytes = Files.readAllBytes(path);
+    Files.write(path, Arrays.copyOf(bytes, bytes.length - 12));
+
+    CoordinatesCache reloaded = newCache(path, START);
+    assertEquals(List.of("geoId/0667000"), reloaded.get("37.775#-122.419"));
+    assertNull(reloaded.get("51.51#-0.117"));
+    reloaded.put("51.51#-0.117", List.of("nuts/UKI32"));
+    reloaded.flush();
+
+    CoordinatesCache again = newCache(path, START);
+    assertEquals(List.of("geoId/0667000"), again.get("37.775#-122.419"));
+    assertEquals(List.of("nuts/UKI32"), again.get("51.51#-0.117"));
+  }
+
+  private static CoordinatesCache newCache(Path path, Instant now) {
+    return new CoordinatesCache(path, TTL, NEGATIVE_TTL, Clock.fixed(now, ZoneOffset.UTC));
+  }
+}
@@ -6,12 +6,26 @@ import static java.net.http.HttpClient.newHttpClient;
 import static org.datacommons.util.TestUtil.newLogCtx;
 import static org.datacommons.util.Vocabulary.LATITUDE;
 import static org.datacommons.util.Vocabulary.LONGITUDE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import org.datacommons.proto.Mcf.McfGraph.PropertyValues;
 import org.datacommons.proto.Mcf.ValueType;
+import org.datacommons.proto.Resolve.ResolveRequest;
+import org.datacommons.proto.Resolve.ResolveResponse;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class CoordinatesResolverTest {
   private static final PropertyValues SF =
@@ -29,6 +43,8 @@ public class CoordinatesResolverTest {
   private static final PropertyValues UNSUBMITTED_NODE =
       newNode("City", Map.of(LATITUDE, "12.34", LONGITUDE, "56.78"));
 
+  @Rule public TemporaryFolder testFolder = new TemporaryFolder();
+
   @Test
   public void endToEnd() {
     CoordinatesResolver resolver =
@@ -55,6 +71,81 @@ public class CoordinatesResolverTest {
     assertThat(resolver.submit(NON_LAT_LNG_NODE)).isFalse();
   }
 
+  @Test
+  public void roundsAndCachesCoordinates() {
+    Path cachePath = testFolder.getRoot().toPath().resolve("coordinates.cache");
+    List<String> sent = new ArrayList<>();
+    ReconClient client = newCellClient(sent);
+    CoordinatesResolver resolver =
+        new CoordinatesResolver(
+            client, 3, new CoordinatesCache(cachePath, Duration.ofHours(1), Duration.ofHours(1)));
+
+    PropertyValues nearSf = newNode("City", Map.of(LATITUDE, "37.7751", LONGITUDE, "-122.4189"));
+    PropertyValues nowhere = newNode("Place", Map.of(LATITUDE, "0", LONGITUDE, "-0.0001"));
+    resolver.submit(SF);
+    resolver.submit(nearSf);
+    resolver.submit(nowhere);
+    resolver.drain();
+    // SF and the point near it fall in one cell.
+    assertThat(sent).containsExactly("37.775#-122.419", "0.0#0.0");
+    assertThat(resolver.resolve(SF)).hasValue("cell/37.775#-122.419");
+    assertThat(resolver.resolve(nearSf)).hasValue("cell/37.775#-122.419");
+    assertThat(resolver.resolve(nowhere)).isEmpty();
+
+    // A later run is served from the cache, including the cell that did not resolve.
+    ReconClient laterClient = newCellClient(sent);
+    CoordinatesResolver later =
+        new CoordinatesResolver(
+            laterClient,
+            3,
+            new CoordinatesCache(cachePath, Duration.ofHours(1), Duration.ofHours(1)));
+    later.submit(SF);
+    later.submit(nowhere);
+    later.drain();
+    verify(laterClient, times(0)).resolveAsync(any());
+    assertThat(later.resolve(SF)).hasValue("cell/37.775#-122.419");
+    assertThat(later.resolve(nowhere)).isEmpty();
+  }
+
+  @Test
+  public void doesNotCacheSnapshotResults() {
+    Path cachePath = testFolder.getRoot().toPath().resolve("coordinates.cache");
+    List<String> sent = new ArrayList<>();
+    CoordinatesResolver resolver =
+        new CoordinatesResolver(
+            newCellClient(sent, new KgSnapshot()),
+            3,
+            new CoordinatesCache(cachePath, Duration.ofHours(1), Duration.ofHours(1)));
+    resolver.submit(SF);
+    resolver.drain();
+    assertThat(resolver.resolve(SF)).hasValue("cell/37.775#-122.419");
+    assertThat(Files.exists(cachePath)).isFalse();
+  }
+
+  // Returns a client that resolves coordinates to "cell/<coordinates>", except for 0.0#0.0, and
+  // records the coordinates sent.
+  private static ReconClient newCellClient(List<String> sent) {
+    return newCellClient(sent, null);
+  }
+
+  private static ReconClient newCellClient(List<String> sent, KgSnapshot snapshot) {
+    ReconClient client = spy(new ReconClient(null, snapshot, newLogCtx(), 100));
+    doAnswer(
+            invocation -> {
+              ResolveRequest request = invocation.getArgument(0);
+              ResolveResponse.Builder response = ResolveResponse.newBuilder();
+              for (String node : request.getNodesList()) {
+                sent.add(node);
+                ResolveResponse.Entity.Builder entity = response.addEntitiesBuilder().setNode(node);
+                if (!node.equals("0.0#0.0")) entity.addCandidatesBuilder().setDcid("cell/" + node);
+              }
+              return CompletableFuture.completedFuture(response.build());
+            })
+        .when(client)
+        .resolveAsync(any());
+    return client;
+  }
+
   private static PropertyValues newNode(String typeOf, Map<String, String> props) {
     PropertyValues.Builder node = PropertyValues.newBuilder();
     node.putPvs(Vocabulary.TYPE_OF, McfUtil.newValues(ValueType.RESOLVED_REF, typeOf));
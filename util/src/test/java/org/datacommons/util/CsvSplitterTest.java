@@ -0,0 +1,142 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import org.datacommons.proto.Debug;
+import org.datacommons.proto.Mcf.McfGraph;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CsvSplitterTest {
+  @Rule public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Before
+  public void setUp() {
+    TmcfCsvParser.TEST_mode = true;
+  }
+
+  @Test
+  public void splitsOnRecordBoundaries() throws IOException {
+    String csv =
+        "\n"
+            + "A,B\r\n"
+            + "1,\"x\ny\"\r\n"
+            + "\n"
+            + "2,\"q\"\"\n\"\n"
+            + "3,a\\\nb\n"
+            + "4, \"5\n6\"\n"
+            + "5,z\"\n";
+    Path file = write("a.csv", csv);
+
+    List<CsvSplitter.Range> ranges = CsvSplitter.split(file, ',', 1);
+    List<String> got = new ArrayList<>();
+    for (var r : ranges) {
+      got.add(r.recordsBefore + ":" + slice(csv, r.start, r.end));
+    }
+    assertEquals(
+        List.of(
+            "0:1,\"x\ny\"\r\n",
+            "1:\n2,\"q\"\"\n\"\n",
+            "2:3,a\\\nb\n",
+            "3:4, \"5\n6\"\n",
+            "4:5,z\"\n"),
+        got);
+    for (var r : ranges) {
+      assertEquals(6, r.headerEnd);
+    }
+  }
+
+  @Test
+  public void noSplit() throws IOException {
+    Path file = write("a.csv", "A,B\n1,2\n3,4\n");
+    List<CsvSplitter.Range> ranges = CsvSplitter.split(file, ',', 1 << 20);
+    assertEquals(1, ranges.size());
+    assertEquals(4, ranges.get(0).start);
+    assertEquals(12, ranges.get(0).end);
+
+    // Without '\n' line breaks there is nothing to split on.
+    file = write("b.csv", "A,B\r1,2\r3,4\r");
+    ranges = CsvSplitter.split(file, ',', 1);
+    assertEquals(1, ranges.size());
+    assertEquals(0, ranges.get(0).start);
+  }
+
+  @Test
+  public void rangeParsersMatchFullParse() throws IOException, InterruptedException {
+    for (String name : List.of("TmcfCsvParser_SVO", "TmcfCsvParser_MultiValue")) {
+      String tmcf = resourceFile(name + ".tmcf");
+      String csv = resourceFile(name + ".csv");
+
+      LogWrapper fullLog = new LogWrapper(Debug.Log.newBuilder(), Paths.get("."));
+      TmcfCsvParser parser = TmcfCsvParser.init(tmcf, csv, ',', fullLog);
+      String want = parseAll(List.of(parser));
+
+      LogWrapper rangeLog = new LogWrapper(Debug.Log.newBuilder(), Paths.get("."));
+      TmcfCsvParser base = TmcfCsvParser.init(tmcf, csv, ',', rangeLog);
+      List<TmcfCsvParser> rangeParsers = new ArrayList<>();
+      List<CsvSplitter.Range> ranges = CsvSplitter.split(Path.of(csv), ',', 1);
+      for (var range : ranges) {
+        rangeParsers.add(base.newRangeParser(range));
+      }
+      base.close();
+      String got = parseAll(rangeParsers);
+
+      assertEquals(name, want, got);
+      assertEquals(
+          name, fullLog.getLog().getLevelSummaryMap(), rangeLog.getLog().getLevelSummaryMap());
+    }
+  }
+
+  private static String parseAll(List<TmcfCsvParser> parsers)
+      throws IOException, InterruptedException {
+    List<McfGraph> result = new ArrayList<>();
+    for (TmcfCsvParser parser : parsers) {
+      McfGraph graph;
+      while ((graph = parser.parseNextRow()) != null) {
+        result.add(graph);
+      }
+    }
+    return McfUtil.serializeMcfGraph(McfUtil.mergeGraphs(result), true);
+  }
+
+  private Path write(String name, String content) throws IOException {
+    Path file = testFolder.getRoot().toPath().resolve(name);
+    Files.writeString(file, content, StandardCharsets.UTF_8);
+    return file;
+  }
+
+  private static String slice(String s, long start, long end) {
+    return new String(
+        s.getBytes(StandardCharsets.UTF_8),
+        (int) start,
+        (int) (end - start),
+        StandardCharsets.UTF_8);
+  }
+
+  private String resourceFile(String resource) {
+    return this.getClass().getResource(resource).getPath();
+  }
+}
@@ -0,0 +1,129 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ExistenceCacheTest {
+  private static final Duration POSITIVE_TTL = Duration.ofHours(10);
+  private static final Duration NEGATIVE_TTL = Duration.ofHours(1);
+  private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+  @Rule public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Test
+  public void persistsAcrossInstances() throws IOException {
+    Path path = testFolder.getRoot().toPath().resolve("existence.cache");
+    ExistenceCache cache = newCache(path, START);
+    assertNull(cache.get("Count_Person"));
+    cache.put("Count_Person", true);
+    cache.put("Count_Nobody", false);
+    cache.flush();
+    cache.put("geoId/06", true);
+    cache.flush();
+    // Only the key that was not flushed is missing.
+    cache.put("Person,domainIncludes,Thing", true);
+
+    ExistenceCache reloaded = newCache(path, START.plus(Duration.ofMinutes(30)));
+    assertEquals(true, reloaded.get("Count_Person"));
+    assertEquals(false, reloaded.get("Count_Nobody"));
+    assertEquals(true, reloaded.get("geoId/06"));
+    assertNull(reloaded.get("Person,domainIncludes,Thing"));
+  }
+
+  @Test
+  public void expiresByTtl() throws IOException {
+    Path path = testFolder.getRoot().toPath().resolve("existence.cache");
+    ExistenceCache cache = newCache(path, START);
+    cache.put("Count_Person", true);
+    cache.put("Count_Nobody", false);
+    cache.flush();
+
+    // Negative results expire first.
+    ExistenceCache later = newCache(path, START.plus(Duration.ofHours(2)));
+    assertEquals(true, later.get("Count_Person"));
+    assertNull(later.get("Count_Nobody"));
+
+    ExistenceCache muchLater = newCache(path, START.plus(Duration.ofHours(11)));
+    assertNull(muchLater.get("Count_Person"));
+  }
+
+  @Test
+  public void latestResultWins() throws IOException {
+    Path path = testFolder.getRoot().toPath().resolve("existence.cache");
+    ExistenceCache cache = newCache(path, START);
+    cache.put("Count_Person", false);
+    cache.flush();
+    ExistenceCache later = newCache(path, START.plus(Duration.ofHours(2)));
+    assertNull(later.get("Count_Person"));
+    later.put("Count_Person", true);
+    later.flush();
+
+    assertEquals(true, newCache(path, START.plus(Duration.ofHours(3))).get("Count_Person"));
+  }
+
+  @Test
+  public void recoversFromTruncatedFile() throws IOException {
+    Path path = testFolder.getRoot().toPath().resolve("existence.cache");
+    ExistenceCache cache = newCache(path, START);
+    cache.put("Count_Person", true);
+    cache.put("Count_Household", true);
+    cache.flush();
+    // As if the last append was interrupted.
+    byte[] bytes = Files.readAllBytes(path);
+    Files.write(path, Arrays.copyOf(bytes, bytes.length - 3));
+
+    ExistenceCache reloaded = newCache(path, START);
+    assertEquals(true, reloaded.get("Count_Person"));
+    assertNull(reloaded.get("Count_Household"));
+    reloaded.put("Count_Household", true);
+    reloaded.flush();
+
+    ExistenceCache again = newCache(path, START);
+    assertEquals(true, again.get("Count_Person"));
+    assertEquals(true, again.get("Count_Household"));
+  }
+
+  @Test
+  public void leavesOtherFilesAlone() throws IOException {
+    Path path = testFolder.getRoot().toPath().resolve("notes.txt");
+    byte[] content = "Not an existence cache".getBytes(StandardCharsets.UTF_8);
+    Files.write(path, content);
+    ExistenceCache cache = newCache(path, START);
+    assertNull(cache.get("Count_Person"));
+    cache.put("Count_Person", true);
+    cache.flush();
+    assertArrayEquals(content, Files.readAllBytes(path));
+  }
+
+  private static ExistenceCache newCache(Path path, Instant now) {
+    return new ExistenceCache(path, POSITIVE_TTL, NEGATIVE_TTL, Clock.fixed(now, ZoneOffset.UTC));
+  }
+}
@@ -8,8 +8,18 @@ import static org.mockito.Mockito.*;
 
 import java.io.IOException;
 import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 import org.datacommons.proto.Debug;
 import org.datacommons.proto.Mcf;
 import org.junit.Test;
@@ -39,9 +49,11 @@ public class ExistenceCheckerTest {
 
     assertFalse(TestUtil.checkCounter(lw.getLog(), "Existence_MissingReference", 1));
 
-    // Non-existing node, response from RPC.
+    // Non-existing node, response from RPC. Full batches are sent in the background, so drain
+    // before checking the results.
     when(mockResp.body()).thenReturn(NONEXISTING_LAT);
     checker.submitNodeCheck("latitude", newLogCb(lw, PREF_KEY, "latitude1"));
+    checker.drainRemoteCalls();
     verify(mockHttp, times(1)).send(any(), any());
     assertTrue(TestUtil.checkCounter(lw.getLog(), "Existence_MissingReference", 1));
 
@@ -54,6 +66,7 @@ public class ExistenceCheckerTest {
     // Existing node, response from RPC.
     when(mockResp.body()).thenReturn(EXISTING_GENDER);
     checker.submitNodeCheck("gender", newLogCb(lw, PREF_KEY, "gender1"));
+    checker.drainRemoteCalls();
     verify(mockHttp, times(2)).send(any(), any());
     assertTrue(TestUtil.checkCounter(lw.getLog(), "Existence_MissingReference", 2));
 
@@ -89,6 +102,7 @@ public class ExistenceCheckerTest {
     when(mockResp.body()).thenReturn(NONEXISTING_LAT);
     checker.submitTripleCheck(
         "latitude", "rangeIncludes", "Place", newLogCb(lw, SUB_KEY, "latitude"));
+    checker.drainRemoteCalls();
     verify(mockHttp, times(1)).send(any(), any());
     assertTrue(TestUtil.checkCounter(lw.getLog(), "Existence_MissingTriple", 1));
 
@@ -102,6 +116,7 @@ public class ExistenceCheckerTest {
     when(mockResp.body()).thenReturn(EXISTING_GENDER);
     checker.submitTripleCheck(
         "gender", "domainIncludes", "Person", newLogCb(lw, SUB_KEY, "gender"));
+    checker.drainRemoteCalls();
     verify(mockHttp, times(2)).send(any(), any());
     assertTrue(TestUtil.checkCounter(lw.getLog(), "Existence_MissingTriple", 2));
 
@@ -120,6 +135,136 @@ public class ExistenceCheckerTest {
     assertTrue(TestUtil.checkCounter(lw.getLog(), "Existence_MissingTriple", 2));
   }
 
+  @Test
+  public void testInFlightChecksAreCoalesced() throws Exception {
+    var mockHttp = Mockito.mock(HttpClient.class);
+    var mockResp = Mockito.mock(HttpResponse.class);
+    var release = new CountDownLatch(1);
+    when(mockResp.body()).thenReturn(NONEXISTING_LAT);
+    when(mockHttp.send(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              release.await();
+              return mockResp;
+            });
+
+    LogWrapper lw = new LogWrapper(Debug.Log.newBuilder(), Path.of("InMemory"));
+    ExistenceChecker.DC_CALL_BATCH_LIMIT = 1;
+    var checker = new ExistenceChecker(mockHttp, false, lw);
+
+    // The first check is sent to DC, which does not answer until released. Checks of the same
+    // node from other threads meanwhile neither block nor make calls of their own.
+    checker.submitNodeCheck("latitude", newLogCb(lw, PREF_KEY, "latitude1"));
+    var others = Executors.newFixedThreadPool(2);
+    for (int i = 2; i <= 3; i++) {
+      String value = "latitude" + i;
+      others.submit(
+          () -> {
+            checker.submitNodeCheck("latitude", newLogCb(lw, PREF_KEY, value));
+            return null;
+          });
+    }
+    others.shutdown();
+    assertTrue(others.awaitTermination(10, TimeUnit.SECONDS));
+    assertFalse(TestUtil.checkCounter(lw.getLog(), "Existence_MissingReference", 1));
+
+    release.countDown();
+    checker.drainRemoteCalls();
+    verify(mockHttp, times(1)).send(any(), any());
+    assertTrue(TestUtil.checkCounter(lw.getLog(), "Existence_MissingReference", 3));
+  }
+
+  @Test
+  public void testFailedBatchIsBisected() throws IOException, InterruptedException {
+    var mockHttp = Mockito.mock(HttpClient.class);
+    // DC fails any call that includes node5, and finds none of the others.
+    when(mockHttp.send(any(), any()))
+        .thenAnswer(
+            invocation -> {
+              var resp = Mockito.mock(HttpResponse.class);
+              String body = requestBody(invocation.getArgument(0));
+              when(resp.body()).thenReturn(body.contains("\"node5\"") ? "{}" : "{\"data\":{}}");
+              return resp;
+            });
+
+    LogWrapper lw = new LogWrapper(Debug.Log.newBuilder(), Path.of("InMemory"));
+    ExistenceChecker.DC_CALL_BATCH_LIMIT = 16;
+    var checker = new ExistenceChecker(mockHttp, false, lw);
+    for (int i = 0; i < 16; i++) {
+      checker.submitNodeCheck("node" + i, newLogCb(lw, PREF_KEY, "node" + i));
+    }
+    checker.drainRemoteCalls();
+
+    // The batch, and then a half of each size down to node5 by itself: 1 + 2 * log2(16) calls.
+    verify(mockHttp, times(9)).send(any(), any());
+    assertTrue(TestUtil.checkCounter(lw.getLog(), "Existence_NumDcCalls", 9));
+    assertTrue(TestUtil.checkCounter(lw.getLog(), "Existence_FailedDcCall", 1));
+    assertTrue(TestUtil.checkCounter(lw.getLog(), "Existence_MissingReference", 15));
+    assertTrue(TestUtil.checkLog(lw.getLog(), "Existence_FailedDcCall", "node5"));
+  }
+
+  @Test
+  public void testBatchPayloadLimit() throws IOException, InterruptedException {
+    var mockHttp = Mockito.mock(HttpClient.class);
+    var mockResp = Mockito.mock(HttpResponse.class);
+    when(mockHttp.send(any(), any())).thenReturn(mockResp);
+    when(mockResp.body()).thenReturn("{\"data\":{}}");
+
+    LogWrapper lw = new LogWrapper(Debug.Log.newBuilder(), Path.of("InMemory"));
+    ExistenceChecker.DC_CALL_BATCH_LIMIT = 1000;
+    int payloadLimit = ExistenceChecker.MAX_BATCH_PAYLOAD_BYTES;
+    ExistenceChecker.MAX_BATCH_PAYLOAD_BYTES = 100;
+    try {
+      var checker = new ExistenceChecker(mockHttp, false, lw);
+      String prefix = "dc/" + "x".repeat(36);
+      checker.submitNodeCheck(prefix + "1", newLogCb(lw, PREF_KEY, "1"));
+      checker.submitNodeCheck(prefix + "2", newLogCb(lw, PREF_KEY, "2"));
+      verify(mockHttp, never()).send(any(), any());
+      // The third subject takes the batch past 100 bytes, so it is sent without a drain.
+      checker.submitNodeCheck(prefix + "3", newLogCb(lw, PREF_KEY, "3"));
+      verify(mockHttp, timeout(10000).times(1)).send(any(), any());
+      checker.drainRemoteCalls();
+      assertTrue(TestUtil.checkCounter(lw.getLog(), "Existence_MissingReference", 3));
+    } finally {
+      ExistenceChecker.MAX_BATCH_PAYLOAD_BYTES = payloadLimit;
+    }
+  }
+
+  @Test
+  public void testPersistentCache() throws IOException, InterruptedException {
+    Path cachePath = Files.createTempFile("existence", ".cache");
+    Files.delete(cachePath);
+    Duration ttl = Duration.ofHours(1);
+    ExistenceChecker.DC_CALL_BATCH_LIMIT = 1;
+
+    var mockHttp = Mockito.mock(HttpClient.class);
+    var mockResp = Mockito.mock(HttpResponse.class);
+    when(mockHttp.send(any(), any())).thenReturn(mockResp);
+    LogWrapper lw = new LogWrapper(Debug.Log.newBuilder(), Path.of("InMemory"));
+    var checker =
+        new ExistenceChecker(mockHttp, false, lw, new ExistenceCache(cachePath, ttl, ttl));
+    when(mockResp.body()).thenReturn(NONEXISTING_LAT);
+    checker.submitNodeCheck("latitude", newLogCb(lw, PREF_KEY, "latitude1"));
+    checker.drainRemoteCalls();
+    when(mockResp.body()).thenReturn(EXISTING_GENDER);
+    checker.submitNodeCheck("gender", newLogCb(lw, PREF_KEY, "gender1"));
+    checker.drainRemoteCalls();
+    verify(mockHttp, times(2)).send(any(), any());
+
+    // A later run gets both results from the cache, with no RPCs.
+    var laterHttp = Mockito.mock(HttpClient.class);
+    LogWrapper laterLw = new LogWrapper(Debug.Log.newBuilder(), Path.of("InMemory"));
+    var laterChecker =
+        new ExistenceChecker(laterHttp, false, laterLw, new ExistenceCache(cachePath, ttl, ttl));
+    laterChecker.submitNodeCheck("latitude", newLogCb(laterLw, PREF_KEY, "latitude2"));
+    laterChecker.submitNodeCheck("gender", newLogCb(laterLw, PREF_KEY, "gender2"));
+    laterChecker.drainRemoteCalls();
+    verify(laterHttp, never()).send(any(), any());
+    assertTrue(TestUtil.checkCounter(laterLw.getLog(), "Existence_MissingReference", 1));
+    assertTrue(TestUtil.checkCounter(laterLw.getLog(), "Existence_NumPersistentCacheHits", 2));
+    Files.delete(cachePath);
+  }
+
   @Test
   @org.junit.Ignore("Relies on external live network access to Data Commons production API")
   public void endToEnd() throws IOException, InterruptedException {
@@ -168,6 +313,38 @@ public class ExistenceCheckerTest {
     assertTrue(TestUtil.checkLog(lw.getLog(), "Existence_MissingTriple", "subPropertyOf"));
   }
 
+  private static String requestBody(HttpRequest request) throws Exception {
+    var body = new CompletableFuture<String>();
+    request
+        .bodyPublisher()
+        .orElseThrow()
+        .subscribe(
+            new Flow.Subscriber<ByteBuffer>() {
+              private final StringBuilder sb = new StringBuilder();
+
+              @Override
+              public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+              }
+
+              @Override
+              public void onNext(ByteBuffer item) {
+                sb.append(StandardCharsets.UTF_8.decode(item));
+              }
+
+              @Override
+              public void onError(Throwable throwable) {
+                body.completeExceptionally(throwable);
+              }
+
+              @Override
+              public void onComplete() {
+                body.complete(sb.toString());
+              }
+            });
+    return body.get(10, TimeUnit.SECONDS);
+  }
+
   private static LogCb newLogCb(LogWrapper lw, String key, String value) {
     var dummyNode = Mcf.McfGraph.PropertyValues.newBuilder().build();
     return new LogCb(lw, Debug.Log.Level.LEVEL_WARNING, dummyNode).setDetail(key, value);
@@ -0,0 +1,81 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+public class FastCsvReaderTest {
+  @Test
+  public void sameAsCommons() {
+    String[] csvs = {
+      "",
+      "a,b\n",
+      "a,b\n1,2",
+      "a,b\r\n1,2\r\n\r\n3,4\r\n",
+      "a,b\r1,2\r\r3\r",
+      "\n\na, b \n\n  1 ,  2  \n   \n3,\n,\n",
+      "a,b\n\"x, \"\"y\"\"\" , \"multi\nline\"\n",
+      "a,b\n\\\"q\\\",\\n\\t\\z\\\\\n",
+      "a,,\n1,2,3\n",
+      "a,b,a\n1,2,3\n",
+      "a,b\n\"unterminated\n",
+      "a,b\n\"x\" y,1\n",
+      "a,b\n1,2\\",
+      "a,b\n\uFFFE comment\n1,2\n",
+    };
+    for (String csv : csvs) {
+      assertEquals(csv, read(csv, CsvReader.Type.COMMONS), read(csv, CsvReader.Type.FAST));
+    }
+  }
+
+  @Test
+  public void fuzzSameAsCommons() {
+    char[] alphabet = {'a', 'b', 'n', ' ', '\t', ',', '"', '\\', '\n', '\r', '\uFFFE'};
+    Random random = new Random(42);
+    for (int i = 0; i < 5000; i++) {
+      StringBuilder csv = new StringBuilder();
+      int length = random.nextInt(40);
+      for (int j = 0; j < length; j++) {
+        csv.append(alphabet[random.nextInt(alphabet.length)]);
+      }
+      String input = csv.toString();
+      assertEquals(input, read(input, CsvReader.Type.COMMONS), read(input, CsvReader.Type.FAST));
+    }
+  }
+
+  // Returns the header and records read by the given reader, or the error it failed with.
+  private static List<String> read(String csv, CsvReader.Type type) {
+    List<String> result = new ArrayList<>();
+    try (CsvReader reader = CsvReader.open(new StringReader(csv), ',', type)) {
+      result.add(reader.getHeaderMap().toString());
+      while (reader.next()) {
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < reader.size(); i++) values.add(reader.get(i));
+        result.add(values + " " + reader.isConsistent() + " " + reader.recordToString());
+      }
+    } catch (Exception e) {
+      // commons-csv wraps errors in reading records in an IllegalStateException.
+      Throwable cause = e.getCause() != null ? e.getCause() : e;
+      result.add("error: " + cause.getMessage());
+    }
+    return result;
+  }
+}
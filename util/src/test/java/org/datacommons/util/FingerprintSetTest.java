@@ -0,0 +1,92 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+public class FingerprintSetTest {
+  @Test
+  public void matchesHashSet() {
+    FingerprintSet set = new FingerprintSet();
+    Set<String> expected = new HashSet<>();
+    Random random = new Random(7);
+    for (int i = 0; i < 200000; i++) {
+      String key = "geoId/" + random.nextInt(20000) + ",containedInPlace,country/USA";
+      switch (random.nextInt(3)) {
+        case 0:
+          assertEquals(expected.add(key), set.add(key));
+          break;
+        case 1:
+          assertEquals(expected.remove(key), set.remove(key));
+          break;
+        default:
+          assertEquals(expected.contains(key), set.contains(key));
+      }
+    }
+    assertEquals(expected.size(), set.size());
+    for (int i = 0; i < 20000; i++) {
+      String key = "geoId/" + i + ",containedInPlace,country/USA";
+      assertEquals(expected.contains(key), set.contains(key));
+    }
+  }
+
+  @Test
+  public void keepsCollidingKeysApart() {
+    // The first 64 bits of every key's fingerprint are the same, so all but one key collide.
+    FingerprintSet set =
+        new FingerprintSet(
+            key -> {
+              long tag = Hashing.murmur3_128().hashString(key, StandardCharsets.UTF_8).asLong();
+              return HashCode.fromBytes(
+                  ByteBuffer.allocate(16)
+                      .order(ByteOrder.LITTLE_ENDIAN)
+                      .putLong(42)
+                      .putLong(tag)
+                      .array());
+            });
+    assertTrue(set.add("Count_Person"));
+    assertTrue(set.add("Count_Household"));
+    assertTrue(set.add("Count_Farm"));
+    assertFalse(set.add("Count_Household"));
+    assertEquals(3, set.size());
+    assertTrue(set.contains("Count_Person"));
+    assertTrue(set.contains("Count_Household"));
+    assertFalse(set.contains("Count_Nobody"));
+
+    // Removing the key in the table leaves the colliding keys.
+    assertTrue(set.remove("Count_Person"));
+    assertFalse(set.contains("Count_Person"));
+    assertTrue(set.contains("Count_Household"));
+    assertTrue(set.contains("Count_Farm"));
+    assertFalse(set.add("Count_Farm"));
+    assertTrue(set.add("Count_Person"));
+    assertTrue(set.remove("Count_Farm"));
+    assertEquals(2, set.size());
+    assertTrue(set.contains("Count_Person"));
+    assertTrue(set.contains("Count_Household"));
+  }
+}
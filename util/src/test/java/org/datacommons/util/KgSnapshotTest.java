@@ -0,0 +1,147 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import static org.datacommons.util.LogCb.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import com.google.gson.JsonParser;
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.datacommons.proto.Debug;
+import org.datacommons.proto.Mcf;
+import org.datacommons.proto.Resolve.ResolveRequest;
+import org.datacommons.proto.Resolve.ResolveResponse;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mockito.Mockito;
+
+public class KgSnapshotTest {
+  private static final String SCHEMA_MCF =
+      "Node: dcid:Count_Person\n"
+          + "typeOf: dcs:StatisticalVariable\n"
+          + "statType: dcs:measuredValue\n"
+          + "\n"
+          + "Node: dcid:gender\n"
+          + "typeOf: schema:Property\n"
+          + "domainIncludes: dcs:Person\n"
+          + "\n"
+          + "Node: dcid:geoId/06\n"
+          + "typeOf: dcs:State\n"
+          + "name: \"California\"\n"
+          + "geoId: \"06\"\n";
+  private static final String PLACES_MCF =
+      "Node: dcid:geoId/06\n"
+          + "typeOf: dcs:State\n"
+          + "containedInPlace: dcid:country/USA\n"
+          + "\n"
+          + "Node: dcid:geoId/0649670\n"
+          + "typeOf: dcs:City\n"
+          + "name: \"Mountain View\"\n"
+          + "geoId: \"0649670\"\n";
+
+  @Rule public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Test
+  public void loadsMcfAndTfRecords() throws IOException {
+    KgSnapshot snapshot = newSnapshot();
+    assertEquals(4, snapshot.size());
+    assertEquals(
+        JsonParser.parseString(
+            "{\"geoId/06\":{\"out\":[{\"dcid\":\"State\"}]},"
+                + "\"geoId/0649670\":{\"out\":[{\"dcid\":\"City\"}]},"
+                + "\"geoId/99\":{\"out\":[]}}"),
+        snapshot.getPropertyValues(List.of("geoId/06", "geoId/0649670", "geoId/99"), "typeOf"));
+    // Nodes in both files are merged.
+    assertEquals(
+        JsonParser.parseString("{\"geoId/06\":{\"out\":[{\"dcid\":\"country/USA\"}]}}"),
+        snapshot.getPropertyValues(List.of("geoId/06"), "containedInPlace"));
+    assertEquals(
+        JsonParser.parseString("{\"geoId/06\":{\"out\":[{\"value\":\"California\"}]}}"),
+        snapshot.getPropertyValues(List.of("geoId/06"), "name"));
+  }
+
+  @Test
+  public void resolvesExternalIds() throws IOException {
+    KgSnapshot snapshot = newSnapshot();
+    ResolveResponse response =
+        snapshot.resolve(
+            ResolveRequest.newBuilder()
+                .addNodes("06")
+                .addNodes("0649670")
+                .addNodes("99")
+                .setProperty("<-geoId->dcid")
+                .build());
+    assertEquals(3, response.getEntitiesCount());
+    assertEquals("geoId/06", response.getEntities(0).getCandidates(0).getDcid());
+    assertEquals("geoId/0649670", response.getEntities(1).getCandidates(0).getDcid());
+    assertEquals(0, response.getEntities(2).getCandidatesCount());
+
+    // Coordinates are not resolved.
+    response =
+        snapshot.resolve(
+            ResolveRequest.newBuilder()
+                .addNodes("37.42#-122.08")
+                .setProperty("<-geoCoordinate->dcid")
+                .build());
+    assertEquals(0, response.getEntities(0).getCandidatesCount());
+  }
+
+  @Test
+  public void servesLookupsWithoutDcCalls() throws IOException, InterruptedException {
+    KgSnapshot snapshot = newSnapshot();
+    HttpClient mockHttp = Mockito.mock(HttpClient.class);
+    LogWrapper lw = new LogWrapper(Debug.Log.newBuilder(), Path.of("InMemory"));
+
+    ExistenceChecker checker =
+        new ExistenceChecker(
+            mockHttp, false, lw, null, ExistenceChecker.DEFAULT_MAX_CONCURRENT_DC_CALLS, snapshot);
+    checker.submitNodeCheck("Count_Person", newLogCb(lw, VALUE_KEY, "Count_Person"));
+    checker.submitNodeCheck("Count_Nobody", newLogCb(lw, VALUE_KEY, "Count_Nobody"));
+    checker.submitTripleCheck(
+        "gender", "domainIncludes", "Person", newLogCb(lw, VALUE_KEY, "gender"));
+    checker.submitTripleCheck(
+        "gender", "domainIncludes", "Place", newLogCb(lw, VALUE_KEY, "Place"));
+    checker.drainRemoteCalls();
+    assertTrue(TestUtil.checkCounter(lw.getLog(), "Existence_MissingReference", 1));
+    assertTrue(TestUtil.checkCounter(lw.getLog(), "Existence_MissingTriple", 1));
+
+    StatVarState statVarState = new StatVarState(mockHttp, snapshot, lw);
+    assertEquals("measuredValue", statVarState.getStatType("Count_Person"));
+
+    verifyNoInteractions(mockHttp);
+  }
+
+  private KgSnapshot newSnapshot() throws IOException {
+    Path mcf = testFolder.getRoot().toPath().resolve("schema.mcf");
+    Files.writeString(mcf, SCHEMA_MCF);
+    Path tfRecord = testFolder.getRoot().toPath().resolve("places.tfrecord.gz");
+    try (TfRecordWriter writer = new TfRecordWriter(tfRecord, McfWriter.Compression.GZIP)) {
+      writer.write(TestUtil.graphFromMcf(PLACES_MCF));
+    }
+    return KgSnapshot.load(List.of(mcf, tfRecord));
+  }
+
+  private static LogCb newLogCb(LogWrapper lw, String key, String value) {
+    var dummyNode = Mcf.McfGraph.PropertyValues.newBuilder().build();
+    return new LogCb(lw, Debug.Log.Level.LEVEL_WARNING, dummyNode).setDetail(key, value);
+  }
+}
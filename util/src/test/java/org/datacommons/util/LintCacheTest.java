@@ -0,0 +1,110 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import org.datacommons.proto.Debug;
+import org.datacommons.proto.Mcf.McfGraph;
+import org.datacommons.proto.Mcf.ValueType;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LintCacheTest {
+  @Rule public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Test
+  public void fingerprint() throws IOException {
+    File tmcf = newFile("input.tmcf", "Node: E:T->E0\ntypeOf: dcs:StatVarObservation\n");
+    File csv = newFile("input.csv", "a,b\n1,2\n");
+    String key = LintCache.fingerprint("stat-checks=true", List.of(tmcf, csv));
+
+    assertEquals(key, LintCache.fingerprint("stat-checks=true", List.of(tmcf, csv)));
+    assertNotEquals(key, LintCache.fingerprint("stat-checks=false", List.of(tmcf, csv)));
+    // A renamed file has different locations in the log.
+    File renamed = newFile("other.csv", "a,b\n1,2\n");
+    assertNotEquals(key, LintCache.fingerprint("stat-checks=true", List.of(tmcf, renamed)));
+    Files.writeString(csv.toPath(), "a,b\n1,3\n");
+    assertNotEquals(key, LintCache.fingerprint("stat-checks=true", List.of(tmcf, csv)));
+  }
+
+  @Test
+  public void writeAndRead() throws IOException {
+    LintCache cache = new LintCache(testFolder.getRoot().toPath().resolve("cache"));
+    assertNull(cache.getEntry("key"));
+
+    List<Debug.LintCacheRow> rows = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      McfGraph.Builder statNodes = McfGraph.newBuilder();
+      statNodes.putNodes(
+          "E" + i,
+          McfGraph.PropertyValues.newBuilder()
+              .putPvs(Vocabulary.VALUE, McfUtil.newValues(ValueType.NUMBER, String.valueOf(i)))
+              .build());
+      rows.add(
+          Debug.LintCacheRow.newBuilder()
+              .setSuccess(i % 3 != 0)
+              .setNumNodes(2)
+              .setNumPvs(i)
+              .setStatNodes(statNodes)
+              .build());
+    }
+    Debug.LintCacheEntry entry =
+        Debug.LintCacheEntry.newBuilder()
+            .setFile("input.csv")
+            .setLog(
+                Debug.Log.newBuilder()
+                    .addEntries(Debug.Log.Entry.newBuilder().setCounterKey("CSV_Foo")))
+            .build();
+    try (LintCache.Writer writer = cache.newWriter("key")) {
+      for (Debug.LintCacheRow row : rows) writer.addRow(row);
+      writer.commit(entry);
+    }
+
+    assertEquals(entry, cache.getEntry("key"));
+    List<Debug.LintCacheRow> got = new ArrayList<>();
+    try (LintCache.RowReader reader = cache.readRows("key")) {
+      Debug.LintCacheRow row;
+      while ((row = reader.nextRow()) != null) got.add(row);
+    }
+    assertThat(got).isEqualTo(rows);
+  }
+
+  @Test
+  public void uncommittedWriterLeavesNothing() throws IOException {
+    LintCache cache = new LintCache(testFolder.getRoot().toPath());
+    try (LintCache.Writer writer = cache.newWriter("key")) {
+      writer.addRow(Debug.LintCacheRow.newBuilder().setSuccess(true).build());
+    }
+    assertNull(cache.getEntry("key"));
+    assertThat(testFolder.getRoot().list()).isEmpty();
+  }
+
+  private File newFile(String name, String content) throws IOException {
+    File file = testFolder.newFile(name);
+    Files.writeString(file.toPath(), content, StandardCharsets.UTF_8);
+    return file;
+  }
+}
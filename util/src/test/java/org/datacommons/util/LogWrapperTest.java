@@ -76,4 +76,29 @@ public class LogWrapperTest {
         Debug.Log.Level.LEVEL_ERROR, "MCF_ErrorCounter51", "Foo Error", "TestInput.mcf", 51);
     assertFalse(lw.trackStatus(1, ""));
   }
+
+  @Test
+  public void recordAndReplay() throws IOException {
+    LogWrapper parent = new LogWrapper(Debug.Log.newBuilder());
+    parent.incrementInfoCounterBy("NumRowSuccesses", 3);
+    LogWrapper child = new LogWrapper(parent);
+    for (int i = 0; i < LogWrapper.MAX_MESSAGES_PER_COUNTER + 5; i++) {
+      child.addEntry(
+          Debug.Log.Level.LEVEL_WARNING, "CSV_EmptyValue", "Empty value", "TestInput.csv", i);
+    }
+    child.addEntry(Debug.Log.Level.LEVEL_ERROR, "CSV_BadRow", "Bad row", "TestInput.csv", 7);
+    child.incrementInfoCounterBy("CSV_GeneralStats", 42);
+
+    // The child records only what was added to it, and forwards everything to the parent.
+    Debug.Log recorded = child.getLog();
+    assertEquals(LogWrapper.MAX_MESSAGES_PER_COUNTER + 1, recorded.getEntriesCount());
+    assertFalse(recorded.getLevelSummaryOrThrow("LEVEL_INFO").containsCounters("NumRowSuccesses"));
+    assertEquals("0 fatal, 1 error(s), 1 warning(s)", parent.summaryString());
+
+    // Replaying the recording gives the same log as adding the entries again.
+    LogWrapper replayed = new LogWrapper(Debug.Log.newBuilder());
+    replayed.incrementInfoCounterBy("NumRowSuccesses", 3);
+    replayed.addRecordedLog(recorded);
+    assertEquals(parent.getLog(), replayed.getLog());
+  }
 }
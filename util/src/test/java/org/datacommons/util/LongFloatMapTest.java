@@ -0,0 +1,94 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class LongFloatMapTest {
+  @Test
+  public void putIfAbsentOrEquals() {
+    for (boolean offHeap : new boolean[] {false, true}) {
+      LongFloatMap map = new LongFloatMap(offHeap);
+      assertTrue(map.putIfAbsentOrEquals(42, 1.5f));
+      assertTrue(map.putIfAbsentOrEquals(42, 1.5f));
+      assertFalse(map.putIfAbsentOrEquals(42, 2.5f));
+      // The first value is kept.
+      assertEquals(Float.valueOf(1.5f), map.get(42));
+      // The key used to mark empty slots is a key too.
+      assertNull(map.get(0));
+      assertTrue(map.putIfAbsentOrEquals(0, 3f));
+      assertFalse(map.putIfAbsentOrEquals(0, 4f));
+      // Values are compared like Float.equals().
+      assertTrue(map.putIfAbsentOrEquals(-1, Float.NaN));
+      assertTrue(map.putIfAbsentOrEquals(-1, Float.NaN));
+      assertTrue(map.putIfAbsentOrEquals(Long.MIN_VALUE, 0f));
+      assertFalse(map.putIfAbsentOrEquals(Long.MIN_VALUE, -0f));
+      assertEquals(4, map.size());
+    }
+  }
+
+  @Test
+  public void growsAndKeepsEntries() {
+    for (boolean offHeap : new boolean[] {false, true}) {
+      LongFloatMap map = new LongFloatMap(offHeap);
+      int numKeys = 500_000;
+      for (int i = 1; i <= numKeys; i++) {
+        assertTrue(map.putIfAbsentOrEquals(mix(i), i));
+      }
+      assertEquals(numKeys, map.size());
+      for (int i = 1; i <= numKeys; i++) {
+        assertEquals(Float.valueOf(i), map.get(mix(i)));
+      }
+      assertNull(map.get(mix(numKeys + 1)));
+    }
+  }
+
+  @Test
+  public void oneValueWinsAcrossThreads() throws InterruptedException {
+    LongFloatMap map = new LongFloatMap(false);
+    int numKeys = 10_000;
+    int numThreads = 8;
+    AtomicInteger numMismatches = new AtomicInteger();
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    for (int t = 0; t < numThreads; t++) {
+      float value = t;
+      executor.execute(
+          () -> {
+            for (int i = 0; i < numKeys; i++) {
+              if (!map.putIfAbsentOrEquals(mix(i), value)) numMismatches.incrementAndGet();
+            }
+          });
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    // Each key got the value of one thread, and every other thread saw a mismatch.
+    assertEquals(numKeys, map.size());
+    assertEquals(numKeys * (numThreads - 1), numMismatches.get());
+  }
+
+  // Spreads small numbers over the keys, like fingerprints.
+  private static long mix(long i) {
+    return i * 0x9E3779B97F4A7C15L;
+  }
+}
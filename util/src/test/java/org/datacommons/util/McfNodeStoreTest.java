@@ -0,0 +1,103 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.datacommons.proto.Mcf;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class McfNodeStoreTest {
+  @Rule public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @After
+  public void tearDown() {
+    McfNodeStore.SEGMENT_SIZE_LIMIT = 1L << 30;
+  }
+
+  @Test
+  public void inMemory() throws IOException {
+    List<Mcf.McfGraph> graphs = makeGraphs(10);
+    McfNodeStore store = new McfNodeStore(1 << 20, testFolder.getRoot().toPath());
+    for (var g : graphs) store.add(g);
+
+    assertFalse(store.isSpilled());
+    assertEquals(10, store.size());
+    assertEquals(graphs, readAll(store));
+    assertEquals(0, testFolder.getRoot().listFiles().length);
+    store.close();
+  }
+
+  @Test
+  public void spilled() throws IOException {
+    McfNodeStore.SEGMENT_SIZE_LIMIT = 500;
+    List<Mcf.McfGraph> graphs = makeGraphs(100);
+    McfNodeStore store = new McfNodeStore(1000, testFolder.getRoot().toPath());
+    for (var g : graphs) store.add(g);
+
+    assertTrue(store.isSpilled());
+    assertEquals(100, store.size());
+    assertThat(testFolder.getRoot().listFiles().length).isGreaterThan(1);
+    // Multiple passes see the same graphs, in order.
+    assertEquals(graphs, readAll(store));
+    assertEquals(graphs, readAll(store));
+    assertEquals(McfUtil.mergeGraphs(graphs), McfUtil.mergeGraphs(store));
+
+    // Adds after a pass are picked up by the next pass.
+    Mcf.McfGraph extra = makeGraphs(1).get(0);
+    store.add(extra);
+    graphs.add(extra);
+    assertEquals(graphs, readAll(store));
+
+    store.close();
+    assertEquals(0, testFolder.getRoot().listFiles(File::isFile).length);
+  }
+
+  private static List<Mcf.McfGraph> readAll(McfNodeStore store) {
+    List<Mcf.McfGraph> result = new ArrayList<>();
+    for (var g : store) result.add(g);
+    return result;
+  }
+
+  private static List<Mcf.McfGraph> makeGraphs(int count) {
+    List<Mcf.McfGraph> graphs = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      graphs.add(
+          McfParser.parseInstanceMcfString(
+              "Node: dcid:Count_Person_"
+                  + i
+                  + "\n"
+                  + "typeOf: dcs:StatisticalVariable\n"
+                  + "populationType: dcs:Person\n"
+                  + "measuredProperty: dcs:count\n"
+                  + "name: \"Person count "
+                  + (i % 7)
+                  + "\"\n",
+              false,
+              null));
+    }
+    return graphs;
+  }
+}
@@ -21,17 +21,25 @@ import static org.junit.Assert.*;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import org.apache.commons.io.IOUtils;
 import org.datacommons.proto.Debug;
 import org.datacommons.proto.Debug.Log.Level;
 import org.datacommons.proto.Mcf.McfGraph;
 import org.datacommons.proto.Mcf.McfType;
 import org.datacommons.proto.Mcf.ValueType;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class McfParserTest {
+  @Rule public TemporaryFolder testFolder = new TemporaryFolder();
+
   @Test
   public void testQuoting() throws IOException, URISyntaxException {
     Debug.Log.Builder logCtx = Debug.Log.newBuilder();
@@ -121,6 +129,50 @@ public class McfParserTest {
     assertThat(act).ignoringRepeatedFieldOrder().isEqualTo(exp);
   }
 
+  @Test
+  public void funcParseFileLineBreaksAndDuplicates() throws IOException {
+    String mcf =
+        "Node: dcid:geoId/06\n"
+            + "typeOf: schema:State, schema:State\n"
+            + "name: \"California\"\n"
+            + "Node: dcid:geoId/06\n"
+            + "name: \"CA\", \"California\", \"CA\"\n"
+            + "Node: E:Obs->E1\n"
+            + "typeOf: dcs:StatVarObservation\n"
+            + "value: 10\n"
+            + "value: 10";
+    McfGraph exp = stripLocations(McfParser.parseInstanceMcfString(mcf, false, null));
+    for (String lineBreak : List.of("\n", "\r\n", "\r")) {
+      Path mcfFile = testFolder.newFile().toPath();
+      Files.writeString(mcfFile, mcf.replace("\n", lineBreak));
+      McfParser parser =
+          McfParser.init(McfType.INSTANCE_MCF, mcfFile.toString(), false, TestUtil.newLogCtx());
+      List<McfGraph> nodes = new ArrayList<>();
+      McfGraph n;
+      while ((n = parser.parseNextNode()) != null) {
+        for (McfGraph.PropertyValues pvs : n.getNodesMap().values()) {
+          for (McfGraph.Values vals : pvs.getPvsMap().values()) {
+            // Values are de-duplicated as nodes are built.
+            assertEquals(Set.copyOf(vals.getTypedValuesList()).size(), vals.getTypedValuesCount());
+          }
+        }
+        nodes.add(n);
+      }
+      assertEquals(3, nodes.size());
+      assertThat(stripLocations(McfUtil.mergeGraphs(nodes)))
+          .ignoringRepeatedFieldOrder()
+          .isEqualTo(exp);
+    }
+  }
+
+  private static McfGraph stripLocations(McfGraph graph) {
+    McfGraph.Builder result = graph.toBuilder();
+    for (var node : graph.getNodesMap().entrySet()) {
+      result.putNodes(node.getKey(), node.getValue().toBuilder().clearLocations().build());
+    }
+    return result.build();
+  }
+
   private McfGraph actual(String file_name, boolean isResolved)
       throws IOException, URISyntaxException {
     String mcfFile = this.getClass().getResource(file_name).getPath();
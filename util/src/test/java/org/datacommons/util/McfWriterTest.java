@@ -0,0 +1,124 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.datacommons.proto.LogLocation;
+import org.datacommons.proto.Mcf;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class McfWriterTest {
+  @Rule public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Test
+  public void matchesSerializeMcfGraph() throws IOException {
+    List<Mcf.McfGraph> graphs = testGraphs();
+    String expected = serializeAll(graphs);
+    // A tiny buffer forces a flush in the middle of almost every value.
+    for (int bufferSize : new int[] {1, 7, 1 << 20}) {
+      Path path = testFolder.newFile().toPath();
+      try (McfWriter writer = new McfWriter(path, McfWriter.Compression.NONE, bufferSize)) {
+        for (Mcf.McfGraph g : graphs) writer.write(g);
+      }
+      assertEquals(expected, Files.readString(path, StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void gzip() throws IOException {
+    List<Mcf.McfGraph> graphs = testGraphs();
+    Path path = testFolder.newFile().toPath();
+    try (McfWriter writer = new McfWriter(path, McfWriter.Compression.GZIP, 7)) {
+      for (Mcf.McfGraph g : graphs) writer.write(g);
+    }
+    // Concatenated gzip files (as when merging CSV chunks) decompress to the concatenated MCF.
+    Path concat = testFolder.newFile().toPath();
+    Files.write(concat, Files.readAllBytes(path));
+    Files.write(concat, Files.readAllBytes(path), StandardOpenOption.APPEND);
+    try (InputStream in = new GZIPInputStream(Files.newInputStream(concat))) {
+      String expected = serializeAll(graphs);
+      assertEquals(expected + expected, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+    }
+  }
+
+  @Test
+  public void emptyFile() throws IOException {
+    Path path = testFolder.newFile().toPath();
+    Files.writeString(path, "stale");
+    new McfWriter(path, McfWriter.Compression.NONE).close();
+    assertEquals("", Files.readString(path));
+  }
+
+  // Returns the MCF for |graphs| as it reads back from a UTF-8 file, where unpaired surrogates
+  // have become '?'.
+  private static String serializeAll(List<Mcf.McfGraph> graphs) {
+    StringBuilder result = new StringBuilder();
+    for (Mcf.McfGraph g : graphs) result.append(McfUtil.serializeMcfGraph(g, false));
+    return new String(result.toString().getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+  }
+
+  private static List<Mcf.McfGraph> testGraphs() {
+    List<Mcf.McfGraph> graphs = new ArrayList<>();
+    Mcf.McfGraph.Builder g = Mcf.McfGraph.newBuilder().setType(Mcf.McfType.INSTANCE_MCF);
+    Mcf.McfGraph.PropertyValues.Builder node = Mcf.McfGraph.PropertyValues.newBuilder();
+    node.putPvs("typeOf", values(Mcf.ValueType.RESOLVED_REF, "City"));
+    node.putPvs(
+        "name",
+        values(Mcf.ValueType.TEXT, "S\u00e3o Paulo", "\u6771\u4eac", "\uD83D\uDE00", "\uD800x"));
+    node.putPvs("description", values(Mcf.ValueType.TEXT, ""));
+    node.putPvs("empty", values(Mcf.ValueType.NUMBER, ""));
+    node.putPvs("mixed", values(Mcf.ValueType.NUMBER, "", "10", "", "20"));
+    node.putPvs("none", Mcf.McfGraph.Values.getDefaultInstance());
+    node.putPvs("ref", values(Mcf.ValueType.UNRESOLVED_REF, "l:Other"));
+    g.putNodes("Node1", node.build());
+    Mcf.McfGraph.PropertyValues.Builder failed = Mcf.McfGraph.PropertyValues.newBuilder();
+    failed.setErrorMessage("Unable to resolve \u2717");
+    failed.addLocations(LogLocation.Location.newBuilder().setFile("in.csv").setLineNumber(42));
+    failed.addLocations(LogLocation.Location.newBuilder().setFile("in2.csv").setLineNumber(7));
+    failed.putPvs("count", values(Mcf.ValueType.NUMBER, "1"));
+    g.putNodes("Node2", failed.build());
+    graphs.add(g.build());
+
+    Mcf.McfGraph.Builder t = Mcf.McfGraph.newBuilder().setType(Mcf.McfType.TEMPLATE_MCF);
+    t.putNodes(
+        "E:Table->E1",
+        Mcf.McfGraph.PropertyValues.newBuilder()
+            .putPvs("value", values(Mcf.ValueType.TABLE_COLUMN, "C:Table->Count"))
+            .build());
+    graphs.add(t.build());
+    graphs.add(Mcf.McfGraph.getDefaultInstance());
+    return graphs;
+  }
+
+  private static Mcf.McfGraph.Values values(Mcf.ValueType type, String... vals) {
+    Mcf.McfGraph.Values.Builder result = Mcf.McfGraph.Values.newBuilder();
+    for (String v : vals) {
+      result.addTypedValues(Mcf.McfGraph.TypedValue.newBuilder().setType(type).setValue(v));
+    }
+    return result.build();
+  }
+}
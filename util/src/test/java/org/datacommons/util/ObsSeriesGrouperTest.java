@@ -0,0 +1,196 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.protobuf.ByteString;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.datacommons.proto.Mcf.McfStatVarObsSeries;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ObsSeriesGrouperTest {
+  @Rule public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Test
+  public void inMemory() throws IOException {
+    ObsSeriesGrouper grouper = new ObsSeriesGrouper(1L << 30, testFolder.getRoot().toPath());
+    List<McfStatVarObsSeries> input = randomSeries(1, 500);
+    for (McfStatVarObsSeries s : input) grouper.add(s);
+    assertFalse(grouper.isSpilled());
+    assertThat(toList(ObsSeriesGrouper.merge(List.of(grouper)))).isEqualTo(expected(input));
+    grouper.close();
+  }
+
+  @Test
+  public void spilled() throws IOException {
+    ObsSeriesGrouper grouper = new ObsSeriesGrouper(2000, testFolder.getRoot().toPath());
+    List<McfStatVarObsSeries> input = randomSeries(2, 2000);
+    for (McfStatVarObsSeries s : input) grouper.add(s);
+    assertTrue(grouper.isSpilled());
+    assertThat(toList(ObsSeriesGrouper.merge(List.of(grouper)))).isEqualTo(expected(input));
+    grouper.close();
+    assertThat(testFolder.getRoot().list()).isEmpty();
+  }
+
+  @Test
+  public void compactsRuns() throws IOException {
+    int maxRuns = ObsSeriesGrouper.MAX_RUNS;
+    ObsSeriesGrouper.MAX_RUNS = 3;
+    try {
+      // Every add spills a run.
+      ObsSeriesGrouper grouper = new ObsSeriesGrouper(0, testFolder.getRoot().toPath());
+      List<McfStatVarObsSeries> input = randomSeries(4, 200);
+      for (McfStatVarObsSeries s : input) grouper.add(s);
+      assertThat(testFolder.getRoot().list().length).isLessThan(3);
+      assertThat(toList(ObsSeriesGrouper.merge(List.of(grouper)))).isEqualTo(expected(input));
+      grouper.close();
+      assertThat(testFolder.getRoot().list()).isEmpty();
+    } finally {
+      ObsSeriesGrouper.MAX_RUNS = maxRuns;
+    }
+  }
+
+  @Test
+  public void mergeGroupersInOrder() throws IOException {
+    // As for the chunks of a split CSV: each chunk has its own grouper.
+    List<McfStatVarObsSeries> input = randomSeries(3, 3000);
+    List<ObsSeriesGrouper> groupers = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      groupers.add(new ObsSeriesGrouper(i == 1 ? 1L << 30 : 1500, null));
+    }
+    for (int i = 0; i < input.size(); i++) {
+      groupers.get(i * 3 / input.size()).add(input.get(i));
+    }
+    assertThat(toList(ObsSeriesGrouper.merge(groupers))).isEqualTo(expected(input));
+    for (ObsSeriesGrouper grouper : groupers) grouper.close();
+  }
+
+  @Test
+  public void capsRunsOfMergedGroupers() throws IOException {
+    int maxRuns = ObsSeriesGrouper.MAX_RUNS;
+    ObsSeriesGrouper.MAX_RUNS = 3;
+    try {
+      // Finished chunks are flushed to a run each, the last one is still in memory.
+      List<McfStatVarObsSeries> input = randomSeries(5, 3000);
+      List<ObsSeriesGrouper> groupers = new ArrayList<>();
+      for (int i = 0; i < 6; i++) {
+        groupers.add(new ObsSeriesGrouper(1L << 30, testFolder.getRoot().toPath()));
+      }
+      for (int i = 0; i < input.size(); i++) {
+        groupers.get(i * 6 / input.size()).add(input.get(i));
+      }
+      for (int i = 0; i < 5; i++) groupers.get(i).flush();
+      assertThat(testFolder.getRoot().list().length).isEqualTo(5);
+      Iterator<McfStatVarObsSeries> merged = ObsSeriesGrouper.merge(groupers);
+      assertThat(testFolder.getRoot().list().length).isAtMost(3);
+      assertThat(toList(merged)).isEqualTo(expected(input));
+      for (ObsSeriesGrouper grouper : groupers) grouper.close();
+      assertThat(testFolder.getRoot().list()).isEmpty();
+    } finally {
+      ObsSeriesGrouper.MAX_RUNS = maxRuns;
+    }
+  }
+
+  @Test
+  public void closesRunsWhenStoppedEarly() throws IOException {
+    ObsSeriesGrouper grouper = new ObsSeriesGrouper(2000, testFolder.getRoot().toPath());
+    for (McfStatVarObsSeries s : randomSeries(6, 2000)) grouper.add(s);
+    assertTrue(grouper.isSpilled());
+    try (ObsSeriesGrouper.MergeIterator merged = ObsSeriesGrouper.merge(List.of(grouper))) {
+      merged.next();
+      merged.close();
+      assertFalse(merged.hasNext());
+    }
+    grouper.close();
+    assertThat(testFolder.getRoot().list()).isEmpty();
+  }
+
+  @Test
+  public void failsOnCorruptRun() throws IOException {
+    ObsSeriesGrouper grouper = new ObsSeriesGrouper(2000, testFolder.getRoot().toPath());
+    for (McfStatVarObsSeries s : randomSeries(7, 2000)) grouper.add(s);
+    assertTrue(grouper.isSpilled());
+    // A series length with no series after it.
+    for (File run : testFolder.getRoot().listFiles()) {
+      Files.write(run.toPath(), new byte[] {0x7f});
+    }
+    try {
+      ObsSeriesGrouper.merge(List.of(grouper));
+      fail("Expected a corrupt run to fail the merge");
+    } catch (UncheckedIOException e) {
+      // expected
+    }
+    grouper.close();
+    assertThat(testFolder.getRoot().list()).isEmpty();
+  }
+
+  // Groups |input| in memory, in key order.
+  private static List<McfStatVarObsSeries> expected(List<McfStatVarObsSeries> input) {
+    Map<McfStatVarObsSeries.Key, McfStatVarObsSeries.Builder> groups = new LinkedHashMap<>();
+    for (McfStatVarObsSeries s : input) {
+      groups
+          .computeIfAbsent(s.getKey(), k -> McfStatVarObsSeries.newBuilder().setKey(k))
+          .addAllSvObsList(s.getSvObsListList());
+    }
+    List<McfStatVarObsSeries> result = new ArrayList<>();
+    for (var group : groups.values()) result.add(group.build());
+    result.sort(
+        (a, b) ->
+            ByteString.unsignedLexicographicalComparator()
+                .compare(a.getKey().toByteString(), b.getKey().toByteString()));
+    return result;
+  }
+
+  private static List<McfStatVarObsSeries> randomSeries(long seed, int count) {
+    Random random = new Random(seed);
+    List<McfStatVarObsSeries> result = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      McfStatVarObsSeries.Builder series = McfStatVarObsSeries.newBuilder();
+      series
+          .getKeyBuilder()
+          .setObservationAbout("geoId/" + random.nextInt(50))
+          .setVariableMeasured("Count_" + random.nextInt(5));
+      if (random.nextBoolean()) series.getKeyBuilder().setUnit("USD");
+      series
+          .addSvObsListBuilder()
+          .setDate(String.valueOf(2000 + i))
+          .setNumber(random.nextDouble())
+          .setDcid("dc/o/" + i);
+      result.add(series.build());
+    }
+    return result;
+  }
+
+  private static List<McfStatVarObsSeries> toList(Iterator<McfStatVarObsSeries> it) {
+    List<McfStatVarObsSeries> result = new ArrayList<>();
+    it.forEachRemaining(result::add);
+    return result;
+  }
+}
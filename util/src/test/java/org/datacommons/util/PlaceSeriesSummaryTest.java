@@ -3,9 +3,13 @@ package org.datacommons.util;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
+import org.datacommons.proto.Debug.DataPoint;
+import org.datacommons.proto.Debug.DataPoint.DataValue;
 import org.datacommons.proto.Mcf;
 import org.datacommons.proto.Mcf.McfGraph;
 import org.datacommons.util.SummaryReportGenerator.StatVarSummary;
@@ -74,4 +78,61 @@ public class PlaceSeriesSummaryTest {
       }
     }
   }
+
+  @Test
+  public void testTimeSeriesKeepsValuesAsParsed() throws IOException {
+    String mcf =
+        "Node: E1\n"
+            + "typeOf: dcid:StatVarObservation\n"
+            + "observationDate: \"2016\"\n"
+            + "observationAbout: dcid:geoId/06\n"
+            + "variableMeasured: dcid:Count_Person\n"
+            + "value: 24.0\n"
+            + "\n"
+            + "Node: E2\n"
+            + "typeOf: dcid:StatVarObservation\n"
+            + "observationDate: \"2014\"\n"
+            + "observationAbout: dcid:geoId/06\n"
+            + "variableMeasured: dcid:Count_Person\n"
+            + "value: 1e3\n"
+            + "\n"
+            + "Node: E3\n"
+            + "typeOf: dcid:StatVarObservation\n"
+            + "observationDate: \"2015\"\n"
+            + "observationAbout: dcid:geoId/06\n"
+            + "variableMeasured: dcid:Count_Person\n"
+            + "value: 7\n"
+            + "\n"
+            + "Node: E4\n"
+            + "typeOf: dcid:StatVarObservation\n"
+            + "observationDate: \"2015\"\n"
+            + "observationAbout: dcid:geoId/06\n"
+            + "variableMeasured: dcid:Count_Person\n"
+            + "value: \"DataSuppressed\"\n";
+    Mcf.McfGraph graph = McfParser.parseInstanceMcfString(mcf, false, TestUtil.newLogCtx());
+    PlaceSeriesSummary placeSeriesSummary = new PlaceSeriesSummary();
+    // The DataPoints the values should come back as, keyed by date.
+    Map<String, DataPoint.Builder> expected = new TreeMap<>();
+    for (String id : List.of("E1", "E2", "E3", "E4")) {
+      McfGraph.PropertyValues node = graph.getNodesOrThrow(id);
+      placeSeriesSummary.extractSeriesFromNode(node);
+      expected
+          .computeIfAbsent(
+              McfUtil.getPropVal(node, Vocabulary.OBSERVATION_DATE),
+              date -> DataPoint.newBuilder().setDate(date))
+          .addValues(
+              DataValue.newBuilder()
+                  .setValue(McfUtil.getPropTvs(node, Vocabulary.VALUE).get(0))
+                  .addAllLocations(node.getLocationsList()));
+    }
+    List<DataPoint> expectedTimeSeries = new ArrayList<>();
+    expected.values().forEach(dp -> expectedTimeSeries.add(dp.build()));
+
+    PlaceSeriesSummary.SeriesSummary summary =
+        placeSeriesSummary.getSvSeriesSummaryMap().get("Count_Person").values().iterator().next();
+    assertEquals(expectedTimeSeries, summary.getTimeSeriesAsList());
+    assertEquals(3, summary.getNumDates());
+    assertEquals("2014 | 2015 | 2016", summary.getDatesString());
+    assertEquals("1e3 | 7 | 24.0", summary.getValueString());
+  }
 }
@@ -3,9 +3,15 @@ package org.datacommons.util;
 import static com.google.common.truth.Truth.assertThat;
 import static java.net.http.HttpClient.newHttpClient;
 import static org.datacommons.util.TestUtil.newLogCtx;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 import java.util.List;
 import java.util.Map;
+import org.datacommons.proto.Mcf.McfGraph;
 import org.datacommons.proto.Mcf.McfGraph.PropertyValues;
 import org.datacommons.proto.Mcf.ValueType;
 import org.junit.Test;
@@ -74,6 +80,41 @@ public class PropertyResolverTest {
     assertThat(resolver.submit(NON_RESOLVABLE_NODE)).isFalse();
   }
 
+  @Test
+  public void sendsFullChunksBeforeDrain() {
+    KgSnapshot snapshot = new KgSnapshot();
+    snapshot.addGraph(
+        McfGraph.newBuilder()
+            .putNodes("in", withDcid(IN, IN_DCID))
+            .putNodes("cn", withDcid(CN, CN_DCID))
+            .build());
+    ReconClient client = spy(new ReconClient(null, snapshot, newLogCtx(), 2));
+    PropertyResolver resolver = new PropertyResolver(client, newLogCtx());
+
+    resolver.submit(IN);
+    resolver.submit(IN);
+    verify(client, never()).resolveAsync(any());
+    // The second isoCode fills a chunk.
+    resolver.submit(CN);
+    verify(client, times(1)).resolveAsync(any());
+    resolver.submit(UNK);
+    resolver.submit(SF);
+    verify(client, times(1)).resolveAsync(any());
+
+    // The partial chunks of isoCode and wikidataId are sent on drain.
+    resolver.drain();
+    verify(client, times(3)).resolveAsync(any());
+    assertThat(resolver.resolve("in", IN).get()).isEqualTo(IN_DCID);
+    assertThat(resolver.resolve("cn", CN).get()).isEqualTo(CN_DCID);
+    assertThat(resolver.resolve("unk", UNK).isPresent()).isFalse();
+  }
+
+  private static PropertyValues withDcid(PropertyValues node, String dcid) {
+    return node.toBuilder()
+        .putPvs(Vocabulary.DCID, McfUtil.newValues(ValueType.TEXT, dcid))
+        .build();
+  }
+
   private static PropertyValues newNode(String typeOf, Map<String, String> props) {
     PropertyValues.Builder node = PropertyValues.newBuilder();
     node.putPvs(Vocabulary.TYPE_OF, McfUtil.newValues(ValueType.RESOLVED_REF, typeOf));
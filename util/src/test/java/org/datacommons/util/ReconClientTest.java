@@ -6,10 +6,23 @@ import static org.datacommons.util.ReconClient.NUM_API_CALLS_COUNTER;
 import static org.datacommons.util.TestUtil.getCounter;
 import static org.datacommons.util.TestUtil.newLogCtx;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.datacommons.proto.Resolve.ResolveRequest;
 import org.datacommons.proto.Resolve.ResolveResponse;
 import org.datacommons.proto.Resolve.ResolveResponse.Entity.Candidate;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 
 public class ReconClientTest {
@@ -19,6 +32,38 @@ public class ReconClientTest {
   private static final String SF_COORDINATES_NODE = "37.77493#-122.41942";
   private static final String BIG_BEN_COORDINATES_NODE = "51.510357#-0.116773";
 
+  // A local stub of the resolve API, which resolves each node N to "dcid/N".
+  private HttpServer stubServer;
+  private ExecutorService stubExecutor;
+  private final AtomicInteger numStubCalls = new AtomicInteger();
+  private final AtomicInteger numStubInFlight = new AtomicInteger();
+  private final AtomicInteger maxStubInFlight = new AtomicInteger();
+  // Calls the stub fails with HTTP 429, and calls on which it drops the connection.
+  private volatile int numThrottledCalls = 0;
+  private volatile int numDroppedCalls = 0;
+  // Calls with more than this many in flight are throttled.
+  private volatile int stubCapacity = Integer.MAX_VALUE;
+
+  private long savedInitialRetryDelayMillis;
+
+  @Before
+  public void setUp() throws IOException {
+    savedInitialRetryDelayMillis = ReconClient.INITIAL_RETRY_DELAY_MILLIS;
+    ReconClient.INITIAL_RETRY_DELAY_MILLIS = 10;
+    stubExecutor = Executors.newCachedThreadPool();
+    stubServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    stubServer.setExecutor(stubExecutor);
+    stubServer.createContext("/v2/resolve", this::handleStubCall);
+    stubServer.start();
+  }
+
+  @After
+  public void tearDown() {
+    ReconClient.INITIAL_RETRY_DELAY_MILLIS = savedInitialRetryDelayMillis;
+    stubServer.stop(0);
+    stubExecutor.shutdownNow();
+  }
+
   @Test
   public void resolve_geoCoordinates() {
     LogWrapper logWrapper = newLogCtx();
@@ -74,4 +119,101 @@ public class ReconClientTest {
         .contains(GBR_DCID);
     assertThat(getCounter(logWrapper.getLog(), NUM_API_CALLS_COUNTER)).isEqualTo(2);
   }
+
+  @Test
+  public void resolve_retriesThrottledAndDroppedCalls() {
+    numThrottledCalls = 2;
+    numDroppedCalls = 1;
+    LogWrapper logWrapper = newLogCtx();
+    ReconClient client = newStubClient(logWrapper, 10, new AimdLimiter(4, 1, 32));
+
+    ResolveResponse result = client.resolve(newRequest(20));
+
+    assertThat(result.getEntitiesCount()).isEqualTo(20);
+    for (int i = 0; i < 20; i++) {
+      assertThat(result.getEntities(i).getNode()).isEqualTo("n" + i);
+      assertThat(result.getEntities(i).getCandidates(0).getDcid()).isEqualTo("dcid/n" + i);
+    }
+    // 2 chunks and 3 retries.
+    assertThat(numStubCalls.get()).isEqualTo(5);
+    assertThat(getCounter(logWrapper.getLog(), NUM_API_CALLS_COUNTER)).isEqualTo(5);
+    assertThat(getCounter(logWrapper.getLog(), ReconClient.NUM_RETRIES_COUNTER)).isEqualTo(3);
+    assertThat(getCounter(logWrapper.getLog(), "ReconClient_ApiLatency_Under1s")).isEqualTo(2);
+  }
+
+  @Test
+  public void resolve_adaptsConcurrencyToServer() {
+    stubCapacity = 3;
+    LogWrapper logWrapper = newLogCtx();
+    AimdLimiter limiter = new AimdLimiter(8, 1, 16);
+    ReconClient client = newStubClient(logWrapper, 1, limiter);
+
+    ResolveResponse result = client.resolve(newRequest(200));
+
+    assertThat(result.getEntitiesCount()).isEqualTo(200);
+    assertThat(result.getEntities(199).getCandidates(0).getDcid()).isEqualTo("dcid/n199");
+    // The limiter never goes past its initial limit, as the server throttles long before.
+    assertThat(maxStubInFlight.get()).isAtMost(8);
+    assertThat(limiter.getMaxInFlight()).isAtMost(8);
+    assertThat(limiter.getLimit()).isAtMost(6);
+    assertThat(getCounter(logWrapper.getLog(), ReconClient.NUM_RETRIES_COUNTER)).isGreaterThan(0L);
+  }
+
+  private ReconClient newStubClient(LogWrapper logWrapper, int chunkSize, AimdLimiter limiter) {
+    DcApiConfig config =
+        new DcApiConfig("http://127.0.0.1:" + stubServer.getAddress().getPort(), null);
+    return new ReconClient(
+        HttpClient.newHttpClient(), null, logWrapper, chunkSize, config, limiter);
+  }
+
+  private static ResolveRequest newRequest(int numNodes) {
+    ResolveRequest.Builder request = ResolveRequest.newBuilder().setProperty("<-geoId->dcid");
+    for (int i = 0; i < numNodes; i++) {
+      request.addNodes("n" + i);
+    }
+    return request.build();
+  }
+
+  private void handleStubCall(HttpExchange exchange) throws IOException {
+    int call = numStubCalls.incrementAndGet();
+    int inFlight = numStubInFlight.incrementAndGet();
+    maxStubInFlight.accumulateAndGet(inFlight, Math::max);
+    try {
+      JsonObject request =
+          JsonParser.parseString(
+                  new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8))
+              .getAsJsonObject();
+      Thread.sleep(5);
+      if (call <= numDroppedCalls) {
+        exchange.close();
+        return;
+      }
+      if (call <= numDroppedCalls + numThrottledCalls || inFlight > stubCapacity) {
+        exchange.sendResponseHeaders(429, -1);
+        exchange.close();
+        return;
+      }
+      JsonArray entities = new JsonArray();
+      for (var node : request.getAsJsonArray("nodes")) {
+        JsonObject candidate = new JsonObject();
+        candidate.addProperty("dcid", "dcid/" + node.getAsString());
+        JsonArray candidates = new JsonArray();
+        candidates.add(candidate);
+        JsonObject entity = new JsonObject();
+        entity.addProperty("node", node.getAsString());
+        entity.add("candidates", candidates);
+        entities.add(entity);
+      }
+      JsonObject response = new JsonObject();
+      response.add("entities", entities);
+      byte[] body = response.toString().getBytes(StandardCharsets.UTF_8);
+      exchange.sendResponseHeaders(200, body.length);
+      exchange.getResponseBody().write(body);
+      exchange.close();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } finally {
+      numStubInFlight.decrementAndGet();
+    }
+  }
 }
@@ -24,9 +24,13 @@ import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.io.FileUtils;
 import org.datacommons.proto.Debug;
 import org.datacommons.proto.Debug.DataPoint;
@@ -68,6 +72,125 @@ public class StatCheckerTest {
         .containsExactlyElementsIn(expectedLog.getStatsCheckSummaryList());
   }
 
+  @Test
+  public void testExtractStatsFromManyThreads() throws IOException, InterruptedException {
+    String mcfPath = this.getClass().getResource("StatCheckerTest.mcf").getPath();
+    Debug.Log.Builder logCtx = Debug.Log.newBuilder();
+    LogWrapper lw = new LogWrapper(logCtx, testFolder.getRoot().toPath());
+    Mcf.McfGraph graph = McfParser.parseInstanceMcfFile(mcfPath, false, lw);
+    StatChecker sc = new StatChecker(lw, null);
+    sc.extractStatsFromGraph(graph);
+    sc.check();
+
+    // Add the same nodes one at a time from several threads.
+    Debug.Log.Builder parallelLogCtx = Debug.Log.newBuilder();
+    LogWrapper parallelLw = new LogWrapper(parallelLogCtx, testFolder.getRoot().toPath());
+    StatChecker parallelSc = new StatChecker(parallelLw, new HashSet<>(sc.getSamplePlaces()));
+    ExecutorService executor = Executors.newFixedThreadPool(8);
+    for (var node : graph.getNodesMap().entrySet()) {
+      executor.execute(
+          () ->
+              parallelSc.extractStatsFromGraph(
+                  graph.toBuilder().clearNodes().putNodes(node.getKey(), node.getValue()).build()));
+    }
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+    parallelSc.check();
+
+    assertEquals(sc.getSVSummaryMap().keySet(), parallelSc.getSVSummaryMap().keySet());
+    for (var entry : sc.getSVSummaryMap().entrySet()) {
+      var parallelSummary = parallelSc.getSVSummaryMap().get(entry.getKey());
+      assertEquals(entry.getValue().getNumObservations(), parallelSummary.getNumObservations());
+      assertEquals(entry.getValue().getPlaces(), parallelSummary.getPlaces());
+    }
+    assertEquals(
+        sc.getPlaceSeriesSummaryMap().keySet(), parallelSc.getPlaceSeriesSummaryMap().keySet());
+    expect
+        .about(ProtoTruth.protos())
+        .that(parallelLogCtx.getStatsCheckSummaryList())
+        .ignoringRepeatedFieldOrder()
+        .containsExactlyElementsIn(logCtx.getStatsCheckSummaryList());
+  }
+
+  @Test
+  public void testCheckKeepsFirstEntriesInPlaceOrder() throws IOException, InterruptedException {
+    Debug.Log.Builder logCtx = Debug.Log.newBuilder();
+    LogWrapper lw = new LogWrapper(logCtx, testFolder.getRoot().toPath());
+    List<String> places = new ArrayList<>();
+    StringBuilder mcf = new StringBuilder();
+    for (int i = 0; i < 15; i++) {
+      String place = String.format("geoId/%02d", 14 - i);
+      places.add(place);
+      // Two different values for the same date.
+      for (int value = 1; value <= 2; value++) {
+        mcf.append(
+            String.format(
+                "Node: Obs_%d_%d\n"
+                    + "typeOf: dcs:StatVarObservation\n"
+                    + "observationAbout: dcid:%s\n"
+                    + "variableMeasured: dcid:Count_Person\n"
+                    + "observationDate: \"2020\"\n"
+                    + "value: %d\n\n",
+                i, value, place, value));
+      }
+    }
+    StatChecker sc = new StatChecker(lw, new HashSet<>(places));
+    sc.extractStatsFromGraph(McfParser.parseInstanceMcfString(mcf.toString(), false, lw));
+    sc.check();
+
+    // All series are counted, and the summary has the first 10 places by dcid.
+    assertTrue(TestUtil.checkCounter(lw.getLog(), "StatsCheck_Inconsistent_Values", 15));
+    List<String> summaryPlaces = new ArrayList<>();
+    for (StatValidationResult result : logCtx.getStatsCheckSummaryList()) {
+      summaryPlaces.add(result.getPlaceDcid());
+    }
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      expected.add(String.format("geoId/%02d", i));
+    }
+    assertEquals(expected, summaryPlaces);
+  }
+
+  @Test
+  public void testCheckStreamsSeriesOfOtherPlaces() throws IOException, InterruptedException {
+    StringBuilder mcf = new StringBuilder();
+    for (String place : List.of("geoId/01", "geoId/02")) {
+      // A data hole in 2012.
+      for (String date : List.of("2010", "2011", "2013")) {
+        mcf.append(
+            String.format(
+                "Node: Obs_%s_%s\n"
+                    + "typeOf: dcs:StatVarObservation\n"
+                    + "observationAbout: dcid:%s\n"
+                    + "variableMeasured: dcid:Count_Person\n"
+                    + "observationDate: \"%s\"\n"
+                    + "value: 1\n\n",
+                place, date, place, date));
+      }
+    }
+    for (int maxStreamingSeries : List.of(0, 10)) {
+      Debug.Log.Builder logCtx = Debug.Log.newBuilder();
+      LogWrapper lw = new LogWrapper(logCtx, testFolder.getRoot().toPath());
+      StatChecker sc =
+          new StatChecker(
+              lw, new HashSet<>(List.of("geoId/01")), null, null, false, false, maxStreamingSeries);
+      sc.extractStatsFromGraph(McfParser.parseInstanceMcfString(mcf.toString(), false, lw));
+      sc.check();
+
+      List<String> summaryPlaces = new ArrayList<>();
+      for (StatValidationResult result : logCtx.getStatsCheckSummaryList()) {
+        summaryPlaces.add(result.getPlaceDcid());
+      }
+      if (maxStreamingSeries == 0) {
+        assertTrue(TestUtil.checkCounter(lw.getLog(), "StatsCheck_Data_Holes", 1));
+        assertEquals(List.of("geoId/01"), summaryPlaces);
+      } else {
+        assertTrue(TestUtil.checkCounter(lw.getLog(), "StatsCheck_Data_Holes", 2));
+        assertEquals(List.of("geoId/01", "geoId/02"), summaryPlaces);
+      }
+    }
+  }
+
   @Test
   public void testCheckSvObsInGraph() throws IOException {
     Debug.Log.Builder log = Debug.Log.newBuilder();
@@ -14,6 +14,7 @@ import java.io.IOException;
 import java.net.http.HttpClient;
 import java.net.http.HttpResponse;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import org.datacommons.proto.Debug;
 import org.datacommons.proto.Mcf.McfGraph;
@@ -60,6 +61,77 @@ public class StatVarStateTest {
     assertEquals(result, result_repeat);
   }
 
+  @Test
+  public void prefetchStatTypesInBatches() throws IOException, InterruptedException {
+    var mockHttp = Mockito.mock(HttpClient.class);
+    var mockResp = Mockito.mock(HttpResponse.class);
+    when(mockHttp.send(any(), any())).thenReturn(mockResp);
+    // Count_Person is known; Count_Nobody is not in the response.
+    when(mockResp.body())
+        .thenReturn(
+            String.format(
+                "{\"data\":{\"%s\":{\"arcs\":{\"statType\":{\"nodes\":[{\"dcid\":\"%s\"}]}}},"
+                    + "\"Count_Person\":{\"arcs\":{\"statType\":{\"nodes\":[{\"dcid\":\"measuredValue\"}]}}}}}",
+                TEST_SV_MEASRES_DCID, Vocabulary.MEASUREMENT_RESULT));
+
+    Debug.Log.Builder lb = Debug.Log.newBuilder();
+    LogWrapper lw = new LogWrapper(lb, Path.of("InMemory"));
+    var svs = new StatVarState(mockHttp, lw);
+
+    int batchLimit = StatVarState.STAT_TYPE_BATCH_LIMIT;
+    StatVarState.STAT_TYPE_BATCH_LIMIT = 2;
+    try {
+      svs.prefetchStatTypes(
+          List.of(TEST_SV_MEASRES_DCID, "Count_Person", "Count_Nobody", "Count_Person"));
+    } finally {
+      StatVarState.STAT_TYPE_BATCH_LIMIT = batchLimit;
+    }
+    // Three distinct SVs in batches of two.
+    verify(mockHttp, times(2)).send(any(), any());
+
+    // The statTypes, and the SV that has none, are served without more calls.
+    assertEquals(Vocabulary.MEASUREMENT_RESULT, svs.getStatType(TEST_SV_MEASRES_DCID));
+    assertEquals("measuredValue", svs.getStatType("Count_Person"));
+    assertEquals(null, svs.getStatType("Count_Nobody"));
+    assertEquals(null, svs.getStatType("Count_Nobody"));
+    svs.prefetchStatTypes(List.of("Count_Person", "Count_Nobody"));
+    verify(mockHttp, times(2)).send(any(), any());
+  }
+
+  @Test
+  public void prefetchStatTypesBisectsFailedBatch() throws IOException, InterruptedException {
+    List<String> svDcids = new ArrayList<>();
+    StringBuilder body = new StringBuilder("{\"data\":{");
+    for (int i = 0; i < StatVarState.STAT_TYPE_BATCH_LIMIT; i++) {
+      String svDcid = "Count_Person_" + i;
+      svDcids.add(svDcid);
+      if (i > 0) body.append(",");
+      body.append(
+          String.format(
+              "\"%s\":{\"arcs\":{\"statType\":{\"nodes\":[{\"dcid\":\"measuredValue\"}]}}}",
+              svDcid));
+    }
+    body.append("}}");
+
+    var mockHttp = Mockito.mock(HttpClient.class);
+    var mockResp = Mockito.mock(HttpResponse.class);
+    when(mockHttp.send(any(), any())).thenReturn(mockResp);
+    // The call for the whole batch fails (no payload), and the calls for its halves succeed.
+    when(mockResp.body()).thenReturn("{}", body.toString());
+
+    Debug.Log.Builder lb = Debug.Log.newBuilder();
+    LogWrapper lw = new LogWrapper(lb, Path.of("InMemory"));
+    var svs = new StatVarState(mockHttp, lw);
+    svs.prefetchStatTypes(svDcids);
+    verify(mockHttp, times(3)).send(any(), any());
+
+    // No SV of the failed batch is left without its statType.
+    for (String svDcid : svDcids) {
+      assertEquals("measuredValue", svs.getStatType(svDcid));
+    }
+    verify(mockHttp, times(3)).send(any(), any());
+  }
+
   // Test that querying SV described in local MCF returns the correct statType
   // with no HTTP calls.
   //
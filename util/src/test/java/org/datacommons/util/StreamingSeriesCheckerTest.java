@@ -0,0 +1,154 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import org.datacommons.proto.Debug;
+import org.datacommons.proto.Debug.DataPoint;
+import org.datacommons.proto.Debug.StatValidationResult;
+import org.datacommons.proto.Debug.StatValidationResult.StatValidationEntry;
+import org.junit.Test;
+
+public class StreamingSeriesCheckerTest {
+  @Test
+  public void findsOutliersAndFluctuations() {
+    StreamingSeriesChecker checker = new StreamingSeriesChecker(10);
+    // An outlier, but no large fluctuation, since the dates are out of order.
+    addSeries(
+        checker,
+        "geoId/01",
+        "2020:10",
+        "2011:10",
+        "2012:10",
+        "2013:10",
+        "2014:10",
+        "2015:10",
+        "2016:10",
+        "2017:10",
+        "2018:10",
+        "2019:10",
+        "2010:1000");
+    // A fluctuation from 10 to 100.
+    addSeries(checker, "geoId/02", "2010:10", "2011:10", "2012:100", "2013:90");
+    // Nothing to report.
+    addSeries(checker, "geoId/03", "2010:10", "2011:11", "2012:12");
+
+    Map<String, StatValidationResult> results = check(checker, 10);
+    assertEquals(Set.of("geoId/01", "geoId/02"), results.keySet());
+    assertEquals(
+        Map.of("StatsCheck_3_Sigma", List.of("2010")), problemDates(results.get("geoId/01")));
+    assertEquals(
+        Map.of("StatsCheck_MaxPercentFluctuationGreaterThan500", List.of("2011", "2012")),
+        problemDates(results.get("geoId/02")));
+    assertEquals(900.0, results.get("geoId/02").getValidationCounters(0).getPercentDifference(), 0);
+  }
+
+  @Test
+  public void checksDates() {
+    StreamingSeriesChecker checker = new StreamingSeriesChecker(10);
+    addSeries(checker, "geoId/01", "2011:1", "2014:1", "2012:1");
+    addSeries(checker, "geoId/02", "2011-01:1", "2011-07:1", "2012-01:1", "2013-01:1");
+    addSeries(checker, "geoId/03", "2011:1", "2012-01:1", "2013:1");
+    addSeries(checker, "geoId/04", "2011:1", "2012-13:1");
+    // Every 2 years, and a hole in daily dates, which are not checked for holes.
+    addSeries(checker, "geoId/05", "2011:1", "2015:1", "2013:1");
+    addSeries(checker, "geoId/06", "2011-01-01:1", "2011-01-05:1");
+
+    Map<String, StatValidationResult> results = check(checker, 10);
+    assertEquals(Set.of("geoId/01", "geoId/02", "geoId/03", "geoId/04"), results.keySet());
+    assertEquals(Map.of("StatsCheck_Data_Holes", List.of()), problemDates(results.get("geoId/01")));
+    assertEquals(
+        "Possible data hole found. This series has 3 dates from 2011 to 2014, where there would"
+            + " be 4 dates every 12 months.",
+        results.get("geoId/01").getValidationCounters(0).getAdditionalDetails());
+    assertEquals(Map.of("StatsCheck_Data_Holes", List.of()), problemDates(results.get("geoId/02")));
+    assertEquals(
+        Map.of("StatsCheck_Inconsistent_Date_Granularity", List.of("2012-01")),
+        problemDates(results.get("geoId/03")));
+    assertEquals(
+        Map.of("StatsCheck_Invalid_Date", List.of("2012-13")),
+        problemDates(results.get("geoId/04")));
+  }
+
+  @Test
+  public void keepsExamplesAndSeriesWithinLimits() {
+    Debug.Log.Builder log = Debug.Log.newBuilder();
+    LogWrapper lw = new LogWrapper(log, Path.of("InMemory"));
+    StreamingSeriesChecker checker = new StreamingSeriesChecker(20);
+    for (int i = 10; i < 40; i++) {
+      addSeries(checker, "geoId/" + i, "2011:1", "2013:1", "2014:1");
+    }
+    List<StatValidationResult> results = checker.check(lw, 5);
+    // The first 20 series are checked, and 5 of them are kept as examples.
+    assertTrue(TestUtil.checkCounter(lw.getLog(), "StatsCheck_Data_Holes", 20));
+    assertEquals(5, results.stream().map(StatValidationResult::getPlaceDcid).distinct().count());
+    for (StatValidationResult result : results) {
+      assertTrue(Integer.parseInt(result.getPlaceDcid().substring("geoId/".length())) < 30);
+    }
+  }
+
+  // Adds observations of Count_Person about |place|, with each of |datesAndValues| as
+  // "<date>:<value>".
+  private static void addSeries(
+      StreamingSeriesChecker checker, String place, String... datesAndValues) {
+    StringBuilder mcf = new StringBuilder();
+    for (int i = 0; i < datesAndValues.length; i++) {
+      String[] dateAndValue = datesAndValues[i].split(":");
+      mcf.append("Node: O" + i + "\n")
+          .append("typeOf: dcs:StatVarObservation\n")
+          .append("observationAbout: dcid:" + place + "\n")
+          .append("variableMeasured: dcid:Count_Person\n")
+          .append("observationDate: \"" + dateAndValue[0] + "\"\n")
+          .append("value: " + dateAndValue[1] + "\n\n");
+    }
+    var graph = TestUtil.graphFromMcf(mcf.toString());
+    for (int i = 0; i < datesAndValues.length; i++) {
+      checker.add(graph.getNodesOrThrow("O" + i));
+    }
+  }
+
+  // Returns the results by place.
+  private static Map<String, StatValidationResult> check(
+      StreamingSeriesChecker checker, int numExamples) {
+    LogWrapper lw = new LogWrapper(Debug.Log.newBuilder(), Path.of("InMemory"));
+    Map<String, StatValidationResult> results = new TreeMap<>();
+    for (StatValidationResult result : checker.check(lw, numExamples)) {
+      results.put(result.getPlaceDcid(), result);
+    }
+    return results;
+  }
+
+  // Returns the dates of the problem points of each counter of |result|.
+  private static Map<String, List<String>> problemDates(StatValidationResult result) {
+    Map<String, List<String>> dates = new TreeMap<>();
+    for (StatValidationEntry entry : result.getValidationCountersList()) {
+      dates.put(
+          entry.getCounterKey(),
+          entry.getProblemPointsList().stream()
+              .map(DataPoint::getDate)
+              .collect(Collectors.toCollection(ArrayList::new)));
+    }
+    return dates;
+  }
+}
@@ -0,0 +1,89 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.io.BaseEncoding;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import org.datacommons.proto.Mcf.McfOptimizedGraph;
+import org.datacommons.proto.Mcf.McfStatVarObsSeries;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TfRecordWriterTest {
+  @Rule public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Test
+  public void recordFraming() throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    TfRecordWriter writer = new TfRecordWriter(out);
+    byte[] data = "hello".getBytes(StandardCharsets.UTF_8);
+    writer.write(data, data.length);
+    writer.close();
+    // Length, masked CRC32C of the length, data, masked CRC32C of the data.
+    assertEquals(
+        "0500000000000000" + "eab2043e" + "68656c6c6f" + "bb1f1c19",
+        BaseEncoding.base16().lowerCase().encode(out.toByteArray()));
+  }
+
+  @Test
+  public void gzipProtos() throws IOException {
+    List<McfOptimizedGraph> graphs = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      McfStatVarObsSeries.Builder series = McfStatVarObsSeries.newBuilder();
+      series.getKeyBuilder().setObservationAbout("geoId/" + i).setVariableMeasured("Count");
+      // Records of varying size, some larger than the initial buffer.
+      for (int j = 0; j < i * 5; j++) {
+        series.addSvObsListBuilder().setDate(String.valueOf(2000 + j)).setNumber(j).setDcid("o");
+      }
+      graphs.add(McfOptimizedGraph.newBuilder().setSvObsSeries(series).build());
+    }
+    Path path = testFolder.newFile().toPath();
+    try (TfRecordWriter writer = new TfRecordWriter(path, McfWriter.Compression.GZIP)) {
+      for (McfOptimizedGraph g : graphs) writer.write(g);
+    }
+    assertThat(readRecords(new GZIPInputStream(Files.newInputStream(path)))).isEqualTo(graphs);
+  }
+
+  private static List<McfOptimizedGraph> readRecords(InputStream in) throws IOException {
+    List<McfOptimizedGraph> result = new ArrayList<>();
+    try (DataInputStream data = new DataInputStream(in)) {
+      byte[] header = new byte[12];
+      while (data.read(header, 0, 1) == 1) {
+        data.readFully(header, 1, 11);
+        long length = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN).getLong();
+        byte[] record = new byte[(int) length];
+        data.readFully(record);
+        data.readFully(new byte[4]);
+        result.add(McfOptimizedGraph.parseFrom(record));
+      }
+    }
+    return result;
+  }
+}
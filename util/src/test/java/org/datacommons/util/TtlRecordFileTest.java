@@ -0,0 +1,94 @@
+// Copyright 2026 Google LLC
+//
+// Licensed under the Apache License, Version 2.0 (the "License");
+// you may not use this file except in compliance with the License.
+// You may obtain a copy of the License at
+//
+//     https://www.apache.org/licenses/LICENSE-2.0
+//
+// Unless required by applicable law or agreed to in writing, software
+// distributed under the License is distributed on an "AS IS" BASIS,
+// WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+// See the License for the specific language governing permissions and
+// limitations under the License.
+
+package org.datacommons.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class TtlRecordFileTest {
+  private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+  private static final TtlRecordFile.Codec<String> CODEC =
+      new TtlRecordFile.Codec<>() {
+        @Override
+        public void write(DataOutputStream out, String value) throws IOException {
+          TtlRecordFile.writeString(out, value);
+        }
+
+        @Override
+        public String read(ByteBuffer buf) {
+          return TtlRecordFile.getString(buf);
+        }
+      };
+
+  @Rule public TemporaryFolder testFolder = new TemporaryFolder();
+
+  @Test
+  public void usesTtlOfValue() throws IOException {
+    Path path = testFolder.getRoot().toPath().resolve("test.cache");
+    TtlRecordFile<String> file = newFile(path, START);
+    file.put("a", "short");
+    file.put("b", "long");
+    file.flush();
+
+    TtlRecordFile<String> later = newFile(path, START.plus(Duration.ofHours(2)));
+    assertNull(later.get("a"));
+    assertEquals("long", later.get("b"));
+  }
+
+  @Test
+  public void compactsStaleRecords() throws IOException {
+    Path path = testFolder.getRoot().toPath().resolve("test.cache");
+    TtlRecordFile<String> file = newFile(path, START);
+    int numStale = TtlRecordFile.MIN_STALE_RECORDS_TO_COMPACT + 1;
+    for (int i = 0; i < numStale; i++) {
+      file.put("key" + i, "short");
+    }
+    file.put("kept", "long");
+    file.flush();
+    long size = Files.size(path);
+
+    // Most records are stale by then, so the file is rewritten with the one that is not.
+    TtlRecordFile<String> later = newFile(path, START.plus(Duration.ofHours(2)));
+    assertEquals("long", later.get("kept"));
+    assertTrue(Files.size(path) < size / numStale * 2);
+    assertEquals("long", newFile(path, START).get("kept"));
+    assertNull(newFile(path, START).get("key0"));
+  }
+
+  // Values of "short" are kept for an hour, others for ten.
+  private static TtlRecordFile<String> newFile(Path path, Instant now) {
+    return new TtlRecordFile<>(
+        path,
+        "DCTEST01",
+        "test cache",
+        CODEC,
+        value -> Duration.ofHours(value.equals("short") ? 1 : 10).toMillis(),
+        Clock.fixed(now, ZoneOffset.UTC));
+  }
+}